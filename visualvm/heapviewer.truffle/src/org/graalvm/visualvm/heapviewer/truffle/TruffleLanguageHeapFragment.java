@@ -26,8 +26,12 @@ package org.graalvm.visualvm.heapviewer.truffle;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.graalvm.visualvm.heapviewer.HeapContext;
 import org.graalvm.visualvm.heapviewer.HeapFragment;
 import org.graalvm.visualvm.heapviewer.model.Progress;
@@ -38,6 +42,7 @@ import org.graalvm.visualvm.lib.jfluid.heap.JavaClass;
 import org.graalvm.visualvm.lib.profiler.heapwalk.details.api.DetailsSupport;
 import org.netbeans.api.progress.ProgressHandle;
 import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
 
 /**
  *
@@ -51,6 +56,8 @@ import org.openide.util.NbBundle;
 })
 public abstract class TruffleLanguageHeapFragment<O extends TruffleObject, T extends TruffleType<O>> extends HeapFragment {
     
+    private static final int PROGRESS_STEPS = 1000;
+    
     private final TruffleLanguage<O, T, ? extends TruffleLanguageHeapFragment<O, T>> language;
     
     private long heapSize;
@@ -102,6 +109,11 @@ public abstract class TruffleLanguageHeapFragment<O extends TruffleObject, T ext
         return new ObjectsIterator(getInstancesIterator());
     }
     
+    // objects of getObjectsIterator() split into parts which can be iterated concurrently
+    protected List<Iterator<O>> getObjectsIterators() {
+        return Collections.singletonList(getObjectsIterator());
+    }
+    
     
     private void checkInitialized(Progress progress) {
         Progress.Listener progressListener = null;
@@ -151,28 +163,55 @@ public abstract class TruffleLanguageHeapFragment<O extends TruffleObject, T ext
         pHandle.setInitialDelay(1000);
         pHandle.start();
         
-        TruffleType.TypesComputer<O, T> computer = new TruffleType.TypesComputer<O, T>(language, heap) {
-            @Override
-            protected void addingObject(long size, long retained, String type) {
-                objectsCount++;
-                heapSize += size;
-            }
-        };
+        // objects of each part are aggregated into per-thread types merged at the end
+        final List<Iterator<O>> parts = getObjectsIterators();
+        final AtomicInteger nextPart = new AtomicInteger();
+        int threads = Math.min(parts.size(), Runtime.getRuntime().availableProcessors());
         
-        Iterator<O> objects = getObjectsIterator();
+        StatisticsComputer computer = new StatisticsComputer();
         try {
-            while (objects.hasNext()) {
-                computer.addObject(objects.next());
-                if (statisticsProgress != null) statisticsProgress.step();
+            if (threads <= 1) {
+                computer.addParts(parts, nextPart);
+            } else {
+                RequestProcessor processor = new RequestProcessor("Truffle Statistics Worker", threads); // NOI18N
+                List<Future<StatisticsComputer>> results = new ArrayList<>(threads);
+                try {
+                    for (int i = 0; i < threads; i++) results.add(processor.submit(() -> {
+                        StatisticsComputer partsComputer = new StatisticsComputer();
+                        partsComputer.addParts(parts, nextPart);
+                        return partsComputer;
+                    }));
+                    for (Future<StatisticsComputer> result : results) computer.addComputer(result.get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(ex);
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                    if (cause instanceof Error) throw (Error)cause;
+                    throw new IllegalStateException(cause);
+                } finally {
+                    // stop other workers if one of them fails
+                    nextPart.set(parts.size());
+                    processor.shutdown();
+                }
             }
         } finally {
             if (statisticsProgress != null && ownProgress) statisticsProgress.finish();
             pHandle.finish();
         }
         
+        objectsCount = computer.objectsCount;
+        heapSize = computer.heapSize;
         types = computer.getTypes();
     }
     
+    private void progressSteps(int steps) {
+        synchronized (statisticsProgressLock) {
+            if (statisticsProgress != null) statisticsProgress.steps(steps);
+        }
+    }
+    
 
     protected final Iterator<Instance> instancesIterator(String javaClassFqn) {
         return HeapUtils.instancesIterator(HeapUtils.getSubclasses(heap, javaClassFqn));
@@ -184,6 +223,20 @@ public abstract class TruffleLanguageHeapFragment<O extends TruffleObject, T ext
             classes.addAll(HeapUtils.getSubclasses(heap, fqn));
         return HeapUtils.instancesIterator(classes);
     }    
+    
+    protected final List<Iterator<O>> objectsIterators(String javaClassFqn) {
+        return objectsIterators(new String[] { javaClassFqn });
+    }
+    
+    // instances of each class split into ranges by JavaClass.getInstancesIterators()
+    protected final List<Iterator<O>> objectsIterators(String[] javaClassFqns) {
+        List<Iterator<O>> iterators = new ArrayList<>();
+        for (String fqn : javaClassFqns)
+            for (JavaClass cls : HeapUtils.getSubclasses(heap, fqn))
+                for (Iterator<Instance> instances : cls.getInstancesIterators())
+                    iterators.add(new ObjectsIterator(instances));
+        return iterators;
+    }
 
     
     protected static String fragmentDescription(Instance langID) {
@@ -191,6 +244,45 @@ public abstract class TruffleLanguageHeapFragment<O extends TruffleObject, T ext
     }
 
     
+    private class StatisticsComputer extends TruffleType.TypesComputer<O, T> {
+        
+        private long objectsCount;
+        private long heapSize;
+        
+        StatisticsComputer() {
+            super(language, heap);
+        }
+        
+        @Override
+        protected void addingObject(long size, long retained, String type) {
+            objectsCount++;
+            heapSize += size;
+        }
+        
+        void addParts(List<Iterator<O>> parts, AtomicInteger nextPart) {
+            int steps = 0;
+            for (int part = nextPart.getAndIncrement(); part < parts.size(); part = nextPart.getAndIncrement()) {
+                Iterator<O> objects = parts.get(part);
+                while (objects.hasNext()) {
+                    addObject(objects.next());
+                    if (++steps == PROGRESS_STEPS) {
+                        progressSteps(steps);
+                        steps = 0;
+                    }
+                }
+            }
+            progressSteps(steps);
+        }
+        
+        void addComputer(StatisticsComputer computer) {
+            addTypes(computer);
+            objectsCount += computer.objectsCount;
+            heapSize += computer.heapSize;
+        }
+        
+    }
+    
+    
     protected class ObjectsIterator implements Iterator<O> {
         private final Iterator<Instance> instancesIter;
         
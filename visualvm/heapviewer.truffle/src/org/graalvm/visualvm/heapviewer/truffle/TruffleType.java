@@ -82,6 +82,16 @@ public abstract class TruffleType<O extends TruffleObject> {
             this.retained += objectRetainedSize;
         }
     }
+    
+    // merges statistics of the same type computed from another part of the heap
+    protected void addType(TruffleType<O> type) {
+        count += type.count;
+        size += type.size;
+        if (type.retained >= 0) {
+            if (retained < 0) retained = 0;
+            retained += type.retained;
+        }
+    }
 
 
     public int hashCode() {
@@ -115,6 +125,12 @@ public abstract class TruffleType<O extends TruffleObject> {
             instances.add(object.getInstance());
         }
         
+        @Override
+        protected void addType(TruffleType<O> type) {
+            super.addType(type);
+            instances.addAll(((InstanceBased<O>)type).instances);
+        }
+        
         @Override
         public Iterator<O> getObjectsIterator() {
             return new Iterator<O>() {
@@ -167,6 +183,14 @@ public abstract class TruffleType<O extends TruffleObject> {
             type.addObject(object, objectSize, objectRetainedSize);
         }
         
+        public final void addTypes(TypesComputer<O, T> computer) {
+            for (T type : computer.cache.values()) {
+                T mergedType = cache.get(type.getName());
+                if (mergedType == null) cache.put(type.getName(), type);
+                else mergedType.addType(type);
+            }
+        }
+        
         public final List<T> getTypes() {
             return Collections.unmodifiableList(new ArrayList<>(cache.values()));
         }
@@ -24,6 +24,7 @@
  */
 package org.graalvm.visualvm.heapviewer.truffle.dynamicobject;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.WeakHashMap;
 import org.graalvm.visualvm.lib.jfluid.heap.Heap;
@@ -49,8 +50,8 @@ public class DynamicObjectDetailsProvider extends DetailsProvider.Basic {
 
     public DynamicObjectDetailsProvider() {
         super(DYNAMIC_OBJECT_MASK,SHAPE_MASK);
-        jsUndefidedId = new WeakHashMap();
-        jsNullId = new WeakHashMap();
+        jsUndefidedId = Collections.synchronizedMap(new WeakHashMap());
+        jsNullId = Collections.synchronizedMap(new WeakHashMap());
     }
 
     public String getDetailsString(String className, Instance instance) {
@@ -24,8 +24,11 @@
  */
 package org.graalvm.visualvm.heapviewer.truffle.dynamicobject;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import org.graalvm.visualvm.heapviewer.truffle.TruffleLanguage;
@@ -48,7 +51,8 @@ public abstract class DynamicObjectLanguageHeapFragment<D extends DynamicObject,
     protected DynamicObjectLanguageHeapFragment(String ID, String name, String description, TruffleLanguage<D, T, ? extends TruffleLanguageHeapFragment<D, T>> language, Heap heap) {
         super(ID, name, description, language, heap);
         
-        languageIDsCache = new HashMap<>();
+        // accessed concurrently when computing statistics
+        languageIDsCache = Collections.synchronizedMap(new HashMap<>());
     }
     
     
@@ -64,6 +68,15 @@ public abstract class DynamicObjectLanguageHeapFragment<D extends DynamicObject,
         return new LanguageFilterIterator(dynIt, languageID);
     }
     
+    // instances of each DynamicObject subclass split into ranges by JavaClass.getInstancesIterators()
+    protected final List<Iterator<D>> languageObjectsIterators(String languageID) {
+        List<Iterator<D>> iterators = new ArrayList<>();
+        for (JavaClass cls : HeapUtils.getSubclasses(heap, DynamicObject.DYNAMIC_OBJECT_FQN))
+            for (Iterator<Instance> instances : cls.getInstancesIterators())
+                iterators.add(new LanguageFilterIterator(new ObjectsIterator(instances), languageID));
+        return iterators;
+    }
+    
     
     private JavaClass getLanguageID(Instance shape) {
         JavaClass langID = languageIDsCache.get(shape);
@@ -24,6 +24,8 @@
  */
 package org.graalvm.visualvm.heapviewer.truffle.lang.javascript;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -77,7 +79,7 @@ class JavaScriptHeapFragment extends DynamicObjectLanguageHeapFragment<JavaScrip
         JavaClass undefinedClass = heap.getJavaClassByName(JS_UNDEFIED_CLASS_FQN);
         undefinedInstance = (Instance)undefinedClass.getValueOfStaticField("instance"); // NOI18N
         
-        typesCache = new HashMap<>();
+        typesCache = Collections.synchronizedMap(new HashMap<>());
     }
     
     
@@ -103,15 +105,27 @@ class JavaScriptHeapFragment extends DynamicObjectLanguageHeapFragment<JavaScrip
 
     @Override
     public Iterator<JavaScriptObject> getObjectsIterator() {
-        return new ExcludingIterator<JavaScriptObject>(languageObjectsIterator(JS_LANG_ID)) {
+        return excludeNullUndefined(languageObjectsIterator(JS_LANG_ID));
+//        return super.getObjectsIterator();
+//        return languageObjectsIterator(JS_LANG_ID);
+    }
+    
+    @Override
+    protected List<Iterator<JavaScriptObject>> getObjectsIterators() {
+        List<Iterator<JavaScriptObject>> iterators = new ArrayList<>();
+        for (Iterator<JavaScriptObject> iterator : languageObjectsIterators(JS_LANG_ID))
+            iterators.add(excludeNullUndefined(iterator));
+        return iterators;
+    }
+    
+    private Iterator<JavaScriptObject> excludeNullUndefined(Iterator<JavaScriptObject> iterator) {
+        return new ExcludingIterator<JavaScriptObject>(iterator) {
             @Override
             protected boolean exclude(JavaScriptObject object) {
                 Instance instance = object.getInstance();
                 return (Objects.equals(nullInstance, instance) || Objects.equals(undefinedInstance, instance));
             }
         };
-//        return super.getObjectsIterator();
-//        return languageObjectsIterator(JS_LANG_ID);
     }
     
     
@@ -25,6 +25,7 @@
 package org.graalvm.visualvm.heapviewer.truffle.lang.python;
 
 import java.util.Iterator;
+import java.util.List;
 import org.graalvm.visualvm.heapviewer.HeapContext;
 import org.graalvm.visualvm.heapviewer.truffle.TruffleLanguageHeapFragment;
 import org.graalvm.visualvm.lib.jfluid.heap.Heap;
@@ -61,4 +62,9 @@ public class PythonHeapFragment extends TruffleLanguageHeapFragment<PythonObject
     public Iterator<Instance> getInstancesIterator() {
         return instancesIterator(PythonObject.PYTHON_OBJECT_FQN);
     }
+    
+    @Override
+    protected List<Iterator<PythonObject>> getObjectsIterators() {
+        return objectsIterators(PythonObject.PYTHON_OBJECT_FQN);
+    }
 }
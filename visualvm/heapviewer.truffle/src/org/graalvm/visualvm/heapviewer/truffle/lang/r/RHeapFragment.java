@@ -25,6 +25,7 @@
 package org.graalvm.visualvm.heapviewer.truffle.lang.r;
 
 import java.util.Iterator;
+import java.util.List;
 import org.graalvm.visualvm.heapviewer.HeapContext;
 import org.graalvm.visualvm.heapviewer.truffle.TruffleLanguageHeapFragment;
 import org.graalvm.visualvm.lib.jfluid.heap.Heap;
@@ -42,6 +43,8 @@ class RHeapFragment extends TruffleLanguageHeapFragment<RObject, RType> {
     
     private static final String R_HEAP_ID = "r_heap"; // NOI18N
     
+    private static final String[] TOP_CLASSES = new String[] { RObject.R_OBJECT_FQN, RObject.R_SCALAR_FQN, RObject.R_WRAPPER_FQN };
+    
     
     RHeapFragment(RLanguage language, Instance langID, Heap heap) {
         super(R_HEAP_ID, Bundle.RHeapFragment_Name(), fragmentDescription(langID), language, heap);
@@ -55,8 +58,7 @@ class RHeapFragment extends TruffleLanguageHeapFragment<RObject, RType> {
     
     @Override
     public Iterator<Instance> getInstancesIterator() {
-        String[] topClasses = new String[] { RObject.R_OBJECT_FQN, RObject.R_SCALAR_FQN, RObject.R_WRAPPER_FQN };
-        return instancesIterator(topClasses);
+        return instancesIterator(TOP_CLASSES);
     }
     
     @Override
@@ -64,6 +66,11 @@ class RHeapFragment extends TruffleLanguageHeapFragment<RObject, RType> {
         return super.getObjectsIterator();
     }
     
+    @Override
+    protected List<Iterator<RObject>> getObjectsIterators() {
+        return objectsIterators(TOP_CLASSES);
+    }
+    
     
     static boolean isRHeap(HeapContext context) {
         return R_HEAP_ID.equals(context.getFragment().getID());
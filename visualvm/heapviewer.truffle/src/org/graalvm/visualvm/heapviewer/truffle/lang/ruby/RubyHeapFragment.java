@@ -25,6 +25,7 @@
 package org.graalvm.visualvm.heapviewer.truffle.lang.ruby;
 
 import java.util.Iterator;
+import java.util.List;
 import org.graalvm.visualvm.heapviewer.HeapContext;
 import org.graalvm.visualvm.heapviewer.truffle.dynamicobject.DynamicObjectLanguageHeapFragment;
 import org.graalvm.visualvm.lib.jfluid.heap.Heap;
@@ -69,6 +70,11 @@ class RubyHeapFragment extends DynamicObjectLanguageHeapFragment<RubyObject, Rub
     public Iterator<RubyObject> getObjectsIterator() {
         return languageObjectsIterator(rubyLangId);
     }
+    
+    @Override
+    protected List<Iterator<RubyObject>> getObjectsIterators() {
+        return languageObjectsIterators(rubyLangId);
+    }
 
     
     static boolean isRubyHeap(HeapContext context) {
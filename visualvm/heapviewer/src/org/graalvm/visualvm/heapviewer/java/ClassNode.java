@@ -41,12 +41,22 @@ public class ClassNode extends HeapViewerNode {
     private final JavaClass jclass;
     
     private String name;
+    // -1 if not known, computed by jclass
+    private int instancesCount = -1;
+    private long ownSize = -1;
     
     
     public ClassNode(JavaClass jclass) {
         this.jclass = jclass;
     }
     
+    // instancesCount and ownSize from ClassHistogram, does not require computed instances
+    public ClassNode(JavaClass jclass, int instancesCount, long ownSize) {
+        this.jclass = jclass;
+        this.instancesCount = instancesCount;
+        this.ownSize = ownSize;
+    }
+    
     
     public JavaClass getJavaClass() {
         return jclass;
@@ -62,11 +72,11 @@ public class ClassNode extends HeapViewerNode {
     }
     
     public int getInstancesCount() {
-        return jclass.getInstancesCount();
+        return instancesCount != -1 ? instancesCount : jclass.getInstancesCount();
     }
     
     public long getOwnSize() {
-        return jclass.getAllInstancesSize();
+        return ownSize != -1 ? ownSize : jclass.getAllInstancesSize();
     }
     
     public long getRetainedSize(Heap heap) {
@@ -76,7 +86,7 @@ public class ClassNode extends HeapViewerNode {
     
     
     public boolean isLeaf() {
-        return jclass.getInstancesCount() == 0 || super.isLeaf();
+        return getInstancesCount() == 0 || super.isLeaf();
     }
     
     public String toString() {
@@ -125,6 +135,8 @@ public class ClassNode extends HeapViewerNode {
     protected void setupCopy(ClassNode copy) {
         super.setupCopy(copy);
         copy.name = name;
+        copy.instancesCount = instancesCount;
+        copy.ownSize = ownSize;
     }
     
 }
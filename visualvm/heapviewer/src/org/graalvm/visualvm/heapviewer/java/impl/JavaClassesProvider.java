@@ -33,6 +33,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import javax.swing.SortOrder;
 import org.graalvm.visualvm.heapviewer.java.ClassNode;
@@ -47,6 +48,7 @@ import org.graalvm.visualvm.heapviewer.model.TextNode;
 import org.graalvm.visualvm.heapviewer.ui.UIThresholds;
 import org.graalvm.visualvm.heapviewer.utils.NodesComputer;
 import org.graalvm.visualvm.heapviewer.utils.ProgressIterator;
+import org.graalvm.visualvm.lib.jfluid.heap.ClassHistogram;
 import org.graalvm.visualvm.lib.jfluid.heap.GCRoot;
 import org.graalvm.visualvm.lib.jfluid.heap.Heap;
 import org.graalvm.visualvm.lib.jfluid.heap.Instance;
@@ -87,15 +89,18 @@ public class JavaClassesProvider {
     }
     
     public static HeapViewerNode[] getHeapClasses(HeapViewerNode parent, final Heap heap, String viewID, HeapViewerNodeFilter viewFilter, List<DataType> dataTypes, List<SortOrder> sortOrders, Progress progress) throws InterruptedException {
-        NodesComputer<JavaClass> computer = new NodesComputer<JavaClass>(heap.getAllClasses().size(), UIThresholds.MAX_TOPLEVEL_CLASSES) {
+        // counts and sizes from class histogram, classes are listed without computing instances
+        final ClassHistogram histogram = heap.getClassHistogram();
+        
+        NodesComputer<Integer> computer = new NodesComputer<Integer>(histogram.size(), UIThresholds.MAX_TOPLEVEL_CLASSES) {
             protected boolean sorts(DataType dataType) {
                 return true;
             }
-            protected HeapViewerNode createNode(JavaClass javaClass) {
-                return new ClassNode(javaClass);
+            protected HeapViewerNode createNode(Integer index) {
+                return createClassNode(histogram, index);
             }
-            protected ProgressIterator<JavaClass> objectsIterator(int index, Progress progress) {
-                Iterator<JavaClass> iterator = heap.getAllClasses().listIterator(index);
+            protected ProgressIterator<Integer> objectsIterator(int index, Progress progress) {
+                Iterator<Integer> iterator = new HistogramIterator(histogram, index);
                 return new ProgressIterator<>(iterator, index, false, progress);
             }
             protected String getMoreNodesString(String moreNodesCount)  {
@@ -116,28 +121,29 @@ public class JavaClassesProvider {
 
     public static HeapViewerNode[] getHeapPackages(HeapViewerNode parent, Heap heap, String viewID, HeapViewerNodeFilter viewFilter, List<DataType> dataTypes, List<SortOrder> sortOrders, Progress progress) throws InterruptedException {
         List<HeapViewerNode> nodes = new ArrayList<>();
-        Map<String, ClassesContainer.Objects> packages = new HashMap<>();
+        Map<String, ClassesContainer.Nodes> packages = new HashMap<>();
         
         Thread worker = Thread.currentThread();
         
-        List<JavaClass> classes = heap.getAllClasses();
-        for (JavaClass cls : classes) {
-            String className = cls.getName();
+        // counts and sizes from class histogram, packages are listed without computing instances
+        ClassHistogram histogram = heap.getClassHistogram();
+        for (int i = 0; i < histogram.size(); i++) {
+            ClassNode clsn = createClassNode(histogram, i);
+            String className = clsn.getName();
             int nameIdx = className.lastIndexOf('.');
             if (nameIdx == -1) {
-                ClassNode clsn = new ClassNode(cls);
                 if (viewFilter == null || viewFilter.passes(clsn, heap)) nodes.add(clsn);
             } else {
-                if (viewFilter != null && !viewFilter.passes(new ClassNode(cls), heap)) continue;
+                if (viewFilter != null && !viewFilter.passes(clsn, heap)) continue;
                 
                 String pkgName = className.substring(0, nameIdx);
-                ClassesContainer.Objects node = packages.get(pkgName);
+                ClassesContainer.Nodes node = packages.get(pkgName);
                 if (node == null) {
-                    node = new ClassesContainer.Objects(pkgName);
+                    node = new ClassesContainer.Nodes(pkgName);
                     nodes.add(node);
                     packages.put(pkgName, node);
                 }
-                node.add(cls, heap);
+                node.add(clsn, heap);
             }
             if (worker.isInterrupted()) throw new InterruptedException();
         }
@@ -146,6 +152,30 @@ public class JavaClassesProvider {
                                  nodes.toArray(HeapViewerNode.NO_NODES);
     }
     
+    private static ClassNode createClassNode(ClassHistogram histogram, int index) {
+        return new ClassNode(histogram.getJavaClass(index), histogram.getInstancesCount(index), histogram.getAllInstancesSize(index));
+    }
+    
+    private static final class HistogramIterator implements Iterator<Integer> {
+        
+        private final ClassHistogram histogram;
+        private int index;
+        
+        HistogramIterator(ClassHistogram histogram, int index) {
+            this.histogram = histogram;
+            this.index = index;
+        }
+        
+        public boolean hasNext() {
+            return index < histogram.size();
+        }
+        
+        public Integer next() {
+            return index++;
+        }
+        
+    }
+    
 
     @NbBundle.Messages({
         "GCRoots_Messages_MoreNodes=<another {0} GC roots left>",
@@ -397,9 +427,20 @@ public class JavaClassesProvider {
     }
 
     static Set<Instance> getDominatorRoots(Heap heap) {
+        return getDominatorRoots(heap, null);
+    }
+
+    static Set<Instance> getDominatorRoots(Heap heap, final Consumer<Set<Instance>> partialResults) {
         int searchScope = 1000;
-        List<Instance> searchInstances = heap.getBiggestObjectsByRetainedSize(searchScope);
-                
+        Consumer<List<Instance>> partialInstances = partialResults == null ? null : new Consumer<List<Instance>>() {
+            public void accept(List<Instance> instances) {
+                partialResults.accept(getDominatorRoots(instances));
+            }
+        };
+        return getDominatorRoots(heap.getBiggestObjectsByRetainedSize(searchScope, partialInstances));
+    }
+
+    private static Set<Instance> getDominatorRoots(List<Instance> searchInstances) {
         Set<Instance> dominators = new HashSet<>(searchInstances);
         Set<Instance> removed = new HashSet<>();
 
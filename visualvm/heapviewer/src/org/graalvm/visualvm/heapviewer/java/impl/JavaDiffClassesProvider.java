@@ -49,16 +49,19 @@ import org.graalvm.visualvm.heapviewer.model.Progress;
 import org.graalvm.visualvm.heapviewer.model.TextNode;
 import org.graalvm.visualvm.heapviewer.ui.HeapViewerRenderer;
 import org.graalvm.visualvm.heapviewer.ui.UIThresholds;
+import org.graalvm.visualvm.heapviewer.utils.HeapOperations;
 import org.graalvm.visualvm.heapviewer.utils.NodesComputer;
 import org.graalvm.visualvm.heapviewer.utils.ProgressIterator;
 import org.graalvm.visualvm.lib.jfluid.heap.Field;
 import org.graalvm.visualvm.lib.jfluid.heap.FieldValue;
 import org.graalvm.visualvm.lib.jfluid.heap.Heap;
+import org.graalvm.visualvm.lib.jfluid.heap.HeapDiff;
 import org.graalvm.visualvm.lib.jfluid.heap.Instance;
 import org.graalvm.visualvm.lib.jfluid.heap.JavaClass;
 import org.graalvm.visualvm.lib.jfluid.heap.ObjectArrayInstance;
 import org.graalvm.visualvm.lib.profiler.api.icons.Icons;
 import org.graalvm.visualvm.lib.profiler.api.icons.LanguageIcons;
+import org.openide.util.RequestProcessor;
 import org.openide.util.lookup.ServiceProvider;
 
 /**
@@ -125,68 +128,51 @@ class JavaDiffClassesProvider {
     }
     
     
-    static List<ClassNode> createDiffClasses(Heap h1, Heap h2, final boolean retained) {
+    static List<ClassNode> createDiffClasses(Heap h1, final Heap h2, final boolean retained) throws InterruptedException {
         if (retained) {
+            final InterruptedException[] interrupted = new InterruptedException[1];
+            // retained sizes of both heaps are computed at once
+            RequestProcessor.Task retained2 = DataType.RETAINED_SIZE.valuesAvailable(h2) ? null :
+                new RequestProcessor("Compare Heap Dumps Retained Sizes Worker").post(new Runnable() { // NOI18N
+                    public void run() {
+                        try {
+                            HeapOperations.initializeRetainedSizes(h2);
+                        } catch (InterruptedException ex) {
+                            // the comparison is stopped when the retained sizes worker is interrupted
+                            interrupted[0] = ex;
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            
             if (!DataType.RETAINED_SIZE.valuesAvailable(h1))
                 DataType.RETAINED_SIZE.computeValuesImmediately(h1);
             
-            if (!DataType.RETAINED_SIZE.valuesAvailable(h2))
+            if (Thread.currentThread().isInterrupted()) {
+                if (retained2 != null) retained2.cancel();
+                throw new InterruptedException();
+            }
+            
+            if (retained2 != null) {
+                retained2.waitFinished();
+                if (interrupted[0] != null) throw interrupted[0];
+                // notifies listeners waiting for retained sizes of h2
                 DataType.RETAINED_SIZE.computeValuesImmediately(h2);
-        }
-        
-        Map<JavaClassID, DiffClassNode> classes = new HashMap<>();
-        
-        List<JavaClass> classes1 = h1.getAllClasses();
-        for (JavaClass jc1 : classes1) {
-            JavaClassID id1 = JavaClassID.create(jc1);
-            DiffClassNode djc1 = classes.get(id1);
-            if (djc1 == null) {
-                djc1 = DiffClassNode.own(jc1, retained);
-                classes.put(id1, djc1);
-            } else {
-                djc1.mergeOwn(jc1);
             }
         }
         
-        List<JavaClass> classes2 = h2.getAllClasses();
-        for (JavaClass jc2 : classes2) {
-            JavaClassID id2 = JavaClassID.create(jc2);
-            DiffClassNode djc2 = classes.get(id2);
-            if (djc2 == null) {
-                djc2 = DiffClassNode.external(new ExternalJavaClass(jc2, retained), retained);
-                classes.put(id2, djc2);
+        HeapDiff diff = HeapDiff.compare(h1, h2, retained);
+        List<ClassNode> classes = new ArrayList<>(diff.getClasses().size());
+        
+        for (HeapDiff.Entry entry : diff.getClasses()) {
+            if (entry.isInHeap()) {
+                classes.add(new DiffClassNode(entry.getJavaClass(), entry, true, retained));
             } else {
-                djc2.mergeExternal(jc2);
+                classes.add(new DiffClassNode(new ExternalJavaClass(entry.getBaseJavaClass(), retained), entry, false, retained));
             }
         }
         
-        return new ArrayList<>(classes.values());
-    }
-    
-    private static class JavaClassID {
-        
-        static JavaClassID create(JavaClass jc) {
-            return new JavaClassID(jc);
-        }
-        
-        
-        private final String id;
-        
-        private JavaClassID(JavaClass jc) {
-            id = jc.getName();
-        }
-        
-        @Override
-        public boolean equals(Object o) {
-            if (!(o instanceof JavaClassID)) return false;
-            return id.equals(((JavaClassID)o).id);
-        }
-
-        @Override
-        public int hashCode() {
-            return id.hashCode();
-        }
-        
+        return classes;
     }
     
     private static class DiffClassNode extends ClassNode {
@@ -200,25 +186,16 @@ class JavaDiffClassesProvider {
         private long retainedSize;
         
         
-        static DiffClassNode own(JavaClass ownClass, boolean trackRetained) {
-            DiffClassNode dClass = new DiffClassNode(ownClass, true, trackRetained);
-            dClass.mergeOwn(ownClass);
-            return dClass;
-        }
-        
-        static DiffClassNode external(JavaClass externalClass, boolean trackRetained) {
-            DiffClassNode dClass = new DiffClassNode(externalClass, false, trackRetained);
-            dClass.mergeExternal(externalClass);
-            return dClass;
-        }
-        
-        
-        private DiffClassNode(JavaClass jClass, boolean ownClass, boolean trackRetained) {
+        private DiffClassNode(JavaClass jClass, HeapDiff.Entry entry, boolean ownClass, boolean trackRetained) {
             super(jClass);
             
             this.trackRetained = trackRetained;
             this.ownClass = ownClass;
             
+            instancesCount = entry.getInstancesCount() - entry.getBaseInstancesCount();
+            ownSize = entry.getSize() - entry.getBaseSize();
+            if (trackRetained) retainedSize = entry.getRetainedSizeGrowth();
+            
             setChildren(NO_NODES);
         }
         
@@ -228,19 +205,6 @@ class JavaDiffClassesProvider {
         }
         
         
-        void mergeOwn(JavaClass ownClass) {
-            instancesCount += ownClass.getInstancesCount();
-            ownSize += ownClass.getAllInstancesSize();
-            if (trackRetained) retainedSize += ownClass.getRetainedSizeByClass();
-        }
-        
-        void mergeExternal(JavaClass externalClass) {
-            instancesCount -= externalClass.getInstancesCount();
-            ownSize -= externalClass.getAllInstancesSize();
-            if (trackRetained) retainedSize -= externalClass.getRetainedSizeByClass();
-        }
-        
-        
         // NOTE: returning null breaks filtering
 //        public JavaClass getJavaClass() {
 //            return isOwnClass() ? super.getJavaClass() : null;
@@ -90,7 +90,8 @@ import org.openide.util.RequestProcessor;
     "JavaDiffObjectsView_CompareNoJava=No comparable Java heap found",
     "JavaDiffObjectsView_CompareNoJavaStatus=<no comparable heap found>",
     "JavaDiffObjectsView_CompareFailed=Failed to load heap dump",
-    "JavaDiffObjectsView_CompareFailedStatus=<failed to load heap dump>"
+    "JavaDiffObjectsView_CompareFailedStatus=<failed to load heap dump>",
+    "JavaDiffObjectsView_CompareCancelledStatus=<comparison cancelled>"
 })
 class JavaDiffObjectsView extends HeapView {
     
@@ -346,6 +347,11 @@ class JavaDiffObjectsView extends HeapView {
             objectsView.reloadView();
             
             Exceptions.printStackTrace(e);
+        } catch (InterruptedException e) {
+            synchronized (statusLock) { status = new TextNode(Bundle.JavaDiffObjectsView_CompareCancelledStatus()); }
+            objectsView.reloadView();
+            
+            Thread.currentThread().interrupt();
         }
     }
     
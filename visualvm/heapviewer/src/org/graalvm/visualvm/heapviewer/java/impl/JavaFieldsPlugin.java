@@ -62,6 +62,7 @@ import org.graalvm.visualvm.heapviewer.utils.HeapUtils;
 import org.graalvm.visualvm.heapviewer.utils.InterruptibleIterator;
 import org.graalvm.visualvm.heapviewer.utils.NodesComputer;
 import org.graalvm.visualvm.heapviewer.utils.ProgressIterator;
+import org.graalvm.visualvm.heapviewer.utils.counters.ArrayItemsHistogram;
 import org.graalvm.visualvm.heapviewer.utils.counters.InstanceCounter;
 import org.graalvm.visualvm.heapviewer.utils.counters.PrimitiveCounter;
 import org.graalvm.visualvm.lib.jfluid.heap.Field;
@@ -70,6 +71,7 @@ import org.graalvm.visualvm.lib.jfluid.heap.Heap;
 import org.graalvm.visualvm.lib.jfluid.heap.Instance;
 import org.graalvm.visualvm.lib.jfluid.heap.JavaClass;
 import org.graalvm.visualvm.lib.jfluid.heap.ObjectFieldValue;
+import org.graalvm.visualvm.lib.jfluid.heap.PrimitiveArrayInstance;
 import org.graalvm.visualvm.lib.jfluid.heap.Type;
 import org.graalvm.visualvm.lib.profiler.api.icons.Icons;
 import org.graalvm.visualvm.lib.profiler.api.icons.LanguageIcons;
@@ -187,7 +189,18 @@ class JavaFieldsPlugin extends HeapViewPlugin {
                         });
                     } else {
                         Instance instance = HeapViewerNode.getValue(_selected, DataType.INSTANCE, heap);
-                        if (instance != null) {
+                        if (instance instanceof PrimitiveArrayInstance) {
+                            // Primitive arrays have no fields, histogram of item values is displayed instead
+                            if (iFields) nodes = getArrayItemsHistogram((PrimitiveArrayInstance)instance, root, heap, viewID, dataTypes, sortOrders, progress);
+                            else filtered = true;
+                            
+                            SwingUtilities.invokeLater(new Runnable() {
+                                public void run() {
+                                    if (!CCONF_CLASS.equals(objectsView.getCurrentColumnConfiguration()))
+                                        objectsView.configureColumns(CCONF_CLASS);
+                                }
+                            });
+                        } else if (instance != null) {
                             List<FieldValue> fields = new ArrayList<>();
 
                             if (iFields) fields.addAll(instance.getFieldValues());
@@ -332,6 +345,50 @@ class JavaFieldsPlugin extends HeapViewPlugin {
     }
     
     
+    private HeapViewerNode[] getArrayItemsHistogram(PrimitiveArrayInstance array, HeapViewerNode parent, Heap heap, String viewID, List<DataType> dataTypes, List<SortOrder> sortOrders, Progress progress) throws InterruptedException {
+        final ArrayItemsHistogram histogram;
+        
+        try {
+            histogram = ArrayItemsHistogram.compute(array, progress);
+        } catch (OutOfMemoryError e) {
+            System.err.println("Out of memory in JavaFieldsPlugin: " + e.getMessage()); // NOI18N
+            HeapUtils.handleOOME(true, e);
+            return new HeapViewerNode[] { new ErrorNode.OOME() };
+        }
+        
+        NodesComputer<ArrayItemsHistogram.Record> computer = new NodesComputer<ArrayItemsHistogram.Record>(histogram.size(), UIThresholds.MAX_MERGED_OBJECTS) {
+            protected boolean sorts(DataType dataType) {
+                return true;
+            }
+            protected HeapViewerNode createNode(ArrayItemsHistogram.Record object) {
+                return new PrimitiveFieldValueNode(object.getValue(), histogram.getType(), object.getCount()) {
+                    @Override
+                    String fieldName() { return null; }
+                    @Override
+                    InterruptibleIterator<Instance> instancesIterator() { return null; }
+                    @Override
+                    public boolean isLeaf() { return true; }
+                };
+            }
+            protected ProgressIterator<ArrayItemsHistogram.Record> objectsIterator(int index, Progress progress) {
+                Iterator<ArrayItemsHistogram.Record> iterator = histogram.iterator();
+                return new ProgressIterator<>(iterator, index, true, progress);
+            }
+            protected String getMoreNodesString(String moreNodesCount)  {
+                return Bundle.JavaFieldsPlugin_FieldHistogramMoreNodes(moreNodesCount);
+            }
+            protected String getSamplesContainerString(String objectsCount)  {
+                return Bundle.JavaFieldsPlugin_FieldHistogramSamplesContainer(objectsCount);
+            }
+            protected String getNodesContainerString(String firstNodeIdx, String lastNodeIdx)  {
+                return Bundle.JavaFieldsPlugin_FieldHistogramNodesContainer(firstNodeIdx, lastNodeIdx);
+            }
+        };
+        
+        return computer.computeNodes(parent, heap, viewID, null, dataTypes, sortOrders, progress);
+    }
+    
+    
     static abstract class FieldHistogramNode extends HeapViewerNode {
         
         private final String fieldName;
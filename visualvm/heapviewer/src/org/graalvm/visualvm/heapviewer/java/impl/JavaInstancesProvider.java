@@ -87,6 +87,12 @@ public class JavaInstancesProvider extends HeapViewerNode.Provider {
                 Iterator<Instance> iterator = jclass.getInstancesIterator();
                 return new ProgressIterator<>(iterator, index, true, progress);
             }
+            protected List<Instance> sortedObjects(DataType dataType, SortOrder sortOrder, int start, int end, Heap heap) {
+                // sorting by size is paged from the heap size index, retained sizes must be already computed
+                boolean retained = DataType.RETAINED_SIZE.equals(dataType);
+                if (retained ? !DataType.RETAINED_SIZE.valuesAvailable(heap) : !DataType.OWN_SIZE.equals(dataType)) return null;
+                return heap.getInstancesBySize(jclass, retained, SortOrder.ASCENDING.equals(sortOrder), start, end);
+            }
             protected String getMoreNodesString(String moreNodesCount)  {
                 return Bundle.JavaInstancesProvider_MoreNodes(moreNodesCount);
             }
@@ -42,6 +42,8 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JComponent;
@@ -67,11 +69,13 @@ import org.graalvm.visualvm.heapviewer.ui.HeapViewerActions;
 import org.graalvm.visualvm.heapviewer.ui.HeapViewerNodeAction;
 import org.graalvm.visualvm.heapviewer.ui.SummaryView;
 import org.graalvm.visualvm.heapviewer.ui.TreeTableViewColumn;
+import org.graalvm.visualvm.lib.jfluid.heap.ClassHistogram;
 import org.graalvm.visualvm.lib.jfluid.heap.Heap;
 import org.graalvm.visualvm.lib.jfluid.heap.Instance;
-import org.graalvm.visualvm.lib.jfluid.heap.JavaClass;
+import org.graalvm.visualvm.lib.jfluid.heap.RetainedSizeEstimates;
 import org.graalvm.visualvm.lib.profiler.api.icons.Icons;
 import org.graalvm.visualvm.lib.profiler.heapwalk.ui.icons.HeapWalkerIcons;
+import org.graalvm.visualvm.lib.ui.Formatters;
 import org.graalvm.visualvm.lib.ui.UIUtils;
 import org.graalvm.visualvm.lib.ui.components.ProfilerToolbar;
 import org.graalvm.visualvm.lib.ui.swing.ProfilerTable;
@@ -99,6 +103,16 @@ import org.openide.util.lookup.ServiceProvider;
     "JavaObjectsSummary_ComputeRetainedSizesLbl=Retained sizes must be computed first:",
     "JavaObjectsSummary_ComputeRetainedSizesBtn=Compute Retained Sizes",
     "JavaObjectsSummary_ComputingRetainedSizes=computing retained sizes...",
+    "JavaObjectsSummary_EstimatedRetainedSizes=Objects by Estimated Retained Size",
+    "JavaObjectsSummary_EstimateRetainedSizesLbl=Retained sizes can be estimated without computing them:",
+    "JavaObjectsSummary_EstimateRetainedSizesBtn=Estimate Retained Sizes",
+    "JavaObjectsSummary_EstimatingRetainedSizes=estimating retained sizes...",
+    "# {0} - estimated size",
+    "JavaObjectsSummary_EstimatedSize=~{0}",
+    "# {0} - estimated size, {1} - error bound",
+    "JavaObjectsSummary_EstimatedSizeError=~{0} \u00B1{1}",
+    "# {0} - estimated size",
+    "JavaObjectsSummary_EstimatedSizeTruncated=~{0} (truncated)",
     "JavaObjectsSummary_ComputingProgress=computing...",
     "JavaObjectsSummary_ViewAll=view all",
     "JavaObjectsSummary_NameColumn=Name",
@@ -306,6 +320,78 @@ class JavaObjectsSummary extends HeapView {
         
         Splitter instancesRow = new Splitter(Splitter.HORIZONTAL_SPLIT, instancesBySize, dominatorsByRetainedSize);
         
+        // estimates are computed on demand and only shown until the exact retained sizes are computed,
+        // only the previewed instances are estimated so there is nothing more to view
+        final ResultsSnippet estimatedRetainedSizes = retainedAvailable ? null : new ResultsSnippet(Bundle.JavaObjectsSummary_EstimatedRetainedSizes(), null) {
+            private final Runnable estimatesHider = new Runnable() {
+                public void run() {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() { setVisible(false); }
+                    });
+                }
+            };
+            {
+                DataType.RETAINED_SIZE.notifyWhenAvailable(heap, estimatesHider);
+            }
+            protected JComponent createComponent() {
+                final JPanel p = new JPanel(new GridBagLayout());
+                p.setOpaque(false);
+                
+                final JLabel l = new JLabel(Bundle.JavaObjectsSummary_EstimateRetainedSizesLbl(), JLabel.LEADING);
+                GridBagConstraints c = new GridBagConstraints();
+                c.gridx = 0;
+                c.gridy = 0;
+                c.fill = GridBagConstraints.NONE;
+                c.anchor = GridBagConstraints.NORTHWEST;
+                c.insets = new Insets(2, 2, 2, 2);
+                p.add(l, c);
+                
+                c = new GridBagConstraints();
+                c.gridx = 1;
+                c.gridy = 0;
+                c.weightx = 1d;
+                c.fill = GridBagConstraints.HORIZONTAL;
+                c.anchor = GridBagConstraints.NORTHWEST;
+                c.insets = new Insets(0, 0, 0, 0);
+                p.add(UIUtils.createFillerPanel(), c);
+                
+                final ResultsSnippet rs = this;
+                JButton lb = new JButton(Bundle.JavaObjectsSummary_EstimateRetainedSizesBtn()) {
+                    protected void fireActionPerformed(ActionEvent e) {
+                        p.remove(this);
+                        l.setText(Bundle.JavaObjectsSummary_EstimatingRetainedSizes());
+                        l.setIcon(Icons.getIcon(HeapWalkerIcons.PROGRESS));
+                        p.invalidate();
+                        p.revalidate();
+                        p.repaint();
+                        
+                        new RequestProcessor("Objects Summary Estimates Worker").post(new Runnable() { // NOI18N
+                            public void run() {
+                                if (!DataType.RETAINED_SIZE.valuesAvailable(heap)) computeEstimates(heap, rs);
+                            }
+                        });
+                    }
+                };
+                c = new GridBagConstraints();
+                c.gridx = 0;
+                c.gridy = 1;
+                c.fill = GridBagConstraints.NONE;
+                c.anchor = GridBagConstraints.NORTHWEST;
+                c.insets = new Insets(2, 2, 2, 2);
+                p.add(lb, c);
+                
+                return p;
+            }
+            protected void setupTable(ProfilerTable table) {
+                table.setColumnRenderer(0, instanceRenderer);
+                
+                LabelRenderer estimateRenderer = new LabelRenderer();
+                estimateRenderer.setHorizontalAlignment(LabelRenderer.RIGHT);
+                table.setColumnRenderer(1, estimateRenderer);
+                table.setDefaultColumnWidth(1, sizeRenderer.getNoBarWidth() + 80);
+            }
+        };
+        
         
         component = new JPanel(new VerticalLayout(false, 5)) {
             public Dimension getMinimumSize() {
@@ -324,30 +410,34 @@ class JavaObjectsSummary extends HeapView {
         
         component.add(classesRow);
         component.add(instancesRow);
+        if (estimatedRetainedSizes != null) component.add(estimatedRetainedSizes);
         
         new RequestProcessor("Objects Summary Worker").post(new Runnable() { // NOI18N
             public void run() {
-                List<JavaClass> allClasses = new ArrayList<>(heap.getAllClasses());
+                // class histogram does not need instances computed, instances are computed below
+                ClassHistogram histogram = heap.getClassHistogram();
+                List<Integer> allClasses = new ArrayList<>(histogram.size());
+                for (int i = 0; i < histogram.size(); i++) allClasses.add(i);
                 
                 // --- Classes by Instances Count ------------------------------
-                allClasses.sort((JavaClass c1, JavaClass c2) -> Integer.compare(c2.getInstancesCount(), c1.getInstancesCount()));
+                allClasses.sort((Integer c1, Integer c2) -> Integer.compare(histogram.getInstancesCount(c2), histogram.getInstancesCount(c1)));
                 int items = Math.min(PREVIEW_ITEMS, allClasses.size());
-                JavaClass[] classesByCountArr = allClasses.subList(0, items).toArray(new JavaClass[0]);
-                Object[][] classesByCountData = new Object[classesByCountArr.length][2];
+                Object[][] classesByCountData = new Object[items][2];
                 for (int i = 0; i < classesByCountData.length; i++) {
-                    classesByCountData[i][0] = new ClassNode(classesByCountArr[i]);
-                    classesByCountData[i][1] = classesByCountArr[i].getInstancesCount();
+                    int index = allClasses.get(i);
+                    classesByCountData[i][0] = new ClassNode(histogram.getJavaClass(index));
+                    classesByCountData[i][1] = histogram.getInstancesCount(index);
                 }
                 configureSnippet(classesByCount, classesByCountData);
                 
                 
                 // --- Classes by Instances Size -------------------------------
-                allClasses.sort((JavaClass c1, JavaClass c2) -> Long.compare(c2.getAllInstancesSize(), c1.getAllInstancesSize()));
-                JavaClass[] classesBySizeArr = allClasses.subList(0, items).toArray(new JavaClass[0]);
-                Object[][] classesBySizeData = new Object[classesBySizeArr.length][2];
+                allClasses.sort((Integer c1, Integer c2) -> Long.compare(histogram.getAllInstancesSize(c2), histogram.getAllInstancesSize(c1)));
+                Object[][] classesBySizeData = new Object[items][2];
                 for (int i = 0; i < classesBySizeData.length; i++) {
-                    classesBySizeData[i][0] = new ClassNode(classesBySizeArr[i]);
-                    classesBySizeData[i][1] = classesBySizeArr[i].getAllInstancesSize();
+                    int index = allClasses.get(i);
+                    classesBySizeData[i][0] = new ClassNode(histogram.getJavaClass(index));
+                    classesBySizeData[i][1] = histogram.getAllInstancesSize(index);
                 }
                 configureSnippet(classesBySize, classesBySizeData);
                 
@@ -383,7 +473,17 @@ class JavaObjectsSummary extends HeapView {
     
     
     private void computeDominators(Heap heap, ResultsSnippet dominatorsByRetainedSize) {
-        List<Instance> dominators = new ArrayList<>(JavaClassesProvider.getDominatorRoots(heap));
+        // show dominators of the biggest objects found so far while the heap is being scanned
+        Set<Instance> dominatorRoots = JavaClassesProvider.getDominatorRoots(heap, new Consumer<Set<Instance>>() {
+            public void accept(Set<Instance> partialDominators) {
+                showDominators(partialDominators, dominatorsByRetainedSize, false);
+            }
+        });
+        showDominators(dominatorRoots, dominatorsByRetainedSize, true);
+    }
+    
+    private void showDominators(Set<Instance> dominatorRoots, ResultsSnippet dominatorsByRetainedSize, boolean complete) {
+        List<Instance> dominators = new ArrayList<>(dominatorRoots);
         dominators.sort((Instance i1, Instance i2) -> Long.compare(i2.getRetainedSize(), i1.getRetainedSize()));
         int items = Math.min(PREVIEW_ITEMS, dominators.size());
         Instance[] dominatorsByRetainedSizeArr = dominators.subList(0, items).toArray(new Instance[0]);
@@ -392,11 +492,30 @@ class JavaObjectsSummary extends HeapView {
             dominatorsByRetainedSizeData[i][0] = new InstanceNode(dominatorsByRetainedSizeArr[i]);
             dominatorsByRetainedSizeData[i][1] = dominatorsByRetainedSizeArr[i].getRetainedSize();
         }
-        configureSnippet(dominatorsByRetainedSize, dominatorsByRetainedSizeData);
+        configureSnippet(dominatorsByRetainedSize, dominatorsByRetainedSizeData, complete);
     }
     
     
+    private void computeEstimates(Heap heap, ResultsSnippet estimatedRetainedSizes) {
+        RetainedSizeEstimates estimates = RetainedSizeEstimates.compute(heap, PREVIEW_ITEMS);
+        Object[][] estimatedRetainedSizesData = new Object[estimates.size()][2];
+        for (int i = 0; i < estimatedRetainedSizesData.length; i++) {
+            String size = Formatters.bytesFormat().format(new Object[] { estimates.getRetainedSize(i) });
+            String estimate;
+            if (estimates.isTruncated(i)) estimate = Bundle.JavaObjectsSummary_EstimatedSizeTruncated(size);
+            else if (estimates.getError(i) > 0) estimate = Bundle.JavaObjectsSummary_EstimatedSizeError(size, Formatters.bytesFormat().format(new Object[] { estimates.getError(i) }));
+            else estimate = Bundle.JavaObjectsSummary_EstimatedSize(size);
+            estimatedRetainedSizesData[i][0] = new InstanceNode(estimates.getInstance(i));
+            estimatedRetainedSizesData[i][1] = estimate;
+        }
+        configureSnippet(estimatedRetainedSizes, estimatedRetainedSizesData);
+    }
+    
     private void configureSnippet(final ResultsSnippet snippet, final Object[][] data) {
+        configureSnippet(snippet, data, true);
+    }
+    
+    private void configureSnippet(final ResultsSnippet snippet, final Object[][] data, final boolean complete) {
         final TableModel model = new DefaultTableModel(data, new Object[] {
                                             Bundle.JavaObjectsSummary_NameColumn(),
                                             Bundle.JavaObjectsSummary_ValueColumn() }) {
@@ -405,7 +524,7 @@ class JavaObjectsSummary extends HeapView {
         
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
-                snippet.setRealModel(model);
+                snippet.setRealModel(model, complete);
             }
         });
     }
@@ -433,30 +552,34 @@ class JavaObjectsSummary extends HeapView {
             c.weighty = 1d;
             sectionSeparator.add(caption, c);
 
-            c = new GridBagConstraints();
-            c.gridx = 1;
-            c.gridy = 0;
-            c.insets = new Insets(0, 5, 0, 0);
-            sectionSeparator.add(new JLabel("["), c); // NOI18N
-            
-            link = new LinkButton(Bundle.JavaObjectsSummary_ViewAll()) {
-                @Override
-                protected void clicked() {
-                    SwingUtilities.invokeLater(allDisplayer);
-                }
-            };
-            link.setEnabled(false);
-            c = new GridBagConstraints();
-            c.gridx = 2;
-            c.gridy = 0;
-            c.insets = new Insets(0, 0, 0, 0);
-            sectionSeparator.add(link, c);
-            
-            c = new GridBagConstraints();
-            c.gridx = 3;
-            c.gridy = 0;
-            c.insets = new Insets(0, 0, 0, 0);
-            sectionSeparator.add(new JLabel("]"), c); // NOI18N
+            if (allDisplayer != null) {
+                c = new GridBagConstraints();
+                c.gridx = 1;
+                c.gridy = 0;
+                c.insets = new Insets(0, 5, 0, 0);
+                sectionSeparator.add(new JLabel("["), c); // NOI18N
+
+                link = new LinkButton(Bundle.JavaObjectsSummary_ViewAll()) {
+                    @Override
+                    protected void clicked() {
+                        SwingUtilities.invokeLater(allDisplayer);
+                    }
+                };
+                link.setEnabled(false);
+                c = new GridBagConstraints();
+                c.gridx = 2;
+                c.gridy = 0;
+                c.insets = new Insets(0, 0, 0, 0);
+                sectionSeparator.add(link, c);
+
+                c = new GridBagConstraints();
+                c.gridx = 3;
+                c.gridy = 0;
+                c.insets = new Insets(0, 0, 0, 0);
+                sectionSeparator.add(new JLabel("]"), c); // NOI18N
+            } else {
+                link = null;
+            }
 
             c = new GridBagConstraints();
             c.gridx = 4;
@@ -505,7 +628,7 @@ class JavaObjectsSummary extends HeapView {
             return t;
         }
         
-        void setRealModel(TableModel model) {
+        void setRealModel(TableModel model, boolean complete) {
             if (table == null) {
                 BorderLayout bl = (BorderLayout)getLayout();
                 Component c = bl.getLayoutComponent(BorderLayout.CENTER);
@@ -513,17 +636,19 @@ class JavaObjectsSummary extends HeapView {
                 
                 table = createTable(model);
                 add(table, BorderLayout.CENTER);
+                enableTableEvents(table);
                 
                 getParent().invalidate();
                 getParent().revalidate();
                 getParent().repaint();
             }
             
+            // called repeatedly for partial results
             table.setModel(model);
             setupTable(table);
-            enableTableEvents(table);
             
-            link.setEnabled(true);
+            // partial results may still change, all items are available with the final result
+            if (complete && link != null) link.setEnabled(true);
         }
         
         protected void setupTable(ProfilerTable table) {}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.visualvm.heapviewer.java.impl;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.text.Format;
+import java.text.NumberFormat;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
+import org.graalvm.visualvm.heapviewer.HeapContext;
+import org.graalvm.visualvm.heapviewer.java.JavaHeapFragment;
+import org.graalvm.visualvm.heapviewer.ui.HeapView;
+import org.graalvm.visualvm.heapviewer.ui.HeapViewerActions;
+import org.graalvm.visualvm.heapviewer.ui.HeapViewerNodeAction;
+import org.graalvm.visualvm.heapviewer.ui.SummaryView;
+import org.graalvm.visualvm.heapviewer.utils.HeapUtils;
+import org.graalvm.visualvm.lib.jfluid.heap.Heap;
+import org.graalvm.visualvm.lib.jfluid.heap.WastedMemory;
+import org.graalvm.visualvm.lib.profiler.api.icons.GeneralIcons;
+import org.graalvm.visualvm.lib.profiler.api.icons.Icons;
+import org.graalvm.visualvm.lib.profiler.heapwalk.ui.icons.HeapWalkerIcons;
+import org.graalvm.visualvm.lib.ui.Formatters;
+import org.graalvm.visualvm.lib.ui.UIUtils;
+import org.graalvm.visualvm.lib.ui.components.ProfilerToolbar;
+import org.graalvm.visualvm.lib.ui.swing.renderer.LabelRenderer;
+import org.graalvm.visualvm.uisupport.SeparatorLine;
+import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Memory wasted by duplicate strings and arrays, empty collections and sparse arrays.
+ */
+@NbBundle.Messages({
+    "JavaWastedMemorySummary_Name=Wasted Memory",
+    "JavaWastedMemorySummary_Description=Wasted Memory",
+    "JavaWastedMemorySummary_ComputeLbl=Wasted memory must be computed first:",
+    "JavaWastedMemorySummary_ComputeBtn=Compute Wasted Memory",
+    "JavaWastedMemorySummary_Computing=computing wasted memory...",
+    "JavaWastedMemorySummary_OOME=Not enough memory to compute wasted memory.",
+    "JavaWastedMemorySummary_Failed=Failed to compute wasted memory: {0}",
+    "JavaWastedMemorySummary_DuplicateStrings=Duplicate strings",
+    "JavaWastedMemorySummary_DuplicateArrays=Duplicate primitive arrays",
+    "JavaWastedMemorySummary_EmptyCollections=Empty collections",
+    "JavaWastedMemorySummary_SparseArrays=Sparse object arrays",
+    "JavaWastedMemorySummary_Total=Total",
+    "JavaWastedMemorySummary_ProblemColumn=Problem",
+    "JavaWastedMemorySummary_InstancesColumn=Instances",
+    "JavaWastedMemorySummary_SizeColumn=Wasted Size"
+})
+class JavaWastedMemorySummary extends HeapView {
+    
+    private final HeapContext context;
+    
+    private JComponent component;
+    private JPanel content;
+    
+    
+    private JavaWastedMemorySummary(HeapContext context) {
+        super(Bundle.JavaWastedMemorySummary_Name(), Bundle.JavaWastedMemorySummary_Description());
+        
+        this.context = context;
+    }
+    
+    
+    @Override
+    public JComponent getComponent() {
+        if (component == null) init();
+        return component;
+    }
+
+    @Override
+    public ProfilerToolbar getToolbar() {
+        return null;
+    }
+    
+    
+    private void init() {
+        component = new JPanel(new GridBagLayout()) {
+            public Dimension getMinimumSize() {
+                Dimension dim = super.getMinimumSize();
+                dim.width = 0;
+                return dim;
+            }
+
+            public Dimension getPreferredSize() {
+                Dimension dim = super.getPreferredSize();
+                dim.width = 0;
+                return dim;
+            }
+        };
+        component.setOpaque(false);
+        component.setBorder(BorderFactory.createEmptyBorder(12, 5, 0, 5));
+        
+        JLabel caption = new JLabel(Bundle.JavaWastedMemorySummary_Name());
+        caption.setFont(caption.getFont().deriveFont(Font.BOLD));
+        GridBagConstraints c = new GridBagConstraints();
+        c.gridx = 0;
+        c.gridy = 0;
+        c.weighty = 1d;
+        c.insets = new Insets(0, 0, 0, 0);
+        component.add(caption, c);
+
+        c = new GridBagConstraints();
+        c.gridx = 1;
+        c.gridy = 0;
+        c.weightx = 1d;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(1, 4, 0, 0);
+        component.add(new SeparatorLine(), c);
+        
+        content = new JPanel(new BorderLayout());
+        content.setOpaque(false);
+        content.add(createComputePanel(), BorderLayout.CENTER);
+        c = new GridBagConstraints();
+        c.gridx = 0;
+        c.gridy = 1;
+        c.anchor = GridBagConstraints.NORTHWEST;
+        c.gridwidth = GridBagConstraints.REMAINDER;
+        c.weightx = 1d;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.insets = new Insets(8, 0, 3, 0);
+        component.add(content, c);
+    }
+    
+    private JComponent createComputePanel() {
+        final JPanel p = new JPanel(new GridBagLayout());
+        p.setOpaque(false);
+
+        final JLabel l = new JLabel(Bundle.JavaWastedMemorySummary_ComputeLbl(), JLabel.LEADING);
+        GridBagConstraints c = new GridBagConstraints();
+        c.gridx = 0;
+        c.gridy = 0;
+        c.fill = GridBagConstraints.NONE;
+        c.anchor = GridBagConstraints.NORTHWEST;
+        c.insets = new Insets(2, 2, 2, 2);
+        p.add(l, c);
+
+        c = new GridBagConstraints();
+        c.gridx = 1;
+        c.gridy = 0;
+        c.weightx = 1d;
+        c.fill = GridBagConstraints.HORIZONTAL;
+        c.anchor = GridBagConstraints.NORTHWEST;
+        c.insets = new Insets(0, 0, 0, 0);
+        p.add(UIUtils.createFillerPanel(), c);
+
+        JButton b = new JButton(Bundle.JavaWastedMemorySummary_ComputeBtn()) {
+            protected void fireActionPerformed(ActionEvent e) {
+                p.remove(this);
+                l.setText(Bundle.JavaWastedMemorySummary_Computing());
+                l.setIcon(Icons.getIcon(HeapWalkerIcons.PROGRESS));
+                p.invalidate();
+                p.revalidate();
+                p.repaint();
+                
+                final Heap heap = context.getFragment().getHeap();
+                new RequestProcessor("Wasted Memory Summary Worker").post(new Runnable() { // NOI18N
+                    public void run() {
+                        try {
+                            final Object[][] data = computeData(WastedMemory.compute(heap));
+                            SwingUtilities.invokeLater(new Runnable() {
+                                public void run() { showData(data); }
+                            });
+                        } catch (OutOfMemoryError e) {
+                            HeapUtils.handleOOME(true, e);
+                            showError(Bundle.JavaWastedMemorySummary_OOME());
+                        } catch (RuntimeException e) {
+                            Logger.getLogger(JavaWastedMemorySummary.class.getName()).log(Level.INFO, "Error computing wasted memory", e); // NOI18N
+                            showError(Bundle.JavaWastedMemorySummary_Failed(e.getLocalizedMessage()));
+                        }
+                    }
+                    private void showError(final String message) {
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                l.setText(message);
+                                l.setIcon(Icons.getIcon(GeneralIcons.ERROR));
+                                p.invalidate();
+                                p.revalidate();
+                                p.repaint();
+                            }
+                        });
+                    }
+                });
+            }
+        };
+        c = new GridBagConstraints();
+        c.gridx = 0;
+        c.gridy = 1;
+        c.fill = GridBagConstraints.NONE;
+        c.anchor = GridBagConstraints.NORTHWEST;
+        c.insets = new Insets(2, 2, 2, 2);
+        p.add(b, c);
+        
+        return p;
+    }
+    
+    private void showData(Object[][] data) {
+        TableModel model = new DefaultTableModel(data, new Object[] { Bundle.JavaWastedMemorySummary_ProblemColumn(),
+                                                                      Bundle.JavaWastedMemorySummary_InstancesColumn(),
+                                                                      Bundle.JavaWastedMemorySummary_SizeColumn() }) {
+            public boolean isCellEditable(int row, int column) { return false; }
+        };
+        SummaryView.SimpleTable table = new SummaryView.SimpleTable(model, 0);
+        table.setFocusable(false);
+        LabelRenderer r1 = new LabelRenderer();
+        r1.setFont(r1.getFont().deriveFont(Font.BOLD));
+        table.setColumnRenderer(0, r1, false);
+        LabelRenderer r2 = new LabelRenderer();
+        r2.setHorizontalAlignment(LabelRenderer.RIGHT);
+        table.setColumnRenderer(1, r2, true);
+        LabelRenderer r3 = new LabelRenderer();
+        r3.setHorizontalAlignment(LabelRenderer.RIGHT);
+        table.setColumnRenderer(2, r3, true);
+        
+        content.removeAll();
+        content.add(table, BorderLayout.CENTER);
+        content.invalidate();
+        content.revalidate();
+        content.repaint();
+    }
+    
+    
+    private static Object[][] computeData(WastedMemory wasted) {
+        NumberFormat numberFormat = (NumberFormat)NumberFormat.getInstance().clone();
+        Format bytesFormat = Formatters.bytesFormat();
+        String[] problems = { Bundle.JavaWastedMemorySummary_DuplicateStrings(),
+                              Bundle.JavaWastedMemorySummary_DuplicateArrays(),
+                              Bundle.JavaWastedMemorySummary_EmptyCollections(),
+                              Bundle.JavaWastedMemorySummary_SparseArrays() };
+        int[] kinds = { WastedMemory.DUPLICATE_STRINGS, WastedMemory.DUPLICATE_ARRAYS,
+                        WastedMemory.EMPTY_COLLECTIONS, WastedMemory.SPARSE_ARRAYS };
+        
+        Object[][] data = new Object[kinds.length + 1][];
+        long count = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            count += wasted.getCount(kinds[i]);
+            data[i] = new Object[] { problems[i], numberFormat.format(wasted.getCount(kinds[i])),
+                                     bytesFormat.format(new Object[] { wasted.getWastedSize(kinds[i]) }) };
+        }
+        data[kinds.length] = new Object[] { Bundle.JavaWastedMemorySummary_Total(), numberFormat.format(count),
+                                            bytesFormat.format(new Object[] { wasted.getTotalWastedSize() }) };
+        return data;
+    }
+    
+    
+    @ServiceProvider(service=SummaryView.ContentProvider.class, position = 400)
+    public static class Provider extends SummaryView.ContentProvider {
+
+        @Override
+        public HeapView createSummary(String viewID, HeapContext context, HeapViewerActions actions, Collection<HeapViewerNodeAction.Provider> actionProviders) {
+            if (!JavaHeapFragment.isJavaHeap(context)) return null;
+            
+            return new JavaWastedMemorySummary(context);
+        }
+        
+    }
+    
+}
@@ -25,42 +25,49 @@
 
 package org.graalvm.visualvm.heapviewer.model;
 
-import java.lang.ref.Reference;
-import java.lang.ref.WeakReference;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import org.graalvm.visualvm.lib.jfluid.results.CCTNode;
 
 /**
+ * Children of collapsed nodes, keyed by path of the node. Least recently used
+ * children are evicted when the estimated number of cached nodes exceeds the limit.
  *
  * @author Jiri Sedlacek
  */
 public final class NodesCache {
     
-    private Reference<Map<NodeKey, HeapViewerNode[]>> cache;
+    private static final int MAX_CACHED_NODES = Integer.getInteger("heapviewer.nodesCacheSize", 100000); // NOI18N
     
+    private final Map<NodeKey, HeapViewerNode[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private int cachedNodes;
     
-    public void storeChildren(HeapViewerNode node, HeapViewerNode[] children) {
-        getCache().put(new NodeKey(node), children);
-    }
     
-    public HeapViewerNode[] retrieveChildren(HeapViewerNode node) {
-        return getCache().remove(new NodeKey(node));
+    public synchronized void storeChildren(HeapViewerNode node, HeapViewerNode[] children) {
+        if (children.length > MAX_CACHED_NODES) return;
+        
+        HeapViewerNode[] previous = cache.put(new NodeKey(node), children);
+        if (previous != null) cachedNodes -= previous.length;
+        cachedNodes += children.length;
+        
+        Iterator<HeapViewerNode[]> eldest = cache.values().iterator();
+        while (cachedNodes > MAX_CACHED_NODES && eldest.hasNext()) {
+            cachedNodes -= eldest.next().length;
+            eldest.remove();
+        }
     }
     
-    
-    public void clear() {
-        cache = null;
+    public synchronized HeapViewerNode[] retrieveChildren(HeapViewerNode node) {
+        HeapViewerNode[] children = cache.remove(new NodeKey(node));
+        if (children != null) cachedNodes -= children.length;
+        return children;
     }
     
     
-    private Map<NodeKey, HeapViewerNode[]> getCache() {
-        Map<NodeKey, HeapViewerNode[]> c = cache == null ? null : cache.get();
-        if (c == null) {
-            c = new HashMap<>();
-            cache = new WeakReference<>(c);
-        }
-        return c;
+    public synchronized void clear() {
+        cache.clear();
+        cachedNodes = 0;
     }
     
     
@@ -27,6 +27,7 @@ package org.graalvm.visualvm.heapviewer.utils;
 
 import java.awt.event.ActionEvent;
 import java.text.Format;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
@@ -61,12 +62,16 @@ abstract class MoreObjectsNode<T> extends MoreNodesNode {
     
     private static final int AGGREGATION = 1000;
     private static final int MAX_BUFFER_SIZE = 1000000;
+    // number of containers sorted at once, following containers are paged from the cache
+    private static final int SORTED_CONTAINERS = 10;
     
     private T[] previousObjects;
     private final T previousObject;
     private final int previousObjectOffset;
     private int lastKnownPreviousObjectIndex;
     
+    private SortedObjects<T> lastSortedObjects;
+    
     private final int objectsCount;
     private final int iteratorObjectsCount;
     
@@ -97,6 +102,12 @@ abstract class MoreObjectsNode<T> extends MoreNodesNode {
     // Preferably a ProgressIterator or its wrapper updating the progress
     protected abstract Iterator<T> objectsIterator(int index, Progress progress);
     
+    // Objects from start (inclusive) to end (exclusive) in the provided sorting,
+    // null if the objects cannot be fetched without scanning all of them
+    protected List<T> sortedObjects(DataType dataType, SortOrder sortOrder, int start, int end, Heap heap) {
+        return null;
+    }
+    
     
     protected String getSamplesContainerString(String objectsCount)  {
         return Bundle.MoreObjectsNode_SamplesContainer(objectsCount);
@@ -202,6 +213,16 @@ abstract class MoreObjectsNode<T> extends MoreNodesNode {
         int start = MoreObjectsNode.this.getFirstItemIndex(containerIndex);
         int end = MoreObjectsNode.this.getLastItemIndex(containerIndex);
         
+        List<T> indexedObjects = viewFilter == null ? sortedObjects(dataType, sortOrder, start, end + 1, heap) : null;
+        if (indexedObjects != null) return indexedObjects.toArray((T[])new Object[indexedObjects.size()]);
+        
+        SortedObjects<T> sorted = lastSortedObjects;
+        if (sorted != null && sorted.contains(start, end, dataType, sortOrder)) return sorted.getObjects(start, end);
+        
+        // objects of the following containers are sorted at once
+        int lastContainer = containerIndex < 0 ? containerIndex : Math.min(containerIndex + SORTED_CONTAINERS, nodesCount) - 1;
+        int sortedEnd = MoreObjectsNode.this.getLastItemIndex(lastContainer);
+        
         T object;
         
         try {
@@ -212,7 +233,7 @@ abstract class MoreObjectsNode<T> extends MoreNodesNode {
             progress.finish();
         }
         
-        SortedObjectsBuffer<T> buffer = new SortedObjectsBuffer<T>(end - start + 1, object, dataType, sortOrder, viewFilter, heap, getParent()) {
+        SortedObjectsBuffer<T> buffer = new SortedObjectsBuffer<T>(sortedEnd - start + 1, object, dataType, sortOrder, viewFilter, heap, getParent()) {
             protected boolean sorts(DataType dataType) { return MoreObjectsNode.this.sorts(dataType); }
             protected HeapViewerNode createNode(T object) { return MoreObjectsNode.this.createNode(object); }
         };
@@ -232,14 +253,21 @@ abstract class MoreObjectsNode<T> extends MoreNodesNode {
             progress.finish();
         }
         
-        if (containerIndex >= 0 && containerIndex < nodesCount - 1) {
-            if (previousObjects[containerIndex] == null) {
-                previousObjects[containerIndex] = objects[objects.length - 1];
-                lastKnownPreviousObjectIndex = containerIndex;
+        if (containerIndex < 0) return objects;
+        
+        for (int i = containerIndex; i <= lastContainer && i < nodesCount - 1; i++) {
+            int lastIndex = MoreObjectsNode.this.getLastItemIndex(i) - start;
+            if (lastIndex >= objects.length) break;
+            if (previousObjects[i] == null) {
+                previousObjects[i] = objects[lastIndex];
+                lastKnownPreviousObjectIndex = Math.max(lastKnownPreviousObjectIndex, i);
             }
         }
         
-        return objects;
+        sorted = new SortedObjects<>(objects, start, dataType, sortOrder);
+        lastSortedObjects = sorted;
+        
+        return sorted.getObjects(start, Math.min(end, start + objects.length - 1));
     }
     
     private int getFirstItemIndex(int containerIndex) {
@@ -416,6 +444,31 @@ abstract class MoreObjectsNode<T> extends MoreNodesNode {
         }
     }
 
+    private static final class SortedObjects<T> {
+        
+        private final T[] objects;
+        private final int firstIndex;
+        private final DataType dataType;
+        private final SortOrder sortOrder;
+        
+        SortedObjects(T[] objects, int firstIndex, DataType dataType, SortOrder sortOrder) {
+            this.objects = objects;
+            this.firstIndex = firstIndex;
+            this.dataType = dataType;
+            this.sortOrder = sortOrder;
+        }
+        
+        boolean contains(int start, int end, DataType dataType, SortOrder sortOrder) {
+            return this.dataType.equals(dataType) && this.sortOrder.equals(sortOrder) &&
+                   start >= firstIndex && end < firstIndex + objects.length;
+        }
+        
+        T[] getObjects(int start, int end) {
+            return Arrays.copyOfRange(objects, start - firstIndex, end - firstIndex + 1);
+        }
+        
+    }
+
     private class ObjectsContainer extends TextNode {
         
         private final int containerIndex;
@@ -72,6 +72,12 @@ public abstract class NodesComputer<T> {
     
     protected abstract ProgressIterator<T> objectsIterator(int index, Progress progress);
     
+    // Objects from start (inclusive) to end (exclusive) in the provided sorting,
+    // null if the objects cannot be fetched without scanning all of them
+    protected List<T> sortedObjects(DataType dataType, SortOrder sortOrder, int start, int end, Heap heap) {
+        return null;
+    }
+    
     
     protected String getMoreNodesString(String moreNodesCount)  {
         return Bundle.NodesComputer_MoreNodes(moreNodesCount);
@@ -128,6 +134,9 @@ public abstract class NodesComputer<T> {
                     protected Iterator<T> objectsIterator(int index, Progress progress) {
                         return NodesComputer.this.objectsIterator(index, 0, -1, viewFilter, heap, progress);
                     }
+                    protected List<T> sortedObjects(DataType dataType, SortOrder sortOrder, int start, int end, Heap heap) {
+                        return NodesComputer.this.sortedObjects(dataType, sortOrder, start, end, heap);
+                    }
                     protected String getSamplesContainerString(String objectsCount)  {
                         return NodesComputer.this.getSamplesContainerString(objectsCount);
                     }
@@ -138,6 +147,12 @@ public abstract class NodesComputer<T> {
                 
                 return nodes;
             } else {
+                if (itemsCount < Integer.MAX_VALUE && viewFilter == null) {
+                    // First N objects according to the provided sorting, fetched without scanning all objects
+                    List<T> sortedObjects = sortedObjects(dataType, sortOrder, 0, maxItemsCount, heap);
+                    if (sortedObjects != null) return sortedNodes(sortedObjects, heap);
+                }
+                
                 // First N objects according to the provided sorting
                 SortedObjectsBuffer<T> buffer = new SortedObjectsBuffer<T>(maxItemsCount, null, dataType, sortOrder, null, heap, parent) {
                     protected boolean sorts(DataType dataType) { return NodesComputer.this.sorts(dataType); }
@@ -207,6 +222,46 @@ public abstract class NodesComputer<T> {
     }
     
     
+    private HeapViewerNode[] sortedNodes(List<T> objects, final Heap heap) throws InterruptedException {
+        int objectsCount = objects.size();
+        boolean moreObjects = objectsCount > 0 && itemsCount > objectsCount;
+        HeapViewerNode[] nodes = new HeapViewerNode[moreObjects ? objectsCount + 1 : objectsCount];
+        
+        Thread worker = Thread.currentThread();
+        for (int i = 0; i < objectsCount; i++) {
+            nodes[i] = createNode(objects.get(i));
+            if (worker.isInterrupted()) throw new InterruptedException();
+        }
+        
+        if (moreObjects) {
+            Format format = Formatters.numberFormat();
+            String moreNodesString = getMoreNodesString(format.format(itemsCount - objectsCount));
+            nodes[objectsCount] = new MoreObjectsNode<T>(moreNodesString, itemsCount, itemsCount, objects.get(objectsCount - 1), objectsCount - 1) {
+                protected boolean sorts(DataType dataType) {
+                    return NodesComputer.this.sorts(dataType);
+                }
+                protected HeapViewerNode createNode(T object) {
+                    return NodesComputer.this.createNode(object);
+                }
+                protected Iterator<T> objectsIterator(int index, Progress progress) {
+                    return NodesComputer.this.objectsIterator(index, 0, -1, null, heap, progress);
+                }
+                protected List<T> sortedObjects(DataType dataType, SortOrder sortOrder, int start, int end, Heap heap) {
+                    return NodesComputer.this.sortedObjects(dataType, sortOrder, start, end, heap);
+                }
+                protected String getSamplesContainerString(String objectsCount)  {
+                    return NodesComputer.this.getSamplesContainerString(objectsCount);
+                }
+                protected String getNodesContainerString(String firstNodeIdx, String lastNodeIdx)  {
+                    return NodesComputer.this.getNodesContainerString(firstNodeIdx, lastNodeIdx);
+                }
+            };
+        }
+        
+        return nodes;
+    }
+    
+    
     public static Iterator<Integer> integerIterator(final int start, final int end) {
         return new Iterator<Integer>() {
             private int value = start;
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.heapviewer.utils.counters;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.Timer;
+import org.graalvm.visualvm.heapviewer.model.Progress;
+import org.graalvm.visualvm.heapviewer.ui.UIThresholds;
+import org.graalvm.visualvm.lib.jfluid.heap.HeapProgress;
+import org.graalvm.visualvm.lib.jfluid.heap.PrimitiveArrayInstance;
+import org.graalvm.visualvm.lib.jfluid.heap.ValueHistogram;
+
+/**
+ * Read-only histogram of item values of a primitive array, counted by the heap
+ * in parallel chunks directly from the heap dump. Records are ordered by count,
+ * the most frequent value first.
+ */
+public final class ArrayItemsHistogram {
+    
+    private final ValueHistogram histogram;
+    
+    
+    private ArrayItemsHistogram(ValueHistogram histogram) {
+        this.histogram = histogram;
+    }
+    
+    
+    public static ArrayItemsHistogram compute(PrimitiveArrayInstance array, final Progress progress) throws InterruptedException {
+        final long progressId = HeapProgress.getProgressId();
+        
+        Timer timer = new Timer(UIThresholds.PROGRESS_REFRESH_RATE, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                int value = HeapProgress.getProgressValue(progressId);
+                if (value >= 0) progress.setCurrentStep(value);
+            }
+        });
+        
+        try {
+            progress.setupKnownSteps(HeapProgress.PROGRESS_MAX);
+            timer.start();
+            
+            ValueHistogram histogram = ValueHistogram.compute(array);
+            
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+            
+            return new ArrayItemsHistogram(histogram);
+        } finally {
+            timer.stop();
+            progress.finish();
+        }
+    }
+    
+    
+    public String getType() {
+        return histogram.getType();
+    }
+    
+    public int size() {
+        return histogram.size();
+    }
+    
+    public Iterator iterator() {
+        return new Iterator();
+    }
+    
+    
+    public static final class Record {
+        
+        private final String value;
+        private final int count;
+        
+        private Record(String value, int count) {
+            this.value = value;
+            this.count = count;
+        }
+        
+        public String getValue() {
+            return value;
+        }
+        
+        public int getCount() {
+            return count;
+        }
+        
+    }
+    
+    
+    public final class Iterator implements java.util.Iterator<Record> {
+        
+        private int index;
+        
+        private Iterator() {}
+
+        @Override
+        public boolean hasNext() {
+            return index < histogram.size();
+        }
+
+        @Override
+        public Record next() {
+            Record record = new Record(histogram.getValue(index), histogram.getCount(index));
+            index++;
+            return record;
+        }
+        
+    }
+    
+}
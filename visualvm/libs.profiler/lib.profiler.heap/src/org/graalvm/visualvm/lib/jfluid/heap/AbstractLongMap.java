@@ -46,6 +46,10 @@ abstract class AbstractLongMap {
     abstract class Entry {
     }
 
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    private static final int SLOT_LOCKS = 4096;
+
     //~ Instance fields ----------------------------------------------------------------------------------------------------------
 
     private final int VALUE_SIZE;
@@ -57,6 +61,7 @@ abstract class AbstractLongMap {
     final int FOFFSET_SIZE;
     Data dumpBuffer;
     CacheDirectory cacheDirectory;
+    private final Object[] slotLocks = createSlotLocks();
 
     //~ Constructors -------------------------------------------------------------------------------------------------------------
 
@@ -84,39 +89,98 @@ abstract class AbstractLongMap {
     }
 
     Entry get(long key) {
-        long index = getIndex(key);
+        long slot = getSlot(key);
+
+        if (slot == -1) {
+            return null;
+        }
+        return createEntry(slot);
+    }
+
+    /**
+     * Primitive variant of {@link #get(long)}, which does not allocate an {@link Entry}.
+     * @return slot of the key or -1 if the key is not in the map
+     */
+    long getSlot(long key) {
+        long slot = getFirstSlot(key);
 
         while (true) {
-            long mapKey = getID(index, 0);
+            long mapKey = getID(slot * ENTRY_SIZE, 0);
 
             if (mapKey == key) {
-                return createEntry(index);
+                return slot;
             }
 
             if (mapKey == 0L) {
-                return null;
+                return -1;
             }
 
-            index = getNextIndex(index);
+            slot = getNextSlot(slot);
         }
     }
 
     Entry put(long key, long value) {
-        long index = getIndex(key);
+        return createEntry(putSlot(key, value));
+    }
+
+    /**
+     * Primitive variant of {@link #put(long, long)}, which does not allocate an {@link Entry}.
+     * The value is stored only if the key is not in the map yet.
+     * @return slot of the key
+     */
+    long putSlot(long key, long value) {
+        long slot = getFirstSlot(key);
 
         while (true) {
+            long index = slot * ENTRY_SIZE;
             long mapKey = getID(index, 0);
             if (mapKey == 0L) {
                 putID(index, 0, key);
-                return createEntry(index,value);
+                putFoffset(index, KEY_SIZE, value);
+                return slot;
             } else if (mapKey == key) {
-                return createEntry(index);
+                return slot;
             }
 
-            index = getNextIndex(index);
+            slot = getNextSlot(slot);
+        }
+    }
+
+    /**
+     * Thread-safe variant of {@link #put(long, long)}. Only one thread can claim
+     * a free slot, the slot is protected by a lock, which is selected by the slot index.
+     * It must not be mixed with concurrent {@link #get(long)}.
+     */
+    Entry putConcurrent(long key, long value) {
+        return createEntry(putSlotConcurrent(key, value));
+    }
+
+    /**
+     * Thread-safe variant of {@link #putSlot(long, long)}, see {@link #putConcurrent(long, long)}.
+     */
+    long putSlotConcurrent(long key, long value) {
+        long slot = getFirstSlot(key);
+
+        while (true) {
+            long index = slot * ENTRY_SIZE;
+            synchronized (getSlotLock(index)) {
+                long mapKey = getID(index, 0);
+                if (mapKey == 0L) {
+                    putID(index, 0, key);
+                    putFoffset(index, KEY_SIZE, value);
+                    return slot;
+                } else if (mapKey == key) {
+                    return slot;
+                }
+            }
+            slot = getNextSlot(slot);
         }
     }
 
+    Object getSlotLock(long index) {
+        return slotLocks[(int) ((index / ENTRY_SIZE) % SLOT_LOCKS)];
+    }
+
     static Data getDumpBuffer(File f, RandomAccessFile file, int entrySize) throws IOException {
         long length = file.length();
 
@@ -187,19 +251,28 @@ abstract class AbstractLongMap {
         cacheDirectory = cacheDir;
     }
     
-    private long getIndex(long key) {
+    private long getFirstSlot(long key) {
         long hash = key & 0x7FFFFFFFFFFFFFFFL;
-        return (hash % keys) * ENTRY_SIZE;
+        return hash % keys;
     }
 
-    private long getNextIndex(long index) {
-        index += ENTRY_SIZE;
-        if (index >= fileSize) {
-            index = 0;
+    private long getNextSlot(long slot) {
+        slot++;
+        if (slot >= keys) {
+            slot = 0;
         }
-        return index;
+        return slot;
     }
     
+    private static Object[] createSlotLocks() {
+        Object[] locks = new Object[SLOT_LOCKS];
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
     private static boolean isLinux() {
         String osName = System.getProperty("os.name");  // NOI18N
         
@@ -218,9 +291,7 @@ abstract class AbstractLongMap {
         return "aarch64".equals(osArch); // NOI18N
     }
 
-    abstract Entry createEntry(long index);
-    
-    abstract Entry createEntry(long index,long value);
+    abstract Entry createEntry(long slot);
     
     interface Data {
         //~ Methods --------------------------------------------------------------------------------------------------------------
@@ -247,6 +318,8 @@ abstract class AbstractLongMap {
 
         void writeToStream(DataOutputStream out) throws IOException;
 
+        File getFile();
+
         void deleteFile();
     }
 
@@ -264,6 +337,10 @@ abstract class AbstractLongMap {
             force();
         }
 
+        public File getFile() {
+            return bufferFile;
+        }
+
         public void deleteFile() {
             bufferFile.delete();
         }
@@ -36,8 +36,11 @@ import java.io.RandomAccessFile;
 class CacheDirectory {
 
     private static final String DIR_EXT = ".hwcache";   // NOI18N
-    private static final String DUMP_AUX_FILE = "NBProfiler.nphd";   // NOI18N
+    private static final String CHECKPOINT_PREFIX = "NBProfiler.";   // NOI18N
+    private static final String CHECKPOINT_EXT = ".nphd";   // NOI18N
     private static final String DIRTY_FILENAME = "dirty.lck";   // NOI18N
+    private static final String INDEX_EXT = ".idx";   // NOI18N
+    private static final String INFLATED_FILENAME = "inflated.hprof";   // NOI18N
 
     private File cacheDirectory;
 
@@ -75,9 +78,20 @@ class CacheDirectory {
         return newFile;
     }
 
-    File getHeapDumpAuxFile() {
+    File getCheckpointFile(String phaseName) {
         assert !isTemporary();
-        return new File(cacheDirectory, DUMP_AUX_FILE);
+        return new File(cacheDirectory, CHECKPOINT_PREFIX+phaseName+CHECKPOINT_EXT);
+    }
+
+    File getIndexFile(String indexName) {
+        assert !isTemporary();
+        return new File(cacheDirectory, CHECKPOINT_PREFIX+indexName+INDEX_EXT);
+    }
+
+    File[] listFiles() {
+        assert !isTemporary();
+        File[] files = cacheDirectory.listFiles();
+        return files == null ? new File[0] : files;
     }
 
     boolean isTemporary() {
@@ -98,7 +112,7 @@ class CacheDirectory {
     
     void deleteAllCachedFiles() {
         assert !isTemporary();
-        for (File f : cacheDirectory.listFiles()) {
+        for (File f : listFiles()) {
             f.delete();
         }
     }
@@ -127,9 +141,19 @@ class CacheDirectory {
     }
 
     HprofByteBuffer createHprofByteBuffer(File dumpFile)  throws IOException{
+        if (dumpFile.length() >= HprofByteBuffer.MINIMAL_SIZE && HprofGZipBuffer.isGZip(dumpFile)) {
+            return HprofGZipBuffer.createGZipBuffer(dumpFile, this);
+        }
         return HprofByteBuffer.createHprofByteBuffer(dumpFile);
     }
 
+    File getInflatedDumpFile() throws IOException {
+        if (isTemporary()) {
+            return createTempFile("NBProfiler", ".hprof"); // NOI18N
+        }
+        return new File(cacheDirectory, CHECKPOINT_PREFIX+INFLATED_FILENAME);
+    }
+
     AbstractLongMap.Data createDumpBuffer(long fileSize, int entrySize) throws IOException {
         File tempFile = createTempFile("NBProfiler", ".map"); // NOI18N
         try (RandomAccessFile file = new RandomAccessFile(tempFile, "rw")) { // NOI18N
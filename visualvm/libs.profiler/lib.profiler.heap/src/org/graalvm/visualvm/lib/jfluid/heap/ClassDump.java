@@ -64,6 +64,8 @@ class ClassDump extends HprofObject implements JavaClass {
     private long firstInstanceOffset;
     private long loadClassOffset;
     private long retainedSizeByClass;
+    // computed lazily, concurrent computation yields equal tables
+    private InstanceFieldTable instanceFieldTable;
 
     //~ Constructors -------------------------------------------------------------------------------------------------------------
 
@@ -79,19 +81,27 @@ class ClassDump extends HprofObject implements JavaClass {
         long[] totalElements = classDumpSegment.arrayMap.get(this);
 
         if (totalElements != null) {
-            int elSize = classDumpSegment.getArrayElSize(this);
-            int minArrayInstanceSize = classDumpSegment.sizeSettings.getMinimumInstanceSize() + ObjectSizeSettings.ARRAY_OVERHEAD;
-            long size = totalElements[OBJECT_ALIGNMENT]*OBJECT_ALIGNMENT*elSize;
-            for (int i=0; i<OBJECT_ALIGNMENT; i++) {
-                long psize = classDumpSegment.alignObjectSize(minArrayInstanceSize+elSize*i);
-                size += psize*totalElements[i];
-            }
-            return size;
+            return getAllArraysSize(totalElements);
         }
 
         return ((long)getInstancesCount()) * getInstanceSize();
     }
 
+    /**
+     * @param totalElements array lengths counted by {@link ClassDumpSegment#addArraySize(long[], long)}
+     * @return size of the arrays of this class
+     */
+    long getAllArraysSize(long[] totalElements) {
+        int elSize = classDumpSegment.getArrayElSize(this);
+        int minArrayInstanceSize = classDumpSegment.sizeSettings.getMinimumInstanceSize() + ObjectSizeSettings.ARRAY_OVERHEAD;
+        long size = totalElements[OBJECT_ALIGNMENT]*OBJECT_ALIGNMENT*elSize;
+        for (int i=0; i<OBJECT_ALIGNMENT; i++) {
+            long psize = classDumpSegment.alignObjectSize(minArrayInstanceSize+elSize*i);
+            size += psize*totalElements[i];
+        }
+        return size;
+    }
+
     public boolean isArray() {
         boolean isArrayWithInstances = classDumpSegment.arrayMap.get(this) != null;
 
@@ -139,6 +149,13 @@ class ClassDump extends HprofObject implements JavaClass {
         if (isArray()) {
             return -1;
         }
+        return getObjectSize();
+    }
+
+    /**
+     * @return size of an instance of this class, the class must not be an array class
+     */
+    int getObjectSize() {
         int size = getUnalignedSize();
         if (classDumpSegment.newSize) {
             return size;
@@ -220,6 +237,20 @@ class ClassDump extends HprofObject implements JavaClass {
         return new InstancesIterator(instancesCount);
     }
 
+    public List<Iterator<Instance>> getInstancesIterators() {
+        int instancesCount = getInstancesCount();
+        if (instancesCount == 0) {
+            return Collections.singletonList(Collections.emptyIterator());
+        }
+        // chunks are big, only instances spread over a big part of the dump are split
+        long[] chunks = getHprof().getInstanceDumpChunks(firstInstanceOffset);
+        List<Iterator<Instance>> iterators = new ArrayList<>(chunks.length - 1);
+        for (int i = 0; i < chunks.length - 1; i++) {
+            iterators.add(new InstancesRangeIterator(chunks[i], chunks[i + 1]));
+        }
+        return iterators;
+    }
+
     public int getInstancesCount() {
         if (instances == 0) {
             getHprof().computeInstances();
@@ -366,6 +397,16 @@ class ClassDump extends HprofObject implements JavaClass {
         return fields;
     }
 
+    InstanceFieldTable getInstanceFieldTable() {
+        InstanceFieldTable table = instanceFieldTable;
+
+        if (table == null) {
+            table = new InstanceFieldTable(getHprof(), getAllInstanceFields());
+            instanceFieldTable = table;
+        }
+        return table;
+    }
+
     void setClassLoadOffset(long offset) {
         loadClassOffset = offset;
     }
@@ -491,8 +532,23 @@ class ClassDump extends HprofObject implements JavaClass {
         }
     }
 
-    void addSizeForInstance(Instance i) {
-        retainedSizeByClass+=i.getRetainedSize();
+    /**
+     * Registers instances found in one chunk of the heap dump. Chunks
+     * must be registered in the order of their offsets.
+     * @return number of instances registered before this chunk
+     */
+    int registerInstances(long offset, int count) {
+        int registered = instances;
+
+        instances += count;
+        if (firstInstanceOffset == 0) {
+            firstInstanceOffset = offset;
+        }
+        return registered;
+    }
+
+    void addSizeForInstance(long retainedSize) {
+        retainedSizeByClass+=retainedSize;
     }
 
     boolean canContainItself() {
@@ -564,6 +620,38 @@ class ClassDump extends HprofObject implements JavaClass {
         } 
     }
 
+    private class InstancesRangeIterator implements Iterator<Instance> {
+
+        private final long[] offset;
+        private final long endOffset;
+        private final HprofHeap heap;
+        private final long classId;
+        private Instance nextInstance;
+
+        private InstancesRangeIterator(long startOffset, long end) {
+            offset = new long[] { startOffset };
+            endOffset = end;
+            heap = getHprof();
+            classId = getJavaClassId();
+        }
+
+        public boolean hasNext() {
+            while (nextInstance == null && offset[0] < endOffset) {
+                nextInstance = heap.getInstanceByOffset(offset, ClassDump.this, classId);
+            }
+            return nextInstance != null;
+        }
+
+        public Instance next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Instance i = nextInstance;
+            nextInstance = null;
+            return i;
+        }
+    }
+
     //---- Serialization support
     void writeToStream(DataOutputStream out) throws IOException {
         out.writeLong(fileOffset);
@@ -59,7 +59,9 @@ class ClassDumpInstance implements Instance {
     }
 
     public int getInstanceNumber() {
-        return classDump.getHprof().idToOffsetMap.get(getInstanceId()).getIndex();
+        LongMap idToOffsetMap = classDump.getHprof().idToOffsetMap;
+
+        return idToOffsetMap.getIndexAt(idToOffsetMap.getSlot(getInstanceId()));
     }
 
     public JavaClass getJavaClass() {
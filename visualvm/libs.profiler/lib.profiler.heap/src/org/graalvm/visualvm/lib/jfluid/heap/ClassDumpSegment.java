@@ -106,12 +106,13 @@ class ClassDumpSegment extends TagBounds {
             return null;
         }
         List<JavaClass> allClasses = createClassCollection();
-        LongMap.Entry entry = hprofHeap.idToOffsetMap.get(classObjectID);
+        LongMap idToOffsetMap = hprofHeap.idToOffsetMap;
+        long slot = idToOffsetMap.getSlot(classObjectID);
 
-        if (entry != null) {
+        if (slot != -1) {
             try {
-                ClassDump dump = (ClassDump) allClasses.get(entry.getIndex() - 1);
-                if (dump.fileOffset == entry.getOffset()) {
+                ClassDump dump = (ClassDump) allClasses.get(idToOffsetMap.getIndexAt(slot) - 1);
+                if (dump.fileOffset == idToOffsetMap.getOffsetAt(slot)) {
                     return dump;
                 }
             } catch (IndexOutOfBoundsException ex) { // classObjectID do not reffer to ClassDump, its instance number is > classes.size()
@@ -163,12 +164,12 @@ class ClassDumpSegment extends TagBounds {
         return primitiveArray;
     }
 
-    Map<Long,JavaClass> getClassIdToClassMap() {
+    LongObjectHashMap<JavaClass> getClassIdToClassMap() {
         List<JavaClass> allClasses = createClassCollection();
-        Map<Long,JavaClass> map = new HashMap<>(allClasses.size()*4/3);
+        LongObjectHashMap<JavaClass> map = new LongObjectHashMap<>(allClasses.size());
         
         for (JavaClass cls : allClasses) {
-            map.put(new Long(cls.getJavaClassId()),cls);
+            map.put(cls.getJavaClassId(),cls);
         }
         return map;
     }
@@ -176,18 +177,34 @@ class ClassDumpSegment extends TagBounds {
     void addInstanceSize(ClassDump cls, int tag, long instanceOffset) {
         if ((tag == HprofHeap.OBJECT_ARRAY_DUMP) || (tag == HprofHeap.PRIMITIVE_ARRAY_DUMP)) {
             long sizeLong[] = arrayMap.get(cls);
-            HprofByteBuffer dumpBuffer = hprofHeap.dumpBuffer;
-            int idSize = dumpBuffer.getIDSize();
-            long elementsOffset = instanceOffset + 1 + idSize + 4;
 
             if (sizeLong == null) {
                 sizeLong = new long[OBJECT_ALIGNMENT+1];
                 arrayMap.put(cls, sizeLong);
             }
+            addArraySize(sizeLong, instanceOffset);
+        }
+    }
+
+    void addArraySize(long[] sizeLong, long instanceOffset) {
+        HprofByteBuffer dumpBuffer = hprofHeap.dumpBuffer;
+        int idSize = dumpBuffer.getIDSize();
+        long elementsOffset = instanceOffset + 1 + idSize + 4;
+        int elements = dumpBuffer.getInt(elementsOffset);
+
+        sizeLong[OBJECT_ALIGNMENT] += elements/OBJECT_ALIGNMENT;
+        sizeLong[elements%OBJECT_ALIGNMENT]++;
+    }
 
-            int elements = dumpBuffer.getInt(elementsOffset);
-            sizeLong[OBJECT_ALIGNMENT] += elements/OBJECT_ALIGNMENT;
-            sizeLong[elements%OBJECT_ALIGNMENT]++;
+    void addArraySizes(ClassDump cls, long[] sizes) {
+        long sizeLong[] = arrayMap.get(cls);
+
+        if (sizeLong == null) {
+            sizeLong = new long[OBJECT_ALIGNMENT+1];
+            arrayMap.put(cls, sizeLong);
+        }
+        for (int i = 0; i < sizeLong.length; i++) {
+            sizeLong[i] += sizes[i];
         }
     }
 
@@ -211,10 +228,10 @@ class ClassDumpSegment extends TagBounds {
             if (tag == HprofHeap.CLASS_DUMP) {
                 ClassDump classDump = new ClassDump(this, start);
                 long classId = classDump.getJavaClassId();
-                LongMap.Entry classEntry = hprofHeap.idToOffsetMap.put(classId, start);
+                long classSlot = hprofHeap.idToOffsetMap.putSlot(classId, start);
 
                 cls.add(classDump);
-                classEntry.setIndex(cls.size());
+                hprofHeap.idToOffsetMap.setIndexAt(classSlot, cls.size());
             }
         }
 
@@ -340,6 +357,14 @@ class ClassDumpSegment extends TagBounds {
         }
     }
     
+    /**
+     * @return type of elements of primitive array class or -1 if cls is not a primitive array class
+     */
+    int getPrimitiveArrayType(JavaClass cls) {
+        Integer typeObj = primitiveTypeMap.get(cls);
+        return typeObj != null ? typeObj.intValue() : -1;
+    }
+
     int getArrayElSize(ClassDump cls) {
         Integer typeObj = primitiveTypeMap.get(cls);
         byte type = typeObj != null ? typeObj.byteValue() : HprofHeap.OBJECT;
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.util.List;
+
+/**
+ * Number of instances and their shallow size for every class of the heap.
+ * If instances of the heap were not computed yet, the histogram is computed
+ * by a single pass over the heap dump records, which is done in parallel
+ * by chunks and does not build the instance id index. Entries are in the
+ * same order as {@link Heap#getAllClasses()}.
+ */
+public final class ClassHistogram {
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final List<JavaClass> classes;
+    private final int[] counts;
+    private final long[] sizes;
+    private final long totalCount;
+    private final long totalSize;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates histogram from classes with computed instances.
+     */
+    ClassHistogram(List<JavaClass> cls) {
+        this(cls, getInstancesCounts(cls), getAllInstancesSizes(cls));
+    }
+
+    ClassHistogram(List<JavaClass> cls, int[] c, long[] s) {
+        long count = 0;
+        long size = 0;
+
+        classes = cls;
+        counts = c;
+        sizes = s;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            size += sizes[i];
+        }
+        totalCount = count;
+        totalSize = size;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return number of classes, the same as <CODE>getAllClasses().size()</CODE>
+     */
+    public int size() {
+        return classes.size();
+    }
+
+    /**
+     * @param index index of the class in {@link Heap#getAllClasses()}
+     * @return {@link JavaClass} of the entry
+     */
+    public JavaClass getJavaClass(int index) {
+        return classes.get(index);
+    }
+
+    /**
+     * @param index index of the class in {@link Heap#getAllClasses()}
+     * @return number of instances of the class, the same as {@link JavaClass#getInstancesCount()}
+     */
+    public int getInstancesCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * @param index index of the class in {@link Heap#getAllClasses()}
+     * @return shallow size of all instances of the class, the same as {@link JavaClass#getAllInstancesSize()}
+     */
+    public long getAllInstancesSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @return number of all instances in the heap
+     */
+    public long getTotalInstancesCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return shallow size of all instances in the heap
+     */
+    public long getTotalInstancesSize() {
+        return totalSize;
+    }
+
+    private static int[] getInstancesCounts(List<JavaClass> classes) {
+        int[] counts = new int[classes.size()];
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = classes.get(i).getInstancesCount();
+        }
+        return counts;
+    }
+
+    private static long[] getAllInstancesSizes(List<JavaClass> classes) {
+        long[] sizes = new long[classes.size()];
+
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = classes.get(i).getAllInstancesSize();
+        }
+        return sizes;
+    }
+}
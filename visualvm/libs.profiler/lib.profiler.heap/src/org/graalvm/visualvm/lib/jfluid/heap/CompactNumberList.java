@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-mostly counterpart of {@link NumberList}. Every list is stored as one
+ * contiguous run in a memory-mapped file:
+ *  - number of elements (varint)
+ *  - index of the element swapped with the first element (fixed size, 1-4 bytes depending on number of elements)
+ *  - first element (number size)
+ *  - elements in the original order, the first one as varint, others as zigzag encoded
+ *    differences to the previous element (varint)
+ *
+ * Lists are appended while references are computed, then the file is mapped
+ * and lists can only be read. The order of elements is kept. {@link #putFirst(long, long)}
+ * swaps an element with the first element in place, since it only changes the fixed
+ * size first element and the index.
+ */
+class CompactNumberList {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final int numberSize;
+    private final File dataFile;
+    private OutputStream out;
+    private long size;
+    private AbstractLongMap.Data data;
+
+    CompactNumberList(int elSize, CacheDirectory cacheDir) throws IOException {
+        numberSize = elSize;
+        dataFile = cacheDir.createTempFile("NBProfiler", ".ref"); // NOI18N
+        out = new BufferedOutputStream(new FileOutputStream(dataFile), WRITE_BUFFER_SIZE);
+    }
+
+    File getFile() {
+        return dataFile;
+    }
+
+    /**
+     * Appends the list, numbers are stored in the given order.
+     * @return offset of the list
+     */
+    long addNumbers(long[] numbers, int count) throws IOException {
+        assert out != null;
+        assert count > 1;
+        long offset = size;
+
+        writeVarint(count);
+        writeFixed(0, indexSize(count));
+        writeFixed(numbers[0], numberSize);
+        writeVarint(numbers[0]);
+        for (int i = 1; i < count; i++) {
+            long diff = numbers[i] - numbers[i - 1];
+            writeVarint((diff << 1) ^ (diff >> 63));
+        }
+        return offset;
+    }
+
+    /**
+     * Finishes writing and maps the file, lists can be read afterwards.
+     */
+    void finish() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) { // NOI18N
+                data = AbstractLongMap.getDumpBuffer(dataFile, file, 1);
+            }
+        }
+    }
+
+    long getFirstNumber(long startOffset) {
+        long[] position = new long[] { startOffset };
+        int count = (int) readVarint(position);
+
+        return readFixed(position[0] + indexSize(count), numberSize);
+    }
+
+    /**
+     * Swaps number with the first element in the same way as {@link NumberList#putFirst(long, long)}.
+     * Only one swap can be stored in place.
+     * @return false if the list was already reordered and number is not the first element
+     */
+    boolean putFirst(long startOffset, long number) {
+        long[] position = new long[] { startOffset };
+        int count = (int) readVarint(position);
+        int indexSize = indexSize(count);
+        long indexOffset = position[0];
+
+        if (readFixed(indexOffset + indexSize, numberSize) == number) {
+            return true;
+        }
+        if (readFixed(indexOffset, indexSize) != 0) {
+            return false;
+        }
+        position[0] += indexSize + numberSize;
+        long element = readVarint(position);
+        for (int i = 1; i < count; i++) {
+            element += readZigzag(position);
+            if (element == number) {
+                writeFixed(indexOffset, i, indexSize);
+                writeFixed(indexOffset + indexSize, number, numberSize);
+                return true;
+            }
+        }
+        assert false : "Number "+number+" not found in list at "+startOffset;   // NOI18N
+        return true;
+    }
+
+    LongIterator getNumbersIterator(long startOffset) {
+        return new NumberIterator(startOffset);
+    }
+
+    void delete() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            out = null;
+        }
+        dataFile.delete();
+    }
+
+    private static int indexSize(int count) {
+        int maxIndex = count - 1;
+
+        if ((maxIndex & ~0xFF) == 0) {
+            return 1;
+        }
+        if ((maxIndex & ~0xFFFF) == 0) {
+            return 2;
+        }
+        if ((maxIndex & ~0xFFFFFF) == 0) {
+            return 3;
+        }
+        return 4;
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+            size++;
+        }
+        out.write((int) value);
+        size++;
+    }
+
+    private void writeFixed(long value, int bytes) throws IOException {
+        for (int i = bytes - 1; i >= 0; i--) {
+            out.write((int) (value >> (i * 8)));
+        }
+        size += bytes;
+    }
+
+    private void writeFixed(long offset, long value, int bytes) {
+        for (int i = bytes - 1; i >= 0; i--) {
+            data.putByte(offset++, 0, (byte) (value >> (i * 8)));
+        }
+    }
+
+    private long readVarint(long[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = data.getByte(position[0]++, 0);
+            value |= ((long) (b & 0x7F)) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private long readZigzag(long[] position) {
+        long value = readVarint(position);
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readFixed(long offset, int bytes) {
+        long value = 0;
+
+        for (int i = 0; i < bytes; i++) {
+            value = (value << 8) | (data.getByte(offset + i, 0) & 0xFF);
+        }
+        return value;
+    }
+
+    //---- Serialization support
+    void writeToStream(DataOutputStream dos) throws IOException {
+        finish();
+        dos.writeInt(numberSize);
+        dos.writeLong(size);
+        data.writeToStream(dos);
+    }
+
+    CompactNumberList(DataInputStream dis, CacheDirectory cacheDir) throws IOException {
+        numberSize = dis.readInt();
+        size = dis.readLong();
+        data = AbstractLongMap.Data.readFromStream(dis, cacheDir, 1);
+        dataFile = data.getFile();
+    }
+
+    private class NumberIterator extends LongIterator {
+        private final long[] position;
+        private final int count;
+        private final int firstIndex;
+        private final long first;
+        private long original;
+        private int returned;
+        private long element;
+
+        private NumberIterator(long startOffset) {
+            position = new long[] { startOffset };
+            count = (int) readVarint(position);
+            int indexSize = indexSize(count);
+            firstIndex = (int) readFixed(position[0], indexSize);
+            first = readFixed(position[0] + indexSize, numberSize);
+            position[0] += indexSize + numberSize;
+            original = readVarint(position);
+            element = original;
+        }
+
+        @Override
+        boolean hasNext() {
+            return returned < count;
+        }
+
+        @Override
+        long next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int index = returned++;
+            if (index == 0) {
+                return first;
+            }
+            element += readZigzag(position);
+            if (index == firstIndex) {
+                // swapped with the first element
+                return original;
+            }
+            return element;
+        }
+    }
+}
@@ -39,15 +39,11 @@ class ComputedSummary implements HeapSummary {
     //~ Constructors -------------------------------------------------------------------------------------------------------------
 
     ComputedSummary(HprofHeap heap) {
-        long bytesCount = 0;
-        long instancesCount = 0;
+        // class histogram does not need instances to be computed
+        ClassHistogram histogram = heap.getClassHistogram();
 
-        for (JavaClass jcls : heap.getAllClasses()) {
-            instancesCount += jcls.getInstancesCount();
-            bytesCount += jcls.getAllInstancesSize();
-        }
-        bytes = bytesCount;
-        instances = instancesCount;
+        bytes = histogram.getTotalInstancesSize();
+        instances = histogram.getTotalInstancesCount();
         long headerTime = heap.dumpBuffer.getTime();
         long tagTime = heap.getHeapTime() / 1000;
         time = headerTime + tagTime;
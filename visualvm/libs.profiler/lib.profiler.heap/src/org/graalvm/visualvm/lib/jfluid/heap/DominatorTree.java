@@ -28,11 +28,7 @@ package org.graalvm.visualvm.lib.jfluid.heap;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.TreeMap;
 
 /**
@@ -45,6 +41,8 @@ class DominatorTree {
     private static final int BUFFER_SIZE = (64 * 1024) / 8;
     private static final int ADDITIONAL_IDS_THRESHOLD = 30;
     private static final int ADDITIONAL_IDS_THRESHOLD_DIRTYSET_SAME_SIZE = 5;
+    static final String ALGORITHM_PROPERTY = "org.graalvm.visualvm.lib.jfluid.heap.dominators"; // NOI18N
+    static final String SEMI_NCA = "seminca"; // NOI18N
 
     //~ Instance fields ----------------------------------------------------------------------------------------------------------
 
@@ -55,8 +53,8 @@ class DominatorTree {
     private LongHashMap map;
     private LongSet dirtySet;
     private int dirtySetSameSize;
-    private Map<ClassDump,Boolean> canContainItself;
-    private Map<Long,Long> nearestGCRootCache = new NearestGCRootCache<>(400000);
+    private NearestGCRootCache nearestGCRootCache = new NearestGCRootCache();
+    private final FieldCursor fieldCursor = new FieldCursor();
 
     //~ Constructors -------------------------------------------------------------------------------------------------------------
 
@@ -66,11 +64,6 @@ class DominatorTree {
         currentMultipleParents = multipleParents;
         map = new LongHashMap(multiParents.getSize());
         dirtySet = new LongSet();
-        try {
-            revertedMultipleParents = multiParents.revertBuffer();
-        } catch (IOException ex) {
-            throw new IllegalArgumentException(ex.getLocalizedMessage(),ex);
-        }
     }
 
     //~ Methods ------------------------------------------------------------------------------------------------------------------    
@@ -79,12 +72,17 @@ class DominatorTree {
         boolean changed = true;
         boolean ignoreDirty;
         try {
-            do {
-                currentMultipleParents.startReading();
-                ignoreDirty = !changed;
-                changed = computeOneLevel(ignoreDirty);
-                switchParents();
-            } while (changed || !ignoreDirty);
+            if (useSemiNCA()) {
+                new SemiNCADominators(heap, multipleParents, map).computeDominators();
+            } else {
+                revertedMultipleParents = multipleParents.revertBuffer();
+                do {
+                    currentMultipleParents.startReading();
+                    ignoreDirty = !changed;
+                    changed = computeOneLevel(ignoreDirty);
+                    switchParents();
+                } while (changed || !ignoreDirty);
+            }
         } catch (IOException ex) {
             ex.printStackTrace();
         }
@@ -92,10 +90,14 @@ class DominatorTree {
         dirtySet = new LongSet();
     }
     
+    private boolean useSemiNCA() {
+        return SEMI_NCA.equals(System.getProperty(ALGORITHM_PROPERTY)) && SemiNCADominators.isApplicable(heap);
+    }
+
     private boolean computeOneLevel(boolean ignoreDirty) throws IOException {
         boolean changed = false;
         LongSet newDirtySet = new LongSet(map.size()/10);
-        List<Long> additionalIds = new ArrayList<>();
+        LongList additionalIds = new LongList();
         int additionalIndex = 0;
         // debug 
 //        long processedId = 0;
@@ -117,14 +119,14 @@ class DominatorTree {
                     }
                     break;
                 }
-                instanceId = additionalIds.get(additionalIndex++).longValue();
+                instanceId = additionalIds.get(additionalIndex++);
             }
             long oldIdom = map.get(instanceId);
 //index++;
             if (oldIdom == -1 || (oldIdom > 0 && (ignoreDirty || dirtySet.contains(oldIdom) || dirtySet.contains(instanceId)))) {            
 //processedId++;
-                LongMap.Entry entry = heap.idToOffsetMap.get(instanceId);
-                LongIterator refIt = entry.getReferences();
+                LongMap idToOffsetMap = heap.idToOffsetMap;
+                LongIterator refIt = idToOffsetMap.getReferencesAt(idToOffsetMap.getSlot(instanceId));
                 long newIdomId = refIt.next();
                 boolean dirty = false;
                 
@@ -173,19 +175,18 @@ class DominatorTree {
         return changed;
     }
         
-    private void updateAdditionalIds(final long instanceId, final List<Long> additionalIds) {
+    private void updateAdditionalIds(final long instanceId, final LongList additionalIds) {
         Instance i = heap.getInstanceByID(instanceId);
 //System.out.println("Inspecting "+printInstance(instanceId));
         if (i != null) {
-            for (FieldValue v : i.getFieldValues()) {
-                if (v instanceof ObjectFieldValue) {
-                    Instance val = ((ObjectFieldValue)v).getInstance();
-                    if (val != null) {
-                        long idp = val.getInstanceId();
-                        Long idO = new Long(idp);
+            fieldCursor.reset(i);
+            while (fieldCursor.next()) {
+                if (fieldCursor.isObject()) {
+                    long idp = fieldCursor.getObjectId();
+                    if (idp != 0) {
                         long idomO = map.get(idp);
                         if (idomO > 0) {
-                            additionalIds.add(idO);
+                            additionalIds.add(idp);
 //System.out.println("  Adding "+printInstance(idO));
                         }
                     }
@@ -195,71 +196,37 @@ class DominatorTree {
     }
     
     private void deleteBuffers() {
-        multipleParents.delete();
-        revertedMultipleParents.delete();
+        // multipleParents are deleted by HprofHeap, they are part of checkpoint of dominators
+        if (revertedMultipleParents != null) {
+            revertedMultipleParents.delete();
+        }
     }
         
     private long readLong() throws IOException {
         return currentMultipleParents.readLong();
     }
     
-    long getIdomId(long instanceId, LongMap.Entry entry) {
+    /**
+     * @param nearestGCRootPointer nearest GC root pointer of the instance, used if the instance
+     *        has no multiple parents
+     */
+    long getIdomId(long instanceId, long nearestGCRootPointer) {
         long idomEntry = map.get(instanceId);
         if (idomEntry != -1) {
             return idomEntry;
         }
-        if (entry == null) {
-            entry = heap.idToOffsetMap.get(instanceId);
-        }
-        return entry.getNearestGCRootPointer();
+        return nearestGCRootPointer;
     }
     
-    boolean hasInstanceInChain(int tag, Instance i) {
-        ClassDump javaClass;
-        long idom;
-        long instanceId;
-        
-        if (tag == HprofHeap.PRIMITIVE_ARRAY_DUMP) {
-            return false;
-        }        
-        javaClass = (ClassDump) i.getJavaClass();
-        if (canContainItself == null) {
-            canContainItself = new HashMap<>(heap.getAllClasses().size()/2);
-        }
-        if (tag == HprofHeap.INSTANCE_DUMP) {
-            Boolean canContain = canContainItself.get(javaClass);
-
-            if (canContain == null) {
-                canContain = Boolean.valueOf(javaClass.canContainItself());
-                canContainItself.put(javaClass,canContain);
-            }
-            if (!canContain.booleanValue()) {
-                return false;
-            }
-        }
-        instanceId = i.getInstanceId();
-        idom = getIdomId(instanceId);
-        for (;idom!=0;idom=getIdomId(idom)) {
-            Instance ip = heap.getInstanceByID(idom);
-            JavaClass cls = ip.getJavaClass();
-            
-            if (javaClass.equals(cls)) {
-                return true;
-            }
+    private long getNearestGCRootPointer(long instanceId) {
+        int index = nearestGCRootCache.index(instanceId);
+        if (nearestGCRootCache.ids[index] == instanceId) {
+            return nearestGCRootCache.nearestGCs[index];
         }
-        return false;
-    }
-
-    private Long getNearestGCRootPointer(Long instanceIdLong) {
-        LongMap.Entry entry;
-        Long nearestGCLong = nearestGCRootCache.get(instanceIdLong);
-        Long nearestGC;
-        if (nearestGCLong != null) {
-            return nearestGCLong;
-        }
-        entry = heap.idToOffsetMap.get(instanceIdLong.longValue());
-        nearestGC = Long.valueOf(entry.getNearestGCRootPointer());
-        nearestGCRootCache.put(instanceIdLong,nearestGC);
+        LongMap idToOffsetMap = heap.idToOffsetMap;
+        long nearestGC = idToOffsetMap.getNearestGCRootPointerAt(idToOffsetMap.getSlot(instanceId));
+        nearestGCRootCache.ids[index] = instanceId;
+        nearestGCRootCache.nearestGCs[index] = nearestGC;
         return nearestGC;
     }
     
@@ -362,17 +329,17 @@ class DominatorTree {
         map = new LongHashMap(dis);
     }
     
-    private static final class NearestGCRootCache<K,V> extends LinkedHashMap<K,V> {
-        private final int maxSize;
-        
-        private NearestGCRootCache(int size) {
-            super(size,0.75F,true);
-            maxSize = size;
-        }
+    /**
+     * Direct-mapped cache of nearest GC root pointers, an entry replaces the entry
+     * with colliding instance id.
+     */
+    private static final class NearestGCRootCache {
+        private static final int SIZE_BITS = 19;
+        private final long[] ids = new long[1 << SIZE_BITS];
+        private final long[] nearestGCs = new long[1 << SIZE_BITS];
 
-        protected boolean removeEldestEntry(Map.Entry<K,V> eldest) {
-            return size() > maxSize;
+        private int index(long instanceId) {
+            return LongObjectHashMap.idHash(instanceId, SIZE_BITS);
         }
-
     }
 }
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cursor over instance field values, which reads values directly from the heap dump
+ * without creating {@link FieldValue} objects. The order of fields is the same as in
+ * {@link Instance#getFieldValues()}. One cursor can be reused for many instances:
+ * <pre>
+ * FieldCursor cursor = new FieldCursor();
+ * for (Instance instance : instances) {
+ *     cursor.reset(instance);
+ *     while (cursor.next()) {
+ *         if (cursor.isObject()) {
+ *             long id = cursor.getObjectId();
+ *             ...
+ *         }
+ *     }
+ * }
+ * </pre>
+ * The cursor is not thread safe, use one cursor per thread.
+ */
+public final class FieldCursor {
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    // instance from heap dump, values are read from dumpBuffer
+    private InstanceFieldTable table;
+    private HprofByteBuffer dumpBuffer;
+    private long valuesOffset;
+    // other instances and static fields
+    private List<FieldValue> values = Collections.emptyList();
+    private int count;
+    private int index;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    /**
+     * creates cursor without fields, use {@link #reset(Instance)} to iterate fields of an instance.
+     */
+    public FieldCursor() {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * positions the cursor before the first instance field of the instance.
+     * <br>
+     * Speed: fast
+     * @param instance instance whose field values are iterated
+     */
+    public void reset(Instance instance) {
+        if (instance instanceof InstanceDump) {
+            InstanceDump dump = (InstanceDump) instance;
+
+            table = dump.dumpClass.getInstanceFieldTable();
+            dumpBuffer = dump.dumpClass.getHprofBuffer();
+            valuesOffset = dump.getFieldValuesOffset();
+            values = null;
+            count = table.fields.length;
+        } else {
+            reset(instance.getFieldValues());
+        }
+        index = -1;
+    }
+
+    /**
+     * Positions the cursor before the first static field of the class.
+     */
+    void resetStatic(ClassDump classDump) {
+        reset(classDump.getStaticFieldValues());
+        index = -1;
+    }
+
+    private void reset(List<FieldValue> fieldValues) {
+        table = null;
+        dumpBuffer = null;
+        values = fieldValues;
+        count = fieldValues.size();
+    }
+
+    /**
+     * moves the cursor to the next field.
+     * <br>
+     * Speed: fast
+     * @return <CODE>true</CODE> if the cursor is on the next field, <CODE>false</CODE> if there are no more fields
+     */
+    public boolean next() {
+        if (index < count) {
+            index++;
+        }
+        return index < count;
+    }
+
+    /**
+     * returns index of the current field.
+     * <br>
+     * Speed: fast
+     * @return index of the current field, the same as index in {@link Instance#getFieldValues()}
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * returns the current field.
+     * <br>
+     * Speed: fast
+     * @return {@link Field} of the current value
+     */
+    public Field getField() {
+        checkIndex();
+        if (table != null) {
+            return table.fields[index];
+        }
+        return values.get(index).getField();
+    }
+
+    /**
+     * returns <CODE>true</CODE> if the current field is reference to an object.
+     * <br>
+     * Speed: fast
+     * @return <CODE>true</CODE> if the current field is object field
+     */
+    public boolean isObject() {
+        checkIndex();
+        if (table != null) {
+            return table.types[index] == HprofHeap.OBJECT;
+        }
+        return values.get(index) instanceof ObjectFieldValue;
+    }
+
+    /**
+     * returns ID of the instance referenced by the current object field.
+     * <br>
+     * Speed: fast
+     * @return ID of the referenced instance or 0 for <CODE>null</CODE>
+     * @throws IllegalStateException if the current field is not object field
+     */
+    public long getObjectId() {
+        if (!isObject()) {
+            throw new IllegalStateException("Not an object field " + getField().getName()); // NOI18N
+        }
+        if (table != null) {
+            return dumpBuffer.getID(getPosition());
+        }
+        FieldValue value = values.get(index);
+        if (value instanceof HprofInstanceObjectValue) {
+            return ((HprofInstanceObjectValue) value).getInstanceId();
+        }
+        if (value instanceof HprofFieldObjectValue) {
+            return ((HprofFieldObjectValue) value).getInstanceID();
+        }
+        Instance instance = ((ObjectFieldValue) value).getInstance();
+        return instance == null ? 0 : instance.getInstanceId();
+    }
+
+    /**
+     * returns value of the current field in the same way as {@link Instance#getValueOfField(String)}.
+     * <br>
+     * Speed: normal
+     * @return {@link Instance} for object fields, corresponding object wrapper for primitive fields
+     */
+    public Object getValue() {
+        checkIndex();
+        if (table != null) {
+            if (table.types[index] == HprofHeap.OBJECT) {
+                return table.fields[index].classDump.getHprof().getInstanceByID(getObjectId());
+            }
+            return HprofInstanceValue.getTypeValue(dumpBuffer, getPosition(), table.types[index]);
+        }
+        FieldValue value = values.get(index);
+        if (value instanceof ObjectFieldValue) {
+            return ((ObjectFieldValue) value).getInstance();
+        }
+        if (value instanceof HprofInstanceValue) {
+            return ((HprofInstanceValue) value).getTypeValue();
+        }
+        if (value instanceof HprofFieldValue) {
+            return ((HprofFieldValue) value).getTypeValue();
+        }
+        return value.getValue();
+    }
+
+    /**
+     * returns value of the current boolean field.
+     * <br>
+     * Speed: fast
+     * @return value of the field
+     */
+    public boolean getBoolean() {
+        if (isPrimitive(HprofHeap.BOOLEAN)) {
+            return dumpBuffer.get(getPosition()) != 0;
+        }
+        return ((Boolean) getValue()).booleanValue();
+    }
+
+    /**
+     * returns value of the current char field.
+     * <br>
+     * Speed: fast
+     * @return value of the field
+     */
+    public char getChar() {
+        if (isPrimitive(HprofHeap.CHAR)) {
+            return dumpBuffer.getChar(getPosition());
+        }
+        return ((Character) getValue()).charValue();
+    }
+
+    /**
+     * returns value of the current byte field.
+     * <br>
+     * Speed: fast
+     * @return value of the field
+     */
+    public byte getByte() {
+        if (isPrimitive(HprofHeap.BYTE)) {
+            return dumpBuffer.get(getPosition());
+        }
+        return ((Number) getValue()).byteValue();
+    }
+
+    /**
+     * returns value of the current short field.
+     * <br>
+     * Speed: fast
+     * @return value of the field
+     */
+    public short getShort() {
+        if (isPrimitive(HprofHeap.SHORT)) {
+            return dumpBuffer.getShort(getPosition());
+        }
+        return ((Number) getValue()).shortValue();
+    }
+
+    /**
+     * returns value of the current int field.
+     * <br>
+     * Speed: fast
+     * @return value of the field
+     */
+    public int getInt() {
+        if (isPrimitive(HprofHeap.INT)) {
+            return dumpBuffer.getInt(getPosition());
+        }
+        return ((Number) getValue()).intValue();
+    }
+
+    /**
+     * returns value of the current long field.
+     * <br>
+     * Speed: fast
+     * @return value of the field
+     */
+    public long getLong() {
+        if (isPrimitive(HprofHeap.LONG)) {
+            return dumpBuffer.getLong(getPosition());
+        }
+        return ((Number) getValue()).longValue();
+    }
+
+    /**
+     * returns value of the current float field.
+     * <br>
+     * Speed: fast
+     * @return value of the field
+     */
+    public float getFloat() {
+        if (isPrimitive(HprofHeap.FLOAT)) {
+            return dumpBuffer.getFloat(getPosition());
+        }
+        return ((Number) getValue()).floatValue();
+    }
+
+    /**
+     * returns value of the current double field.
+     * <br>
+     * Speed: fast
+     * @return value of the field
+     */
+    public double getDouble() {
+        if (isPrimitive(HprofHeap.DOUBLE)) {
+            return dumpBuffer.getDouble(getPosition());
+        }
+        return ((Number) getValue()).doubleValue();
+    }
+
+    private boolean isPrimitive(int type) {
+        checkIndex();
+        if (table != null) {
+            if (table.types[index] != type) {
+                throw new IllegalStateException("Field " + getField().getName() + " is " + getField().getType().getName()); // NOI18N
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private long getPosition() {
+        return valuesOffset + table.offsets[index];
+    }
+
+    private void checkIndex() {
+        if (index < 0 || index >= count) {
+            throw new IllegalStateException("No current field"); // NOI18N
+        }
+    }
+}
@@ -29,10 +29,13 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.function.Consumer;
 
 
 /**
  * This is top-level interface representing one instance of heap dump.
+ * Instances are created by {@link HeapFactory}, the interface is not intended
+ * to be implemented by clients.
  * @author Tomas Hurka
  */
 public interface Heap {
@@ -57,6 +60,21 @@ public interface Heap {
      */
     List<Instance> getBiggestObjectsByRetainedSize(int number);
 
+    /**
+     * computes List of N biggest {@link Instance}-s in this heap.
+     * The instances are ordered according to their retained size.
+     * The heap is scanned in partitions, biggest instances found so far
+     * are reported after each partition, so that they can be displayed
+     * before the whole heap is scanned.
+     * <br>
+     * Speed: slow for the first time, subsequent invocations are normal.
+     * @param number size of the returned List
+     * @param partialResults receives intermediate lists of biggest {@link Instance}-s ordered
+     * according to their retained size, it can be called from other threads, can be <CODE>null</CODE>
+     * @return list of N biggest {@link Instance}.
+     */
+    List<Instance> getBiggestObjectsByRetainedSize(int number, Consumer<List<Instance>> partialResults);
+
     /**
      * returns list of {@link GCRoot} for {@link Instance}.
      * <br>
@@ -125,13 +143,24 @@ public interface Heap {
      */
     public Iterator<Instance> getAllInstancesIterator();
     
+    /**
+     * computes number of instances and their shallow size for all classes in this heap.
+     * If instances of the heap are not computed yet, the histogram is computed
+     * by a single pass over the heap dump, which is much faster than computing
+     * instances, so it can be shown while instances are computed in background.
+     * <br>
+     * Speed: normal for the first time, subsequent invocations are fast
+     * @return {@link ClassHistogram} of the heap
+     */
+    ClassHistogram getClassHistogram();
+
     /**
      * returns optional summary information of the heap.
      * If this information is not available in the dump,
      * some data (like number of instances) are computed
      * from the dump itself.
      * <br>
-     * Speed: fast if the summary is available in dump, slow if
+     * Speed: fast if the summary is available in dump, normal if
      * summary needs to be computed from dump.
      * @return {@link HeapSummary} of the heap
      */
@@ -147,6 +176,76 @@ public interface Heap {
      */
     Properties getSystemProperties();
 
+    /**
+     * computes List of java.lang.String instances with the given content.
+     * The instances are ordered according to the position in the dump file.
+     * The string content index is computed and stored in the heap dump cache
+     * when this method is invoked for the first time.
+     * <br>
+     * Speed: slow for the first time, subsequent invocations are fast.
+     * @param value content of the strings
+     * @return list of java.lang.String {@link Instance}-s equal to value
+     */
+    List<Instance> getStringInstances(String value);
+
+    /**
+     * creates index of instances of the class by value of the primitive field.
+     * The index is stored in the heap dump cache and it is used by subsequent
+     * invocations of {@link #getInstancesByFieldValue(JavaClass, String, Object, Object)}.
+     * Instances of subclasses are not indexed.
+     * <br>
+     * Speed: slow
+     * @param jcls {@link JavaClass} whose instances are indexed
+     * @param fieldName name of primitive instance field of jcls
+     * @throws IllegalArgumentException if jcls does not have primitive instance field fieldName
+     */
+    void createFieldIndex(JavaClass jcls, String fieldName);
+
+    /**
+     * returns true if index of instances of the class by value of the field exists.
+     * <br>
+     * Speed: fast
+     * @param jcls {@link JavaClass} whose instances are indexed
+     * @param fieldName name of primitive instance field of jcls
+     * @return <CODE>true</CODE> if the index was created by {@link #createFieldIndex(JavaClass, String)}
+     */
+    boolean hasFieldIndex(JavaClass jcls, String fieldName);
+
+    /**
+     * computes List of instances of the class, whose primitive field value
+     * is between min and max inclusive. Values are compared as numbers, boolean
+     * values as 0 and 1. Instances of subclasses are not included.
+     * The instances are ordered according to the position in the dump file.
+     * <br>
+     * Speed: fast if the index was created by {@link #createFieldIndex(JavaClass, String)}, slow otherwise
+     * @param jcls {@link JavaClass} whose instances are searched
+     * @param fieldName name of primitive instance field of jcls
+     * @param min minimal value as {@link Number}, {@link Boolean} or {@link Character}, <CODE>null</CODE> for no lower bound
+     * @param max maximal value as {@link Number}, {@link Boolean} or {@link Character}, <CODE>null</CODE> for no upper bound
+     * @return list of {@link Instance}-s of jcls with field value in the range
+     * @throws IllegalArgumentException if jcls does not have primitive instance field fieldName
+     */
+    List<Instance> getInstancesByFieldValue(JavaClass jcls, String fieldName, Object min, Object max);
+
+    /**
+     * computes sublist of instances of the class sorted by their shallow or retained size.
+     * Instances with the same size are ordered according to the position in the dump file
+     * for descending order and in reverse order for ascending order.
+     * Instances of subclasses are not included. For classes with many instances the size index
+     * of the class is computed and stored in the heap dump cache when this method is invoked
+     * for the first time, instances of smaller classes are sorted in memory on each invocation.
+     * Retained sizes are computed first if needed.
+     * <br>
+     * Speed: slow for the first time, subsequent invocations are fast
+     * @param jcls {@link JavaClass} whose instances are returned
+     * @param retained <CODE>true</CODE> to sort by retained size, <CODE>false</CODE> to sort by shallow size
+     * @param ascending <CODE>true</CODE> for the smallest instances first, <CODE>false</CODE> for the biggest instances first
+     * @param fromIndex index of the first returned instance in the sorted instances (inclusive)
+     * @param toIndex index of the last returned instance in the sorted instances (exclusive)
+     * @return list of {@link Instance}-s of jcls between fromIndex and toIndex in the sorted instances
+     */
+    List<Instance> getInstancesBySize(JavaClass jcls, boolean retained, boolean ascending, int fromIndex, int toIndex);
+
     boolean isRetainedSizeComputed();
     boolean isRetainedSizeByClassComputed();
 }
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint of the heap state written after a phase of heap dump indexing
+ * has completed. Every phase has its own checkpoint file in {@link CacheDirectory}
+ * with a format version and CRC32 checksum, the file is replaced atomically.
+ * If the next phase modifies data files in place, the checkpoint records their
+ * sizes and modification times instead of copying them. Such checkpoint is
+ * rejected when the next phase did not complete or the files were changed.
+ * When a checkpoint is written, checkpoints of earlier phases are deleted,
+ * so the heap is always reopened from the last completed phase. Checkpoint
+ * of the previous phase is kept as long as it can replace a checkpoint with
+ * data files modified in place, so that an incomplete next phase does not force
+ * indexing of the heap dump from the beginning.
+ */
+class HeapCheckpoint {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    static final int INSTANCES = 0;
+    static final int REFERENCES = 1;
+    static final int GC_ROOTS = 2;
+    static final int DOMINATORS = 3;
+    static final int RETAINED_SIZES = 4;
+
+    private static final String[] PHASE_NAMES = {
+        "instances",    // NOI18N
+        "references",   // NOI18N
+        "gcroots",      // NOI18N
+        "dominators",   // NOI18N
+        "retained"      // NOI18N
+    };
+    private static final String CHECKPOINT_ID = "NBPHC";  // NOI18N
+    private static final int CHECKPOINT_VERSION = 3;
+
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final int phase;
+    private final File[] files;
+    private final long[] lengths;
+    private final long[] lastModified;
+    private final byte[] state;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    private HeapCheckpoint(int p, File[] f, long[] l, long[] m, byte[] s) {
+        phase = p;
+        files = f;
+        lengths = l;
+        lastModified = m;
+        state = s;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    static int getLastPhase() {
+        return PHASE_NAMES.length - 1;
+    }
+
+    static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * Writes checkpoint of phase and deletes checkpoints of earlier phases, except
+     * the previous one if <code>modifiedFiles</code> are not empty.
+     * @param state serialized state of {@link HprofHeap}
+     * @param modifiedFiles data files, which are modified in place by the next phase
+     */
+    static void write(CacheDirectory cacheDir, int phase, byte[] state, File[] modifiedFiles) throws IOException {
+        File checkpointFile = cacheDir.getCheckpointFile(PHASE_NAMES[phase]);
+        File tmpFile = new File(checkpointFile.getPath() + ".tmp");   // NOI18N
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(state.length + 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        CRC32 crc = new CRC32();
+
+        out.writeUTF(CHECKPOINT_ID);
+        out.writeInt(CHECKPOINT_VERSION);
+        out.writeUTF(PHASE_NAMES[phase]);
+        out.writeInt(modifiedFiles.length);
+        for (File file : modifiedFiles) {
+            out.writeUTF(file.getAbsolutePath());
+            out.writeLong(file.length());
+            out.writeLong(file.lastModified());
+        }
+        out.writeInt(state.length);
+        out.write(state);
+        out.flush();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.close();
+        try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+            bytes.writeTo(fos);
+            fos.getFD().sync();
+        }
+        try {
+            Files.move(tmpFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmpFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        // keep checkpoint of the previous phase, until the data files are final
+        int obsoletePhases = modifiedFiles.length > 0 ? phase - 1 : phase;
+
+        for (int i = 0; i < obsoletePhases; i++) {
+            delete(cacheDir, i);
+        }
+    }
+
+    /**
+     * @return checkpoint of phase or <code>null</code> if there is no checkpoint for phase
+     * @throws IOException if the checkpoint is corrupted or written by other version
+     */
+    static HeapCheckpoint read(CacheDirectory cacheDir, int phase) throws IOException {
+        File checkpointFile = cacheDir.getCheckpointFile(PHASE_NAMES[phase]);
+
+        if (!checkpointFile.isFile()) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(checkpointFile.toPath());
+        if (bytes.length < Long.BYTES) {
+            throw new IOException("Truncated checkpoint "+checkpointFile);    // NOI18N
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - Long.BYTES);
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+        dis.skipBytes(bytes.length - Long.BYTES);
+        if (dis.readLong() != crc.getValue()) {
+            throw new IOException("Checksum mismatch in checkpoint "+checkpointFile);    // NOI18N
+        }
+        dis = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES));
+        String id = dis.readUTF();
+        if (!CHECKPOINT_ID.equals(id)) {
+            throw new IOException("Invalid checkpoint id "+id);    // NOI18N
+        }
+        int version = dis.readInt();
+        if (version != CHECKPOINT_VERSION) {
+            throw new IOException("Invalid checkpoint version "+CHECKPOINT_VERSION+" loaded "+version);    // NOI18N
+        }
+        String phaseName = dis.readUTF();
+        if (!PHASE_NAMES[phase].equals(phaseName)) {
+            throw new IOException("Invalid checkpoint phase "+PHASE_NAMES[phase]+" loaded "+phaseName);    // NOI18N
+        }
+        File[] files = new File[dis.readInt()];
+        long[] lengths = new long[files.length];
+        long[] lastModified = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = cacheDir.getCacheFile(dis.readUTF());
+            lengths[i] = dis.readLong();
+            lastModified[i] = dis.readLong();
+        }
+        byte[] state = new byte[dis.readInt()];
+        dis.readFully(state);
+        return new HeapCheckpoint(phase, files, lengths, lastModified, state);
+    }
+
+    static void delete(CacheDirectory cacheDir, int phase) {
+        cacheDir.getCheckpointFile(PHASE_NAMES[phase]).delete();
+    }
+
+    int getPhase() {
+        return phase;
+    }
+
+    DataInputStream getState() {
+        return new DataInputStream(new ByteArrayInputStream(state));
+    }
+
+    /**
+     * Checks that data files, which are modified in place by the next phase,
+     * are the same as when the checkpoint was written.
+     * @param incompletePhase <code>true</code> if the next phase started and did not complete
+     * @throws IOException if the data files were or could have been modified
+     */
+    void checkFiles(boolean incompletePhase) throws IOException {
+        if (incompletePhase && files.length > 0) {
+            throw new IOException("Data files of checkpoint "+PHASE_NAMES[phase]+" modified by incomplete phase");    // NOI18N
+        }
+        for (int i = 0; i < files.length; i++) {
+            if (files[i].length() != lengths[i] || files[i].lastModified() != lastModified[i]) {
+                throw new IOException("Data file "+files[i]+" modified after checkpoint "+PHASE_NAMES[phase]);    // NOI18N
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Comparison of two heap dumps. Class histograms of both heaps are computed
+ * in parallel as arrays sorted by class name and merged in one pass, classes
+ * with the same name loaded by different class loaders are counted together.
+ * Instances referenced from static fields are matched by class name and field
+ * name, so that growth of retained size can be tracked to static fields.
+ * Other GC roots are not matched and paths from the roots to the growing
+ * instances are not reported, {@link Instance#getNearestGCRootPointer()}
+ * can be followed from the instances for that.
+ * Only primitive arrays are kept per heap while the histograms are merged,
+ * {@link JavaClass}-es and {@link Instance}-s of entries are resolved on demand.
+ */
+public final class HeapDiff {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    private static final int CLASS_ENTRY = 0;
+    private static final int PACKAGE_ENTRY = 1;
+    private static final int STATIC_FIELD_ENTRY = 2;
+
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final List<Entry> classes;
+    private final List<Entry> packages;
+    private final List<Entry> staticFields;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    private HeapDiff(Heap heap, Heap baseHeap, boolean retained) {
+        final Heap[] heaps = new Heap[] {heap, baseHeap};
+        final Histogram[] histograms = new Histogram[2];
+        final Histogram[] fieldHistograms = new Histogram[2];
+        // each heap is processed by one thread
+        int threads = heap == baseHeap ? 1 : Math.min(2, ParallelScan.getThreads());
+
+        ParallelScan.run(new long[] {0, 1, 2}, threads, (chunk, start, end) -> {
+            histograms[chunk] = Histogram.createClassHistogram(heaps[chunk], retained);
+            if (retained) {
+                fieldHistograms[chunk] = Histogram.createStaticFieldHistogram(heaps[chunk]);
+            }
+        }, false);
+        classes = Collections.unmodifiableList(merge(CLASS_ENTRY, heap, histograms[0], baseHeap, histograms[1]));
+        packages = createPackages(heap, baseHeap, classes);
+        if (retained) {
+            List<Entry> fields = merge(STATIC_FIELD_ENTRY, heap, fieldHistograms[0], baseHeap, fieldHistograms[1]);
+
+            fields.sort(new Comparator<Entry>() {
+                public int compare(Entry e1, Entry e2) {
+                    return Long.compare(e2.getRetainedSizeGrowth(), e1.getRetainedSizeGrowth());
+                }
+            });
+            staticFields = Collections.unmodifiableList(fields);
+        } else {
+            staticFields = Collections.emptyList();
+        }
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * compares heap with base heap.
+     * <br>
+     * Speed: normal, slow if retained sizes are requested and not computed yet
+     * @param heap compared heap
+     * @param baseHeap base heap
+     * @param retained if true, retained sizes are compared and static fields are matched
+     * @return comparison of the heaps
+     */
+    public static HeapDiff compare(Heap heap, Heap baseHeap, boolean retained) {
+        return new HeapDiff(heap, baseHeap, retained);
+    }
+
+    /**
+     * @return entries of classes from both heaps, sorted by class name
+     */
+    public List<Entry> getClasses() {
+        return classes;
+    }
+
+    /**
+     * @return entries of packages from both heaps, sorted by package name
+     */
+    public List<Entry> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Static fields are identified by name of the class and name of the field, static
+     * fields are available only if retained sizes were compared.
+     * @return entries of static fields referencing an instance, sorted by growth of retained size
+     */
+    public List<Entry> getStaticFields() {
+        return staticFields;
+    }
+
+    private static List<Entry> merge(int kind, Heap heap, Histogram histogram, Heap baseHeap, Histogram baseHistogram) {
+        List<Entry> entries = new ArrayList<>(Math.max(histogram.size, baseHistogram.size));
+        int i = 0;
+        int j = 0;
+
+        while (i < histogram.size || j < baseHistogram.size) {
+            int diff;
+
+            if (i == histogram.size) {
+                diff = 1;
+            } else if (j == baseHistogram.size) {
+                diff = -1;
+            } else {
+                diff = histogram.names[i].compareTo(baseHistogram.names[j]);
+            }
+            Entry entry = new Entry(kind, diff <= 0 ? histogram.names[i] : baseHistogram.names[j], heap, baseHeap);
+
+            if (diff <= 0) {
+                entry.add(histogram, i++, false);
+            }
+            if (diff >= 0) {
+                entry.add(baseHistogram, j++, true);
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static List<Entry> createPackages(Heap heap, Heap baseHeap, List<Entry> classes) {
+        Map<String,Entry> packageMap = new HashMap<>();
+        List<Entry> packageList;
+
+        for (Entry cls : classes) {
+            String name = cls.getName();
+            int nameIdx = name.lastIndexOf('.'); // NOI18N
+
+            if (nameIdx != -1) {
+                String packageName = name.substring(0, nameIdx);
+                Entry pkg = packageMap.get(packageName);
+
+                if (pkg == null) {
+                    pkg = new Entry(PACKAGE_ENTRY, packageName, heap, baseHeap);
+                    packageMap.put(packageName, pkg);
+                }
+                pkg.add(cls);
+            }
+        }
+        packageList = new ArrayList<>(packageMap.values());
+        packageList.sort(new Comparator<Entry>() {
+            public int compare(Entry e1, Entry e2) {
+                return e1.getName().compareTo(e2.getName());
+            }
+        });
+        return Collections.unmodifiableList(packageList);
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Class, package or static field present in at least one of the compared heaps.
+     */
+    public static final class Entry {
+        //~ Instance fields ------------------------------------------------------------------------------------------------------
+
+        private final int kind;
+        private final String name;
+        private final Heap heap;
+        private final Heap baseHeap;
+        // index of the first class in Heap.getAllClasses() + 1 or instance id, 0 if not present
+        private long reference;
+        private long baseReference;
+        private int instancesCount;
+        private int baseInstancesCount;
+        private long size;
+        private long baseSize;
+        private long retainedSize;
+        private long baseRetainedSize;
+
+        //~ Constructors ---------------------------------------------------------------------------------------------------------
+
+        private Entry(int kind, String name, Heap heap, Heap baseHeap) {
+            this.kind = kind;
+            this.name = name;
+            this.heap = heap;
+            this.baseHeap = baseHeap;
+        }
+
+        //~ Methods --------------------------------------------------------------------------------------------------------------
+
+        /**
+         * @return fully qualified name of the class, name of the package or
+         * fully qualified name of the class followed by '.' and name of the static field
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return true if the entry is present in the compared heap
+         */
+        public boolean isInHeap() {
+            return reference != 0 || (kind == PACKAGE_ENTRY && instancesCount > 0);
+        }
+
+        /**
+         * @return true if the entry is present in the base heap
+         */
+        public boolean isInBaseHeap() {
+            return baseReference != 0 || (kind == PACKAGE_ENTRY && baseInstancesCount > 0);
+        }
+
+        /**
+         * @return number of instances in the compared heap
+         */
+        public int getInstancesCount() {
+            return instancesCount;
+        }
+
+        /**
+         * @return number of instances in the base heap
+         */
+        public int getBaseInstancesCount() {
+            return baseInstancesCount;
+        }
+
+        /**
+         * @return size of instances in the compared heap
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return size of instances in the base heap
+         */
+        public long getBaseSize() {
+            return baseSize;
+        }
+
+        /**
+         * @return retained size in the compared heap, 0 if retained sizes were not compared
+         */
+        public long getRetainedSize() {
+            return retainedSize;
+        }
+
+        /**
+         * @return retained size in the base heap, 0 if retained sizes were not compared
+         */
+        public long getBaseRetainedSize() {
+            return baseRetainedSize;
+        }
+
+        /**
+         * @return difference of retained sizes in the compared heap and in the base heap
+         */
+        public long getRetainedSizeGrowth() {
+            return retainedSize - baseRetainedSize;
+        }
+
+        /**
+         * @return the first class with the entry name in the compared heap or <CODE>null</CODE>
+         */
+        public JavaClass getJavaClass() {
+            return getJavaClass(heap, reference);
+        }
+
+        /**
+         * @return the first class with the entry name in the base heap or <CODE>null</CODE>
+         */
+        public JavaClass getBaseJavaClass() {
+            return getJavaClass(baseHeap, baseReference);
+        }
+
+        /**
+         * @return instance referenced from the static field in the compared heap or <CODE>null</CODE>
+         */
+        public Instance getInstance() {
+            return kind == STATIC_FIELD_ENTRY ? heap.getInstanceByID(reference) : null;
+        }
+
+        /**
+         * @return instance referenced from the static field in the base heap or <CODE>null</CODE>
+         */
+        public Instance getBaseInstance() {
+            return kind == STATIC_FIELD_ENTRY ? baseHeap.getInstanceByID(baseReference) : null;
+        }
+
+        private JavaClass getJavaClass(Heap h, long ref) {
+            if (kind != CLASS_ENTRY || ref == 0) {
+                return null;
+            }
+            return h.getAllClasses().get((int) ref - 1);
+        }
+
+        private void add(Histogram histogram, int index, boolean base) {
+            if (base) {
+                baseReference = histogram.references[index];
+                baseInstancesCount = histogram.counts[index];
+                baseSize = histogram.sizes[index];
+                baseRetainedSize = histogram.retainedSizes[index];
+            } else {
+                reference = histogram.references[index];
+                instancesCount = histogram.counts[index];
+                size = histogram.sizes[index];
+                retainedSize = histogram.retainedSizes[index];
+            }
+        }
+
+        private void add(Entry entry) {
+            instancesCount += entry.instancesCount;
+            baseInstancesCount += entry.baseInstancesCount;
+            size += entry.size;
+            baseSize += entry.baseSize;
+            retainedSize += entry.retainedSize;
+            baseRetainedSize += entry.baseRetainedSize;
+        }
+    }
+
+    /**
+     * Values sorted by name, values with the same name are summed.
+     */
+    private static final class Histogram {
+        //~ Instance fields ------------------------------------------------------------------------------------------------------
+
+        private final String[] names;
+        private final long[] references;
+        private final int[] counts;
+        private final long[] sizes;
+        private final long[] retainedSizes;
+        private int size;
+
+        //~ Constructors ---------------------------------------------------------------------------------------------------------
+
+        private Histogram(int capacity) {
+            names = new String[capacity];
+            references = new long[capacity];
+            counts = new int[capacity];
+            sizes = new long[capacity];
+            retainedSizes = new long[capacity];
+        }
+
+        //~ Methods --------------------------------------------------------------------------------------------------------------
+
+        private static Histogram createClassHistogram(Heap heap, boolean retained) {
+            List<JavaClass> classes = heap.getAllClasses();
+            String[] names = new String[classes.size()];
+
+            for (int i = 0; i < names.length; i++) {
+                names[i] = classes.get(i).getName();
+            }
+            Integer[] order = sort(names);
+            Histogram histogram = new Histogram(names.length);
+
+            for (Integer index : order) {
+                JavaClass cls = classes.get(index.intValue());
+                long retainedSize = retained ? cls.getRetainedSizeByClass() : 0;
+
+                histogram.add(names[index.intValue()], index.intValue() + 1, cls.getInstancesCount(), cls.getAllInstancesSize(), retainedSize);
+            }
+            return histogram;
+        }
+
+        private static Histogram createStaticFieldHistogram(Heap heap) {
+            List<String> names = new ArrayList<>();
+            List<Instance> instances = new ArrayList<>();
+
+            for (JavaClass cls : heap.getAllClasses()) {
+                for (FieldValue value : cls.getStaticFieldValues()) {
+                    if (value instanceof ObjectFieldValue) {
+                        Instance instance = ((ObjectFieldValue) value).getInstance();
+
+                        if (instance != null) {
+                            names.add(cls.getName() + "." + value.getField().getName()); // NOI18N
+                            instances.add(instance);
+                        }
+                    }
+                }
+            }
+            Integer[] order = sort(names.toArray(new String[0]));
+            Histogram histogram = new Histogram(order.length);
+
+            for (Integer index : order) {
+                Instance instance = instances.get(index.intValue());
+
+                histogram.add(names.get(index.intValue()), instance.getInstanceId(), 1, instance.getSize(), instance.getRetainedSize());
+            }
+            return histogram;
+        }
+
+        private static Integer[] sort(final String[] names) {
+            Integer[] order = new Integer[names.length];
+
+            for (int i = 0; i < order.length; i++) {
+                order[i] = Integer.valueOf(i);
+            }
+            // stable sort keeps the first class of the same name first
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer i1, Integer i2) {
+                    return names[i1.intValue()].compareTo(names[i2.intValue()]);
+                }
+            });
+            return order;
+        }
+
+        private void add(String name, long reference, int count, long size, long retainedSize) {
+            if (this.size > 0 && names[this.size - 1].equals(name)) {
+                int last = this.size - 1;
+
+                counts[last] += count;
+                sizes[last] += size;
+                retainedSizes[last] += retainedSize;
+            } else {
+                names[this.size] = name;
+                references[this.size] = reference;
+                counts[this.size] = count;
+                sizes[this.size] = size;
+                retainedSizes[this.size] = retainedSize;
+                this.size++;
+            }
+        }
+    }
+}
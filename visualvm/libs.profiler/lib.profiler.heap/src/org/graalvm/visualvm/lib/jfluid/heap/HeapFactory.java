@@ -25,13 +25,10 @@
 
 package org.graalvm.visualvm.lib.jfluid.heap;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 
 
 /**
@@ -72,17 +69,22 @@ public class HeapFactory {
                            throws FileNotFoundException, IOException {
         CacheDirectory cacheDir = CacheDirectory.getHeapDumpCacheDirectory(heapDump, segment);
         if (!cacheDir.isTemporary()) {
-            File savedDump = cacheDir.getHeapDumpAuxFile();
-
-            if (savedDump.exists() && savedDump.isFile() && savedDump.canRead()) {
+            // resume from the last completed phase
+            for (int phase = HeapCheckpoint.getLastPhase(); phase >= 0; phase--) {
                 try {
-                    return loadHeap(cacheDir);
+                    HeapCheckpoint checkpoint = HeapCheckpoint.read(cacheDir, phase);
+
+                    if (checkpoint != null) {
+                        return loadHeap(cacheDir, checkpoint);
+                    }
                 } catch (IOException ex) {
-                    System.err.println("Loading heap dump "+heapDump+" from cache failed.");
+                    System.err.println("Loading heap dump "+heapDump+" from cache checkpoint "+HeapCheckpoint.getPhaseName(phase)+" failed.");
                     ex.printStackTrace(System.err);
-                    cacheDir.deleteAllCachedFiles();
+                    HeapCheckpoint.delete(cacheDir, phase);
                 }
             }
+            // no usable checkpoint, remove files of incomplete or obsolete cache
+            cacheDir.deleteAllCachedFiles();
         }
         return new HprofHeap(heapDump, segment, cacheDir);
 
@@ -105,12 +107,19 @@ public class HeapFactory {
         return 1;
     }
 
-    static Heap loadHeap(CacheDirectory cacheDir)
+    static Heap loadHeap(CacheDirectory cacheDir, HeapCheckpoint checkpoint)
                            throws FileNotFoundException, IOException {
-        File savedDump = cacheDir.getHeapDumpAuxFile();
-        InputStream is = new BufferedInputStream(new FileInputStream(savedDump), 64*1024);
-        try (DataInputStream dis = new DataInputStream(is)) {
-            return new HprofHeap(dis, cacheDir);
+        boolean incompletePhase = cacheDir.isDirty();
+
+        // data files changed by incomplete next phase cannot be used
+        checkpoint.checkFiles(incompletePhase);
+        try (DataInputStream dis = checkpoint.getState()) {
+            HprofHeap heap = new HprofHeap(dis, cacheDir, incompletePhase);
+
+            if (incompletePhase) {
+                cacheDir.setDirty(false);
+            }
+            return heap;
         }
     }
 
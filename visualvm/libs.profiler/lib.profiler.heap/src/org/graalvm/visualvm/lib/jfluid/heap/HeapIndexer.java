@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Headless indexer, which runs all phases of heap dump indexing and leaves
+ * the results in the cache directory next to the heap dump. The heap dump
+ * together with its cache directory can then be copied to another machine
+ * and opened by {@link HeapFactory#createHeap(File)} without recomputation.
+ * Time and peak Java heap usage of every phase are printed, so that batch
+ * machines can be sized.
+ * <br>
+ * Usage: <code>java -cp org-graalvm-visualvm-lib-jfluid-heap.jar org.graalvm.visualvm.lib.jfluid.heap.HeapIndexer
+ * [-threads &lt;count&gt;] [-memory &lt;size&gt;[k|m|g]] [-segment &lt;index&gt;] &lt;heapdump.hprof&gt; ...</code>
+ */
+public final class HeapIndexer {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    private static final String THREADS_OPTION = "-threads";     // NOI18N
+    private static final String MEMORY_OPTION = "-memory";       // NOI18N
+    private static final String SEGMENT_OPTION = "-segment";     // NOI18N
+    private static final long MB = 1024 * 1024;
+
+    private static final String[] PHASES = {
+        "open",         // NOI18N
+        "instances",    // NOI18N
+        "references",   // NOI18N
+        "gcroots",      // NOI18N
+        "dominators",   // NOI18N
+        "retained"      // NOI18N
+    };
+
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final File heapDump;
+    private final int segment;
+    private final PrintStream out;
+    private HprofHeap heap;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    HeapIndexer(File dump, int seg, PrintStream output) {
+        heapDump = dump;
+        segment = seg;
+        out = output;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    public static void main(String[] args) {
+        List<File> dumps = new ArrayList<>();
+        int segment = 0;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+
+                if (THREADS_OPTION.equals(arg) && i + 1 < args.length) {
+                    int threads = Integer.parseInt(args[++i]);
+
+                    if (threads < 1) {
+                        throw new NumberFormatException(arg+" "+threads);
+                    }
+                    System.setProperty(ParallelScan.THREADS_PROPERTY, String.valueOf(threads));
+                } else if (MEMORY_OPTION.equals(arg) && i + 1 < args.length) {
+                    System.setProperty(ParallelScan.MEMORY_PROPERTY, String.valueOf(parseSize(args[++i])));
+                } else if (SEGMENT_OPTION.equals(arg) && i + 1 < args.length) {
+                    segment = Integer.parseInt(args[++i]);
+                } else if (arg.startsWith("-")) {   // NOI18N
+                    usage();
+                    System.exit(2);
+                } else {
+                    dumps.add(new File(arg));
+                }
+            }
+        } catch (NumberFormatException ex) {
+            System.err.println("Invalid number: "+ex.getMessage());
+            usage();
+            System.exit(2);
+        }
+        if (dumps.isEmpty()) {
+            usage();
+            System.exit(2);
+        }
+        int status = 0;
+        for (File dump : dumps) {
+            try {
+                new HeapIndexer(dump, segment, System.out).index();
+            } catch (IOException | RuntimeException ex) {
+                System.err.println("Indexing of "+dump+" failed.");
+                ex.printStackTrace(System.err);
+                status = 1;
+            }
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Runs all indexing phases. Phases completed by an earlier run are taken
+     * from the cache directory.
+     */
+    void index() throws IOException {
+        long budget = ParallelScan.getMemoryBudget();
+
+        out.println("Indexing "+heapDump+" ("+heapDump.length()/MB+" MB)");
+        out.println("Threads "+ParallelScan.getThreads()+", max heap "+Runtime.getRuntime().maxMemory()/MB+" MB, memory budget "+
+                (budget == 0 ? "not limited" : budget/MB+" MB"));
+        out.println(String.format(Locale.ENGLISH, "%-12s %12s %16s %12s", "phase", "time [ms]", "peak heap [MB]", "cache [MB]")); // NOI18N
+        long totalTime = 0;
+        long totalPeak = 0;
+
+        for (int phase = 0; phase < PHASES.length; phase++) {
+            resetPeakUsage();
+            long start = System.nanoTime();
+            runPhase(phase);
+            long time = (System.nanoTime() - start) / 1000000;
+            long peak = getPeakUsage();
+
+            if (phase == 0 && heap.cacheDirectory.isTemporary()) {
+                throw new IOException("Cannot create cache directory for "+heapDump);
+            }
+            totalTime += time;
+            totalPeak = Math.max(totalPeak, peak);
+            out.println(String.format(Locale.ENGLISH, "%-12s %12d %16d %12d", PHASES[phase], time, peak/MB, getCacheSize()/MB)); // NOI18N
+        }
+        out.println(String.format(Locale.ENGLISH, "%-12s %12d %16d %12d", "total", totalTime, totalPeak/MB, getCacheSize()/MB)); // NOI18N
+    }
+
+    HprofHeap getHeap() {
+        return heap;
+    }
+
+    private void runPhase(int phase) throws IOException {
+        switch (phase) {
+            case 0:
+                heap = (HprofHeap) HeapFactory.createHeap(heapDump, segment);
+                break;
+            case 1:
+                heap.computeInstances();
+                break;
+            case 2:
+                heap.computeReferences();
+                break;
+            case 3:
+                heap.computeNearestGCRoots();
+                break;
+            case 4:
+                heap.computeDominators();
+                break;
+            case 5:
+                heap.computeRetainedSizeByClass();
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid phase "+phase);  // NOI18N
+        }
+    }
+
+    private long getCacheSize() {
+        long size = 0;
+
+        for (File file : heap.cacheDirectory.listFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    static long parseSize(String size) {
+        String value = size.trim().toLowerCase(Locale.ENGLISH);
+        long unit = 1;
+
+        if (value.endsWith("k")) {          // NOI18N
+            unit = 1024;
+        } else if (value.endsWith("m")) {   // NOI18N
+            unit = MB;
+        } else if (value.endsWith("g")) {   // NOI18N
+            unit = 1024 * MB;
+        }
+        if (unit != 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+        long bytes = Long.parseLong(value) * unit;
+
+        if (bytes <= 0) {
+            throw new NumberFormatException(size);
+        }
+        return bytes;
+    }
+
+    private static void resetPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakUsage() {
+        long peak = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void usage() {
+        System.err.println("Usage: HeapIndexer [-threads <count>] [-memory <size>[k|m|g]] [-segment <index>] <heapdump.hprof> ...");
+        System.err.println("  -threads  number of threads used for indexing, defaults to number of processors");
+        System.err.println("  -memory   Java heap available for indexing buffers, not limited by default");
+        System.err.println("  -segment  heap dump to index in multi-dump file, defaults to 0");
+    }
+}
@@ -73,6 +73,10 @@ public final class HeapProgress {
         progress(value,0,value,endValue);
     }
 
+    static void progressUpdate(long startOffset, long value, long endOffset) {
+        progress(value, endOffset, startOffset);
+    }
+
     private static void progress(final long value, final long endOffset, final long startOffset) {
         ModelInfo info = progressThreadLocal.get();
         if (info != null) {
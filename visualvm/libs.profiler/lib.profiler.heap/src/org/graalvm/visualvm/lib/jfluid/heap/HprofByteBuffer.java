@@ -129,6 +129,10 @@ abstract class HprofByteBuffer {
 
     abstract byte get(long index);
 
+    /**
+     * Reads chars.length bytes starting at position. Memory mapped implementations
+     * do not lock, so that the method can be used by parallel scans.
+     */
     abstract void get(long position, byte[] chars);
 
     final void readHeader() throws IOException {
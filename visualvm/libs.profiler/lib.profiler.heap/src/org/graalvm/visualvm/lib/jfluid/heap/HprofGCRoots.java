@@ -41,7 +41,7 @@ class HprofGCRoots {
     final private Object threadSerialMapLock = new Object();
     private ThreadMap threadSerialMap;
     private int rootThreadsCount;
-    private Map<Long,Object> gcRoots;
+    private LongObjectHashMap<Object> gcRoots;
     final private Object gcRootLock = new Object();
     private List<GCRoot> gcRootsList;
 
@@ -52,7 +52,7 @@ class HprofGCRoots {
     List<GCRoot> getGCRoots() {
         synchronized (gcRootLock) {
             if (gcRoots == null) {
-                gcRoots = new HashMap<>(16384);
+                gcRoots = new LongObjectHashMap<>(16384);
                 gcRootsList = new ArrayList<>(16384);
                 computeGCRootsFor(heap.getHeapTagBound(HprofHeap.ROOT_UNKNOWN));
                 computeGCRootsFor(heap.getHeapTagBound(HprofHeap.ROOT_JNI_GLOBAL));
@@ -79,7 +79,7 @@ class HprofGCRoots {
         }
     }
     
-    Object getGCRoots(Long instanceId) {
+    Object getGCRoots(long instanceId) {
         synchronized (gcRootLock) {
             if (gcRoots == null) {
                 heap.getGCRoots();
@@ -132,7 +132,7 @@ class HprofGCRoots {
                     } else {
                         root = new HprofGCRoot(this, start);
                     }
-                    Long objectId = Long.valueOf(root.getInstanceId());
+                    long objectId = root.getInstanceId();
                     Object val = gcRoots.get(objectId);
                     if (val == null) {
                         gcRoots.put(objectId, root);
@@ -0,0 +1,571 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+
+/**
+ * Heap dump compressed by gzip. Heap dumps written by <code>jcmd GC.heap_dump -gz</code>
+ * consist of many small gzip members, which can be inflated independently.
+ * Offsets of the members are collected by one sequential pass over the file and
+ * stored in {@link CacheDirectory}, members are inflated when they are accessed
+ * and the recently used ones are kept in a bounded cache. Files with members
+ * bigger than 16MB, typically compressed by gzip tool in one member, cannot
+ * be accessed randomly, they are inflated to the cache directory.
+ */
+class HprofGZipBuffer extends HprofByteBuffer {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    static final String CACHE_SIZE_PROPERTY = "org.graalvm.visualvm.lib.jfluid.heap.gzipcache";   // NOI18N
+    static final String MAX_BLOCK_SIZE_PROPERTY = "org.graalvm.visualvm.lib.jfluid.heap.gzipblock";   // NOI18N
+    private static final int DEFAULT_MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+    private static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+    private static final String INDEX_NAME = "gzip";   // NOI18N
+    private static final String INDEX_ID = "NBGZIX";    // NOI18N
+    private static final int INDEX_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final FileChannel channel;
+    // member i has deflated data from dataStarts[i] to dataEnds[i] and
+    // inflated data from offsets[i] to offsets[i+1]
+    private final long[] dataStarts;
+    private final long[] dataEnds;
+    private final long[] offsets;
+    private final Map<Integer,Block> blocks;
+    private final int maxBlocks;
+    private volatile Block lastBlock;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    private HprofGZipBuffer(File dumpFile, Index index) throws IOException {
+        channel = new RandomAccessFile(dumpFile, "r").getChannel();    // NOI18N
+        dataStarts = index.dataStarts;
+        dataEnds = index.dataEnds;
+        offsets = index.offsets;
+        length = offsets[offsets.length - 1];
+        long cacheSize = Long.getLong(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE).longValue();
+        maxBlocks = (int) Math.max(2, Math.min(Integer.MAX_VALUE, cacheSize / Math.max(1, index.maxBlockSize)));
+        blocks = new LinkedHashMap<>(16, 0.75f, true);
+        readHeader();
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    static boolean isGZip(File dumpFile) throws IOException {
+        try (InputStream is = new FileInputStream(dumpFile)) {
+            int b1 = is.read();
+            int b2 = is.read();
+
+            return b2 != -1 && (b1 | (b2 << 8)) == GZIP_MAGIC;
+        }
+    }
+
+    /**
+     * Creates buffer with the member index stored in the cache directory, if the file
+     * consists of small members, otherwise inflates the file to the cache directory.
+     */
+    static HprofByteBuffer createGZipBuffer(File dumpFile, CacheDirectory cacheDir) throws IOException {
+        Index index = Index.read(cacheDir, dumpFile);
+
+        if (index == null) {
+            index = Index.create(dumpFile, Integer.getInteger(MAX_BLOCK_SIZE_PROPERTY, DEFAULT_MAX_BLOCK_SIZE).intValue());
+            if (index != null) {
+                index.write(cacheDir, dumpFile);
+            }
+        }
+        if (index != null) {
+            return new HprofGZipBuffer(dumpFile, index);
+        }
+        return HprofByteBuffer.createHprofByteBuffer(inflate(dumpFile, cacheDir));
+    }
+
+    private static File inflate(File dumpFile, CacheDirectory cacheDir) throws IOException {
+        File inflatedFile = cacheDir.getInflatedDumpFile();
+
+        if (inflatedFile.length() > 0 && inflatedFile.lastModified() >= dumpFile.lastModified()) {
+            return inflatedFile;
+        }
+        File tmpFile = new File(inflatedFile.getPath() + ".tmp");    // NOI18N
+
+        try {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(dumpFile), BUFFER_SIZE);
+                 OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+
+                for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            try {
+                Files.move(tmpFile.toPath(), inflatedFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmpFile.toPath(), inflatedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            tmpFile.delete();
+            throw ex;
+        }
+        return inflatedFile;
+    }
+
+    char getChar(long index) {
+        return (char) getShort(index);
+    }
+
+    double getDouble(long index) {
+        return Double.longBitsToDouble(getLong(index));
+    }
+
+    float getFloat(long index) {
+        return Float.intBitsToFloat(getInt(index));
+    }
+
+    int getInt(long index) {
+        Block block = getBlock(index);
+        int i = (int) (index - block.start);
+
+        if (i + 4 > block.data.length) {
+            return (int) getBytes(index, 4);
+        }
+        byte[] data = block.data;
+
+        return ((data[i] & 0xFF) << 24) | ((data[i + 1] & 0xFF) << 16) | ((data[i + 2] & 0xFF) << 8) | (data[i + 3] & 0xFF);
+    }
+
+    long getLong(long index) {
+        Block block = getBlock(index);
+        int i = (int) (index - block.start);
+
+        if (i + 8 > block.data.length) {
+            return getBytes(index, 8);
+        }
+        byte[] data = block.data;
+        long value = 0;
+
+        for (int j = 0; j < 8; j++) {
+            value = (value << 8) | (data[i + j] & 0xFF);
+        }
+        return value;
+    }
+
+    short getShort(long index) {
+        Block block = getBlock(index);
+        int i = (int) (index - block.start);
+
+        if (i + 2 > block.data.length) {
+            return (short) getBytes(index, 2);
+        }
+        return (short) (((block.data[i] & 0xFF) << 8) | (block.data[i + 1] & 0xFF));
+    }
+
+    byte get(long index) {
+        Block block = getBlock(index);
+
+        return block.data[(int) (index - block.start)];
+    }
+
+    void get(long position, byte[] chars) {
+        int copied = 0;
+
+        while (copied < chars.length) {
+            long index = position + copied;
+            Block block = getBlock(index);
+            int i = (int) (index - block.start);
+            int count = Math.min(chars.length - copied, block.data.length - i);
+
+            System.arraycopy(block.data, i, chars, copied, count);
+            copied += count;
+        }
+    }
+
+    /**
+     * Big endian value spanning two members.
+     */
+    private long getBytes(long index, int size) {
+        long value = 0;
+
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (get(index + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private Block getBlock(long index) {
+        Block block = lastBlock;
+
+        if (block != null && index >= block.start && index < block.start + block.data.length) {
+            return block;
+        }
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " length " + length); // NOI18N
+        }
+        int member = getMember(index);
+
+        synchronized (blocks) {
+            block = blocks.get(member);
+        }
+        if (block == null) {
+            // members are inflated outside of the lock, so that parallel readers do not wait for each other
+            block = new Block(offsets[member], inflateMember(member));
+            synchronized (blocks) {
+                blocks.put(member, block);
+                if (blocks.size() > maxBlocks) {
+                    blocks.remove(blocks.keySet().iterator().next());
+                }
+            }
+        }
+        lastBlock = block;
+        return block;
+    }
+
+    /**
+     * @return the last non-empty member starting at or before index
+     */
+    private int getMember(long index) {
+        int low = 0;
+        int high = offsets.length - 2;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (offsets[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private byte[] inflateMember(int member) {
+        ByteBuffer deflated = ByteBuffer.allocate((int) (dataEnds[member] - dataStarts[member]));
+        byte[] data = new byte[(int) (offsets[member + 1] - offsets[member])];
+        Inflater inflater = new Inflater(true);
+
+        try {
+            for (long position = dataStarts[member]; deflated.hasRemaining(); ) {
+                int read = channel.read(deflated, position + deflated.position());
+
+                if (read == -1) {
+                    throw new EOFException();
+                }
+            }
+            inflater.setInput(deflated.array());
+            for (int inflated = 0; inflated < data.length; ) {
+                int count = inflater.inflate(data, inflated, data.length - inflated);
+
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new EOFException();
+                }
+                inflated += count;
+            }
+        } catch (IOException | DataFormatException ex) {
+            throw new IllegalStateException("Cannot inflate gzip member " + member, ex);  // NOI18N
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------------------------------------
+
+    private static class Block {
+
+        final long start;
+        final byte[] data;
+
+        Block(long s, byte[] d) {
+            start = s;
+            data = d;
+        }
+    }
+
+    /**
+     * Positions of gzip members in the compressed file and in the inflated heap dump.
+     */
+    private static class Index {
+
+        private final long[] dataStarts;
+        private final long[] dataEnds;
+        private final long[] offsets;
+        private final int maxBlockSize;
+
+        private Index(long[] starts, long[] ends, long[] offs) {
+            dataStarts = starts;
+            dataEnds = ends;
+            offsets = offs;
+            long max = 0;
+            for (int i = 0; i < starts.length; i++) {
+                max = Math.max(max, offsets[i + 1] - offsets[i]);
+            }
+            maxBlockSize = (int) max;
+        }
+
+        /**
+         * Inflates the whole file once to find members.
+         * @return index or <code>null</code> if the file has a member bigger than maxBlockSize
+         */
+        private static Index create(File dumpFile, int maxBlockSize) throws IOException {
+            LongList starts = new LongList(1024);
+            LongList ends = new LongList(1024);
+            LongList offsets = new LongList(1024);
+            byte[] out = new byte[BUFFER_SIZE];
+            long offset = 0;
+            Inflater inflater = new Inflater(true);
+
+            try (Input in = new Input(dumpFile)) {
+                while (in.readHeader()) {
+                    long memberSize = 0;
+
+                    starts.add(in.position());
+                    offsets.add(offset);
+                    inflater.reset();
+                    while (!inflater.finished()) {
+                        if (inflater.needsInput()) {
+                            in.setInput(inflater);
+                        }
+                        int count = inflater.inflate(out);
+
+                        memberSize += count;
+                        if (memberSize > maxBlockSize) {
+                            return null;
+                        }
+                    }
+                    in.skipInput(inflater.getRemaining());
+                    ends.add(in.position());
+                    in.readInt();   // CRC32
+                    if ((in.readInt() & 0xFFFFFFFFL) != (memberSize & 0xFFFFFFFFL)) {
+                        throw new IOException("Invalid size of gzip member at " + starts.get(starts.size() - 1)); // NOI18N
+                    }
+                    offset += memberSize;
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException(ex.getLocalizedMessage(), ex);
+            } finally {
+                inflater.end();
+            }
+            offsets.add(offset);
+            if (starts.size() == 0) {
+                throw new IOException("No gzip member in " + dumpFile); // NOI18N
+            }
+            return new Index(starts.toArray(), ends.toArray(), offsets.toArray());
+        }
+
+        private static Index read(CacheDirectory cacheDir, File dumpFile) {
+            if (cacheDir.isTemporary()) {
+                return null;
+            }
+            File indexFile = cacheDir.getIndexFile(INDEX_NAME);
+
+            if (!indexFile.isFile()) {
+                return null;
+            }
+            try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), BUFFER_SIZE))) {
+                if (!INDEX_ID.equals(dis.readUTF()) || dis.readInt() != INDEX_VERSION
+                        || dis.readLong() != dumpFile.length() || dis.readLong() != dumpFile.lastModified()) {
+                    return null;
+                }
+                int size = dis.readInt();
+                long[] starts = new long[size];
+                long[] ends = new long[size];
+                long[] offsets = new long[size + 1];
+
+                for (int i = 0; i < size; i++) {
+                    starts[i] = dis.readLong();
+                    ends[i] = dis.readLong();
+                    offsets[i] = dis.readLong();
+                }
+                offsets[size] = dis.readLong();
+                return new Index(starts, ends, offsets);
+            } catch (IOException ex) {
+                ex.printStackTrace(System.err);
+                return null;
+            }
+        }
+
+        private void write(CacheDirectory cacheDir, File dumpFile) {
+            if (cacheDir.isTemporary()) {
+                return;
+            }
+            File indexFile = cacheDir.getIndexFile(INDEX_NAME);
+            File tmpFile = new File(indexFile.getPath() + ".tmp");   // NOI18N
+
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), BUFFER_SIZE))) {
+                    out.writeUTF(INDEX_ID);
+                    out.writeInt(INDEX_VERSION);
+                    out.writeLong(dumpFile.length());
+                    out.writeLong(dumpFile.lastModified());
+                    out.writeInt(dataStarts.length);
+                    for (int i = 0; i < dataStarts.length; i++) {
+                        out.writeLong(dataStarts[i]);
+                        out.writeLong(dataEnds[i]);
+                        out.writeLong(offsets[i]);
+                    }
+                    out.writeLong(offsets[dataStarts.length]);
+                }
+                try {
+                    Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException ex) {
+                tmpFile.delete();
+                ex.printStackTrace(System.err);
+            }
+        }
+    }
+
+    /**
+     * Sequential reader of the compressed file, which knows file position of the next unread byte.
+     */
+    private static class Input implements AutoCloseable {
+
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private long bufferStart;
+        private int bufferLength;
+        private int pos;
+
+        Input(File file) throws IOException {
+            in = new FileInputStream(file);
+        }
+
+        long position() {
+            return bufferStart + pos;
+        }
+
+        /**
+         * Reads gzip member header.
+         * @return <code>false</code> at the end of file or if there is no other member
+         */
+        boolean readHeader() throws IOException {
+            if (!fill()) {
+                return false;
+            }
+            int magic = readByte() | (readByte() << 8);
+
+            if (magic != GZIP_MAGIC) {
+                // trailing data after the last member
+                return false;
+            }
+            if (readByte() != 8) {
+                throw new IOException("Unsupported gzip compression method"); // NOI18N
+            }
+            int flags = readByte();
+
+            skip(6);    // MTIME, XFL, OS
+            if ((flags & FEXTRA) != 0) {
+                skip(readByte() | (readByte() << 8));
+            }
+            if ((flags & FNAME) != 0) {
+                while (readByte() != 0);
+            }
+            if ((flags & FCOMMENT) != 0) {
+                while (readByte() != 0);
+            }
+            if ((flags & FHCRC) != 0) {
+                skip(2);
+            }
+            return true;
+        }
+
+        void setInput(Inflater inflater) throws IOException {
+            if (!fill()) {
+                throw new EOFException();
+            }
+            inflater.setInput(buffer, pos, bufferLength - pos);
+            pos = bufferLength;
+        }
+
+        /**
+         * Returns bytes passed to inflater, which were not used.
+         */
+        void skipInput(int remaining) {
+            pos -= remaining;
+        }
+
+        int readInt() throws IOException {
+            return readByte() | (readByte() << 8) | (readByte() << 16) | (readByte() << 24);
+        }
+
+        private int readByte() throws IOException {
+            if (!fill()) {
+                throw new EOFException();
+            }
+            return buffer[pos++] & 0xFF;
+        }
+
+        private void skip(int bytes) throws IOException {
+            for (int i = 0; i < bytes; i++) {
+                readByte();
+            }
+        }
+
+        private boolean fill() throws IOException {
+            if (pos < bufferLength) {
+                return true;
+            }
+            bufferStart += bufferLength;
+            bufferLength = Math.max(0, in.read(buffer));
+            pos = 0;
+            return bufferLength > 0;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
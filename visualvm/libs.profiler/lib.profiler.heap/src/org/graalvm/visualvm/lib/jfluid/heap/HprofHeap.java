@@ -25,21 +25,23 @@
 
 package org.graalvm.visualvm.lib.jfluid.heap;
 
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.function.Consumer;
 
 /**
  *
@@ -103,8 +105,11 @@ class HprofHeap implements Heap {
     private static final boolean DEBUG = false;
 
     private static final String SNAPSHOT_ID = "NBPHD";
-    private static final int SNAPSHOT_VERSION  = 5;
+    private static final int SNAPSHOT_VERSION  = 9;
     private static final String OS_PROP = "os.name";
+    // minimal number of instances of a class, for which size index is kept in the cache directory
+    static final String SIZE_INDEX_PROPERTY = "org.graalvm.visualvm.lib.jfluid.heap.sizeindex";   // NOI18N
+    private static final int DEFAULT_SIZE_INDEX_INSTANCES = 10000;
     
     //~ Instance fields ----------------------------------------------------------------------------------------------------------
 
@@ -114,11 +119,14 @@ class HprofHeap implements Heap {
     final HprofGCRoots gcRoots;
     private ComputedSummary computedSummary;
     private final Object computedSummaryLock = new Object();
+    private ClassHistogram classHistogram;
+    private final Object classHistogramLock = new Object();
     private DominatorTree domTree;
     private TagBounds allInstanceDumpBounds;
     private TagBounds heapDumpSegment;
     private TagBounds[] heapTagBounds;
     private TagBounds[] tagBounds = new TagBounds[0xff];
+    private long[] heapDumpChunks;
     private boolean instancesCountComputed;
     private final Object instancesCountLock = new Object();
     private boolean referencesComputed;
@@ -126,9 +134,10 @@ class HprofHeap implements Heap {
     private boolean retainedSizeComputed;
     private final Object retainedSizeLock = new Object();
     private boolean retainedSizeByClassComputed;
-    private final Object retainedSizeByClassLock = new Object();
     private int idMapSize;
     private int segment;
+    // secondary indexes by name, guarded by itself
+    private final Map<String,SecondaryIndex> secondaryIndexes = new HashMap<>();
 
     // for serialization
     File heapDumpFile;
@@ -172,20 +181,30 @@ class HprofHeap implements Heap {
     }
 
     public List<Instance> getBiggestObjectsByRetainedSize(int number) {
-        long[] ids;
-        List<Instance> bigObjects = new ArrayList<>(number);
-        
+        return getBiggestObjectsByRetainedSize(number, null);
+    }
+
+    public List<Instance> getBiggestObjectsByRetainedSize(int number, Consumer<List<Instance>> partialResults) {
+        Consumer<long[]> partialIds = null;
+
         computeRetainedSize();
-        ids = idToOffsetMap.getBiggestObjectsByRetainedSize(number);
+        if (partialResults != null) {
+            partialIds = ids -> partialResults.accept(getInstancesByIDs(ids));
+        }
+        return getInstancesByIDs(idToOffsetMap.getBiggestObjectsByRetainedSize(number, ParallelScan.getThreads(this), partialIds));
+    }
+
+    private List<Instance> getInstancesByIDs(long[] ids) {
+        List<Instance> instances = new ArrayList<>(ids.length);
+
         for (long id : ids) {
-            bigObjects.add(getInstanceByID(id));
+            instances.add(getInstanceByID(id));
         }
-        return bigObjects;
+        return instances;
     }
     
     public Collection<GCRoot> getGCRoots(Instance instance) {
-       Long instanceId = Long.valueOf(instance.getInstanceId());
-       Object gcroot = gcRoots.getGCRoots(instanceId);
+       Object gcroot = gcRoots.getGCRoots(instance.getInstanceId());
        if (gcroot == null) {
            return Collections.emptyList();
        }
@@ -208,12 +227,12 @@ class HprofHeap implements Heap {
         }
 
         computeInstances();
-        LongMap.Entry entry = idToOffsetMap.get(instanceID);
+        long slot = idToOffsetMap.getSlot(instanceID);
 
-        if (entry == null) {
+        if (slot == -1) {
             return null;
         }
-        return getInstanceByOffset(new long[] {entry.getOffset()});
+        return getInstanceByOffset(new long[] {idToOffsetMap.getOffsetAt(slot)});
     }
 
     public JavaClass getJavaClassByID(long javaclassId) {
@@ -270,6 +289,21 @@ class HprofHeap implements Heap {
         return new InstancesIterator();
     }
     
+    public ClassHistogram getClassHistogram() {
+        synchronized (classHistogramLock) {
+            if (classHistogram == null) {
+                List<JavaClass> classes = getAllClasses();
+
+                if (instancesCountComputed) {
+                    classHistogram = new ClassHistogram(classes);
+                } else {
+                    classHistogram = computeClassHistogram(classes);
+                }
+            }
+            return classHistogram;
+        }
+    }
+
     public HeapSummary getSummary() {
         TagBounds summaryBound = tagBounds[HEAP_SUMMARY];
 
@@ -325,20 +359,187 @@ class HprofHeap implements Heap {
         return retainedSizeByClassComputed;
     }
 
+    public List<Instance> getStringInstances(String value) {
+        JavaClass stringClass = getJavaClassByName(String.class.getName());
+
+        if (stringClass == null) {
+            return Collections.emptyList();
+        }
+        SecondaryIndex index = getStringIndex(stringClass);
+        char[] chars = value.toCharArray();
+        long hash = SecondaryIndex.getStringHash(chars);
+        List<Instance> strings = new ArrayList<>();
+
+        for (long offset : index.getOffsets(hash, hash)) {
+            Instance string = getInstanceByOffset(new long[] {offset});
+            // different strings can have the same hash
+            if (Arrays.equals(chars, HprofProxy.getStringChars(string))) {
+                strings.add(string);
+            }
+        }
+        return strings;
+    }
+
+    public void createFieldIndex(JavaClass jcls, String fieldName) {
+        ClassDump classDump = (ClassDump) jcls;
+        int fieldIndex = getPrimitiveFieldIndex(classDump, fieldName);
+        String name = SecondaryIndex.getFieldIndexName(jcls, fieldName);
+
+        synchronized (secondaryIndexes) {
+            if (getSecondaryIndex(name) == null) {
+                secondaryIndexes.put(name, SecondaryIndex.createFieldIndex(classDump, fieldIndex, cacheDirectory, name, dumpBuffer.getTime()));
+            }
+        }
+    }
+
+    public boolean hasFieldIndex(JavaClass jcls, String fieldName) {
+        return getSecondaryIndex(SecondaryIndex.getFieldIndexName(jcls, fieldName)) != null;
+    }
+
+    public List<Instance> getInstancesByFieldValue(JavaClass jcls, String fieldName, Object min, Object max) {
+        ClassDump classDump = (ClassDump) jcls;
+        int fieldIndex = getPrimitiveFieldIndex(classDump, fieldName);
+        InstanceFieldTable table = classDump.getInstanceFieldTable();
+        byte type = table.types[fieldIndex];
+        long minKey = SecondaryIndex.getBoundKey(type, min, true);
+        long maxKey = SecondaryIndex.getBoundKey(type, max, false);
+        SecondaryIndex index = getSecondaryIndex(SecondaryIndex.getFieldIndexName(jcls, fieldName));
+        List<Instance> instances = new ArrayList<>();
+
+        if (index != null) {
+            for (long offset : index.getOffsets(minKey, maxKey)) {
+                instances.add(getInstanceByOffset(new long[] {offset}, classDump, classDump.getJavaClassId()));
+            }
+        } else {
+            Iterator<Instance> instancesIt = classDump.getInstancesIterator();
+
+            while (instancesIt.hasNext()) {
+                InstanceDump instance = (InstanceDump) instancesIt.next();
+                long key = SecondaryIndex.getKey(dumpBuffer, instance.getFieldValuesOffset() + table.offsets[fieldIndex], type);
+
+                if (key >= minKey && key <= maxKey) {
+                    instances.add(instance);
+                }
+            }
+        }
+        return instances;
+    }
+
+    public List<Instance> getInstancesBySize(JavaClass jcls, boolean retained, boolean ascending, int fromIndex, int toIndex) {
+        ClassDump classDump = (ClassDump) jcls;
+        // small classes are sorted in memory, so browsing them does not leave index files in the cache directory
+        boolean indexed = classDump.getInstancesCount() >= Integer.getInteger(SIZE_INDEX_PROPERTY, DEFAULT_SIZE_INDEX_INSTANCES).intValue();
+        SecondaryIndex index = indexed ? getSizeIndex(classDump, retained) : null;
+        long[] sortedOffsets = indexed ? null : SecondaryIndex.sortBySize(classDump, retained);
+        int size = indexed ? index.size() : sortedOffsets.length;
+        int from = Math.max(fromIndex, 0);
+        int to = Math.min(toIndex, size);
+        List<Instance> instances = new ArrayList<>(Math.max(to - from, 0));
+
+        if (from >= to) {
+            return instances;
+        }
+        int pageFrom = ascending ? size - to : from;
+        int pageTo = ascending ? size - from : to;
+        // only the entries of the page are read from the index
+        long[] offsets = indexed ? index.getOffsets(pageFrom, pageTo) : Arrays.copyOfRange(sortedOffsets, pageFrom, pageTo);
+
+        for (int i = 0; i < offsets.length; i++) {
+            long offset = offsets[ascending ? offsets.length - 1 - i : i];
+
+            instances.add(getInstanceByOffset(new long[] {offset}, classDump, classDump.getJavaClassId()));
+        }
+        return instances;
+    }
+
+    private SecondaryIndex getSizeIndex(ClassDump classDump, boolean retained) {
+        String name = SecondaryIndex.getSizeIndexName(classDump, retained);
+
+        if (retained) {
+            // compute retained sizes before locking the indexes
+            computeRetainedSize();
+        }
+        synchronized (secondaryIndexes) {
+            SecondaryIndex index = getSecondaryIndex(name);
+
+            if (index == null) {
+                index = SecondaryIndex.createSizeIndex(classDump, retained, cacheDirectory, dumpBuffer.getTime());
+                secondaryIndexes.put(name, index);
+            }
+            return index;
+        }
+    }
+
+    private SecondaryIndex getStringIndex(JavaClass stringClass) {
+        synchronized (secondaryIndexes) {
+            SecondaryIndex index = getSecondaryIndex(SecondaryIndex.STRINGS);
+
+            if (index == null) {
+                index = SecondaryIndex.createStringIndex(stringClass, cacheDirectory, dumpBuffer.getTime());
+                secondaryIndexes.put(SecondaryIndex.STRINGS, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * @return index created in this session or read from the cache directory, <code>null</code> if it does not exist
+     */
+    private SecondaryIndex getSecondaryIndex(String name) {
+        synchronized (secondaryIndexes) {
+            SecondaryIndex index = secondaryIndexes.get(name);
+
+            if (index == null) {
+                index = SecondaryIndex.read(cacheDirectory, name, dumpBuffer.getTime());
+                if (index != null) {
+                    secondaryIndexes.put(name, index);
+                }
+            }
+            return index;
+        }
+    }
+
+    private static int getPrimitiveFieldIndex(ClassDump classDump, String fieldName) {
+        InstanceFieldTable table = classDump.getInstanceFieldTable();
+        int fieldIndex = table.lastIndexOf(fieldName);
+
+        if (fieldIndex == -1 || table.types[fieldIndex] == OBJECT) {
+            throw new IllegalArgumentException("No primitive field "+fieldName+" in "+classDump.getName()); // NOI18N
+        }
+        return fieldIndex;
+    }
+
     //---- Serialization support
-    void writeToFile() {
+    void writeCheckpoint(int phase) {
+        File[] obsoleteFiles = new File[0];
+
+        if (phase > HeapCheckpoint.REFERENCES) {
+            // reference list replaced by compact references is used only by the checkpoint of instances,
+            // which is kept until nearest GC roots are computed
+            obsoleteFiles = idToOffsetMap.releaseObsoleteFiles();
+        }
         if (!cacheDirectory.isTemporary()) {
             try {
-                DataOutputStream out;
-                File outFile = cacheDirectory.getHeapDumpAuxFile();
-                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outFile), 32768));
+                ByteArrayOutputStream state = new ByteArrayOutputStream(32768);
+                DataOutputStream out = new DataOutputStream(state);
+                File[] modifiedFiles = new File[0];
+
                 writeToStream(out);
                 out.close();
+                if (phase == HeapCheckpoint.REFERENCES) {
+                    // nearest GC root computation modifies references in place
+                    modifiedFiles = idToOffsetMap.getFiles();
+                }
+                HeapCheckpoint.write(cacheDirectory, phase, state.toByteArray(), modifiedFiles);
                 cacheDirectory.setDirty(false);
             } catch (IOException ex) {
                 ex.printStackTrace(System.err);
+                return;
             }
         }
+        for (File file : obsoleteFiles) {
+            file.delete();
+        }
     }
     
     void writeToStream(DataOutputStream out) throws IOException {
@@ -352,6 +553,10 @@ class HprofHeap implements Heap {
         heapDumpSegment.writeToStream(out);
         TagBounds.writeToStream(heapTagBounds, out);
         TagBounds.writeToStream(tagBounds, out);
+        out.writeInt(heapDumpChunks.length);
+        for (long chunk : heapDumpChunks) {
+            out.writeLong(chunk);
+        }
         out.writeBoolean(instancesCountComputed);
         out.writeBoolean(referencesComputed);
         out.writeBoolean(retainedSizeComputed);
@@ -365,10 +570,7 @@ class HprofHeap implements Heap {
         }
     }
 
-    HprofHeap(DataInputStream dis, CacheDirectory cacheDir) throws IOException {
-        if (cacheDir.isDirty()) {
-            throw new IOException("Dirty cache "+cacheDir);
-        }
+    HprofHeap(DataInputStream dis, CacheDirectory cacheDir, boolean incompletePhase) throws IOException {
         String id = dis.readUTF();
         if (!SNAPSHOT_ID.equals(id)) {
             throw new IOException("Invalid HPROF dump id "+id);
@@ -379,7 +581,7 @@ class HprofHeap implements Heap {
         }
         heapDumpFile = cacheDir.getHeapFile(dis.readUTF());
         cacheDirectory = cacheDir;
-        dumpBuffer = HprofByteBuffer.createHprofByteBuffer(heapDumpFile);
+        dumpBuffer = cacheDir.createHprofByteBuffer(heapDumpFile);
         long time = dis.readLong();
         if (time != dumpBuffer.getTime()) {
             throw new IOException("HPROF time mismatch. Cached "+time+" from heap dump "+dumpBuffer.getTime());
@@ -394,6 +596,10 @@ class HprofHeap implements Heap {
         heapTagBounds = new TagBounds[0x100];
         TagBounds.readFromStream(dis, this, heapTagBounds);
         TagBounds.readFromStream(dis, this, tagBounds);        
+        heapDumpChunks = new long[dis.readInt()];
+        for (int i = 0; i < heapDumpChunks.length; i++) {
+            heapDumpChunks[i] = dis.readLong();
+        }
         instancesCountComputed = dis.readBoolean();
         referencesComputed = dis.readBoolean();
         retainedSizeComputed = dis.readBoolean();
@@ -401,6 +607,10 @@ class HprofHeap implements Heap {
         idMapSize = dis.readInt();
         segment = dis.readInt();
         idToOffsetMap = new LongMap(dis, cacheDirectory);
+        if (incompletePhase && !referencesComputed) {
+            // references are written directly to idToOffsetMap
+            idToOffsetMap.clearReferences();
+        }
         if (dis.readBoolean()) {
             domTree = new DominatorTree(this, dis);
         }
@@ -434,7 +644,7 @@ class HprofHeap implements Heap {
     
     long getRetainedSize(Instance instance) {
         computeRetainedSize();
-        return idToOffsetMap.get(instance.getInstanceId()).getRetainedSize();
+        return idToOffsetMap.getRetainedSizeAt(idToOffsetMap.getSlot(instance.getInstanceId()));
     }
 
     int getValueSize(final byte type) {
@@ -517,6 +727,33 @@ class HprofHeap implements Heap {
         return null;
     }
 
+    /**
+     * @return record aligned chunks of instance dumps from startOffset to the end of instance dumps
+     */
+    long[] getInstanceDumpChunks(long startOffset) {
+        return ParallelScan.getChunks(heapDumpChunks, startOffset, allInstanceDumpBounds.endOffset);
+    }
+
+    /**
+     * Same as {@link #getInstanceByOffset(long[])}, but resolves the class of the instance
+     * in <code>classIdToClassMap</code>, so it does not lock the class dump segment.
+     */
+    Instance getInstanceByOffset(long[] offset, LongObjectHashMap<JavaClass> classIdToClassMap) {
+        long start = offset[0];
+        int tag = dumpBuffer.get(start) & 0xFF;
+        ClassDump classDump;
+
+        if (tag == CLASS_DUMP) {
+            classDump = (ClassDump) classIdToClassMap.get(dumpBuffer.getID(start + 1));
+        } else {
+            classDump = getInstanceClassDump(classIdToClassMap, tag, start);
+        }
+        if (classDump == null) {
+            return null;
+        }
+        return getInstanceByOffset(offset, classDump, -1);
+    }
+
     void computeInstances() {
         synchronized (instancesCountLock) {
         if (instancesCountComputed) {
@@ -528,15 +765,21 @@ class HprofHeap implements Heap {
         ClassDumpSegment classDumpBounds = getClassDumpSegment();
         int idSize = dumpBuffer.getIDSize();
         long[] offset = new long[] { allInstanceDumpBounds.startOffset };
-        Map<Long,JavaClass> classIdToClassMap = classDumpBounds.getClassIdToClassMap();
+        LongObjectHashMap<JavaClass> classIdToClassMap = classDumpBounds.getClassIdToClassMap();
+        int threads = ParallelScan.getThreads(this);
+        long[] chunks = ParallelScan.getChunks(heapDumpChunks, allInstanceDumpBounds.startOffset, allInstanceDumpBounds.endOffset);
 
+        if (threads > 1 && chunks.length > 2) {
+            computeInstances(classIdToClassMap, chunks, threads);
+            offset[0] = allInstanceDumpBounds.endOffset;
+        }
         for (long counter = 0; offset[0] < allInstanceDumpBounds.endOffset; counter++) {
             int classIdOffset = 0;
             int instanceIdOffset = 0;
             ClassDump classDump = null;
             long start = offset[0];
             int tag = readDumpTag(offset);
-            LongMap.Entry instanceEntry = null;
+            long instanceSlot = -1;
 
             if (tag == INSTANCE_DUMP) {
                 instanceIdOffset = 1;
@@ -552,58 +795,174 @@ class HprofHeap implements Heap {
 
             if (instanceIdOffset != 0) {
                 long instanceId = dumpBuffer.getID(start + instanceIdOffset);
-                instanceEntry = idToOffsetMap.put(instanceId, start);
+                instanceSlot = idToOffsetMap.putSlot(instanceId, start);
             }
 
             if (classIdOffset != 0) {
                 long classId = dumpBuffer.getID(start + 1 + classIdOffset);
-                classDump = (ClassDump) classIdToClassMap.get(new Long(classId));
+                classDump = (ClassDump) classIdToClassMap.get(classId);
             }
 
             if (classDump != null) {
                 classDump.registerInstance(start);
-                instanceEntry.setIndex(classDump.getInstancesCount());
+                idToOffsetMap.setIndexAt(instanceSlot, classDump.getInstancesCount());
                 classDumpBounds.addInstanceSize(classDump, tag, start);
             }
             HeapProgress.progress(counter,allInstanceDumpBounds.startOffset,start,allInstanceDumpBounds.endOffset);
         }
         instancesCountComputed = true;
-        writeToFile();
+        writeCheckpoint(HeapCheckpoint.INSTANCES);
+        }
+        HeapProgress.progressFinish();
+    }
+
+    private void computeInstances(final LongObjectHashMap<JavaClass> classIdToClassMap, long[] chunks, int threads) {
+        final InstancesChunk[] instancesChunks = new InstancesChunk[chunks.length - 1];
+
+        // count instances of every class in each chunk
+        HeapProgress.progressStart();
+        ParallelScan.run(chunks, threads, (chunk, start, end) -> {
+            instancesChunks[chunk] = new InstancesChunk(classIdToClassMap, start, end);
+        });
+        HeapProgress.progressFinish();
+        // register chunks in order, instance numbers are the same as if the dump was scanned sequentially
+        for (InstancesChunk instancesChunk : instancesChunks) {
+            instancesChunk.registerInstances();
         }
+        HeapProgress.progressStart();
+        ParallelScan.run(chunks, threads, (chunk, start, end) -> {
+            instancesChunks[chunk].putInstances(classIdToClassMap, end);
+            instancesChunks[chunk] = null;
+        });
         HeapProgress.progressFinish();
     }
 
+    /**
+     * Counts instances of classes without building the id to offset map.
+     * Instances of classes are counted in chunks, counts of chunks are merged
+     * as soon as a chunk is processed, so that only one chunk per thread is kept in memory.
+     */
+    private ClassHistogram computeClassHistogram(List<JavaClass> classes) {
+        final ClassDumpSegment classDumpBounds = getClassDumpSegment();
+        final int idSize = dumpBuffer.getIDSize();
+        final int classesCount = classes.size();
+        final LongHashMap classIndexes = new LongHashMap(classesCount);
+        final int[] counts = new int[classesCount];
+        final long[][] arraySizes = new long[classesCount][];
+        long[] sizes = new long[classesCount];
+        int threads = ParallelScan.getThreads(this);
+        long[] chunks = ParallelScan.getChunks(heapDumpChunks, allInstanceDumpBounds.startOffset, allInstanceDumpBounds.endOffset);
+
+        for (int i = 0; i < classesCount; i++) {
+            classIndexes.put(classes.get(i).getJavaClassId(), i);
+        }
+        HeapProgress.progressStart();
+        try {
+            ParallelScan.run(chunks, threads, (chunk, start, end) -> {
+                int[] chunkCounts = new int[classesCount];
+                long[][] chunkArraySizes = new long[classesCount][];
+                long[] offset = new long[] { start };
+
+                while (offset[0] < end) {
+                    long instanceStart = offset[0];
+                    int tag = readDumpTag(offset);
+                    long classId;
+
+                    if (tag == INSTANCE_DUMP) {
+                        classId = dumpBuffer.getID(instanceStart + 1 + idSize + 4);
+                    } else if (tag == OBJECT_ARRAY_DUMP) {
+                        classId = dumpBuffer.getID(instanceStart + 1 + idSize + 4 + 4);
+                    } else if (tag == PRIMITIVE_ARRAY_DUMP) {
+                        byte type = dumpBuffer.get(instanceStart + 1 + idSize + 4 + 4);
+                        classId = classDumpBounds.getPrimitiveArrayClass(type).getJavaClassId();
+                    } else {
+                        continue;
+                    }
+                    int index = (int) classIndexes.get(classId);
+
+                    if (index == -1) {
+                        continue;
+                    }
+                    chunkCounts[index]++;
+                    if (tag != INSTANCE_DUMP) {
+                        if (chunkArraySizes[index] == null) {
+                            chunkArraySizes[index] = new long[ObjectSizeSettings.OBJECT_ALIGNMENT+1];
+                        }
+                        classDumpBounds.addArraySize(chunkArraySizes[index], instanceStart);
+                    }
+                }
+                synchronized (counts) {
+                    for (int i = 0; i < classesCount; i++) {
+                        counts[i] += chunkCounts[i];
+                        if (chunkArraySizes[i] != null) {
+                            if (arraySizes[i] == null) {
+                                arraySizes[i] = chunkArraySizes[i];
+                            } else {
+                                for (int j = 0; j < chunkArraySizes[i].length; j++) {
+                                    arraySizes[i][j] += chunkArraySizes[i][j];
+                                }
+                            }
+                        }
+                    }
+                }
+            });
+        } finally {
+            HeapProgress.progressFinish();
+        }
+        for (int i = 0; i < classesCount; i++) {
+            ClassDump classDump = (ClassDump) classes.get(i);
+
+            if (arraySizes[i] != null) {
+                sizes[i] = classDump.getAllArraysSize(arraySizes[i]);
+            } else if (counts[i] != 0) {
+                sizes[i] = (long) counts[i] * classDump.getObjectSize();
+            }
+        }
+        return new ClassHistogram(classes, counts, sizes);
+    }
+
+    private ClassDump getInstanceClassDump(LongObjectHashMap<JavaClass> classIdToClassMap, int tag, long start) {
+        int idSize = dumpBuffer.getIDSize();
+
+        if (tag == INSTANCE_DUMP) {
+            long classId = dumpBuffer.getID(start + 1 + idSize + 4);
+            return (ClassDump) classIdToClassMap.get(classId);
+        } else if (tag == OBJECT_ARRAY_DUMP) {
+            long classId = dumpBuffer.getID(start + 1 + idSize + 4 + 4);
+            return (ClassDump) classIdToClassMap.get(classId);
+        } else if (tag == PRIMITIVE_ARRAY_DUMP) {
+            byte type = dumpBuffer.get(start + 1 + idSize + 4 + 4);
+            return getClassDumpSegment().getPrimitiveArrayClass(type);
+        }
+        return null;
+    }
+
     List<Value> findReferencesFor(long instanceId) {
         assert instanceId != 0L : "InstanceID is null";
         computeReferences();
         
         List<Value> refs = new ArrayList<>();
-        LongIterator refIdsIt = idToOffsetMap.get(instanceId).getReferences();
+        LongIterator refIdsIt = idToOffsetMap.getReferencesAt(idToOffsetMap.getSlot(instanceId));
         int idSize = dumpBuffer.getIDSize();
         ClassDumpSegment classDumpBounds = getClassDumpSegment();
         long[] offset = new long[1];
         
         while (refIdsIt.hasNext()) {
             long foundInstanceId = refIdsIt.next();
-            offset[0] = idToOffsetMap.get(foundInstanceId).getOffset();
+            offset[0] = idToOffsetMap.getOffsetAt(idToOffsetMap.getSlot(foundInstanceId));
             long start = offset[0];
             int tag = readDumpTag(offset);
 
             if (tag == INSTANCE_DUMP) {
-                int size = dumpBuffer.getInt(start + 1 + idSize + 4 + idSize);
-                byte[] fields = new byte[size];
-                dumpBuffer.get(start + 1 + idSize + 4 + idSize + 4, fields);
                 long classId = dumpBuffer.getID(start + 1 + idSize + 4);
                 ClassDump classDump = classDumpBounds.getClassDumpByID(classId);
                 InstanceDump instance = new InstanceDump(classDump, start);
+                InstanceFieldTable table = classDump.getInstanceFieldTable();
+                long valuesOffset = instance.getFieldValuesOffset();
 
-                for (Object field : instance.getFieldValues()) {
-                    if (field instanceof HprofInstanceObjectValue) {
-                        HprofInstanceObjectValue objectValue = (HprofInstanceObjectValue) field;
-
-                        if (objectValue.getInstanceId() == instanceId) {
-                            refs.add(objectValue);
-                        }
+                for (int i = 0; i < table.fields.length; i++) {
+                    if (table.types[i] == OBJECT && dumpBuffer.getID(valuesOffset + table.offsets[i]) == instanceId) {
+                        refs.add(new HprofInstanceObjectValue(instance, table.fields[i], valuesOffset + table.offsets[i]));
                     }
                 }
                 if (refs.isEmpty() && classId == instanceId) {
@@ -642,36 +1001,40 @@ class HprofHeap implements Heap {
         ClassDumpSegment classDumpBounds = getClassDumpSegment();
         int idSize = dumpBuffer.getIDSize();
         long[] offset = new long[] { allInstanceDumpBounds.startOffset };
-        Map<Long,JavaClass> classIdToClassMap = classDumpBounds.getClassIdToClassMap();
+        LongObjectHashMap<JavaClass> classIdToClassMap = classDumpBounds.getClassIdToClassMap();
 
         computeInstances();
         cacheDirectory.setDirty(true);
+        int threads = ParallelScan.getThreads(this);
+        long[] chunks = ParallelScan.getChunks(heapDumpChunks, allInstanceDumpBounds.startOffset, allInstanceDumpBounds.endOffset);
+        boolean parallel = threads > 1 && chunks.length > 2;
+
+        if (parallel) {
+            computeReferences(classIdToClassMap, chunks, threads);
+            offset[0] = allInstanceDumpBounds.endOffset;
+        }
         for (long counter=0; offset[0] < allInstanceDumpBounds.endOffset; counter++) {
             long start = offset[0];
             int tag = readDumpTag(offset);
 
             if (tag == INSTANCE_DUMP) {
                 long classId = dumpBuffer.getID(start+1+idSize+4);
-                ClassDump classDump = (ClassDump) classIdToClassMap.get(new Long(classId));
+                ClassDump classDump = (ClassDump) classIdToClassMap.get(classId);
                 if (classDump != null) {
                     long instanceId = dumpBuffer.getID(start+1);
                     long inOff = start+1+idSize+4+idSize+4;
 
-                    for (Field f : classDump.getAllInstanceFields()) {
-                        HprofField field = (HprofField)f;
-                        if (field.getValueType() == HprofHeap.OBJECT) {
-                            long outId = dumpBuffer.getID(inOff);
-
-                            if (outId != 0) {
-                                LongMap.Entry entry = idToOffsetMap.get(outId);
-                                if (entry != null) {
-                                    entry.addReference(instanceId);
-                                } else {
-                                    //    System.err.println("instance entry:" + Long.toHexString(outId));
-                                }
+                    for (int fieldOffset : classDump.getInstanceFieldTable().objectOffsets) {
+                        long outId = dumpBuffer.getID(inOff+fieldOffset);
+
+                        if (outId != 0) {
+                            long slot = idToOffsetMap.getSlot(outId);
+                            if (slot != -1) {
+                                idToOffsetMap.addReferenceAt(slot, instanceId);
+                            } else {
+                                //    System.err.println("instance entry:" + Long.toHexString(outId));
                             }
                         }
-                        inOff += field.getValueSize();
                     }
                 }
             } else if (tag == OBJECT_ARRAY_DUMP) {
@@ -683,9 +1046,9 @@ class HprofHeap implements Heap {
                     long outId = dumpBuffer.getID(position);
                     
                     if (outId == 0) continue;
-                    LongMap.Entry entry = idToOffsetMap.get(outId);
-                    if (entry != null) {
-                        entry.addReference(instanceId);
+                    long slot = idToOffsetMap.getSlot(outId);
+                    if (slot != -1) {
+                        idToOffsetMap.addReferenceAt(slot, instanceId);
                     } else {
                         //    System.err.println("bad array entry:" + Long.toHexString(outId));
                     }
@@ -694,168 +1057,107 @@ class HprofHeap implements Heap {
             HeapProgress.progress(counter,allInstanceDumpBounds.startOffset,start,allInstanceDumpBounds.endOffset);
         }
         
+        if (!parallel) {
+            // static references are collected by ReferencesBuilder in parallel computation
+            computeStaticReferences();
+        }
+        try {
+            idToOffsetMap.compactReferences();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getLocalizedMessage(), ex);
+        }
+        idToOffsetMap.flush();
+        referencesComputed = true;
+        writeCheckpoint(HeapCheckpoint.REFERENCES);
+        }
+        HeapProgress.progressFinish();        
+    }
+    
+    private void computeStaticReferences() {
         for (JavaClass cls : getClassDumpSegment().createClassCollection()) {
             for (FieldValue field : cls.getStaticFieldValues()) {
                 if (field instanceof HprofFieldObjectValue) {
                     long outId = ((HprofFieldObjectValue)field).getInstanceID();
 
                     if (outId != 0) {
-                        LongMap.Entry entry = idToOffsetMap.get(outId);
-                        if (entry == null) {
+                        long slot = idToOffsetMap.getSlot(outId);
+                        if (slot == -1) {
                             //    System.err.println("instance entry:" + Long.toHexString(outId));
                             continue;
                         }
-                        entry.addReference(cls.getJavaClassId());
+                        idToOffsetMap.addReferenceAt(slot, cls.getJavaClassId());
                     }
                 }
             }
         }
-        idToOffsetMap.flush();
-        referencesComputed = true;
-        writeToFile();
+    }
+
+    private void computeReferences(LongObjectHashMap<JavaClass> classIdToClassMap, long[] chunks, int threads) {
+        ReferencesBuilder builder = new ReferencesBuilder(this, classIdToClassMap, threads);
+
+        try {
+            // collect and sort references of each chunk
+            HeapProgress.progressStart();
+            ParallelScan.run(chunks, threads, builder::addChunk);
+            builder.addStaticReferences(chunks.length, getClassDumpSegment().createClassCollection());
+            HeapProgress.progressFinish();
+            // merge references and write them to idToOffsetMap
+            HeapProgress.progressStart();
+            builder.writeReferences(idToOffsetMap);
+            HeapProgress.progressFinish();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getLocalizedMessage(), ex);
+        } finally {
+            builder.delete();
         }
-        HeapProgress.progressFinish();        
     }
-    
+
     void computeRetainedSize() {
         synchronized (retainedSizeLock) {
         if (retainedSizeComputed) {
             return;
         }
         HeapProgress.progressStart();
-        LongBuffer leaves = nearestGCRoot.getLeaves();
+        computeDominators();
         cacheDirectory.setDirty(true);
-        new TreeObject(this,leaves).computeTrees();
-        domTree = new DominatorTree(this,nearestGCRoot.getMultipleParents());
-        domTree.computeDominators();
-
-        // deep path first
         try {
-            LongBuffer deepPathBuffer = nearestGCRoot.getDeepPathBuffer();
-            LongBuffer deepPath = deepPathBuffer.revertBuffer();
-
-            deepPathBuffer.reset();
-            deepPathBuffer.delete();
-            if (deepPath.hasData()) {
-                for (long deepObjId = deepPath.readLong(); deepObjId != 0; deepObjId = deepPath.readLong()) {
-                    LongMap.Entry deepObjEntry = idToOffsetMap.get(deepObjId);
-                    assert deepObjEntry.isDeepObj();
-                    long idomId = domTree.getIdomId(deepObjId, deepObjEntry);
-                    LongMap.Entry idomEntry = idToOffsetMap.get(idomId);
-
-                    if (!deepObjEntry.isTreeObj()) {
-                        Instance deepInstance = getInstanceByID(deepObjId);
-                        long size = deepInstance.getSize();
-                        long origSize = deepObjEntry.getRetainedSize();
-
-                        if (origSize < 0) origSize = 0;
-                        deepObjEntry.setRetainedSize(origSize + size);
-                    }
-                    if (idomEntry.isDeepObj() && !idomEntry.isTreeObj()) {
-                        long origSize = idomEntry.getRetainedSize();
-                        if (origSize < 0) origSize = 0;
-                        idomEntry.setRetainedSize(origSize + deepObjEntry.getRetainedSize());
-                    }
-                }
-            }
-            deepPath.delete();
+            new RetainedSizes(this, domTree).computeRetainedSizes();
+            // buffers of nearest GC root are not needed, but checkpoint of dominators uses them
+            nearestGCRoot.resetBuffers();
         } catch (IOException ex) {
             throw new IllegalArgumentException(ex.getLocalizedMessage(), ex);
         }
-
-        long[] offset = new long[] { allInstanceDumpBounds.startOffset };
-
-        for (long counter=0; offset[0] < allInstanceDumpBounds.endOffset; counter++) {
-            int instanceIdOffset = 0;
-            long start = offset[0];
-            int tag = readDumpTag(offset);
-
-            if (tag == INSTANCE_DUMP) {
-                instanceIdOffset = 1;
-            } else if (tag == OBJECT_ARRAY_DUMP) {
-                instanceIdOffset = 1;
-            } else if (tag == PRIMITIVE_ARRAY_DUMP) {
-                instanceIdOffset = 1;
-            } else {
-                continue;
-            }
-            long instanceId = dumpBuffer.getID(start + instanceIdOffset);
-            LongMap.Entry instanceEntry = idToOffsetMap.get(instanceId);
-            long idom = domTree.getIdomId(instanceId,instanceEntry);
-            boolean isTreeObj = instanceEntry.isTreeObj();
-            boolean deepObj = instanceEntry.isDeepObj();
-            long instSize = 0;
-            
-            if (!deepObj && !isTreeObj && (instanceEntry.getNearestGCRootPointer() != 0 || gcRoots.getGCRoots(new Long(instanceId)) != null)) {
-                long origSize = instanceEntry.getRetainedSize();
-                if (origSize < 0) origSize = 0;
-                Instance instance = getInstanceByOffset(new long[] {start});
-                instSize = instance != null ? instance.getSize() : getClassDumpSegment().sizeSettings.getMinimumInstanceSize();
-                instanceEntry.setRetainedSize(origSize + instSize);
-            }
-            if (idom != 0) {
-                long size;
-                LongMap.Entry entry = idToOffsetMap.get(idom);
-                
-                if (entry.isDeepObj()) {
-                    continue;
-                } else if (isTreeObj) {
-                    size = instanceEntry.getRetainedSize();
-                } else if (deepObj) {
-                    size = instanceEntry.getRetainedSize();
-                } else {
-                    assert instSize != 0;
-                    size = instSize;
-                }
-                for (;idom!=0;idom=domTree.getIdomId(idom,entry)) {
-                    entry = idToOffsetMap.get(idom);
-                    if (entry.isTreeObj()) {
-                        break;
-                    }
-                    long retainedSize = entry.getRetainedSize();
-                    if (retainedSize < 0) retainedSize = 0;
-                    entry.setRetainedSize(retainedSize+size);
-                }
-            }
-            HeapProgress.progress(counter,allInstanceDumpBounds.startOffset,start,allInstanceDumpBounds.endOffset);
-        }
+        // retained sizes by class are computed together with retained sizes, release domTree
+        domTree = null;
         retainedSizeComputed = true;
-        writeToFile();
+        retainedSizeByClassComputed = true;
+        writeCheckpoint(HeapCheckpoint.RETAINED_SIZES);
+        nearestGCRoot.deleteBufferFiles();
         }
         HeapProgress.progressFinish();
     }
 
-    void computeRetainedSizeByClass() {
-        synchronized (retainedSizeByClassLock) {
-        if (retainedSizeByClassComputed) {
+    void computeNearestGCRoots() {
+        nearestGCRoot.computeGCRoots();
+    }
+
+    void computeDominators() {
+        synchronized (retainedSizeLock) {
+        if (retainedSizeComputed || domTree != null) {
             return;
         }
-        computeRetainedSize();
-        cacheDirectory.setDirty(true);
-        HeapProgress.progressStart();
-        long[] offset = new long[] { allInstanceDumpBounds.startOffset };
-
-        for (long counter=0; offset[0] < allInstanceDumpBounds.endOffset; counter++) {
-            long start = offset[0];
-            int tag = readDumpTag(offset);
+        LongBuffer multipleParents = nearestGCRoot.getMultipleParents();
 
-            if (tag == INSTANCE_DUMP || tag == OBJECT_ARRAY_DUMP || tag == PRIMITIVE_ARRAY_DUMP) {
-                Instance i = getInstanceByOffset(new long[] {start});
-                if (i != null) {
-                    ClassDump javaClass = (ClassDump) i.getJavaClass();
-                    if (javaClass != null && !domTree.hasInstanceInChain(tag, i)) {
-                        javaClass.addSizeForInstance(i);
-                    }
-                }
-            }
-            HeapProgress.progress(counter,allInstanceDumpBounds.startOffset,start,allInstanceDumpBounds.endOffset);
-        }
-        // all done, release domTree
-        domTree = null;
-        retainedSizeByClassComputed = true;
-        writeToFile();
+        cacheDirectory.setDirty(true);
+        domTree = new DominatorTree(this,multipleParents);
+        domTree.computeDominators();
+        writeCheckpoint(HeapCheckpoint.DOMINATORS);
         }
-        HeapProgress.progressFinish();
+    }
+
+    void computeRetainedSizeByClass() {
+        // retained sizes by class are computed and checkpointed together with retained sizes
+        computeRetainedSize();
     }
 
     Instance getNearestGCRootPointer(Instance instance) {
@@ -863,8 +1165,7 @@ class HprofHeap implements Heap {
     }
     
     boolean isGCRoot(Instance instance) {
-       Long instanceId = Long.valueOf(instance.getInstanceId());
-       return gcRoots.getGCRoots(instanceId) != null;
+       return gcRoots.getGCRoots(instance.getInstanceId()) != null;
     }
 
     int readDumpTag(long[] offset) {
@@ -1352,9 +1653,16 @@ class HprofHeap implements Heap {
         heapTagBounds = new TagBounds[0x100];
 
         long[] offset = new long[] { heapDumpSegment.startOffset + 1 + 4 + 4 };
+        long chunkSize = ParallelScan.getChunkSize();
+        long nextChunk = offset[0];
+        List<Long> chunks = new ArrayList<>();
         
         for (long counter=0; offset[0] < heapDumpSegment.endOffset; counter++) {
             long start = offset[0];
+            if (start >= nextChunk) {
+                chunks.add(start);
+                nextChunk = start + chunkSize;
+            }
             int tag = readDumpTag(offset);
             TagBounds bounds = heapTagBounds[tag];
             long end = offset[0];
@@ -1387,6 +1695,10 @@ class HprofHeap implements Heap {
         }
         allInstanceDumpBounds = instanceDumpBounds.union(objArrayDumpBounds);
         allInstanceDumpBounds = allInstanceDumpBounds.union(primArrayDumpBounds);
+        heapDumpChunks = new long[chunks.size()];
+        for (int i = 0; i < heapDumpChunks.length; i++) {
+            heapDumpChunks[i] = chunks.get(i).longValue();
+        }
         HeapProgress.progressFinish();
     }
 
@@ -1485,4 +1797,84 @@ class HprofHeap implements Heap {
 
         return type;
     }
+
+    private static class ClassInstances {
+        private final long firstOffset;
+        private int count;
+        private int index;
+        private long[] arraySizes;
+
+        private ClassInstances(long offset) {
+            firstOffset = offset;
+        }
+    }
+
+    /**
+     * Instances of one chunk of the heap dump, used by parallel computeInstances.
+     */
+    private class InstancesChunk {
+        private final long startOffset;
+        private final Map<ClassDump,ClassInstances> classes = new HashMap<>();
+
+        private InstancesChunk(LongObjectHashMap<JavaClass> classIdToClassMap, long start, long end) {
+            ClassDumpSegment classDumpBounds = getClassDumpSegment();
+            long[] offset = new long[] { start };
+
+            startOffset = start;
+            while (offset[0] < end) {
+                long instanceStart = offset[0];
+                int tag = readDumpTag(offset);
+                ClassDump classDump = getInstanceClassDump(classIdToClassMap, tag, instanceStart);
+
+                if (classDump != null) {
+                    ClassInstances instances = classes.get(classDump);
+
+                    if (instances == null) {
+                        instances = new ClassInstances(instanceStart);
+                        classes.put(classDump, instances);
+                    }
+                    instances.count++;
+                    if (tag == OBJECT_ARRAY_DUMP || tag == PRIMITIVE_ARRAY_DUMP) {
+                        if (instances.arraySizes == null) {
+                            instances.arraySizes = new long[ObjectSizeSettings.OBJECT_ALIGNMENT+1];
+                        }
+                        classDumpBounds.addArraySize(instances.arraySizes, instanceStart);
+                    }
+                }
+            }
+        }
+
+        private void registerInstances() {
+            ClassDumpSegment classDumpBounds = getClassDumpSegment();
+
+            for (Map.Entry<ClassDump,ClassInstances> classEntry : classes.entrySet()) {
+                ClassDump classDump = classEntry.getKey();
+                ClassInstances instances = classEntry.getValue();
+
+                instances.index = classDump.registerInstances(instances.firstOffset, instances.count);
+                if (instances.arraySizes != null) {
+                    classDumpBounds.addArraySizes(classDump, instances.arraySizes);
+                }
+            }
+        }
+
+        private void putInstances(LongObjectHashMap<JavaClass> classIdToClassMap, long end) {
+            long[] offset = new long[] { startOffset };
+
+            while (offset[0] < end) {
+                long start = offset[0];
+                int tag = readDumpTag(offset);
+
+                if (tag == INSTANCE_DUMP || tag == OBJECT_ARRAY_DUMP || tag == PRIMITIVE_ARRAY_DUMP) {
+                    long instanceId = dumpBuffer.getID(start + 1);
+                    long instanceSlot = idToOffsetMap.putSlotConcurrent(instanceId, start);
+                    ClassDump classDump = getInstanceClassDump(classIdToClassMap, tag, start);
+
+                    if (classDump != null) {
+                        idToOffsetMap.setIndexAt(instanceSlot, ++classes.get(classDump).index);
+                    }
+                }
+            }
+        }
+    }
 }
@@ -28,6 +28,7 @@ package org.graalvm.visualvm.lib.jfluid.heap;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
@@ -96,8 +97,10 @@ class HprofLongMappedByteBuffer extends HprofByteBuffer {
         return dumpBuffer[getBufferIndex(index)].get(getBufferOffset(index));
     }
 
-    synchronized void get(long position, byte[] chars) {
-        MappedByteBuffer buffer = dumpBuffer[getBufferIndex(position)];
+    void get(long position, byte[] chars) {
+        // duplicate has independent position, so concurrent reads do not interfere
+        ByteBuffer buffer = dumpBuffer[getBufferIndex(position)].duplicate();
+
         buffer.position(getBufferOffset(position));
         buffer.get(chars);
     }
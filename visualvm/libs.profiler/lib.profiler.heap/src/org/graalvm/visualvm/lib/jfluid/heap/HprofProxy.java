@@ -91,19 +91,9 @@ class HprofProxy {
         }
         String className = stringInstance.getJavaClass().getName();
         if (String.class.getName().equals(className)) {
-            Byte coder = (Byte) stringInstance.getValueOfField("coder"); // NOI18N
-            PrimitiveArrayDump chars = (PrimitiveArrayDump) stringInstance.getValueOfField("value"); // NOI18N
-            if (chars != null) {
-                Integer offset = (Integer) stringInstance.getValueOfField("offset"); // NOI18N
-                Integer len = (Integer) stringInstance.getValueOfField("count"); // NOI18N
-                if (offset == null) {
-                    offset = Integer.valueOf(0);
-                }
-                if (len == null) {
-                    len = new Integer(chars.getLength());
-                }
-                char[] charArr = getChars(chars, coder, offset.intValue(), len.intValue());
+            char[] charArr = getStringChars(stringInstance);
 
+            if (charArr != null) {
                 return new String(charArr).intern();
             }
             return "*null*"; // NOI18N
@@ -112,6 +102,27 @@ class HprofProxy {
         return "*"+className+"#"+stringInstance.getInstanceNumber()+"*";  // NOI18N
     }
 
+    /**
+     * @return content of java.lang.String instance or <code>null</code> if its value is not available
+     */
+    static char[] getStringChars(Instance stringInstance) {
+        Byte coder = (Byte) stringInstance.getValueOfField("coder"); // NOI18N
+        Object value = stringInstance.getValueOfField("value"); // NOI18N
+        if (value instanceof PrimitiveArrayDump) {
+            PrimitiveArrayDump chars = (PrimitiveArrayDump) value;
+            Integer offset = (Integer) stringInstance.getValueOfField("offset"); // NOI18N
+            Integer len = (Integer) stringInstance.getValueOfField("count"); // NOI18N
+            if (offset == null) {
+                offset = Integer.valueOf(0);
+            }
+            if (len == null) {
+                len = new Integer(chars.getLength());
+            }
+            return getChars(chars, coder, offset.intValue(), len.intValue());
+        }
+        return null;
+    }
+
     private static char[] getChars(PrimitiveArrayDump chars, Byte coder, int offset, int len) {
         if (coder == null) {
             return chars.getChars(offset, len);
@@ -48,20 +48,18 @@ class InstanceDump extends HprofObject implements Instance {
     //~ Methods ------------------------------------------------------------------------------------------------------------------
 
     public List<FieldValue> getFieldValues() {
-        long offset = fileOffset + getInstanceFieldValuesOffset();
-        List<Field> fields = dumpClass.getAllInstanceFields();
-        List<FieldValue> values = new ArrayList<>(fields.size());
+        long offset = getFieldValuesOffset();
+        InstanceFieldTable table = dumpClass.getInstanceFieldTable();
+        List<FieldValue> values = new ArrayList<>(table.fields.length);
 
-        for (Field f : fields) {
-            HprofField field = (HprofField)f;
+        for (int i = 0; i < table.fields.length; i++) {
+            HprofField field = table.fields[i];
 
-            if (field.getValueType() == HprofHeap.OBJECT) {
-                values.add(new HprofInstanceObjectValue(this, field, offset));
+            if (table.types[i] == HprofHeap.OBJECT) {
+                values.add(new HprofInstanceObjectValue(this, field, offset + table.offsets[i]));
             } else {
-                values.add(new HprofInstanceValue(this, field, offset));
+                values.add(new HprofInstanceValue(this, field, offset + table.offsets[i]));
             }
-
-            offset += field.getValueSize();
         }
 
         return values;
@@ -76,7 +74,9 @@ class InstanceDump extends HprofObject implements Instance {
     }
 
     public int getInstanceNumber() {
-        return getHprof().idToOffsetMap.get(getInstanceId()).getIndex();
+        LongMap idToOffsetMap = getHprof().idToOffsetMap;
+
+        return idToOffsetMap.getIndexAt(idToOffsetMap.getSlot(getInstanceId()));
     }
 
     public JavaClass getJavaClass() {
@@ -108,16 +108,17 @@ class InstanceDump extends HprofObject implements Instance {
     }
 
     public Object getValueOfField(String name) {
-        List<FieldValue> fieldValues = getFieldValues();
-        
-        for (int i = fieldValues.size() - 1; i >= 0; i--) {
-            FieldValue fieldValue = fieldValues.get(i);
-            if (fieldValue.getField().getName().equals(name)) {
-                if (fieldValue instanceof HprofInstanceObjectValue) {
-                    return ((HprofInstanceObjectValue) fieldValue).getInstance();
-                } else {
-                    return ((HprofInstanceValue) fieldValue).getTypeValue();
-                }
+        InstanceFieldTable table = dumpClass.getInstanceFieldTable();
+        int index = table.lastIndexOf(name);
+
+        if (index != -1) {
+            HprofByteBuffer dumpBuffer = dumpClass.getHprofBuffer();
+            long offset = getFieldValuesOffset() + table.offsets[index];
+
+            if (table.types[index] == HprofHeap.OBJECT) {
+                return getHprof().getInstanceByID(dumpBuffer.getID(offset));
+            } else {
+                return HprofInstanceValue.getTypeValue(dumpBuffer, offset, table.types[index]);
             }
         }
         
@@ -145,6 +146,10 @@ class InstanceDump extends HprofObject implements Instance {
 //        }
     }
 
+    long getFieldValuesOffset() {
+        return fileOffset + getInstanceFieldValuesOffset();
+    }
+
     private int getInstanceFieldValuesOffset() {
         int idSize = dumpClass.getHprofBuffer().getIDSize();
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.util.List;
+
+/**
+ * Precomputed layout of instance fields of a class. Fields of the class are
+ * followed by fields of its super classes, the same order as in
+ * {@link InstanceDump#getFieldValues()}. Offsets are relative to the start of
+ * instance field values in the heap dump.
+ */
+final class InstanceFieldTable {
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    final HprofField[] fields;
+    final byte[] types;
+    final int[] offsets;
+    // offsets of object fields only
+    final int[] objectOffsets;
+    private volatile String[] names;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    InstanceFieldTable(HprofHeap heap, List<Field> allFields) {
+        int count = allFields.size();
+        int objectFields = 0;
+        int offset = 0;
+
+        fields = new HprofField[count];
+        types = new byte[count];
+        offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            HprofField field = (HprofField) allFields.get(i);
+            byte type = field.getValueType();
+
+            fields[i] = field;
+            types[i] = type;
+            offsets[i] = offset;
+            offset += heap.getValueSize(type);
+            if (type == HprofHeap.OBJECT) {
+                objectFields++;
+            }
+        }
+        objectOffsets = new int[objectFields];
+        for (int i = 0, j = 0; i < count; i++) {
+            if (types[i] == HprofHeap.OBJECT) {
+                objectOffsets[j++] = offsets[i];
+            }
+        }
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Fields are searched from java.lang.Object, the first field with the matching name is used.
+     * @return index of the field or -1 if there is no such field
+     */
+    int lastIndexOf(String name) {
+        String[] fieldNames = names;
+
+        if (fieldNames == null) {
+            // field names are not needed for scans, so they are read on demand
+            fieldNames = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                fieldNames[i] = fields[i].getName();
+            }
+            names = fieldNames;
+        }
+        for (int i = fieldNames.length - 1; i >= 0; i--) {
+            if (fieldNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -27,10 +27,11 @@ package org.graalvm.visualvm.lib.jfluid.heap;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 /**
  * key - ID (long/int) of heap object
@@ -41,213 +42,209 @@ import java.util.TreeSet;
  *                            - bit 1 set - has GC root
  *                            - bit 2 set - tree object
  *                            - bit 3 set - deep object
- *  - ID/offset (long/int) - ID if reference flag bit 0 is set, otherwise offset to reference list file
+ *                            - bit 4 set - reference list is in compact reference list file
+ *  - ID/offset (long/int) - ID if reference flag bit 0 is not set, otherwise offset to reference list file
  *  - retained size (long/int)
  *
  * @author Tomas Hurka
  */
 class LongMap extends AbstractLongMap {
 
+    private static final int PARTITIONS_PER_THREAD = 4;
+    private static final long PARTIAL_RESULTS_INTERVAL = 500;
+    private static final byte NUMBER_LIST = 1;
+    private static final byte GC_ROOT = 2;
+    private static final byte TREE_OBJ = 4;
+    private static final byte DEEP_OBJ = 8;
+    private static final byte COMPACT_LIST = 16;
+
     private NumberList referenceList;
+    // reference lists written at once or compacted after references were computed
+    private CompactNumberList compactReferenceList;
+    // reference list replaced by compactReferenceList, kept until releaseObsoleteFiles()
+    private NumberList obsoleteReferenceList;
 
     //~ Inner Classes ------------------------------------------------------------------------------------------------------------
 
+    /**
+     * View of one slot of the map, all methods delegate to the slot accessors of {@link LongMap}.
+     */
     class Entry extends AbstractLongMap.Entry {
 
-        private static final byte NUMBER_LIST = 1;
-        private static final byte GC_ROOT = 2;
-        private static final byte TREE_OBJ = 4;
-        private static final byte DEEP_OBJ = 8;
-
         //~ Instance fields ------------------------------------------------------------------------------------------------------
 
-        private long offset;
+        private final long slot;
 
         //~ Constructors ---------------------------------------------------------------------------------------------------------
 
-        private Entry(long off) {
-            offset = off;
-        }
-
-        private Entry(long off,long value) {
-            offset = off;
-            putFoffset(offset, KEY_SIZE, value);
+        private Entry(long s) {
+            slot = s;
         }
 
         //~ Methods --------------------------------------------------------------------------------------------------------------
 
         void setIndex(int index) {
-            dumpBuffer.putInt(offset, KEY_SIZE + FOFFSET_SIZE, index);
+            setIndexAt(slot, index);
         }
 
         int getIndex() {
-            return dumpBuffer.getInt(offset, KEY_SIZE + FOFFSET_SIZE);
+            return getIndexAt(slot);
         }
 
         void setTreeObj() {
-            byte flags = (byte)(getFlags() | TREE_OBJ);
-            setFlags(flags);
+            setTreeObjAt(slot);
         }
         
         boolean isTreeObj() {
-            return (getFlags() & TREE_OBJ) != 0;
+            return isTreeObjAt(slot);
         }
 
         void setDeepObj() {
-            byte flags = (byte)(getFlags() | DEEP_OBJ);
-            setFlags(flags);
+            setDeepObjAt(slot);
         }
 
         boolean isDeepObj() {
-            return (getFlags() & DEEP_OBJ) != 0;
+            return isDeepObjAt(slot);
         }
 
         boolean hasOnlyOneReference() {
-            return (getFlags() & NUMBER_LIST) == 0;
+            return hasOnlyOneReferenceAt(slot);
         }
         
         void setNearestGCRootPointer(long instanceId) {
-            byte flags = (byte)(getFlags() | GC_ROOT);
-            setFlags(flags);
-            if ((flags & NUMBER_LIST) != 0) {   // put GC root pointer on the first place in references list
-                try {
-                    referenceList.putFirst(getReferencesPointer(),instanceId);
-                } catch (IOException ex) {
-                    ex.printStackTrace();
-                }
-            }
+            setNearestGCRootPointerAt(slot, instanceId);
+        }
+
+        boolean hasNearestGCRootPointer() {
+            return hasNearestGCRootPointerAt(slot);
+        }
+
+        void claimNearestGCRootPointer(long order) {
+            claimNearestGCRootPointerAt(slot, order);
         }
 
         long getNearestGCRootPointer() {
-            try {
-                byte flag = getFlags();
-                if ((flag & GC_ROOT) != 0) { // has GC root pointer
-                    long ref = getReferencesPointer();
-                    if ((flag & NUMBER_LIST) != 0) { // get GC root pointer from number list
-                        return referenceList.getFirstNumber(ref);
-                    }
-                    return ref;
-                }
-            } catch (IOException ex) {
-                ex.printStackTrace();
-            }
-            return 0L;
+            return getNearestGCRootPointerAt(slot);
         }
         
         void addReference(long instanceId) {
-            try {
-                byte flags = getFlags();
-                long ref = getReferencesPointer();
-                if ((flags & NUMBER_LIST) == 0) { // reference list is not used
-                    if (ref == 0L) {    // no reference was set
-                        setReferencesPointer(instanceId);
-                    } else if (ref != instanceId) {    // one reference was set, switch to reference list
-                       setFlags((byte)(flags | NUMBER_LIST));
-                       long list = referenceList.addFirstNumber(ref,instanceId);
-                       setReferencesPointer(list);
-                    }
-                } else { // use reference list
-                    long newRef = referenceList.addNumber(ref,instanceId);
-                    if (newRef != ref) {
-                        setReferencesPointer(newRef);
-                    }
-                }
-            } catch (IOException ex) {
-                ex.printStackTrace();
-            }
+            addReferenceAt(slot, instanceId);
         }
-        
+
+        void setReferences(long[] instanceIds, int count) {
+            setReferencesAt(slot, instanceIds, count);
+        }
+
         LongIterator getReferences() {
-            byte flags = getFlags();
-            long ref = getReferencesPointer();
-            if ((flags & NUMBER_LIST) == 0) {
-                if (ref == 0L) {
-                    return LongIterator.EMPTY_ITERATOR;
-                } else {
-                    return LongIterator.singleton(ref);
-                }
-            } else {
-                try {
-                    return referenceList.getNumbersIterator(ref);
-                } catch (IOException ex) {
-                    ex.printStackTrace();
-                }
-            }
-            return LongIterator.EMPTY_ITERATOR;
+            return getReferencesAt(slot);
         }
         
         long getOffset() {
-            return getFoffset(offset, KEY_SIZE);
+            return getOffsetAt(slot);
+        }
+
+        long getSlot() {
+            return slot;
         }
 
         void setRetainedSize(long size) {
-            if (FOFFSET_SIZE == 4) {
-                dumpBuffer.putInt(offset, KEY_SIZE + FOFFSET_SIZE + 4 + 1 + ID_SIZE, (int)size);
-            } else {
-                dumpBuffer.putLong(offset, KEY_SIZE + FOFFSET_SIZE + 4 + 1 + ID_SIZE, size);
-            }
+            setRetainedSizeAt(slot, size);
         }
 
         long getRetainedSize() {
-            if (FOFFSET_SIZE == 4) {
-                return dumpBuffer.getInt(offset, KEY_SIZE + FOFFSET_SIZE + 4 + 1 + ID_SIZE);
-            }
-            return dumpBuffer.getLong(offset, KEY_SIZE + FOFFSET_SIZE + 4 + 1 + ID_SIZE);
+            return getRetainedSizeAt(slot);
         }
+    }
 
-        private void setReferencesPointer(long instanceId) {
-            putID(offset, KEY_SIZE + FOFFSET_SIZE + 4 + 1, instanceId);
+    /**
+     * Bounded min-heap of the biggest objects by retained size. Objects are ordered by retained
+     * size, objects with the same retained size by instance id, so the result does not depend
+     * on the order in which objects are added.
+     */
+    private static class BiggestObjects {
+        private final long[] ids;
+        private final long[] sizes;
+        private int size;
+
+        private BiggestObjects(int number) {
+            ids = new long[number];
+            sizes = new long[number];
         }
 
-        private long getReferencesPointer() {
-            return getID(offset, KEY_SIZE + FOFFSET_SIZE + 4 + 1);
+        private void add(long id, long retainedSize) {
+            if (size < ids.length) {
+                int i = size++;
+
+                ids[i] = id;
+                sizes[i] = retainedSize;
+                siftUp(i);
+            } else if (size > 0 && isBigger(retainedSize, id, sizes[0], ids[0])) {
+                ids[0] = id;
+                sizes[0] = retainedSize;
+                siftDown(0);
+            }
         }
 
-        private void setFlags(byte flags) {
-            dumpBuffer.putByte(offset, KEY_SIZE + FOFFSET_SIZE + 4, flags);
+        private void addAll(BiggestObjects other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.ids[i], other.sizes[i]);
+            }
         }
 
-        private byte getFlags() {
-            return dumpBuffer.getByte(offset, KEY_SIZE + FOFFSET_SIZE + 4);
+        /**
+         * @return ids ordered from the biggest object
+         */
+        private long[] getIds() {
+            long[] sortedIds = Arrays.copyOf(ids, size);
+            long[] idSizes = Arrays.copyOf(sizes, size);
+            long[] negativeSizes = new long[size];
+
+            // sort by id, then stable sort by descending size keeps ids of equal sizes ascending
+            LongPairs.sort(sortedIds, idSizes, size);
+            for (int i = 0; i < size; i++) {
+                negativeSizes[i] = -idSizes[i];
+            }
+            LongPairs.sort(negativeSizes, sortedIds, size);
+            return sortedIds;
         }
-    }
 
-    private static class RetainedSizeEntry implements Comparable<RetainedSizeEntry> {
-        private final long instanceId;
-        private final long retainedSize;
-        
-        private RetainedSizeEntry(long id,long size) {
-            instanceId = id;
-            retainedSize = size;
-        }
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
 
-        public int compareTo(RetainedSizeEntry other) {
-            // bigger object are at beginning
-            int diff = Long.compare(other.retainedSize, retainedSize);
-            if (diff == 0) {
-                // sizes are the same, compare ids
-                return Long.compare(instanceId, other.instanceId);
+                if (!isBigger(sizes[parent], ids[parent], sizes[i], ids[i])) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
             }
-            return diff;
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
+        private void siftDown(int i) {
+            for (int child = 2 * i + 1; child < size; child = 2 * i + 1) {
+                if (child + 1 < size && isBigger(sizes[child], ids[child], sizes[child + 1], ids[child + 1])) {
+                    child++;
+                }
+                if (!isBigger(sizes[i], ids[i], sizes[child], ids[child])) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
             }
-            final RetainedSizeEntry other = (RetainedSizeEntry) obj;
-            return this.instanceId == other.instanceId;
         }
 
-        @Override
-        public int hashCode() {
-            int hash = 7;
-            hash = 31 * hash + (int) (this.instanceId ^ (this.instanceId >>> 32));
-            return hash;
+        private void swap(int i, int j) {
+            long id = ids[i];
+            long retainedSize = sizes[i];
+
+            ids[i] = ids[j];
+            sizes[i] = sizes[j];
+            ids[j] = id;
+            sizes[j] = retainedSize;
+        }
+
+        private static boolean isBigger(long size1, long id1, long size2, long id2) {
+            return size1 > size2 || (size1 == size2 && id1 < id2);
         }
     }
     
@@ -260,12 +257,8 @@ class LongMap extends AbstractLongMap {
 
     //~ Methods ------------------------------------------------------------------------------------------------------------------
 
-    Entry createEntry(long index) {
-        return new Entry(index);
-    }
-    
-    Entry createEntry(long index,long value) {
-        return new Entry(index,value);
+    Entry createEntry(long slot) {
+        return new Entry(slot);
     }
     
     Entry get(long key) {
@@ -276,43 +269,425 @@ class LongMap extends AbstractLongMap {
         return (Entry)super.put(key,value);
     }
 
+    Entry putConcurrent(long key, long value) {
+        return (Entry)super.putConcurrent(key,value);
+    }
+
     void flush() {
         referenceList.flush();
     }
 
-    long[] getBiggestObjectsByRetainedSize(int number) {
-        SortedSet<RetainedSizeEntry> bigObjects = new TreeSet<>();
-        long[] bigIds = new long[number];
-        long min = 0;
+    private CompactNumberList getCompactReferenceList() throws IOException {
+        if (compactReferenceList == null) {
+            compactReferenceList = new CompactNumberList(ID_SIZE, cacheDirectory);
+        }
+        return compactReferenceList;
+    }
+
+    /**
+     * Moves reference lists to the compact reference list and maps it. References added
+     * later are kept in a new, initially empty reference list.
+     */
+    void compactReferences() throws IOException {
+        CompactNumberList compactList = getCompactReferenceList();
+
+        if (!referenceList.isEmpty()) {
+            long[] numbers = new long[16];
+
+            for (long index=0;index<fileSize;index+=ENTRY_SIZE) {
+                if (getID(index, 0) != 0) {
+                    byte flags = getFlags(index);
+
+                    if ((flags & (NUMBER_LIST | COMPACT_LIST)) == NUMBER_LIST) {
+                        LongIterator it = referenceList.getNumbersIterator(getReferencesPointer(index));
+                        int count = 0;
+
+                        while (it.hasNext()) {
+                            if (count == numbers.length) {
+                                numbers = Arrays.copyOf(numbers, count * 2);
+                            }
+                            numbers[count++] = it.next();
+                        }
+                        setFlags(index, (byte)(flags | COMPACT_LIST));
+                        setReferencesPointer(index, compactList.addNumbers(numbers, count));
+                    }
+                }
+            }
+        }
+        compactList.finish();
+        obsoleteReferenceList = referenceList;
+        referenceList = cacheDirectory.createNumberList(ID_SIZE);
+    }
+
+    /**
+     * Forgets reference list replaced by {@link #compactReferences()}.
+     * @return data files of the replaced reference list, which can be deleted
+     */
+    File[] releaseObsoleteFiles() {
+        if (obsoleteReferenceList != null) {
+            File file = obsoleteReferenceList.getFile();
+
+            obsoleteReferenceList = null;
+            return new File[] {file};
+        }
+        return new File[0];
+    }
+
+    /**
+     * @return data files of this map and its reference lists
+     */
+    File[] getFiles() {
+        if (compactReferenceList != null) {
+            return new File[] {dumpBuffer.getFile(), referenceList.getFile(), compactReferenceList.getFile()};
+        }
+        return new File[] {dumpBuffer.getFile(), referenceList.getFile()};
+    }
+
+    /**
+     * Clears references, flags and retained sizes of all entries.
+     */
+    void clearReferences() {
         for (long index=0;index<fileSize;index+=ENTRY_SIZE) {
-            long id = getID(index, 0);
-            if (id != 0) {
-                long retainedSize = createEntry(index).getRetainedSize();
-                if (bigObjects.size()<number) {
-                    bigObjects.add(new RetainedSizeEntry(id,retainedSize));
-                    min = bigObjects.last().retainedSize;
-                } else if (retainedSize>min) {
-                    bigObjects.remove(bigObjects.last());
-                    bigObjects.add(new RetainedSizeEntry(id,retainedSize));
-                    min = bigObjects.last().retainedSize;
+            if (getID(index, 0) != 0) {
+                setFlags(index, (byte)0);
+                setReferencesPointer(index, 0L);
+                setRetainedSize(index, 0L);
+            }
+        }
+    }
+
+    long getSlots() {
+        return fileSize / ENTRY_SIZE;
+    }
+
+    /**
+     * @return ID of heap object stored in the slot or 0 if the slot is empty
+     */
+    long getKeyAt(long slot) {
+        return getID(slot * ENTRY_SIZE, 0);
+    }
+
+    Entry getEntryAt(long slot) {
+        return createEntry(slot);
+    }
+
+    //---- Slot accessors, slots are obtained by getSlot(long) or putSlot(long, long)
+
+    void setIndexAt(long slot, int index) {
+        dumpBuffer.putInt(slot * ENTRY_SIZE, KEY_SIZE + FOFFSET_SIZE, index);
+    }
+
+    /**
+     * @return unique number of the {@link Instance} among all instances of the same Java Class
+     */
+    int getIndexAt(long slot) {
+        return dumpBuffer.getInt(slot * ENTRY_SIZE, KEY_SIZE + FOFFSET_SIZE);
+    }
+
+    void setTreeObjAt(long slot) {
+        long base = slot * ENTRY_SIZE;
+        setFlags(base, (byte)(getFlags(base) | TREE_OBJ));
+    }
+
+    boolean isTreeObjAt(long slot) {
+        return (getFlags(slot * ENTRY_SIZE) & TREE_OBJ) != 0;
+    }
+
+    void setDeepObjAt(long slot) {
+        long base = slot * ENTRY_SIZE;
+        setFlags(base, (byte)(getFlags(base) | DEEP_OBJ));
+    }
+
+    boolean isDeepObjAt(long slot) {
+        return (getFlags(slot * ENTRY_SIZE) & DEEP_OBJ) != 0;
+    }
+
+    boolean hasOnlyOneReferenceAt(long slot) {
+        return (getFlags(slot * ENTRY_SIZE) & NUMBER_LIST) == 0;
+    }
+
+    void setNearestGCRootPointerAt(long slot, long instanceId) {
+        long base = slot * ENTRY_SIZE;
+        byte flags = (byte)(getFlags(base) | GC_ROOT);
+        setFlags(base, flags);
+        if ((flags & NUMBER_LIST) != 0) {   // put GC root pointer on the first place in references list
+            try {
+                if ((flags & COMPACT_LIST) == 0) {
+                    referenceList.putFirst(getReferencesPointer(base),instanceId);
+                } else if (!compactReferenceList.putFirst(getReferencesPointer(base),instanceId)) {
+                    moveToReferenceList(base);
+                    referenceList.putFirst(getReferencesPointer(base),instanceId);
                 }
+            } catch (IOException ex) {
+                ex.printStackTrace();
             }
         }
-        int i = 0;
-        for (RetainedSizeEntry rse : bigObjects) {
-            bigIds[i++]=rse.instanceId;
+    }
+
+    boolean hasNearestGCRootPointerAt(long slot) {
+        return (getFlags(slot * ENTRY_SIZE) & GC_ROOT) != 0;
+    }
+
+    /**
+     * Claims the slot for the BFS visitor with the lowest order. Retained size is not
+     * computed yet while nearest GC roots are computed, so its slot holds the claim.
+     */
+    void claimNearestGCRootPointerAt(long slot, long order) {
+        synchronized (getSlotLock(slot * ENTRY_SIZE)) {
+            long claim = getRetainedSizeAt(slot);
+
+            if (claim == 0 || order < claim) {
+                setRetainedSizeAt(slot, order);
+            }
+        }
+    }
+
+    long getNearestGCRootPointerAt(long slot) {
+        long base = slot * ENTRY_SIZE;
+        try {
+            byte flag = getFlags(base);
+            if ((flag & GC_ROOT) != 0) { // has GC root pointer
+                long ref = getReferencesPointer(base);
+                if ((flag & COMPACT_LIST) != 0) { // get GC root pointer from compact number list
+                    return compactReferenceList.getFirstNumber(ref);
+                }
+                if ((flag & NUMBER_LIST) != 0) { // get GC root pointer from number list
+                    return referenceList.getFirstNumber(ref);
+                }
+                return ref;
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
         }
-        return bigIds;
+        return 0L;
+    }
+
+    void addReferenceAt(long slot, long instanceId) {
+        long base = slot * ENTRY_SIZE;
+        try {
+            byte flags = getFlags(base);
+            long ref = getReferencesPointer(base);
+            if ((flags & NUMBER_LIST) == 0) { // reference list is not used
+                if (ref == 0L) {    // no reference was set
+                    setReferencesPointer(base, instanceId);
+                } else if (ref != instanceId) {    // one reference was set, switch to reference list
+                   setFlags(base, (byte)(flags | NUMBER_LIST));
+                   long list = referenceList.addFirstNumber(ref,instanceId);
+                   setReferencesPointer(base, list);
+                }
+            } else { // use reference list
+                if ((flags & COMPACT_LIST) != 0) { // move compact list back to reference list
+                    ref = moveToReferenceList(base);
+                }
+                long newRef = referenceList.addNumber(ref,instanceId);
+                if (newRef != ref) {
+                    setReferencesPointer(base, newRef);
+                }
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Sets all references at once, instanceIds are in the order they would be added
+     * by {@link #addReferenceAt(long, long)}.
+     */
+    void setReferencesAt(long slot, long[] instanceIds, int count) {
+        long base = slot * ENTRY_SIZE;
+        try {
+            if (count == 1) {
+                setReferencesPointer(base, instanceIds[0]);
+            } else if (count > 1) {
+                long[] iterationOrder = new long[count];
+                NumberList.toIterationOrder(instanceIds, count, iterationOrder);
+                setFlags(base, (byte)(getFlags(base) | NUMBER_LIST | COMPACT_LIST));
+                setReferencesPointer(base, getCompactReferenceList().addNumbers(iterationOrder, count));
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    LongIterator getReferencesAt(long slot) {
+        long base = slot * ENTRY_SIZE;
+        byte flags = getFlags(base);
+        long ref = getReferencesPointer(base);
+        if ((flags & NUMBER_LIST) == 0) {
+            if (ref == 0L) {
+                return LongIterator.EMPTY_ITERATOR;
+            } else {
+                return LongIterator.singleton(ref);
+            }
+        } else if ((flags & COMPACT_LIST) != 0) {
+            return compactReferenceList.getNumbersIterator(ref);
+        } else {
+            try {
+                return referenceList.getNumbersIterator(ref);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+        return LongIterator.EMPTY_ITERATOR;
+    }
+
+    /**
+     * @return offset of the heap object in the dump file
+     */
+    long getOffsetAt(long slot) {
+        return getFoffset(slot * ENTRY_SIZE, KEY_SIZE);
+    }
+
+    void setRetainedSizeAt(long slot, long size) {
+        setRetainedSize(slot * ENTRY_SIZE, size);
+    }
+
+    long getRetainedSizeAt(long slot) {
+        return getRetainedSize(slot * ENTRY_SIZE);
+    }
+
+    /**
+     * Copies compact list to the reference list, so that it can be modified.
+     * @return offset of the list in the reference list
+     */
+    private long moveToReferenceList(long base) throws IOException {
+        LongIterator numbers = compactReferenceList.getNumbersIterator(getReferencesPointer(base));
+        long[] iterationOrder = new long[16];
+        int count = 0;
+
+        while (numbers.hasNext()) {
+            if (count == iterationOrder.length) {
+                iterationOrder = Arrays.copyOf(iterationOrder, count * 2);
+            }
+            iterationOrder[count++] = numbers.next();
+        }
+        long[] insertionOrder = new long[count];
+        NumberList.toInsertionOrder(iterationOrder, count, insertionOrder);
+        long list = referenceList.addNumbers(insertionOrder, count);
+        setFlags(base, (byte)(getFlags(base) & ~COMPACT_LIST));
+        setReferencesPointer(base, list);
+        return list;
+    }
+
+    private void setRetainedSize(long base, long size) {
+        if (FOFFSET_SIZE == 4) {
+            dumpBuffer.putInt(base, KEY_SIZE + FOFFSET_SIZE + 4 + 1 + ID_SIZE, (int)size);
+        } else {
+            dumpBuffer.putLong(base, KEY_SIZE + FOFFSET_SIZE + 4 + 1 + ID_SIZE, size);
+        }
+    }
+
+    private long getRetainedSize(long base) {
+        if (FOFFSET_SIZE == 4) {
+            return dumpBuffer.getInt(base, KEY_SIZE + FOFFSET_SIZE + 4 + 1 + ID_SIZE);
+        }
+        return dumpBuffer.getLong(base, KEY_SIZE + FOFFSET_SIZE + 4 + 1 + ID_SIZE);
+    }
+
+    private void setReferencesPointer(long base, long instanceId) {
+        putID(base, KEY_SIZE + FOFFSET_SIZE + 4 + 1, instanceId);
+    }
+
+    private long getReferencesPointer(long base) {
+        return getID(base, KEY_SIZE + FOFFSET_SIZE + 4 + 1);
+    }
+
+    private void setFlags(long base, byte flags) {
+        dumpBuffer.putByte(base, KEY_SIZE + FOFFSET_SIZE + 4, flags);
+    }
+
+    private byte getFlags(long base) {
+        return dumpBuffer.getByte(base, KEY_SIZE + FOFFSET_SIZE + 4);
+    }
+
+    long[] getBiggestObjectsByRetainedSize(int number) {
+        return getBiggestObjectsByRetainedSize(number, 1, null);
+    }
+
+    /**
+     * Entries are scanned in partitions, each partition selects its biggest objects
+     * in a bounded min-heap, which is merged to the result when the partition is done.
+     * @param partialResults notified with ids of the biggest objects found so far after
+     *        a merged partition, at most once per {@link #PARTIAL_RESULTS_INTERVAL} ms and never
+     *        concurrently, called from worker threads without holding locks, may be null
+     */
+    long[] getBiggestObjectsByRetainedSize(int number, int threads, Consumer<long[]> partialResults) {
+        final BiggestObjects bigObjects = new BiggestObjects(number);
+        long entries = fileSize / ENTRY_SIZE;
+        long partitionEntries = Math.max(1, Math.min(ParallelScan.getChunkSize() / ENTRY_SIZE, entries / (PARTITIONS_PER_THREAD * threads)));
+        int partitions = (int) ((entries + partitionEntries - 1) / partitionEntries);
+        long[] chunks = new long[partitions + 1];
+        int[] merged = new int[1];
+        // time of the last partial result and whether a partial result is being reported
+        long[] lastNotification = new long[1];
+        boolean[] notifying = new boolean[1];
+
+        if (partitions == 0 || number <= 0) {
+            return new long[0];
+        }
+        for (int i = 0; i < partitions; i++) {
+            chunks[i] = i * partitionEntries * ENTRY_SIZE;
+        }
+        chunks[partitions] = fileSize;
+        ParallelScan.run(chunks, threads, (chunk, start, end) -> {
+            BiggestObjects partition = new BiggestObjects(number);
+
+            for (long index = start; index < end; index += ENTRY_SIZE) {
+                long id = getID(index, 0);
+                if (id != 0) {
+                    partition.add(id, getRetainedSize(index));
+                }
+            }
+            long[] partialIds = null;
+
+            synchronized (bigObjects) {
+                bigObjects.addAll(partition);
+                if (partialResults != null && ++merged[0] < partitions && !notifying[0]) {
+                    long time = System.currentTimeMillis();
+
+                    if (time - lastNotification[0] >= PARTIAL_RESULTS_INTERVAL) {
+                        lastNotification[0] = time;
+                        notifying[0] = true;
+                        partialIds = bigObjects.getIds();
+                    }
+                }
+            }
+            // the consumer may be slow, workers do not wait for it
+            if (partialIds != null) {
+                try {
+                    partialResults.accept(partialIds);
+                } finally {
+                    synchronized (bigObjects) {
+                        notifying[0] = false;
+                    }
+                }
+            }
+        }, false);
+        return bigObjects.getIds();
     }
 
     //---- Serialization support    
     void writeToStream(DataOutputStream out) throws IOException {
         super.writeToStream(out);
         referenceList.writeToStream(out);
+        out.writeBoolean(compactReferenceList != null);
+        if (compactReferenceList != null) {
+            compactReferenceList.writeToStream(out);
+        }
+        out.writeBoolean(obsoleteReferenceList != null);
+        if (obsoleteReferenceList != null) {
+            obsoleteReferenceList.writeToStream(out);
+        }
     }
     
     LongMap(DataInputStream dis, CacheDirectory cacheDir) throws IOException {
         super(dis, cacheDir);
         referenceList = new NumberList(dis, cacheDir);
+        if (dis.readBoolean()) {
+            compactReferenceList = new CompactNumberList(dis, cacheDir);
+        }
+        if (dis.readBoolean()) {
+            obsoleteReferenceList = new NumberList(dis, cacheDir);
+        }
     }
 }
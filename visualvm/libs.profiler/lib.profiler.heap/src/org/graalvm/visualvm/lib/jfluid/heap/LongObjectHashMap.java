@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+/**
+ * Map from longs to objects with open addressing and linear probing,
+ * keys are not boxed. {@link LongHashMap} was used as template.
+ * Zero key is stored outside of the table. Load factor is 3/4,
+ * removal is not supported. Concurrent reads are safe once the map
+ * is fully populated.
+ */
+class LongObjectHashMap<V> {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    private static final int MINIMUM_CAPACITY = 4;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private long[] keys;
+    private Object[] values;
+    private Object zeroValue;
+    private boolean hasZeroKey;
+    private int size;
+    private int threshold;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param expectedMaxSize the expected maximum size of the map
+     */
+    LongObjectHashMap(int expectedMaxSize) {
+        if (expectedMaxSize < 0) {
+            throw new IllegalArgumentException("expectedMaxSize is negative: "+expectedMaxSize); // NOI18N
+        }
+        init(capacity(expectedMaxSize));
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the value to which the specified key is mapped, or <code>null</code>
+     *         if this map contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        if (key == 0) {
+            return (V) zeroValue;
+        }
+        long[] tab = keys;
+        int mask = tab.length - 1;
+        int i = hash(key) & mask;
+
+        while (true) {
+            long item = tab[i];
+            if (item == key) {
+                return (V) values[i];
+            }
+            if (item == 0) {
+                return null;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        long[] tab = keys;
+        int mask = tab.length - 1;
+        int i = hash(key) & mask;
+
+        while (true) {
+            long item = tab[i];
+            if (item == key) {
+                return true;
+            }
+            if (item == 0) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     *
+     * @return the previous value associated with key, or <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (key == 0) {
+            Object oldValue = zeroValue;
+
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return (V) oldValue;
+        }
+        long[] tab = keys;
+        int mask = tab.length - 1;
+        int i = hash(key) & mask;
+        long item;
+
+        while ((item = tab[i]) != 0) {
+            if (item == key) {
+                Object oldValue = values[i];
+                values[i] = value;
+                return (V) oldValue;
+            }
+            i = (i + 1) & mask;
+        }
+        tab[i] = key;
+        values[i] = value;
+        if (++size >= threshold) {
+            resize(tab.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Hash of object ID for direct-mapped caches. IDs are aligned addresses, so their
+     * low bits are mostly zero; the multiplicative (Fibonacci) hash takes the top bits
+     * of the product, which depend on all bits of the ID.
+     * @return index between 0 and 2^bits - 1
+     */
+    static int idHash(long id, int bits) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - bits));
+    }
+
+    private static int hash(long x) {
+        // same spreading function as LongHashMap
+        int h = (int)(x ^ (x >>> 32));
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return h;
+    }
+
+    private static int capacity(int expectedMaxSize) {
+        // Compute min capacity for expectedMaxSize given a load factor of 3/4
+        int minCapacity = (4 * expectedMaxSize)/3;
+        int result;
+
+        if (minCapacity > MAXIMUM_CAPACITY || minCapacity < 0) {
+            result = MAXIMUM_CAPACITY;
+        } else {
+            result = MINIMUM_CAPACITY;
+            while (result <= minCapacity) {
+                result <<= 1;
+            }
+        }
+        return result;
+    }
+
+    private void init(int initCapacity) {
+        threshold = (initCapacity * 3) / 4;
+        keys = new long[initCapacity];
+        values = new Object[initCapacity];
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        if (oldKeys.length == MAXIMUM_CAPACITY) {
+            if (threshold == MAXIMUM_CAPACITY - 1) {
+                throw new IllegalStateException("Capacity exhausted."); // NOI18N
+            }
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+        init(newCapacity);
+        int mask = newCapacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key != 0) {
+                int i = hash(key) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
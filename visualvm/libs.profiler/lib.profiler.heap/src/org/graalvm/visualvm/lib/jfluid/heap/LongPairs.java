@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.IOException;
+
+/**
+ * Sorting of pairs of longs kept in two parallel arrays, which does not box the elements.
+ */
+class LongPairs {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    private static final int RUN_SIZE = 64 * 1024;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    private LongPairs() {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Stable merge sort of (key,value) pairs by key.
+     */
+    static void sort(long[] keys, long[] values, int size) {
+        long[] tmpKeys = new long[size];
+        long[] tmpValues = new long[size];
+        long[] srcKeys = keys;
+        long[] srcValues = values;
+        long[] dstKeys = tmpKeys;
+        long[] dstValues = tmpValues;
+
+        for (int width = 1; width < size; width *= 2) {
+            for (int left = 0; left < size; left += 2 * width) {
+                int mid = Math.min(left + width, size);
+                int right = Math.min(left + 2 * width, size);
+                int i = left;
+                int j = mid;
+
+                for (int k = left; k < right; k++) {
+                    if (i < mid && (j >= right || srcKeys[i] <= srcKeys[j])) {
+                        dstKeys[k] = srcKeys[i];
+                        dstValues[k] = srcValues[i++];
+                    } else {
+                        dstKeys[k] = srcKeys[j];
+                        dstValues[k] = srcValues[j++];
+                    }
+                }
+            }
+            long[] t = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = t;
+            t = srcValues;
+            srcValues = dstValues;
+            dstValues = t;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, size);
+            System.arraycopy(srcValues, 0, values, 0, size);
+        }
+    }
+
+    /**
+     * Stable sort of (key,value) pairs stored in {@link LongArray}s by key. Runs of pairs
+     * are sorted on the Java heap, sorted runs are then merged using temporary arrays
+     * in the cache directory.
+     */
+    static void sort(LongArray keys, LongArray values, long size, CacheDirectory cacheDir) throws IOException {
+        long[] runKeys = new long[(int) Math.min(size, RUN_SIZE)];
+        long[] runValues = new long[runKeys.length];
+
+        for (long start = 0; start < size; start += RUN_SIZE) {
+            int length = (int) Math.min(RUN_SIZE, size - start);
+
+            for (int i = 0; i < length; i++) {
+                runKeys[i] = keys.get(start + i);
+                runValues[i] = values.get(start + i);
+            }
+            sort(runKeys, runValues, length);
+            for (int i = 0; i < length; i++) {
+                keys.set(start + i, runKeys[i]);
+                values.set(start + i, runValues[i]);
+            }
+        }
+        if (size <= RUN_SIZE) {
+            return;
+        }
+        LongArray tmpKeys = new LongArray(cacheDir, size);
+        LongArray tmpValues = new LongArray(cacheDir, size);
+        LongArray srcKeys = keys;
+        LongArray srcValues = values;
+        LongArray dstKeys = tmpKeys;
+        LongArray dstValues = tmpValues;
+
+        try {
+            for (long width = RUN_SIZE; width < size; width *= 2) {
+                for (long left = 0; left < size; left += 2 * width) {
+                    long mid = Math.min(left + width, size);
+                    long right = Math.min(left + 2 * width, size);
+                    long i = left;
+                    long j = mid;
+
+                    for (long k = left; k < right; k++) {
+                        if (i < mid && (j >= right || srcKeys.get(i) <= srcKeys.get(j))) {
+                            dstKeys.set(k, srcKeys.get(i));
+                            dstValues.set(k, srcValues.get(i++));
+                        } else {
+                            dstKeys.set(k, srcKeys.get(j));
+                            dstValues.set(k, srcValues.get(j++));
+                        }
+                    }
+                }
+                LongArray t = srcKeys;
+                srcKeys = dstKeys;
+                dstKeys = t;
+                t = srcValues;
+                srcValues = dstValues;
+                dstValues = t;
+            }
+            if (srcKeys != keys) {
+                for (long k = 0; k < size; k++) {
+                    keys.set(k, srcKeys.get(k));
+                    values.set(k, srcValues.get(k));
+                }
+            }
+        } finally {
+            tmpKeys.delete();
+            tmpValues.delete();
+        }
+    }
+}
@@ -28,8 +28,9 @@ package org.graalvm.visualvm.lib.jfluid.heap;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 
@@ -53,6 +54,14 @@ class NearestGCRoot {
     private static final String SVM_REFFERENCE_1 = "com.oracle.svm.core.heap.DiscoverableReference";    // NOI18N
     private static final String SVM_REFERENT_FIELD_NAME = "rawReferent"; // NOI18N
     private static final int DEEP_LEVEL = 10000;
+    private static final int LEVEL_WINDOW = 256 * 1024;
+    private static final int LEVEL_CHUNK = 4 * 1024;
+    private static final int AVERAGE_INSTANCE_SIZE = 64;
+    // flags of instance recorded by parallel level scan
+    private static final int HAS_VALUES = 1;
+    private static final int LEAF = 2;
+    private static final int NULL_INSTANCE = 4;
+    private static final int FLAGS_BITS = 3;
 
     //~ Instance fields ----------------------------------------------------------------------------------------------------------
 
@@ -60,16 +69,16 @@ class NearestGCRoot {
     private HprofHeap heap;
     private LongBuffer readBuffer;
     private LongBuffer writeBuffer;
-    private LongBuffer deepPathBuffer;
-    private LongBuffer leaves;
     private LongBuffer multipleParents;
     private Set<JavaClass> referenceClasses;
+    private LongObjectHashMap<JavaClass> classIdToClassMap;
+    private LongSet gcRootIds;
     private boolean gcRootsComputed;
     private long allInstances;
     private long processedInstances;
     private long level;
-//private long leavesCount;
-//private long firstLevel;
+    private long[] levelOffsets = new long[1024];
+    private final FieldCursor fieldCursor = new FieldCursor();
 //private long multiParentsCount;
 
     //~ Constructors -------------------------------------------------------------------------------------------------------------
@@ -85,17 +94,16 @@ class NearestGCRoot {
             return instance;
         }
         computeGCRoots();
-        long nextGCPathId = heap.idToOffsetMap.get(instance.getInstanceId()).getNearestGCRootPointer();
+        LongMap idToOffsetMap = heap.idToOffsetMap;
+        long nextGCPathId = idToOffsetMap.getNearestGCRootPointerAt(idToOffsetMap.getSlot(instance.getInstanceId()));
         return heap.getInstanceByID(nextGCPathId);
     }
 
-    private boolean isSpecialReference(FieldValue value, Instance instance) {
-        Field f = value.getField();
-
+    private boolean isSpecialReference(Field f, Instance instance) {
         return f.equals(referentField) && referenceClasses.contains(instance.getJavaClass());
     }
 
-    private synchronized void computeGCRoots() {
+    synchronized void computeGCRoots() {
         if (gcRootsComputed) {
             return;
         }
@@ -108,24 +116,33 @@ class NearestGCRoot {
         heap.computeReferences(); // make sure references are computed first
         heap.cacheDirectory.setDirty(true);
         allInstances = heap.getSummary().getTotalLiveInstances();
-        Set<JavaClass> processedClasses = new HashSet<>(heap.getAllClasses().size()*4/3);
-        
+        LongSet processedClasses = new LongSet(heap.getAllClasses().size());
+        int threads = ParallelScan.getThreads(heap);
+
         try {
             createBuffers();
+            // parallel scan reads classes and GC roots without locking
+            classIdToClassMap = heap.getClassDumpSegment().getClassIdToClassMap();
             fillZeroLevel();
 
             do {
                 switchBuffers();
-                computeOneLevel(processedClasses);
+                if (threads > 1) {
+                    computeOneLevel(processedClasses, threads);
+                } else {
+                    computeOneLevel(processedClasses);
+                }
             } while (hasMoreLevels());
         } catch (IOException ex) {
             ex.printStackTrace();
         }
 
         deleteBuffers();
+        classIdToClassMap = null;
+        gcRootIds = null;
         heap.idToOffsetMap.flush();
         gcRootsComputed = true;
-        heap.writeToFile();
+        heap.writeCheckpoint(HeapCheckpoint.GC_ROOTS);
         HeapProgress.progressFinish();
     }
 
@@ -161,79 +178,273 @@ class NearestGCRoot {
         return false;
     }
 
-    private void computeOneLevel(Set<JavaClass> processedClasses) throws IOException {
-        int idSize = heap.dumpBuffer.getIDSize();
+    private void computeOneLevel(LongSet processedClasses) throws IOException {
         level++;
         for (;;) {
-            Instance instance;
             long instanceOffset = readLong();
-            List<FieldValue> fieldValues;
-            boolean hasValues = false;
-            
+
             if (instanceOffset == 0L) { // end of level
                 break;
             }
-            HeapProgress.progress(processedInstances++,allInstances);
-            instance = heap.getInstanceByOffset(new long[] {instanceOffset});
-            if (instance instanceof ObjectArrayInstance) {
-                ObjectArrayDump array = (ObjectArrayDump) instance;
-                int size = array.getLength();
-                long offset = array.getOffset();
-                long instanceId = instance.getInstanceId();
+            computeInstance(instanceOffset, processedClasses);
+        }
+    }
 
-                for (int i=0;i<size;i++) {
-                    long referenceId = heap.dumpBuffer.getID(offset + (i * idSize));
+    private void computeInstance(long instanceOffset, LongSet processedClasses) throws IOException {
+        int idSize = heap.dumpBuffer.getIDSize();
+        Instance instance;
+        boolean hasValues = false;
+
+        HeapProgress.progress(processedInstances++,allInstances);
+        instance = heap.getInstanceByOffset(new long[] {instanceOffset});
+        if (instance instanceof ObjectArrayInstance) {
+            ObjectArrayDump array = (ObjectArrayDump) instance;
+            int size = array.getLength();
+            long offset = array.getOffset();
+            long instanceId = instance.getInstanceId();
+
+            for (int i=0;i<size;i++) {
+                long referenceId = heap.dumpBuffer.getID(offset + (i * idSize));
 
-                    if (writeConnection(instanceId, referenceId)) {
+                if (writeConnection(instanceId, referenceId)) {
+                    hasValues = true;
+                }
+            }
+            if (!hasValues) {
+                writeLeaf(instanceId,instance.getSize());
+            }
+            return;
+        } else if (instance instanceof PrimitiveArrayInstance) {
+            writeLeaf(instance.getInstanceId(),instance.getSize());
+            return;
+        } else if (instance instanceof ClassDumpInstance) {
+            fieldCursor.resetStatic(((ClassDumpInstance) instance).classDump);
+        } else if (instance instanceof InstanceDump) {
+            fieldCursor.reset(instance);
+        } else {
+            if (instance == null) {
+                System.err.println("HeapWalker Warning - null instance for " + heap.dumpBuffer.getID(instanceOffset + 1)); // NOI18N
+                return;
+            }
+            throw new IllegalArgumentException("Illegal type " + instance.getClass()); // NOI18N
+        }
+        long instanceId = instance.getInstanceId();
+        while (fieldCursor.next()) {
+            if (fieldCursor.isObject()) {
+                 // skip Soft, Weak, Final and Phantom References
+                if (!isSpecialReference(fieldCursor.getField(), instance)) {
+                    if (writeConnection(instanceId, fieldCursor.getObjectId())) {
                         hasValues = true;
                     }
                 }
-                if (!hasValues) {
-                    writeLeaf(instanceId,instance.getSize());
+            }
+        }
+        if (writeClassConnection(processedClasses, instanceId, instance.getJavaClass())) {
+            hasValues = true;
+        }
+        if (!hasValues) {
+            writeLeaf(instanceId,instance.getSize());
+        }
+    }
+
+    /**
+     * Parallel version of {@link #computeOneLevel(Set)}. Instances of the level are read in windows,
+     * each window is split to chunks scanned in parallel. Scan only claims unvisited references for
+     * the lowest position in the level, all changes are then applied in level order by the calling
+     * thread, so the result is the same as with sequential computation.
+     */
+    private void computeOneLevel(LongSet processedClasses, int threads) throws IOException {
+        int chunkSize = (int) Math.max(1, Math.min(LEVEL_CHUNK, ParallelScan.getChunkSize() / AVERAGE_INSTANCE_SIZE));
+        boolean endOfLevel = false;
+
+        level++;
+        while (!endOfLevel) {
+            int count = 0;
+
+            while (count < LEVEL_WINDOW) {
+                long instanceOffset = readLong();
+
+                if (instanceOffset == 0L) { // end of level
+                    endOfLevel = true;
+                    break;
                 }
-                continue;
-            } else if (instance instanceof PrimitiveArrayInstance) {
-                writeLeaf(instance.getInstanceId(),instance.getSize());
-                continue;
-            } else if (instance instanceof ClassDumpInstance) {
-                ClassDump javaClass = ((ClassDumpInstance) instance).classDump;
-
-                fieldValues = javaClass.getStaticFieldValues();
-            } else if (instance instanceof InstanceDump) {
-                fieldValues = instance.getFieldValues();
-            } else {
-                if (instance == null) {
-                    System.err.println("HeapWalker Warning - null instance for " + heap.dumpBuffer.getID(instanceOffset + 1)); // NOI18N
-                    continue;
+                if (count == levelOffsets.length) {
+                    levelOffsets = Arrays.copyOf(levelOffsets, Math.min(count * 2, LEVEL_WINDOW));
                 }
-                throw new IllegalArgumentException("Illegal type " + instance.getClass()); // NOI18N
+                levelOffsets[count++] = instanceOffset;
             }
-            long instanceId = instance.getInstanceId();
-            for (FieldValue val : fieldValues) {
-                if (val instanceof ObjectFieldValue) {
-                     // skip Soft, Weak, Final and Phantom References
-                    if (!isSpecialReference(val, instance)) {
-                        long refInstanceId;
-
-                        if (val instanceof HprofFieldObjectValue) {
-                            refInstanceId = ((HprofFieldObjectValue) val).getInstanceID();
-                        } else {
-                             refInstanceId = ((HprofInstanceObjectValue) val).getInstanceId();
-                        }
-                        if (writeConnection(instanceId, refInstanceId)) {
-                            hasValues = true;
-                        }
+            if (count > 0) {
+                computeLevelWindow(levelOffsets, count, chunkSize, processedClasses, threads);
+            }
+        }
+    }
+
+    private void computeLevelWindow(final long[] offsets, int count, int chunkSize, final LongSet processedClasses, int threads) throws IOException {
+        int chunksCount = (count + chunkSize - 1) / chunkSize;
+
+        if (chunksCount == 1) {
+            // nothing to parallelize
+            for (int i = 0; i < count; i++) {
+                computeInstance(offsets[i], processedClasses);
+            }
+            return;
+        }
+        long[] chunks = new long[chunksCount + 1];
+        final LevelChunk[] results = new LevelChunk[chunksCount];
+
+        for (int i = 0; i < chunksCount; i++) {
+            chunks[i] = (long) i * chunkSize;
+        }
+        chunks[chunksCount] = count;
+        ParallelScan.run(chunks, threads, (chunk, start, end) -> {
+            LevelChunk result = new LevelChunk();
+
+            for (int i = (int) start; i < end; i++) {
+                // position 0 means not claimed
+                scanInstance(offsets[i], i + 1, processedClasses, result);
+            }
+            results[chunk] = result;
+        }, false);
+        for (int chunk = 0; chunk < chunksCount; chunk++) {
+            applyChunk(results[chunk], (int) chunks[chunk] + 1, processedClasses);
+        }
+        for (LevelChunk result : results) {
+            result.clearClaims();
+        }
+    }
+
+    private void scanInstance(long instanceOffset, long position, LongSet processedClasses, LevelChunk result) {
+        int idSize = heap.dumpBuffer.getIDSize();
+        Instance instance = heap.getInstanceByOffset(new long[] {instanceOffset}, classIdToClassMap);
+        FieldCursor cursor = result.fieldCursor;
+        int flags = 0;
+
+        if (instance == null) {
+            result.addInstance(heap.dumpBuffer.getID(instanceOffset + 1), 0, NULL_INSTANCE);
+            return;
+        }
+        long instanceId = instance.getInstanceId();
+        if (instance instanceof PrimitiveArrayInstance) {
+            result.addInstance(instanceId, instance.getSize(), LEAF);
+            return;
+        }
+        int header = result.addInstance(instanceId, instance.getSize(), 0);
+        if (instance instanceof ObjectArrayInstance) {
+            ObjectArrayDump array = (ObjectArrayDump) instance;
+            int size = array.getLength();
+            long offset = array.getOffset();
+
+            for (int i=0;i<size;i++) {
+                long referenceId = heap.dumpBuffer.getID(offset + (i * idSize));
+
+                if (claimConnection(referenceId, position, result)) {
+                    flags = HAS_VALUES;
+                }
+            }
+            result.setFlags(header, flags);
+            return;
+        } else if (instance instanceof ClassDumpInstance) {
+            cursor.resetStatic(((ClassDumpInstance) instance).classDump);
+        } else if (instance instanceof InstanceDump) {
+            cursor.reset(instance);
+        } else {
+            throw new IllegalArgumentException("Illegal type " + instance.getClass()); // NOI18N
+        }
+        while (cursor.next()) {
+            if (cursor.isObject()) {
+                 // skip Soft, Weak, Final and Phantom References
+                if (!isSpecialReference(cursor.getField(), instance)) {
+                    if (claimConnection(cursor.getObjectId(), position, result)) {
+                        flags = HAS_VALUES;
                     }
                 }
             }
-            if (writeClassConnection(processedClasses, instanceId, instance.getJavaClass())) {
-                hasValues = true;
+        }
+        long jclsId = instance.getJavaClass().getJavaClassId();
+        // processedClasses is only modified between parallel scans
+        if (!processedClasses.contains(jclsId)) {
+            result.addClassConnection(jclsId, claim(jclsId, position));
+        }
+        result.setFlags(header, flags);
+    }
+
+    private boolean claimConnection(long refInstanceId, long position, LevelChunk result) {
+        if (refInstanceId != 0) {
+            long slot = heap.idToOffsetMap.getSlot(refInstanceId);
+
+            if (slot != -1) {
+                if (claim(slot, refInstanceId, position)) {
+                    result.addConnection(slot);
+                }
+                return true;
             }
-            if (!hasValues) {
-                writeLeaf(instanceId,instance.getSize());
+        }
+        return false;
+    }
+
+    /**
+     * @return claimed slot or -1
+     */
+    private long claim(long refInstanceId, long position) {
+        long slot = heap.idToOffsetMap.getSlot(refInstanceId);
+
+        if (slot != -1 && claim(slot, refInstanceId, position)) {
+            return slot;
+        }
+        return -1;
+    }
+
+    private boolean claim(long slot, long refInstanceId, long position) {
+        LongMap idToOffsetMap = heap.idToOffsetMap;
+
+        if (!idToOffsetMap.hasNearestGCRootPointerAt(slot) && !gcRootIds.contains(refInstanceId)) {
+            idToOffsetMap.claimNearestGCRootPointerAt(slot, position);
+            return true;
+        }
+        return false;
+    }
+
+    private void applyChunk(LevelChunk result, int position, LongSet processedClasses) throws IOException {
+        long[] data = result.data;
+
+        for (int i = 0; i < result.size; position++) {
+            long instanceId = data[i++];
+            long size = data[i++];
+            int flags = (int) data[i++];
+            int connections = flags >>> FLAGS_BITS;
+            boolean hasValues = (flags & HAS_VALUES) != 0;
+
+            HeapProgress.progress(processedInstances++,allInstances);
+            if ((flags & NULL_INSTANCE) != 0) {
+                System.err.println("HeapWalker Warning - null instance for " + instanceId); // NOI18N
+                continue;
+            }
+            for (int c = 0; c < connections; c++) {
+                long slot = data[i++];
+                long jclsId = data[i++];
+
+                if (jclsId == 0) {
+                    applyConnection(instanceId, slot, position, false);
+                } else if (!processedClasses.add(jclsId) && slot != -1) {
+                    if (applyConnection(instanceId, slot, position, true)) {
+                        hasValues = true;
+                    }
+                }
             }
+            if ((flags & LEAF) != 0 || !hasValues) {
+                writeLeaf(instanceId, size);
+            }
+        }
+    }
 
+    private boolean applyConnection(long instanceId, long slot, long position, boolean addRefInstanceId) throws IOException {
+        LongMap idToOffsetMap = heap.idToOffsetMap;
+
+        if (idToOffsetMap.getRetainedSizeAt(slot) == position && !idToOffsetMap.hasNearestGCRootPointerAt(slot)) {
+            visit(slot, idToOffsetMap.getKeyAt(slot), instanceId, addRefInstanceId);
+            return true;
         }
+        return false;
     }
 
     private Field computeReferentField(String className, String fieldName) {
@@ -252,9 +463,7 @@ class NearestGCRoot {
     private void createBuffers() {
         readBuffer = new LongBuffer(BUFFER_SIZE, heap.cacheDirectory);
         writeBuffer = new LongBuffer(BUFFER_SIZE, heap.cacheDirectory);
-        leaves = new LongBuffer(BUFFER_SIZE, heap.cacheDirectory);
         multipleParents = new LongBuffer(BUFFER_SIZE, heap.cacheDirectory);
-        deepPathBuffer = new LongBuffer(BUFFER_SIZE, heap.cacheDirectory);
     }
 
     private void deleteBuffers() {
@@ -263,13 +472,20 @@ class NearestGCRoot {
     }
 
     private void fillZeroLevel() throws IOException {
-        for (GCRoot gcr : heap.getGCRoots()) {
+        Collection<GCRoot> roots = heap.getGCRoots();
+
+        gcRootIds = new LongSet(roots.size());
+        for (GCRoot gcr : roots) {
             HprofGCRoot root = (HprofGCRoot)gcr;
             long id = root.getInstanceId();
-            LongMap.Entry entry = heap.idToOffsetMap.get(id);
-            
-            if (entry != null) {
-                writeLong(entry.getOffset());
+            long slot = heap.idToOffsetMap.getSlot(id);
+
+            if (id != 0) {
+                gcRootIds.add(id);
+            }
+
+            if (slot != -1) {
+                writeLong(heap.idToOffsetMap.getOffsetAt(slot));
             }
         }
     }
@@ -290,11 +506,11 @@ class NearestGCRoot {
         writeBuffer.reset();
     }
 
-    private boolean writeClassConnection(final Set<JavaClass> processedClasses, final long instanceId, final JavaClass jcls) throws IOException {
-        if (!processedClasses.contains(jcls)) {
-            long jclsId = jcls.getJavaClassId();
-            
-            processedClasses.add(jcls);
+    private boolean writeClassConnection(final LongSet processedClasses, final long instanceId, final JavaClass jcls) throws IOException {
+        long jclsId = jcls.getJavaClassId();
+
+        if (!processedClasses.contains(jclsId)) {
+            processedClasses.add(jclsId);
             if (writeConnection(instanceId, jclsId, true)) {
                 return true;
             }
@@ -310,39 +526,45 @@ class NearestGCRoot {
     private boolean writeConnection(long instanceId, long refInstanceId, boolean addRefInstanceId)
                           throws IOException {
         if (refInstanceId != 0) {
-            LongMap.Entry entry = heap.idToOffsetMap.get(refInstanceId);
+            long slot = heap.idToOffsetMap.getSlot(refInstanceId);
 
-            if (entry != null && entry.getNearestGCRootPointer() == 0L && heap.gcRoots.getGCRoots(refInstanceId) == null) {
-                writeLong(entry.getOffset());
-                if (level > DEEP_LEVEL) {
-                    deepPathBuffer.writeLong(refInstanceId);
-                    entry.setDeepObj();
-                }
-                if (addRefInstanceId) {
-                    if (!checkReferences(refInstanceId, instanceId)) {
-                        entry.addReference(instanceId);
-                    }
-                }
-                entry.setNearestGCRootPointer(instanceId);
-                if (!entry.hasOnlyOneReference()) {
-                    multipleParents.writeLong(refInstanceId);
-//multiParentsCount++;
-                }
+            if (slot != -1 && heap.idToOffsetMap.getNearestGCRootPointerAt(slot) == 0L && !gcRootIds.contains(refInstanceId)) {
+                visit(slot, refInstanceId, instanceId, addRefInstanceId);
                 return true;
             }
-            return !addRefInstanceId && entry != null;
+            return !addRefInstanceId && slot != -1;
         }
         return false;
     }
 
+    private void visit(long slot, long refInstanceId, long instanceId, boolean addRefInstanceId) throws IOException {
+        LongMap idToOffsetMap = heap.idToOffsetMap;
+
+        writeLong(idToOffsetMap.getOffsetAt(slot));
+        if (level > DEEP_LEVEL) {
+            idToOffsetMap.setDeepObjAt(slot);
+        }
+        if (addRefInstanceId) {
+            if (!checkReferences(refInstanceId, instanceId)) {
+                idToOffsetMap.addReferenceAt(slot, instanceId);
+            }
+        }
+        idToOffsetMap.setNearestGCRootPointerAt(slot, instanceId);
+        if (!idToOffsetMap.hasOnlyOneReferenceAt(slot)) {
+            multipleParents.writeLong(refInstanceId);
+//multiParentsCount++;
+        }
+    }
+
     private boolean checkReferences(final long refInstanceId, final long instanceId) {
         Instance instance = heap.getInstanceByID(instanceId);        
         
-        for (FieldValue field : instance.getFieldValues()) {
-            if (field instanceof HprofInstanceObjectValue) {
-                HprofInstanceObjectValue objectValue = (HprofInstanceObjectValue) field;
+        if (instance instanceof InstanceDump) {
+            FieldCursor cursor = new FieldCursor();
 
-                if (objectValue.getInstanceId() == refInstanceId) {
+            cursor.reset(instance);
+            while (cursor.next()) {
+                if (cursor.isObject() && cursor.getObjectId() == refInstanceId) {
                     return true;
                 }
             }
@@ -355,51 +577,39 @@ class NearestGCRoot {
     }
 
     private void writeLeaf(long instanceId, long size) throws IOException {
-        LongMap.Entry entry = heap.idToOffsetMap.get(instanceId);
+        LongMap idToOffsetMap = heap.idToOffsetMap;
+        long slot = idToOffsetMap.getSlot(instanceId);
         
-        entry.setTreeObj();
-        entry.setRetainedSize(size);
-//leavesCount++;
-        if (entry.hasOnlyOneReference()) {
-            long gcRootPointer = entry.getNearestGCRootPointer();
-            if (gcRootPointer != 0) {
-                LongMap.Entry gcRootPointerEntry = heap.idToOffsetMap.get(gcRootPointer);
-                
-                if (gcRootPointerEntry.getRetainedSize() == 0) {
-                    gcRootPointerEntry.setRetainedSize(-1);
-                    leaves.writeLong(gcRootPointer);
-//firstLevel++;
-                }
-            }
-        }
+        idToOffsetMap.setTreeObjAt(slot);
+        idToOffsetMap.setRetainedSizeAt(slot, size);
     }
 
-    LongBuffer getLeaves() {
-        computeGCRoots();
-//System.out.println("Multi par.  "+multiParentsCount);
-//System.out.println("Leaves      "+leavesCount);
-//System.out.println("Tree obj.   "+heap.idToOffsetMap.treeObj);
-//System.out.println("First level "+firstLevel);
-        return leaves;
-    }
-    
     LongBuffer getMultipleParents() {
         computeGCRoots();
         return multipleParents;
     }
 
-    LongBuffer getDeepPathBuffer() {
-        computeGCRoots();
-        return deepPathBuffer;
+    /**
+     * Empties multiple parents buffer, its backing file is kept
+     * until {@link #deleteBufferFiles()} is called.
+     */
+    synchronized void resetBuffers() throws IOException {
+        if (gcRootsComputed) {
+            multipleParents.reset();
+        }
+    }
+
+    synchronized void deleteBufferFiles() {
+        if (gcRootsComputed) {
+            multipleParents.delete();
+        }
     }
 
     //---- Serialization support
     void writeToStream(DataOutputStream out) throws IOException {
         out.writeBoolean(gcRootsComputed);
         if (gcRootsComputed) {
-            leaves.writeToStream(out);
             multipleParents.writeToStream(out);
-            deepPathBuffer.writeToStream(out);
         }
     }
 
@@ -407,9 +617,64 @@ class NearestGCRoot {
         this(h);
         gcRootsComputed = dis.readBoolean();
         if (gcRootsComputed) {
-            leaves = new LongBuffer(dis, heap.cacheDirectory);
             multipleParents = new LongBuffer(dis, heap.cacheDirectory);
-            deepPathBuffer = new LongBuffer(dis, heap.cacheDirectory);
+        }
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Result of parallel scan of one chunk of level. For every instance it holds
+     * instance id, size and flags with number of connections, followed by
+     * connections as pairs of claimed {@link LongMap} slot and class id
+     * (0 for references from fields and array elements).
+     */
+    private class LevelChunk {
+        private final FieldCursor fieldCursor = new FieldCursor();
+        private long[] data = new long[64];
+        private int size;
+        private int header;
+
+        private int addInstance(long instanceId, long instanceSize, int flags) {
+            header = size;
+            add(instanceId);
+            add(instanceSize);
+            add(flags);
+            return header;
+        }
+
+        private void setFlags(int instanceHeader, int flags) {
+            data[instanceHeader + 2] |= flags;
+        }
+
+        private void addConnection(long slot) {
+            addClassConnection(0, slot);
+        }
+
+        private void addClassConnection(long jclsId, long slot) {
+            add(slot);
+            add(jclsId);
+            data[header + 2] += 1 << FLAGS_BITS;
+        }
+
+        private void clearClaims() {
+            for (int i = 0; i < size; ) {
+                int connections = (int) data[i + 2] >>> FLAGS_BITS;
+
+                i += 3;
+                for (int c = 0; c < connections; c++, i += 2) {
+                    if (data[i] != -1) {
+                        heap.idToOffsetMap.setRetainedSizeAt(data[i], 0);
+                    }
+                }
+            }
+        }
+
+        private void add(long value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
         }
     }
 }
@@ -58,6 +58,10 @@ class NumberList {
     private MappedByteBuffer buf;
     private long mappedSize;
     private CacheDirectory cacheDirectory;
+    // blocks written by addNumbers(), which are not yet in data file
+    private byte[] appendBuffer;
+    private int appendSize;
+    private long appendOffset;
 
     NumberList(long dumpFileSize, CacheDirectory cacheDir) throws IOException {
         this(bytes(dumpFileSize), cacheDir);
@@ -106,6 +110,46 @@ class NumberList {
         super.finalize();
     }
     
+    File getFile() {
+        return dataFile;
+    }
+
+    /**
+     * @return true if no list was added
+     */
+    boolean isEmpty() {
+        return blocks <= 1;
+    }
+
+    /**
+     * Reorders numbers given in the order they were added to the order, in which
+     * they are returned by {@link #getNumbersIterator(long)} - the last block first.
+     */
+    static void toIterationOrder(long[] numbers, int count, long[] result) {
+        int position = 0;
+
+        for (int start = ((count - 1) / NUMBERS_IN_BLOCK) * NUMBERS_IN_BLOCK; start >= 0; start -= NUMBERS_IN_BLOCK) {
+            int length = Math.min(NUMBERS_IN_BLOCK, count - start);
+
+            System.arraycopy(numbers, start, result, position, length);
+            position += length;
+        }
+    }
+
+    /**
+     * Reverse operation to {@link #toIterationOrder(long[], int, long[])}.
+     */
+    static void toInsertionOrder(long[] numbers, int count, long[] result) {
+        int headSize = ((count - 1) % NUMBERS_IN_BLOCK) + 1;
+        int position = 0;
+
+        for (int start = count - NUMBERS_IN_BLOCK; start >= headSize; start -= NUMBERS_IN_BLOCK) {
+            System.arraycopy(numbers, start, result, position, NUMBERS_IN_BLOCK);
+            position += NUMBERS_IN_BLOCK;
+        }
+        System.arraycopy(numbers, 0, result, position, headSize);
+    }
+
     long addNumber(long startOffset,long number) throws IOException {
         int slot;
         byte[] block = getBlock(startOffset);
@@ -134,6 +178,40 @@ class NumberList {
         return blockOffset;
     }
     
+    /**
+     * Writes the whole list at once. Numbers are stored in the same layout as
+     * if they were added by {@link #addFirstNumber(long, long)} and
+     * {@link #addNumber(long, long)}, duplicates have to be removed by the caller.
+     */
+    long addNumbers(long[] numbers,int count) throws IOException {
+        long blockOffset = 0;
+
+        if (appendBuffer == null) {
+            appendBuffer = new byte[1024*blockSize];
+        }
+        for (int i=0;i<count;i+=NUMBERS_IN_BLOCK) {
+            if (appendSize == appendBuffer.length) {
+                flushAppendBuffer();
+            }
+            if (appendSize == 0) {
+                appendOffset = blocks*blockSize;
+            }
+            int end = Math.min(i+NUMBERS_IN_BLOCK,count);
+            int offset = appendSize;
+            for (int j=i;j<end;j++,offset+=numberSize) {
+                putNumber(appendBuffer,offset,numbers[j]);
+            }
+            for (int j=end;j<i+NUMBERS_IN_BLOCK;j++,offset+=numberSize) {
+                putNumber(appendBuffer,offset,0L);
+            }
+            putNumber(appendBuffer,offset,blockOffset); // link to previous block
+            blockOffset = blocks*blockSize;
+            blocks++;
+            appendSize += blockSize;
+        }
+        return blockOffset;
+    }
+
     void putFirst(long startOffset,long number) throws IOException {
         int slot;
         long offset = startOffset;
@@ -208,6 +286,7 @@ class NumberList {
     
     void flush() {
         try {
+            flushAppendBuffer();
             flushDirtyBlocks();
             blockCache.clear();
             mmapData();
@@ -255,6 +334,12 @@ class NumberList {
               ((buf[i++] & 255) <<  0));
     }
         
+    private void putNumber(byte[] block,int offset,long element) {
+        for (int i=numberSize-1;i>=0;i--) {
+            block[offset++]=(byte)(element >> (i*8));
+        }
+    }
+
     private synchronized void writeNumber(long blockOffset,byte[] block,int slot,long element) throws IOException {
         if (blockOffset < mappedSize) {
             long offset = blockOffset+slot*numberSize;
@@ -288,6 +373,9 @@ class NumberList {
         } else {
             Long offsetObj = new Long(offset);
 
+            if (appendSize > 0 && offset >= appendOffset) {
+                flushAppendBuffer();
+            }
             block = blockCache.get(offsetObj);
             if (block == null) {
                 block = new byte[blockSize];
@@ -300,12 +388,21 @@ class NumberList {
     }
 
     private long addBlock() throws IOException {
+        flushAppendBuffer();
         long offset=blocks*blockSize;
         blockCache.put(new Long(offset),new byte[blockSize]);
         blocks++;
         return offset;
     }
 
+    private void flushAppendBuffer() throws IOException {
+        if (appendSize > 0) {
+            data.seek(appendOffset);
+            data.write(appendBuffer,0,appendSize);
+            appendSize = 0;
+        }
+    }
+
     private void flushDirtyBlocks() throws IOException {
         if (dirtyBlocks.isEmpty()) {
             return;
@@ -337,6 +434,7 @@ class NumberList {
 
     //---- Serialization support
     void writeToStream(DataOutputStream out) throws IOException {
+        flushAppendBuffer();
         out.writeUTF(dataFile.getAbsolutePath());
         out.writeInt(numberSize);
         out.writeLong(blocks);
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processes record-aligned chunks of the heap dump in parallel. Chunk boundaries
+ * are collected by {@link HprofHeap} during the initial scan of heap dump tags,
+ * so any chunk start is guaranteed to be a start of a heap dump record.
+ * Worker threads pick chunks one by one, progress is reported from the calling
+ * thread, since {@link HeapProgress} is bound to it.
+ */
+class ParallelScan {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    static final String THREADS_PROPERTY = "org.graalvm.visualvm.lib.jfluid.heap.threads";   // NOI18N
+    static final String CHUNK_SIZE_PROPERTY = "org.graalvm.visualvm.lib.jfluid.heap.chunksize";   // NOI18N
+    static final String MEMORY_PROPERTY = "org.graalvm.visualvm.lib.jfluid.heap.memory";   // NOI18N
+    private static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+    private static final long PROGRESS_INTERVAL = 100;
+
+    //~ Inner Interfaces ---------------------------------------------------------------------------------------------------------
+
+    interface ChunkTask {
+        void process(int chunk, long startOffset, long endOffset) throws IOException;
+    }
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    private ParallelScan() {
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return number of worker threads used to process the heap dump, 1 means sequential processing
+     */
+    static int getThreads(HprofHeap heap) {
+        if (heap.dumpBuffer instanceof HprofFileBuffer) {
+            // file buffer is synchronized, parallel access does not help
+            return 1;
+        }
+        return getThreads();
+    }
+
+    static int getThreads() {
+        int threads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()).intValue();
+        return Math.max(1, threads);
+    }
+
+    static long getChunkSize() {
+        long size = Long.getLong(CHUNK_SIZE_PROPERTY, DEFAULT_CHUNK_SIZE).longValue();
+        return Math.max(1, size);
+    }
+
+    /**
+     * @return number of bytes of Java heap all workers together may use for their buffers,
+     *         0 if not limited
+     */
+    static long getMemoryBudget() {
+        long budget = Long.getLong(MEMORY_PROPERTY, 0).longValue();
+        return Math.max(0, budget);
+    }
+
+    /**
+     * Creates chunk offsets covering &lt;startOffset,endOffset) from record boundaries.
+     * Chunk i spans from chunks[i] to chunks[i+1].
+     */
+    static long[] getChunks(long[] boundaries, long startOffset, long endOffset) {
+        List<Long> chunks = new ArrayList<>();
+
+        chunks.add(startOffset);
+        if (boundaries != null) {
+            for (long boundary : boundaries) {
+                if (boundary > startOffset && boundary < endOffset) {
+                    chunks.add(boundary);
+                }
+            }
+        }
+        chunks.add(endOffset);
+        long[] offsets = new long[chunks.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = chunks.get(i).longValue();
+        }
+        return offsets;
+    }
+
+    static void run(long[] chunks, int threads, ChunkTask task) {
+        run(chunks, threads, task, true);
+    }
+
+    /**
+     * @param reportProgress if false, the caller reports progress itself and chunk offsets need not be
+     *        offsets into the heap dump
+     */
+    static void run(final long[] chunks, int threads, final ChunkTask task, boolean reportProgress) {
+        final int chunksCount = chunks.length - 1;
+        final long startOffset = chunks[0];
+        final long endOffset = chunks[chunksCount];
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final AtomicLong processed = new AtomicLong();
+        int workers = Math.min(threads, chunksCount);
+
+        if (workers <= 1) {
+            try {
+                for (int chunk = 0; chunk < chunksCount; chunk++) {
+                    task.process(chunk, chunks[chunk], chunks[chunk + 1]);
+                    if (reportProgress) {
+                        HeapProgress.progressUpdate(startOffset, chunks[chunk + 1], endOffset);
+                    }
+                }
+            } catch (IOException ex) {
+                throw new IllegalArgumentException(ex.getLocalizedMessage(), ex);
+            }
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new WorkerThreadFactory());
+        List<Future<Void>> results = new ArrayList<>(workers);
+
+        try {
+            for (int i = 0; i < workers; i++) {
+                results.add(executor.submit(() -> {
+                    try {
+                        for (int chunk = nextChunk.getAndIncrement(); chunk < chunksCount; chunk = nextChunk.getAndIncrement()) {
+                            task.process(chunk, chunks[chunk], chunks[chunk + 1]);
+                            processed.addAndGet(chunks[chunk + 1] - chunks[chunk]);
+                        }
+                    } catch (IOException | RuntimeException | Error ex) {
+                        // stop other workers
+                        nextChunk.set(chunksCount);
+                        throw ex;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                for (;;) {
+                    try {
+                        result.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException ex) {
+                        if (reportProgress) {
+                            HeapProgress.progressUpdate(startOffset, startOffset + processed.get(), endOffset);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            nextChunk.set(chunksCount);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalArgumentException(cause.getLocalizedMessage(), cause);
+        } finally {
+            executor.shutdown();
+        }
+        if (reportProgress) {
+            HeapProgress.progressUpdate(startOffset, endOffset, endOffset);
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "HeapWalker Worker " + THREAD_NUMBER.incrementAndGet()); // NOI18N
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -86,13 +86,13 @@ class PrimitiveArrayDump extends ArrayDump implements PrimitiveArrayInstance {
         return bytes;
     }
 
-    private long getArrayStartOffset() {
+    long getArrayStartOffset() {
         int idSize = dumpClass.getHprofBuffer().getIDSize();
 
         return fileOffset + 1 + idSize + 4 + 4 + 1;
     }
 
-    private byte getType() {
+    byte getType() {
         HprofByteBuffer dumpBuffer = dumpClass.getHprofBuffer();
         int idSize = dumpBuffer.getIDSize();
 
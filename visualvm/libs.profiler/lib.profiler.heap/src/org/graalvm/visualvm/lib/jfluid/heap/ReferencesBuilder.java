@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Builds references (referrers) of heap objects in two phases. In the first phase
+ * (target,source) pairs of each chunk of the heap dump are collected, sorted by
+ * the target and saved to run files. Chunks can be processed in parallel.
+ * In the second phase runs are merged and references of every object are written
+ * to {@link LongMap} at once, so that {@link CompactNumberList} is written sequentially.
+ * The order of references is the same as if they were added one by one
+ * in the order of the heap dump. References from static fields are collected
+ * as an extra run after all chunks.
+ */
+class ReferencesBuilder {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    private static final int RUN_SIZE = 1024 * 1024;
+    private static final int MAX_RUN_SIZE = 16 * 1024 * 1024;
+    // targets and sources of a run plus temporary arrays used by sort
+    private static final int BYTES_PER_PAIR = 4 * 8;
+    private static final int INITIAL_RUN_SIZE = 64 * 1024;
+    private static final int MERGE_BUFFER_SIZE = 32 * 1024;
+    private static final int NUMBERS_IN_BLOCK = 3;
+    private static final int MAX_OPEN_RUNS = 256;
+
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final HprofHeap heap;
+    private final LongObjectHashMap<JavaClass> classIdToClassMap;
+    private final int runSize;
+    private final List<Run> runs = Collections.synchronizedList(new ArrayList<>());
+    private long totalPairs;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    ReferencesBuilder(HprofHeap h, LongObjectHashMap<JavaClass> classMap, int threads) {
+        heap = h;
+        classIdToClassMap = classMap;
+        runSize = getRunSize(ParallelScan.getMemoryBudget(), threads);
+    }
+
+    /**
+     * Sizes runs so that buffers of all workers fit into memory budget, bigger runs
+     * mean less run files to merge.
+     */
+    static int getRunSize(long memoryBudget, int threads) {
+        if (memoryBudget == 0) {
+            return RUN_SIZE;
+        }
+        long size = memoryBudget / threads / BYTES_PER_PAIR;
+        return (int) Math.max(INITIAL_RUN_SIZE, Math.min(MAX_RUN_SIZE, size));
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    void addChunk(int chunk, long startOffset, long endOffset) throws IOException {
+        HprofByteBuffer dumpBuffer = heap.dumpBuffer;
+        int idSize = dumpBuffer.getIDSize();
+        RunWriter writer = new RunWriter(chunk);
+        long[] offset = new long[] { startOffset };
+
+        while (offset[0] < endOffset) {
+            long start = offset[0];
+            int tag = heap.readDumpTag(offset);
+
+            if (tag == HprofHeap.INSTANCE_DUMP) {
+                long classId = dumpBuffer.getID(start+1+idSize+4);
+                ClassDump classDump = (ClassDump) classIdToClassMap.get(classId);
+
+                if (classDump != null) {
+                    long instanceId = dumpBuffer.getID(start+1);
+                    long inOff = start+1+idSize+4+idSize+4;
+
+                    for (int fieldOffset : classDump.getInstanceFieldTable().objectOffsets) {
+                        long outId = dumpBuffer.getID(inOff + fieldOffset);
+
+                        if (outId != 0) {
+                            writer.add(outId, instanceId);
+                        }
+                    }
+                }
+            } else if (tag == HprofHeap.OBJECT_ARRAY_DUMP) {
+                long instanceId = dumpBuffer.getID(start+1);
+                int elements = dumpBuffer.getInt(start+1+idSize+4);
+                long position = start+1+idSize+4+4+idSize;
+
+                for(int i=0;i<elements;i++,position+=idSize) {
+                    long outId = dumpBuffer.getID(position);
+
+                    if (outId != 0) {
+                        writer.add(outId, instanceId);
+                    }
+                }
+            }
+        }
+        writer.close();
+    }
+
+    /**
+     * Collects references from static fields of classes, they are ordered after
+     * references from all chunks.
+     */
+    void addStaticReferences(int chunk, List<JavaClass> classes) throws IOException {
+        RunWriter writer = new RunWriter(chunk);
+
+        for (JavaClass cls : classes) {
+            for (FieldValue field : cls.getStaticFieldValues()) {
+                if (field instanceof HprofFieldObjectValue) {
+                    long outId = ((HprofFieldObjectValue)field).getInstanceID();
+
+                    if (outId != 0) {
+                        writer.add(outId, cls.getJavaClassId());
+                    }
+                }
+            }
+        }
+        writer.close();
+    }
+
+    void writeReferences(LongMap idToOffsetMap) throws IOException {
+        PriorityQueue<RunReader> queue = null;
+        long[] references = new long[16];
+        long currentTarget = 0;
+        int count = 0;
+        long counter = 0;
+
+        mergeRuns();
+        try {
+            queue = openRuns(runs);
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+
+                if (reader.target != currentTarget) {
+                    setReferences(idToOffsetMap, currentTarget, references, count);
+                    currentTarget = reader.target;
+                    count = 0;
+                }
+                if (!isInHeadBlock(references, count, reader.source)) {
+                    if (count == references.length) {
+                        references = Arrays.copyOf(references, count * 2);
+                    }
+                    references[count++] = reader.source;
+                }
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+                HeapProgress.progress(counter++, 0, counter, totalPairs);
+            }
+            setReferences(idToOffsetMap, currentTarget, references, count);
+        } finally {
+            closeRuns(queue);
+        }
+    }
+
+    /**
+     * Merges runs in groups until they can be merged at once without
+     * running out of file descriptors. Groups are formed from runs with
+     * consecutive order, so the order of references is preserved.
+     */
+    private void mergeRuns() throws IOException {
+        while (runs.size() > MAX_OPEN_RUNS) {
+            List<Run> sortedRuns = new ArrayList<>(runs);
+
+            sortedRuns.sort((r1, r2) -> Long.compare(r1.order, r2.order));
+            for (int i = 0; i < sortedRuns.size(); i += MAX_OPEN_RUNS) {
+                List<Run> group = sortedRuns.subList(i, Math.min(i + MAX_OPEN_RUNS, sortedRuns.size()));
+
+                if (group.size() > 1) {
+                    Run mergedRun = mergeRuns(group);
+
+                    runs.removeAll(group);
+                    runs.add(mergedRun);
+                }
+            }
+        }
+    }
+
+    private Run mergeRuns(List<Run> group) throws IOException {
+        File runFile = heap.cacheDirectory.createTempFile("NBProfiler", ".run"); // NOI18N
+        PriorityQueue<RunReader> queue = null;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), MERGE_BUFFER_SIZE))) {
+            queue = openRuns(group);
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+
+                out.writeLong(reader.target);
+                out.writeLong(reader.source);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            runFile.delete();
+            throw ex;
+        } finally {
+            closeRuns(queue);
+        }
+        for (Run run : group) {
+            run.file.delete();
+        }
+        return new Run(group.get(0).order, runFile);
+    }
+
+    private static PriorityQueue<RunReader> openRuns(List<Run> runList) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runList.size()));
+
+        try {
+            for (Run run : runList) {
+                RunReader reader = new RunReader(run);
+
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            closeRuns(queue);
+            throw ex;
+        }
+        return queue;
+    }
+
+    private static void closeRuns(PriorityQueue<RunReader> queue) throws IOException {
+        if (queue != null) {
+            for (RunReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+
+    void delete() {
+        for (Run run : runs) {
+            run.file.delete();
+        }
+        runs.clear();
+    }
+
+    private static void setReferences(LongMap idToOffsetMap, long target, long[] references, int count) {
+        if (count > 0) {
+            long slot = idToOffsetMap.getSlot(target);
+
+            if (slot != -1) {
+                idToOffsetMap.setReferencesAt(slot, references, count);
+            }
+        }
+    }
+
+    /**
+     * Duplicates are detected in the same way as {@link NumberList#addNumber(long, long)}
+     * does - a reference is ignored if it is already in the last block.
+     */
+    private static boolean isInHeadBlock(long[] references, int count, long reference) {
+        if (count == 0) {
+            return false;
+        }
+        for (int i = ((count - 1) / NUMBERS_IN_BLOCK) * NUMBERS_IN_BLOCK; i < count; i++) {
+            if (references[i] == reference) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------------------------------------
+
+    private static class Run {
+        private final long order;
+        private final File file;
+
+        private Run(long o, File f) {
+            order = o;
+            file = f;
+        }
+    }
+
+    private class RunWriter {
+        private final int chunk;
+        private int runs;
+        private long[] targets;
+        private long[] sources;
+        private int size;
+
+        private RunWriter(int c) {
+            chunk = c;
+            targets = new long[INITIAL_RUN_SIZE];
+            sources = new long[INITIAL_RUN_SIZE];
+        }
+
+        private void add(long target, long source) throws IOException {
+            if (size == targets.length) {
+                if (size < runSize) {
+                    int newSize = Math.min(size * 2, runSize);
+
+                    targets = Arrays.copyOf(targets, newSize);
+                    sources = Arrays.copyOf(sources, newSize);
+                } else {
+                    writeRun();
+                }
+            }
+            targets[size] = target;
+            sources[size++] = source;
+        }
+
+        private void close() throws IOException {
+            if (size > 0) {
+                writeRun();
+            }
+        }
+
+        private void writeRun() throws IOException {
+            File runFile = heap.cacheDirectory.createTempFile("NBProfiler", ".run"); // NOI18N
+            long order = (((long) chunk) << 32) | runs++;
+
+            LongPairs.sort(targets, sources, size);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), MERGE_BUFFER_SIZE))) {
+                for (int i = 0; i < size; i++) {
+                    out.writeLong(targets[i]);
+                    out.writeLong(sources[i]);
+                }
+            }
+            synchronized (ReferencesBuilder.this) {
+                totalPairs += size;
+            }
+            ReferencesBuilder.this.runs.add(new Run(order, runFile));
+            size = 0;
+        }
+    }
+
+    private static class RunReader implements Comparable<RunReader> {
+        private final long order;
+        private final DataInputStream in;
+        private long target;
+        private long source;
+
+        private RunReader(Run run) throws IOException {
+            order = run.order;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file), MERGE_BUFFER_SIZE));
+        }
+
+        private boolean next() throws IOException {
+            try {
+                target = in.readLong();
+                source = in.readLong();
+                return true;
+            } catch (EOFException ex) {
+                return false;
+            }
+        }
+
+        private void close() throws IOException {
+            in.close();
+        }
+
+        public int compareTo(RunReader other) {
+            int diff = Long.compare(target, other.target);
+
+            if (diff == 0) {
+                return Long.compare(order, other.order);
+            }
+            return diff;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.util.Arrays;
+
+/**
+ * Estimated retained sizes of the biggest objects, computed without
+ * references, nearest GC roots and dominator tree. Candidates are GC roots
+ * and objects referenced from static fields. Retained size of a candidate
+ * is estimated by the size of its reachable subgraph, which is traversed
+ * breadth first up to a budget of objects, not entering other GC roots,
+ * classes and referents of soft, weak, final and phantom references.
+ * If a level of the traversal exceeds its limit, objects of the level are
+ * sampled by a hash of their id and the sampled objects are weighted by
+ * inverse of the sampling probability. The reported error is twice the
+ * standard deviation of the weighted sum. All candidates are first
+ * estimated with a small budget, the biggest of them again with the full budget.
+ */
+public final class RetainedSizeEstimates {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    static final String BUDGET_PROPERTY = "org.graalvm.visualvm.lib.jfluid.heap.estimatebudget";   // NOI18N
+    private static final int DEFAULT_BUDGET = 100000;
+    private static final int SCREENING_BUDGET_DIVISOR = 64;
+    private static final int LEVEL_LIMIT_DIVISOR = 8;
+    private static final int MIN_BUDGET = 64;
+    private static final int CANDIDATES_FACTOR = 4;
+    private static final int CANDIDATES_PER_CHUNK = 256;
+    private static final String JAVA_LANG_REF_REFERENCE = "java.lang.ref.Reference";   // NOI18N
+    private static final String REFERENT_FIELD_NAME = "referent"; // NOI18N
+
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final Instance[] instances;
+    private final long[] sizes;
+    private final long[] errors;
+    private final boolean[] truncated;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    private RetainedSizeEstimates(Instance[] i, long[] s, long[] e, boolean[] t) {
+        instances = i;
+        sizes = s;
+        errors = e;
+        truncated = t;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * estimates retained sizes of the biggest objects of the heap.
+     * <br>
+     * Speed: normal, candidates are estimated in parallel
+     * @param heap heap
+     * @param number maximum number of returned objects
+     * @return estimates sorted by estimated retained size, the biggest first
+     */
+    public static RetainedSizeEstimates compute(Heap heap, int number) {
+        HprofHeap hprofHeap = (HprofHeap) heap;
+        int budget = Math.max(MIN_BUDGET, Integer.getInteger(BUDGET_PROPERTY, DEFAULT_BUDGET).intValue());
+        int threads = ParallelScan.getThreads(hprofHeap);
+
+        HeapProgress.progressStart();
+        try {
+            long[] candidates = getCandidates(hprofHeap);
+            Estimates screening = estimate(hprofHeap, candidates, Math.max(MIN_BUDGET, budget / SCREENING_BUDGET_DIVISOR), threads);
+            int biggest = (int) Math.min(candidates.length, (long) number * CANDIDATES_FACTOR);
+            long[] biggestCandidates = new long[biggest];
+            int[] order = screening.getOrder();
+
+            for (int i = 0; i < biggest; i++) {
+                biggestCandidates[i] = candidates[order[i]];
+            }
+            Estimates estimates = estimate(hprofHeap, biggestCandidates, budget, threads);
+            int size = Math.min(biggest, Math.max(0, number));
+            Instance[] instances = new Instance[size];
+            long[] sizes = new long[size];
+            long[] errors = new long[size];
+            boolean[] truncated = new boolean[size];
+
+            order = estimates.getOrder();
+            for (int i = 0; i < size; i++) {
+                int index = order[i];
+
+                instances[i] = hprofHeap.getInstanceByID(biggestCandidates[index]);
+                sizes[i] = Math.round(estimates.sizes[index]);
+                errors[i] = Math.round(2 * Math.sqrt(estimates.variances[index]));
+                truncated[i] = estimates.truncated[index];
+            }
+            return new RetainedSizeEstimates(instances, sizes, errors, truncated);
+        } finally {
+            HeapProgress.progressFinish();
+        }
+    }
+
+    /**
+     * @return number of estimated objects
+     */
+    public int size() {
+        return instances.length;
+    }
+
+    /**
+     * @param index index of the entry, 0 is the biggest object
+     * @return estimated object
+     */
+    public Instance getInstance(int index) {
+        return instances[index];
+    }
+
+    /**
+     * @param index index of the entry, 0 is the biggest object
+     * @return estimated retained size of the object
+     */
+    public long getRetainedSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @param index index of the entry, 0 is the biggest object
+     * @return error bound of the sampling, 0 if the reachable objects were not sampled
+     */
+    public long getError(int index) {
+        return errors[index];
+    }
+
+    /**
+     * @param index index of the entry, 0 is the biggest object
+     * @return <CODE>true</CODE> if the traversal was stopped by the budget,
+     *         the estimate is smaller than the size of the reachable objects then
+     */
+    public boolean isTruncated(int index) {
+        return truncated[index];
+    }
+
+    /**
+     * Ids of GC roots and objects referenced from static fields, classes are skipped.
+     */
+    private static long[] getCandidates(HprofHeap heap) {
+        LongSet ids = new LongSet(1024);
+        long[] candidates = new long[1024];
+        int count = 0;
+        FieldCursor cursor = new FieldCursor();
+
+        for (GCRoot root : heap.getGCRoots()) {
+            Instance instance = root.getInstance();
+
+            if (instance != null && !(instance instanceof ClassDumpInstance) && !ids.add(instance.getInstanceId())) {
+                if (count == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, count * 2);
+                }
+                candidates[count++] = instance.getInstanceId();
+            }
+        }
+        for (JavaClass cls : heap.getAllClasses()) {
+            cursor.resetStatic((ClassDump) cls);
+            while (cursor.next()) {
+                if (cursor.isObject()) {
+                    long id = cursor.getObjectId();
+
+                    if (id != 0 && heap.getJavaClassByID(id) == null && !ids.add(id)) {
+                        if (count == candidates.length) {
+                            candidates = Arrays.copyOf(candidates, count * 2);
+                        }
+                        candidates[count++] = id;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private static Estimates estimate(final HprofHeap heap, final long[] candidates, final int budget, int threads) {
+        final Estimates estimates = new Estimates(candidates.length);
+        final Field referentField = getReferentField(heap);
+        int chunks = (candidates.length + CANDIDATES_PER_CHUNK - 1) / CANDIDATES_PER_CHUNK;
+        long[] boundaries = new long[Math.max(chunks, 1) + 1];
+
+        for (int i = 0; i < boundaries.length; i++) {
+            boundaries[i] = Math.min((long) i * CANDIDATES_PER_CHUNK, candidates.length);
+        }
+        ParallelScan.run(boundaries, threads, (int chunk, long start, long end) -> {
+            Estimator estimator = new Estimator(heap, referentField);
+
+            for (int i = (int) start; i < end; i++) {
+                estimator.estimate(candidates[i], budget);
+                estimates.sizes[i] = estimator.size;
+                estimates.variances[i] = estimator.variance;
+                estimates.truncated[i] = estimator.truncated;
+            }
+        });
+        return estimates;
+    }
+
+    private static Field getReferentField(HprofHeap heap) {
+        JavaClass reference = heap.getJavaClassByName(JAVA_LANG_REF_REFERENCE);
+
+        if (reference != null) {
+            for (Field f : reference.getFields()) {
+                if (f.getName().equals(REFERENT_FIELD_NAME)) {
+                    return f;
+                }
+            }
+        }
+        return null;
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------------------------------------
+
+    private static class Estimates {
+
+        final double[] sizes;
+        final double[] variances;
+        final boolean[] truncated;
+
+        Estimates(int size) {
+            sizes = new double[size];
+            variances = new double[size];
+            truncated = new boolean[size];
+        }
+
+        /**
+         * Indexes of estimates sorted by estimated size, the biggest first.
+         */
+        int[] getOrder() {
+            long[] keys = new long[sizes.length];
+            long[] order = new long[sizes.length];
+            int[] indexes = new int[sizes.length];
+
+            for (int i = 0; i < sizes.length; i++) {
+                // sizes are not negative, so their bits are ordered the same way as the sizes
+                keys[i] = -Double.doubleToLongBits(sizes[i]);
+                order[i] = i;
+            }
+            LongPairs.sort(keys, order, sizes.length);
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = (int) order[i];
+            }
+            return indexes;
+        }
+    }
+
+    /**
+     * Weighted breadth first traversal of objects reachable from an object.
+     * Each level keeps objects whose hash is below the sampling threshold,
+     * the threshold is halved whenever the level is full.
+     */
+    private static class Estimator {
+
+        private final HprofHeap heap;
+        private final Field referentField;
+        private final FieldCursor cursor = new FieldCursor();
+        private final int idSize;
+        private LongSet visited;
+        private long[] ids = new long[64];
+        private double[] weights = new double[64];
+        private long[] nextIds = new long[64];
+        private double[] nextWeights = new double[64];
+        private int nextCount;
+        private int levelLimit;
+        private double threshold;
+        double size;
+        double variance;
+        boolean truncated;
+
+        Estimator(HprofHeap h, Field f) {
+            heap = h;
+            referentField = f;
+            idSize = h.dumpBuffer.getIDSize();
+        }
+
+        void estimate(long instanceId, int budget) {
+            int count = 1;
+            int expanded = 0;
+
+            visited = new LongSet(64);
+            visited.add(instanceId);
+            ids[0] = instanceId;
+            weights[0] = 1.0;
+            levelLimit = Math.max(1, budget / LEVEL_LIMIT_DIVISOR);
+            size = 0;
+            variance = 0;
+            truncated = false;
+            while (count > 0) {
+                nextCount = 0;
+                threshold = 1.0;
+                for (int i = 0; i < count; i++) {
+                    if (expanded++ == budget) {
+                        truncated = true;
+                        return;
+                    }
+                    Instance instance = heap.getInstanceByID(ids[i]);
+
+                    if (instance != null && !(instance instanceof ClassDumpInstance)) {
+                        double weight = weights[i];
+                        double instanceSize = instance.getSize();
+
+                        size += weight * instanceSize;
+                        variance += weight * (weight - 1) * instanceSize * instanceSize;
+                        addReferences(instance, weight);
+                    }
+                }
+                long[] idsSwap = ids;
+                double[] weightsSwap = weights;
+
+                ids = nextIds;
+                weights = nextWeights;
+                nextIds = idsSwap;
+                nextWeights = weightsSwap;
+                count = nextCount;
+                for (int i = 0; i < count; i++) {
+                    weights[i] /= threshold;
+                }
+            }
+        }
+
+        private void addReferences(Instance instance, double weight) {
+            if (instance instanceof ObjectArrayDump) {
+                ObjectArrayDump array = (ObjectArrayDump) instance;
+                int length = array.getLength();
+                long offset = array.getOffset();
+
+                for (int i = 0; i < length; i++) {
+                    addReference(heap.dumpBuffer.getID(offset + (long) i * idSize), weight);
+                }
+            } else if (instance instanceof InstanceDump) {
+                cursor.reset(instance);
+                while (cursor.next()) {
+                    // skip Soft, Weak, Final and Phantom References
+                    if (cursor.isObject() && (referentField == null || !referentField.equals(cursor.getField()))) {
+                        addReference(cursor.getObjectId(), weight);
+                    }
+                }
+            }
+        }
+
+        private void addReference(long id, double weight) {
+            if (id == 0L || sample(id) >= threshold || heap.gcRoots.getGCRoots(id) != null || visited.add(id)) {
+                return;
+            }
+            while (nextCount >= levelLimit) {
+                int kept = 0;
+
+                threshold /= 2;
+                for (int i = 0; i < nextCount; i++) {
+                    if (sample(nextIds[i]) < threshold) {
+                        nextIds[kept] = nextIds[i];
+                        nextWeights[kept++] = nextWeights[i];
+                    }
+                }
+                nextCount = kept;
+                if (sample(id) >= threshold) {
+                    return;
+                }
+            }
+            if (nextCount == nextIds.length) {
+                int length = Math.min(levelLimit, nextCount * 2);
+
+                nextIds = Arrays.copyOf(nextIds, length);
+                nextWeights = Arrays.copyOf(nextWeights, length);
+                ids = Arrays.copyOf(ids, length);
+                weights = Arrays.copyOf(weights, length);
+            }
+            nextIds[nextCount] = id;
+            nextWeights[nextCount++] = weight;
+        }
+
+        /**
+         * Uniform hash of the id in [0, 1).
+         */
+        private static double sample(long id) {
+            long h = id;
+
+            h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+            h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+            h ^= h >>> 31;
+            return (h >>> 11) * 0x1.0p-53;
+        }
+    }
+}
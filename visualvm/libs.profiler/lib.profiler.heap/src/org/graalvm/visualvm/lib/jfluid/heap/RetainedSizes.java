@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes retained sizes of all reachable objects and retained sizes by class
+ * in one depth-first walk of the dominator tree. Retained size of an object is
+ * added to its immediate dominator when the walk leaves the object, so children
+ * are always processed before their parents. Retained size by class is
+ * the sum of retained sizes of instances, which are not dominated by another
+ * instance of the same class; the number of instances of every class on the current
+ * path is tracked during the walk.
+ * Class objects count their own size only if all objects reachable from them
+ * form a tree, where every object has only one reference. Such objects are
+ * marked as tree objects during the walk below class objects.
+ * The tree is indexed by slots of {@link LongMap}, node 0 is a virtual root.
+ */
+class RetainedSizes {
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final HprofHeap heap;
+    private final DominatorTree domTree;
+    private final LongMap idToOffsetMap;
+    private final long nodes;
+    private long reachableNodes;
+    private long counter;
+    private Map<ClassDump,Boolean> canContainItself;
+    // class ID -> number of its instances on the current path
+    private LongHashMap classesOnPath;
+    private long classObjectsOnPath;
+    private final FieldCursor cursor = new FieldCursor();
+
+    // node -> immediate dominator node + 1, -1 for GC root, 0 for unreachable node
+    private LongArray idoms;
+    // node -> offset of its children in children array
+    private LongArray childrenOffsets;
+    private LongArray children;
+    private LongArray stack;
+    private LongArray stackCursor;
+    private LongArray stackSize;
+    private LongArray stackClassId;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    RetainedSizes(HprofHeap h, DominatorTree tree) {
+        heap = h;
+        domTree = tree;
+        idToOffsetMap = h.idToOffsetMap;
+        nodes = idToOffsetMap.getSlots() + 1;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    void computeRetainedSizes() throws IOException {
+        CacheDirectory cacheDir = heap.cacheDirectory;
+
+        try {
+            idoms = new LongArray(cacheDir, nodes);
+            childrenOffsets = new LongArray(cacheDir, nodes + 1);
+            computeIdoms();
+            children = new LongArray(cacheDir, reachableNodes);
+            fillChildren();
+            idoms.delete();
+            idoms = null;
+            stack = new LongArray(cacheDir, reachableNodes + 1);
+            stackCursor = new LongArray(cacheDir, reachableNodes + 1);
+            stackSize = new LongArray(cacheDir, reachableNodes + 1);
+            stackClassId = new LongArray(cacheDir, reachableNodes + 1);
+            canContainItself = new HashMap<>(heap.getAllClasses().size()/2);
+            classesOnPath = new LongHashMap();
+            walkTree();
+        } finally {
+            deleteArrays();
+        }
+    }
+
+    private void computeIdoms() {
+        for (GCRoot gcr : heap.getGCRoots()) {
+            long node = getNode(((HprofGCRoot) gcr).getInstanceId());
+
+            if (node != 0) {
+                idoms.set(node, -1);
+            }
+        }
+        for (long node = 1; node < nodes; node++) {
+            long instanceId = idToOffsetMap.getKeyAt(node - 1);
+
+            if (instanceId != 0) {
+                long nearestGCRootPointer = idToOffsetMap.getNearestGCRootPointerAt(node - 1);
+
+                if (idoms.get(node) == -1 || nearestGCRootPointer != 0) {
+                    long idomId = domTree.getIdomId(instanceId, nearestGCRootPointer);
+                    long idomNode = idomId == 0 ? 0 : getNode(idomId);
+
+                    idoms.set(node, idomNode + 1);
+                    childrenOffsets.set(idomNode, childrenOffsets.get(idomNode) + 1);
+                    reachableNodes++;
+                }
+            }
+            progress();
+        }
+        // offsets point to the end of children of the node
+        long offset = 0;
+        for (long node = 0; node <= nodes; node++) {
+            offset += childrenOffsets.get(node);
+            childrenOffsets.set(node, offset);
+        }
+    }
+
+    private void fillChildren() {
+        for (long node = 1; node < nodes; node++) {
+            long idom = idoms.get(node);
+
+            if (idom > 0) {
+                long offset = childrenOffsets.get(idom - 1) - 1;
+
+                childrenOffsets.set(idom - 1, offset);
+                children.set(offset, node);
+            }
+            progress();
+        }
+        // now offsets point to the start of children of the node
+    }
+
+    private void walkTree() {
+        long top = 0;
+
+        // virtual root
+        stack.set(top, 0);
+        stackCursor.set(top, childrenOffsets.get(0));
+        top++;
+        while (top > 0) {
+            long node = stack.get(top - 1);
+            long cursor = stackCursor.get(top - 1);
+
+            if (cursor < childrenOffsets.get(node + 1)) {
+                stackCursor.set(top - 1, cursor + 1);
+                enter(children.get(cursor), top++);
+            } else {
+                top--;
+                if (top > 0) {
+                    long size = leave(node, stackSize.get(top), stackClassId.get(top));
+
+                    stackSize.set(top - 1, stackSize.get(top - 1) + size);
+                }
+            }
+        }
+    }
+
+    private void enter(long node, long top) {
+        Instance instance = heap.getInstanceByOffset(new long[] {idToOffsetMap.getOffsetAt(node - 1)});
+        long size;
+        long classId = 0;
+
+        if (instance != null) {
+            JavaClass javaClass = instance.getJavaClass();
+
+            size = instance.getSize();
+            if (javaClass != null) {
+                classId = javaClass.getJavaClassId();
+            }
+            if (instance instanceof ClassDumpInstance) {
+                classObjectsOnPath++;
+            }
+        } else {
+            size = heap.getClassDumpSegment().sizeSettings.getMinimumInstanceSize();
+        }
+        stack.set(top, node);
+        stackCursor.set(top, childrenOffsets.get(node));
+        stackSize.set(top, size);
+        stackClassId.set(top, classId);
+        if (classId != 0) {
+            long count = classesOnPath.get(classId);
+
+            classesOnPath.put(classId, count == -1 ? 1 : count + 1);
+        }
+        HeapProgress.progress(counter++, 0, counter, 3 * nodes);
+    }
+
+    /**
+     * @return retained size of the node
+     */
+    private long leave(long node, long retainedSize, long classId) {
+        long offset = idToOffsetMap.getOffsetAt(node - 1);
+
+        if (classObjectsOnPath > 0) {
+            retainedSize = checkTreeObject(node, offset, retainedSize);
+        }
+        idToOffsetMap.setRetainedSizeAt(node - 1, retainedSize);
+        if (classId != 0) {
+            long count = classesOnPath.get(classId) - 1;
+
+            classesOnPath.put(classId, count);
+            if (count == 0 || !isInstanceInChain(offset, classId)) {
+                ClassDump javaClass = heap.getClassDumpSegment().getClassDumpByID(classId);
+
+                if (javaClass != null && isInstance(offset)) {
+                    javaClass.addSizeForInstance(retainedSize);
+                }
+            }
+        }
+        return retainedSize;
+    }
+
+    /**
+     * Marks tree objects below class objects, children of the node are already marked.
+     * @return retained size of the node without its own size, if the node is class object
+     * and not a tree object
+     */
+    private long checkTreeObject(long node, long offset, long retainedSize) {
+        Instance instance = heap.getInstanceByOffset(new long[] {offset});
+
+        if (isTreeObject(instance)) {
+            idToOffsetMap.setTreeObjAt(node - 1);
+        } else if (instance instanceof ClassDumpInstance) {
+            retainedSize -= instance.getSize();
+        }
+        if (instance instanceof ClassDumpInstance) {
+            classObjectsOnPath--;
+        }
+        return retainedSize;
+    }
+
+    private boolean isTreeObject(Instance instance) {
+        if (instance instanceof ObjectArrayDump) {
+            ObjectArrayDump array = (ObjectArrayDump) instance;
+            int idSize = heap.dumpBuffer.getIDSize();
+            long offset = array.getOffset();
+
+            for (int i = 0; i < array.getLength(); i++) {
+                if (!isTreeReference(heap.dumpBuffer.getID(offset + (long) i * idSize))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (instance instanceof ClassDumpInstance) {
+            cursor.resetStatic(((ClassDumpInstance) instance).classDump);
+        } else if (instance instanceof InstanceDump) {
+            cursor.reset(instance);
+        } else {
+            return instance instanceof PrimitiveArrayInstance;
+        }
+        while (cursor.next()) {
+            if (cursor.isObject() && !isTreeReference(cursor.getObjectId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isTreeReference(long instanceId) {
+        if (instanceId == 0) {
+            return true;
+        }
+        long slot = idToOffsetMap.getSlot(instanceId);
+
+        return slot == -1 || (idToOffsetMap.hasOnlyOneReferenceAt(slot) && idToOffsetMap.isTreeObjAt(slot));
+    }
+
+    private boolean isInstance(long offset) {
+        int tag = heap.dumpBuffer.get(offset) & 0xFF;
+
+        return tag == HprofHeap.INSTANCE_DUMP || tag == HprofHeap.OBJECT_ARRAY_DUMP || tag == HprofHeap.PRIMITIVE_ARRAY_DUMP;
+    }
+
+    /**
+     * Same rules as the walk of dominator chain - primitive arrays and instances of classes,
+     * which cannot contain instances of itself, are never in chain.
+     */
+    private boolean isInstanceInChain(long offset, long classId) {
+        int tag = heap.dumpBuffer.get(offset) & 0xFF;
+
+        if (tag == HprofHeap.PRIMITIVE_ARRAY_DUMP) {
+            return false;
+        }
+        if (tag == HprofHeap.INSTANCE_DUMP) {
+            ClassDump javaClass = heap.getClassDumpSegment().getClassDumpByID(classId);
+            Boolean canContain = canContainItself.get(javaClass);
+
+            if (canContain == null) {
+                canContain = Boolean.valueOf(javaClass.canContainItself());
+                canContainItself.put(javaClass, canContain);
+            }
+            return canContain.booleanValue();
+        }
+        return true;
+    }
+
+    /**
+     * @return node of the instance or 0 if the instance is not in the heap
+     */
+    private long getNode(long instanceId) {
+        return idToOffsetMap.getSlot(instanceId) + 1;
+    }
+
+    private void progress() {
+        HeapProgress.progress(counter++, 0, counter, 3 * nodes);
+    }
+
+    private void deleteArrays() {
+        LongArray[] arrays = {idoms, childrenOffsets, children, stack, stackCursor, stackSize, stackClassId};
+
+        for (LongArray array : arrays) {
+            if (array != null) {
+                array.delete();
+            }
+        }
+    }
+}
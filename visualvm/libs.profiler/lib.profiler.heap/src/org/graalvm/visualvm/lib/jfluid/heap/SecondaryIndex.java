@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Secondary index of instances sorted by a long key. The string index maps
+ * java.lang.String instances to the hash of their content, the field index maps
+ * instances of a class to the value of one primitive field, the size index maps
+ * instances of a class to their negated shallow or retained size. Instances are
+ * stored as file offsets of their dumps, entries with the same key are in
+ * the order of the heap dump. The index is written to {@link CacheDirectory},
+ * so it is computed only once for the heap dump, or to a temporary file.
+ * Entries are collected and sorted in {@link LongArray}s in the cache directory
+ * and they are not kept in memory, they are read from the index file
+ * when the index is searched or paged.
+ */
+class SecondaryIndex {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    static final String STRINGS = "strings";   // NOI18N
+
+    private static final String INDEX_ID = "NBPIX";    // NOI18N
+    private static final int INDEX_VERSION = 1;
+    private static final int ENTRY_SIZE = 16;
+    // number of entries read from the index file at once
+    private static final int READ_ENTRIES = 4096;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final File indexFile;
+    // file position of the first entry, entries are pairs of key and offset
+    private final long entriesOffset;
+    private final int size;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    private SecondaryIndex(File f, long o, int s) {
+        indexFile = f;
+        entriesOffset = o;
+        size = s;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    static SecondaryIndex createStringIndex(JavaClass stringClass, CacheDirectory cacheDir, long dumpTime) {
+        int count = stringClass.getInstancesCount();
+        Entries entries = new Entries(cacheDir, count);
+        Iterator<Instance> instancesIt = stringClass.getInstancesIterator();
+
+        while (instancesIt.hasNext()) {
+            InstanceDump string = (InstanceDump) instancesIt.next();
+            char[] chars = HprofProxy.getStringChars(string);
+
+            if (chars != null && entries.size < count) {
+                entries.add(getStringHash(chars), string.fileOffset);
+            }
+        }
+        return create(entries, cacheDir, STRINGS, dumpTime);
+    }
+
+    /**
+     * @param fieldIndex index of primitive field in {@link InstanceFieldTable} of the class
+     */
+    static SecondaryIndex createFieldIndex(ClassDump classDump, int fieldIndex, CacheDirectory cacheDir, String name, long dumpTime) {
+        InstanceFieldTable table = classDump.getInstanceFieldTable();
+        HprofByteBuffer dumpBuffer = classDump.getHprofBuffer();
+        byte type = table.types[fieldIndex];
+        int fieldOffset = table.offsets[fieldIndex];
+        int count = classDump.getInstancesCount();
+        Entries entries = new Entries(cacheDir, count);
+        Iterator<Instance> instancesIt = classDump.getInstancesIterator();
+
+        while (instancesIt.hasNext() && entries.size < count) {
+            InstanceDump instance = (InstanceDump) instancesIt.next();
+
+            entries.add(getKey(dumpBuffer, instance.getFieldValuesOffset() + fieldOffset, type), instance.fileOffset);
+        }
+        return create(entries, cacheDir, name, dumpTime);
+    }
+
+    /**
+     * Keys are negated sizes, so the biggest instances are at the beginning of the index.
+     */
+    static SecondaryIndex createSizeIndex(ClassDump classDump, boolean retained, CacheDirectory cacheDir, long dumpTime) {
+        int count = classDump.getInstancesCount();
+        Entries entries = new Entries(cacheDir, count);
+        Iterator<Instance> instancesIt = classDump.getInstancesIterator();
+
+        while (instancesIt.hasNext() && entries.size < count) {
+            Instance instance = instancesIt.next();
+
+            entries.add(-(retained ? instance.getRetainedSize() : instance.getSize()), ((HprofObject) instance).fileOffset);
+        }
+        return create(entries, cacheDir, getSizeIndexName(classDump, retained), dumpTime);
+    }
+
+    /**
+     * Same order as the size index, used for classes with few instances.
+     * @return offsets of instances sorted by size, the biggest instances first
+     */
+    static long[] sortBySize(ClassDump classDump, boolean retained) {
+        int count = classDump.getInstancesCount();
+        long[] keys = new long[count];
+        long[] offsets = new long[count];
+        int size = 0;
+        Iterator<Instance> instancesIt = classDump.getInstancesIterator();
+
+        while (instancesIt.hasNext() && size < count) {
+            Instance instance = instancesIt.next();
+
+            keys[size] = -(retained ? instance.getRetainedSize() : instance.getSize());
+            offsets[size++] = ((HprofObject) instance).fileOffset;
+        }
+        LongPairs.sort(keys, offsets, size);
+        return size == count ? offsets : Arrays.copyOf(offsets, size);
+    }
+
+    /**
+     * Sorts the entries and writes them to the index file, the entries are deleted.
+     */
+    private static SecondaryIndex create(Entries entries, CacheDirectory cacheDir, String name, long dumpTime) {
+        try {
+            // stable sort keeps offsets of the same key in dump order
+            LongPairs.sort(entries.keys, entries.offsets, entries.size, cacheDir);
+            if (cacheDir.isTemporary()) {
+                File tmpFile = cacheDir.createTempFile("NBProfiler", ".idx");  // NOI18N
+
+                return write(tmpFile, entries, name, dumpTime);
+            }
+            File indexFile = cacheDir.getIndexFile(name);
+            File tmpFile = new File(indexFile.getPath() + ".tmp");   // NOI18N
+
+            try {
+                long entriesOffset = write(tmpFile, entries, name, dumpTime).entriesOffset;
+
+                try {
+                    Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                return new SecondaryIndex(indexFile, entriesOffset, entries.size);
+            } catch (IOException ex) {
+                tmpFile.delete();
+                throw ex;
+            }
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getLocalizedMessage(), ex);
+        } finally {
+            entries.delete();
+        }
+    }
+
+    private static SecondaryIndex write(File file, Entries entries, String name, long dumpTime) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536))) {
+            out.writeUTF(INDEX_ID);
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(name);
+            out.writeLong(dumpTime);
+            out.writeInt(entries.size);
+            long entriesOffset = out.size();
+
+            for (int i = 0; i < entries.size; i++) {
+                out.writeLong(entries.keys.get(i));
+                out.writeLong(entries.offsets.get(i));
+            }
+            return new SecondaryIndex(file, entriesOffset, entries.size);
+        }
+    }
+
+    /**
+     * @return index read from the cache directory or <code>null</code> if there is no valid index
+     */
+    static SecondaryIndex read(CacheDirectory cacheDir, String name, long dumpTime) {
+        if (cacheDir.isTemporary()) {
+            return null;
+        }
+        File indexFile = cacheDir.getIndexFile(name);
+
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r")) {   // NOI18N
+            if (!INDEX_ID.equals(file.readUTF()) || file.readInt() != INDEX_VERSION
+                    || !name.equals(file.readUTF()) || file.readLong() != dumpTime) {
+                return null;
+            }
+            int size = file.readInt();
+            long entriesOffset = file.getFilePointer();
+
+            if (file.length() != entriesOffset + (long) size * ENTRY_SIZE) {
+                return null;
+            }
+            return new SecondaryIndex(indexFile, entriesOffset, size);
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+            return null;
+        }
+    }
+
+    static String getFieldIndexName(JavaClass jcls, String fieldName) {
+        return "field." + Long.toHexString(jcls.getJavaClassId()) + "." + fieldName;  // NOI18N
+    }
+
+    static String getSizeIndexName(JavaClass jcls, boolean retained) {
+        return (retained ? "retained." : "size.") + Long.toHexString(jcls.getJavaClassId());  // NOI18N
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return offsets of entries from fromIndex inclusive to toIndex exclusive, in index order
+     */
+    long[] getOffsets(int fromIndex, int toIndex) {
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r")) {   // NOI18N
+            return readOffsets(file, fromIndex, toIndex);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getLocalizedMessage(), ex);
+        }
+    }
+
+    /**
+     * @return offsets of instances with key between fromKey and toKey inclusive, in dump order
+     */
+    long[] getOffsets(long fromKey, long toKey) {
+        if (fromKey > toKey) {
+            return new long[0];
+        }
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r")) {   // NOI18N
+            int from = firstIndexOf(file, fromKey);
+            int to = toKey == Long.MAX_VALUE ? size : firstIndexOf(file, toKey + 1);
+            long[] result = readOffsets(file, from, to);
+
+            if (fromKey != toKey) {
+                Arrays.sort(result);
+            }
+            return result;
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getLocalizedMessage(), ex);
+        }
+    }
+
+    private long[] readOffsets(RandomAccessFile file, int fromIndex, int toIndex) throws IOException {
+        int count = Math.max(toIndex - fromIndex, 0);
+        long[] offsets = new long[count];
+        byte[] entries = new byte[Math.min(count, READ_ENTRIES) * ENTRY_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(entries);
+
+        file.seek(entriesOffset + (long) fromIndex * ENTRY_SIZE);
+        for (int i = 0; i < count; ) {
+            int chunk = Math.min(count - i, READ_ENTRIES);
+
+            file.readFully(entries, 0, chunk * ENTRY_SIZE);
+            for (int j = 0; j < chunk; j++) {
+                offsets[i++] = buffer.getLong(j * ENTRY_SIZE + 8);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * @return index of the first entry with key greater or equal to key
+     */
+    private int firstIndexOf(RandomAccessFile file, long key) throws IOException {
+        byte[] entryKey = new byte[8];
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            file.seek(entriesOffset + (long) mid * ENTRY_SIZE);
+            file.readFully(entryKey);
+            if (ByteBuffer.wrap(entryKey).getLong() < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * FNV-1a hash of string content.
+     */
+    static long getStringHash(char[] chars) {
+        long hash = FNV_OFFSET;
+
+        for (char ch : chars) {
+            hash = (hash ^ (ch & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (ch >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Keys preserve the order of primitive values, floating point values are
+     * mapped so that their keys are ordered as signed longs.
+     */
+    static long getKey(HprofByteBuffer dumpBuffer, long position, byte type) {
+        switch (type) {
+            case HprofHeap.BOOLEAN:
+            case HprofHeap.BYTE:
+                return dumpBuffer.get(position);
+            case HprofHeap.CHAR:
+                return dumpBuffer.getChar(position);
+            case HprofHeap.SHORT:
+                return dumpBuffer.getShort(position);
+            case HprofHeap.INT:
+                return dumpBuffer.getInt(position);
+            case HprofHeap.LONG:
+                return dumpBuffer.getLong(position);
+            case HprofHeap.FLOAT:
+                return getDoubleKey(dumpBuffer.getFloat(position));
+            case HprofHeap.DOUBLE:
+                return getDoubleKey(dumpBuffer.getDouble(position));
+            default:
+                throw new IllegalArgumentException("Invalid type " + type); // NOI18N
+        }
+    }
+
+    /**
+     * @param bound lower or upper bound of the value range or <code>null</code> for unbounded range
+     * @return the smallest key greater or equal to bound for lower bound, the greatest key less or equal to bound for upper bound
+     */
+    static long getBoundKey(byte type, Object bound, boolean lower) {
+        if (bound == null) {
+            return lower ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        if (type == HprofHeap.FLOAT || type == HprofHeap.DOUBLE) {
+            // float values are stored as exact double values
+            return getDoubleKey(((Number) bound).doubleValue());
+        }
+        if (bound instanceof Boolean) {
+            return ((Boolean) bound).booleanValue() ? 1 : 0;
+        }
+        if (bound instanceof Character) {
+            return ((Character) bound).charValue();
+        }
+        if (bound instanceof Double || bound instanceof Float) {
+            double value = ((Number) bound).doubleValue();
+
+            return (long) (lower ? Math.ceil(value) : Math.floor(value));
+        }
+        return ((Number) bound).longValue();
+    }
+
+    private static long getDoubleKey(double value) {
+        if (value == 0.0) {
+            // -0.0 is equal to 0.0
+            value = 0.0;
+        }
+        long bits = Double.doubleToLongBits(value);
+
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Unsorted entries of the index stored in the cache directory.
+     */
+    private static class Entries {
+        private final LongArray keys;
+        private final LongArray offsets;
+        private int size;
+
+        private Entries(CacheDirectory cacheDir, int count) {
+            try {
+                keys = new LongArray(cacheDir, count);
+                offsets = new LongArray(cacheDir, count);
+            } catch (IOException ex) {
+                throw new IllegalArgumentException(ex.getLocalizedMessage(), ex);
+            }
+        }
+
+        private void add(long key, long offset) {
+            keys.set(size, key);
+            offsets.set(size++, offset);
+        }
+
+        private void delete() {
+            keys.delete();
+            offsets.delete();
+        }
+    }
+}
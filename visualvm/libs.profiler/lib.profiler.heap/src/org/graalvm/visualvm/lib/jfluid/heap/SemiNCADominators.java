@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.IOException;
+
+/**
+ * Computes immediate dominators with the semi-NCA algorithm, which is a variant
+ * of Lengauer-Tarjan algorithm. The graph is indexed by slots of
+ * {@link LongMap}, node 0 is a virtual root, which references all GC roots.
+ * References from unreachable objects are treated as references from the virtual root.
+ * All arrays are kept in memory-mapped files in the cache directory.
+ * The result is stored to the same map as the iterative algorithm
+ * in {@link DominatorTree} uses - instance ID of every object with multiple
+ * parents is mapped to instance ID of its immediate dominator.
+ */
+class SemiNCADominators {
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final HprofHeap heap;
+    private final LongMap idToOffsetMap;
+    private final LongBuffer multipleParents;
+    private final LongHashMap map;
+    private final long nodes;
+    private long edges;
+    private int vertices;
+    private long counter;
+    private long progressEnd;
+
+    // node -> preorder number, -1 for reachable and -2 for GC root, which is not yet visited
+    private IntArray preorder;
+    // node -> offset of its successors in successors array
+    private LongArray successorsOffsets;
+    private IntArray successors;
+    // preorder number -> node
+    private IntArray vertex;
+    private IntArray parent;
+    private IntArray semi;
+    private IntArray label;
+    // ancestor in the link-eval forest + 1, 0 if not linked
+    private IntArray ancestor;
+    private IntArray stack;
+    private LongArray stackCursor;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    SemiNCADominators(HprofHeap h, LongBuffer multiParents, LongHashMap idomMap) {
+        heap = h;
+        idToOffsetMap = h.idToOffsetMap;
+        multipleParents = multiParents;
+        map = idomMap;
+        nodes = idToOffsetMap.getSlots() + 1;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    static boolean isApplicable(HprofHeap heap) {
+        return heap.idToOffsetMap.getSlots() + 1 < Integer.MAX_VALUE;
+    }
+
+    void computeDominators() throws IOException {
+        CacheDirectory cacheDir = heap.cacheDirectory;
+
+        progressEnd = 4 * nodes;
+        try {
+            preorder = new IntArray(cacheDir, nodes);
+            markReachable();
+            successorsOffsets = new LongArray(cacheDir, nodes + 1);
+            countSuccessors();
+            successors = new IntArray(cacheDir, edges);
+            fillSuccessors();
+            vertex = new IntArray(cacheDir, vertices);
+            parent = new IntArray(cacheDir, vertices);
+            label = new IntArray(cacheDir, vertices);
+            stack = new IntArray(cacheDir, vertices);
+            stackCursor = new LongArray(cacheDir, vertices);
+            semi = new IntArray(cacheDir, vertices);
+            depthFirstSearch();
+            successors.delete();
+            successors = null;
+            successorsOffsets.delete();
+            successorsOffsets = null;
+            stackCursor.delete();
+            stackCursor = null;
+            ancestor = new IntArray(cacheDir, vertices);
+            computeSemidominators();
+            computeImmediateDominators();
+            writeDominators();
+        } finally {
+            deleteArrays();
+        }
+    }
+
+    private void markReachable() {
+        for (GCRoot gcr : heap.getGCRoots()) {
+            long id = ((HprofGCRoot) gcr).getInstanceId();
+            long node = getNode(id);
+
+            if (node != 0 && preorder.get(node) == 0) {
+                preorder.set(node, -2);
+                vertices++;
+            }
+        }
+        for (long node = 1; node < nodes; node++) {
+            if (preorder.get(node) == 0 && idToOffsetMap.getKeyAt(node - 1) != 0) {
+                if (idToOffsetMap.getNearestGCRootPointerAt(node - 1) != 0) {
+                    preorder.set(node, -1);
+                    vertices++;
+                }
+            }
+            progress();
+        }
+        // virtual root
+        vertices++;
+    }
+
+    private void countSuccessors() {
+        for (long node = 1; node < nodes; node++) {
+            if (preorder.get(node) != 0) {
+                LongIterator refIt = idToOffsetMap.getReferencesAt(node - 1);
+
+                while (refIt.hasNext()) {
+                    long refNode = getReachableNode(refIt.next());
+
+                    if (refNode != 0) {
+                        successorsOffsets.set(refNode, successorsOffsets.get(refNode) + 1);
+                        edges++;
+                    }
+                }
+            }
+            progress();
+        }
+        // offsets point to the end of successors of the node
+        long offset = 0;
+        for (long node = 0; node <= nodes; node++) {
+            offset += successorsOffsets.get(node);
+            successorsOffsets.set(node, offset);
+        }
+    }
+
+    private void fillSuccessors() {
+        for (long node = 1; node < nodes; node++) {
+            if (preorder.get(node) != 0) {
+                LongIterator refIt = idToOffsetMap.getReferencesAt(node - 1);
+
+                while (refIt.hasNext()) {
+                    long refNode = getReachableNode(refIt.next());
+
+                    if (refNode != 0) {
+                        long offset = successorsOffsets.get(refNode) - 1;
+
+                        successorsOffsets.set(refNode, offset);
+                        successors.set(offset, (int) node);
+                    }
+                }
+            }
+            progress();
+        }
+        // now offsets point to the start of successors of the node
+    }
+
+    private void depthFirstSearch() {
+        int number = 0;
+
+        // virtual root has preorder number 0
+        vertex.set(0, 0);
+        for (GCRoot gcr : heap.getGCRoots()) {
+            long id = ((HprofGCRoot) gcr).getInstanceId();
+            long rootNode = getNode(id);
+
+            if (rootNode == 0 || preorder.get(rootNode) != -2) {
+                continue;
+            }
+            int top = 0;
+            number = visit(rootNode, 0, number, top++);
+            while (top > 0) {
+                int w = stack.get(top - 1);
+                long node = vertex.get(w);
+                long cursor = stackCursor.get(top - 1);
+
+                if (cursor < successorsOffsets.get(node + 1)) {
+                    int succ = successors.get(cursor);
+
+                    stackCursor.set(top - 1, cursor + 1);
+                    if (preorder.get(succ) < 0) {
+                        number = visit(succ, w, number, top++);
+                    }
+                } else {
+                    top--;
+                }
+            }
+        }
+        assert number == vertices - 1;
+    }
+
+    private int visit(long node, int parentNumber, int number, int top) {
+        int w = number + 1;
+
+        if (preorder.get(node) == -2) {
+            // GC root is referenced from the virtual root even if it is not its parent in DFS tree
+            semi.set(w, -1);
+        }
+        preorder.set(node, w);
+        vertex.set(w, (int) node);
+        parent.set(w, parentNumber);
+        label.set(w, w);
+        stack.set(top, w);
+        stackCursor.set(top, successorsOffsets.get(node));
+        counter++;
+        return w;
+    }
+
+    private void computeSemidominators() {
+        for (int w = vertices - 1; w > 0; w--) {
+            LongIterator refIt = idToOffsetMap.getReferencesAt(vertex.get(w) - 1);
+            int s = semi.get(w) == -1 ? 0 : parent.get(w);
+
+            while (refIt.hasNext()) {
+                long refNode = getReachableNode(refIt.next());
+                int v = refNode == 0 ? 0 : Math.max(0, preorder.get(refNode));
+                int candidate;
+
+                if (v <= w) {
+                    candidate = v;
+                } else {
+                    candidate = semi.get(eval(v));
+                }
+                if (candidate < s) {
+                    s = candidate;
+                }
+            }
+            semi.set(w, s);
+            ancestor.set(w, parent.get(w) + 1);
+            progress();
+        }
+    }
+
+    private int eval(int v) {
+        int top = 0;
+        int x = v;
+
+        // collect path to the root of the tree in the forest
+        while (ancestor.get(ancestor.get(x) - 1) != 0) {
+            stack.set(top++, x);
+            x = ancestor.get(x) - 1;
+        }
+        // compress the path
+        while (top > 0) {
+            x = stack.get(--top);
+            int a = ancestor.get(x) - 1;
+            int labelA = label.get(a);
+
+            if (semi.get(labelA) < semi.get(label.get(x))) {
+                label.set(x, labelA);
+            }
+            ancestor.set(x, ancestor.get(a));
+        }
+        return label.get(v);
+    }
+
+    private void computeImmediateDominators() {
+        // label is reused for immediate dominators
+        IntArray idom = label;
+
+        idom.set(0, 0);
+        for (int w = 1; w < vertices; w++) {
+            int s = semi.get(w);
+            int i = parent.get(w);
+
+            while (i > s) {
+                i = idom.get(i);
+            }
+            idom.set(w, i);
+            progress();
+        }
+    }
+
+    private void writeDominators() throws IOException {
+        IntArray idom = label;
+
+        multipleParents.startReading();
+        for (long instanceId = multipleParents.readLong(); instanceId != 0; instanceId = multipleParents.readLong()) {
+            int idomNumber = idom.get(preorder.get(getNode(instanceId)));
+            long idomId = 0;
+
+            if (idomNumber != 0) {
+                idomId = idToOffsetMap.getKeyAt(vertex.get(idomNumber) - 1);
+            }
+            map.put(instanceId, idomId);
+        }
+    }
+
+    private long getReachableNode(long instanceId) {
+        long node = getNode(instanceId);
+
+        if (node != 0 && preorder.get(node) != 0) {
+            return node;
+        }
+        return 0;
+    }
+
+    /**
+     * @return node of the instance or 0 if the instance is not in the heap
+     */
+    private long getNode(long instanceId) {
+        return idToOffsetMap.getSlot(instanceId) + 1;
+    }
+
+    private void progress() {
+        HeapProgress.progress(counter++, 0, counter, progressEnd);
+    }
+
+    private void deleteArrays() {
+        IntArray[] intArrays = {preorder, successors, vertex, parent, semi, label, ancestor, stack};
+        LongArray[] longArrays = {successorsOffsets, stackCursor};
+
+        for (IntArray array : intArrays) {
+            if (array != null) {
+                array.delete();
+            }
+        }
+        for (LongArray array : longArrays) {
+            if (array != null) {
+                array.delete();
+            }
+        }
+    }
+}
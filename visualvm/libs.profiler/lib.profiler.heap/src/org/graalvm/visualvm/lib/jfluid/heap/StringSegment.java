@@ -26,9 +26,6 @@
 package org.graalvm.visualvm.lib.jfluid.heap;
 
 import java.io.UnsupportedEncodingException;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 
 /**
@@ -44,7 +41,7 @@ class StringSegment extends TagBounds {
     private final int timeOffset;
     private LongHashMap stringIDMap;
     private HprofHeap hprofHeap;
-    private Map<Long,String> stringCache = Collections.synchronizedMap(new StringCache<>());
+    private final StringCache stringCache = new StringCache();
     //~ Constructors -------------------------------------------------------------------------------------------------------------
 
     StringSegment(HprofHeap heap, long start, long end) {
@@ -61,11 +58,10 @@ class StringSegment extends TagBounds {
     //~ Methods ------------------------------------------------------------------------------------------------------------------
 
     String getStringByID(long stringID) {
-        Long stringIDObj = new Long(stringID);
-        String string = stringCache.get(stringIDObj);
+        String string = stringCache.get(stringID);
         if (string == null) {
             string = createStringByID(stringID);
-            stringCache.put(stringIDObj,string);
+            stringCache.put(stringID,string);
         }
         return string;
     }
@@ -133,15 +129,33 @@ class StringSegment extends TagBounds {
         return getDumpBuffer().getID(start + stringIDOffset);
     }
 
-    private static class StringCache<K,V> extends LinkedHashMap<K,V> {
-        private static final int SIZE = 1000;
-        
-        StringCache() {
-            super(SIZE,0.75f,true);
+    /**
+     * Direct-mapped cache, a string replaces the string with colliding id.
+     */
+    private static class StringCache {
+        private static final int SIZE_BITS = 10;
+        private static final int SIZE = 1 << SIZE_BITS;
+        private final long[] ids = new long[SIZE];
+        private final String[] strings = new String[SIZE];
+
+        private synchronized String get(long id) {
+            int index = index(id);
+
+            if (ids[index] == id) {
+                return strings[index];
+            }
+            return null;
+        }
+
+        private synchronized void put(long id, String string) {
+            int index = index(id);
+
+            ids[index] = id;
+            strings[index] = string;
         }
 
-        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-            return size() > SIZE;
+        private static int index(long id) {
+            return LongObjectHashMap.idHash(id, SIZE_BITS);
         }
     }
 
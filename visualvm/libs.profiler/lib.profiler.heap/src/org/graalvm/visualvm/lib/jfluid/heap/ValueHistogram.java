@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+/**
+ * Histogram of item values of a primitive array. Items are read directly from
+ * the heap dump in chunks, which are counted in parallel and merged. Booleans,
+ * bytes, chars and shorts are counted in tables indexed by value, other types
+ * in hash tables of raw value bits. Entries are sorted by count, the most
+ * frequent value first, values with the same count are sorted by their bits.
+ */
+public final class ValueHistogram {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HASHED_CHUNK_ITEMS = 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final byte type;
+    private final long[] values;
+    private final int[] counts;
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    private ValueHistogram(byte t, long[] v, int[] c) {
+        type = t;
+        values = v;
+        counts = c;
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * computes histogram of item values of the primitive array.
+     * <br>
+     * Speed: normal, large arrays are processed in parallel
+     * @param array primitive array
+     * @return histogram of array item values
+     */
+    public static ValueHistogram compute(PrimitiveArrayInstance array) {
+        PrimitiveArrayDump arrayDump = (PrimitiveArrayDump) array;
+        HprofHeap heap = arrayDump.dumpClass.getHprof();
+        byte type = arrayDump.getType();
+        int itemSize = heap.getValueSize(type);
+        long start = arrayDump.getArrayStartOffset();
+        long end = start + (long) arrayDump.getLength() * itemSize;
+        int threads = ParallelScan.getThreads(heap);
+        final Counter counter = createCounter(type);
+        final HprofByteBuffer dumpBuffer = heap.dumpBuffer;
+        final int size = itemSize;
+
+        HeapProgress.progressStart();
+        try {
+            ParallelScan.run(getChunks(start, end, itemSize, threads, counter instanceof HashCounter), threads,
+                    (int chunk, long startOffset, long endOffset) -> {
+                Counter chunkCounter = createCounter(type);
+                byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, endOffset - startOffset)];
+
+                for (long offset = startOffset; offset < endOffset; offset += buffer.length) {
+                    int length = (int) Math.min(buffer.length, endOffset - offset);
+
+                    if (length < buffer.length) {
+                        buffer = new byte[length];
+                    }
+                    dumpBuffer.get(offset, buffer);
+                    for (int i = 0; i < length; i += size) {
+                        chunkCounter.count(buffer, i);
+                    }
+                }
+                synchronized (counter) {
+                    counter.add(chunkCounter);
+                }
+            });
+        } finally {
+            HeapProgress.progressFinish();
+        }
+        return counter.getHistogram(type);
+    }
+
+    /**
+     * @return name of the primitive type of the values
+     */
+    public String getType() {
+        switch (type) {
+            case HprofHeap.BOOLEAN:
+                return "boolean";   // NOI18N
+            case HprofHeap.CHAR:
+                return "char";  // NOI18N
+            case HprofHeap.FLOAT:
+                return "float"; // NOI18N
+            case HprofHeap.DOUBLE:
+                return "double";    // NOI18N
+            case HprofHeap.BYTE:
+                return "byte";  // NOI18N
+            case HprofHeap.SHORT:
+                return "short"; // NOI18N
+            case HprofHeap.INT:
+                return "int";   // NOI18N
+            default:
+                return "long";  // NOI18N
+        }
+    }
+
+    /**
+     * @return number of distinct values
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param index index of the entry, 0 is the most frequent value
+     * @return value formatted the same way as items of {@link PrimitiveArrayInstance#getValues()}
+     */
+    public String getValue(int index) {
+        long value = values[index];
+
+        switch (type) {
+            case HprofHeap.BOOLEAN:
+                return Boolean.toString(value != 0);
+            case HprofHeap.CHAR:
+                return String.valueOf((char) value);
+            case HprofHeap.FLOAT:
+                return Float.toString(Float.intBitsToFloat((int) value));
+            case HprofHeap.DOUBLE:
+                return Double.toString(Double.longBitsToDouble(value));
+            default:
+                return Long.toString(value);
+        }
+    }
+
+    /**
+     * @param index index of the entry, 0 is the most frequent value
+     * @return number of items with the value
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Chunks are aligned to items. Hash counters get smaller chunks,
+     * since chunk counts are kept in memory until they are merged.
+     */
+    private static long[] getChunks(long start, long end, int itemSize, int threads, boolean hashed) {
+        long chunkSize = ParallelScan.getChunkSize();
+
+        if (hashed) {
+            chunkSize = Math.min(chunkSize, (long) MAX_HASHED_CHUNK_ITEMS * itemSize);
+        }
+        chunkSize = Math.min(chunkSize, Math.max(MIN_CHUNK_SIZE, (end - start) / threads));
+        chunkSize = Math.max(itemSize, chunkSize / itemSize * itemSize);
+        int chunks = (int) ((end - start + chunkSize - 1) / chunkSize);
+        long[] offsets = new long[Math.max(chunks, 1) + 1];
+
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = Math.min(start + i * chunkSize, end);
+        }
+        return offsets;
+    }
+
+    private static Counter createCounter(byte type) {
+        switch (type) {
+            case HprofHeap.BOOLEAN:
+                return new BooleanCounter();
+            case HprofHeap.BYTE:
+                return new TableCounter(1);
+            case HprofHeap.CHAR:
+            case HprofHeap.SHORT:
+                return new TableCounter(2);
+            case HprofHeap.INT:
+            case HprofHeap.FLOAT:
+                return new HashCounter(type, 4);
+            case HprofHeap.LONG:
+            case HprofHeap.DOUBLE:
+                return new HashCounter(type, 8);
+            default:
+                throw new IllegalArgumentException("Invalid type " + type); // NOI18N
+        }
+    }
+
+    /**
+     * Creates histogram from values and counts, values must be in ascending order.
+     */
+    private static ValueHistogram createHistogram(byte type, long[] values, int[] counts, int size) {
+        long[] keys = new long[size];
+        long[] sortedValues = new long[size];
+        int[] sortedCounts = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            keys[i] = -(long) counts[i];
+            sortedValues[i] = values[i];
+        }
+        // stable sort keeps values with the same count in ascending order
+        LongPairs.sort(keys, sortedValues, size);
+        for (int i = 0; i < size; i++) {
+            sortedCounts[i] = (int) -keys[i];
+        }
+        return new ValueHistogram(type, sortedValues, sortedCounts);
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------------------------------------
+
+    private abstract static class Counter {
+
+        /**
+         * Counts big endian item at index of buffer.
+         */
+        abstract void count(byte[] buffer, int index);
+
+        abstract void add(Counter counter);
+
+        abstract ValueHistogram getHistogram(byte type);
+    }
+
+    private static class TableCounter extends Counter {
+
+        final int[] counts;
+        private final int itemSize;
+
+        TableCounter(int size) {
+            itemSize = size;
+            counts = new int[1 << (8 * size)];
+        }
+
+        void count(byte[] buffer, int index) {
+            int value = buffer[index] & 0xff;
+
+            if (itemSize == 2) {
+                value = (value << 8) | (buffer[index + 1] & 0xff);
+            }
+            counts[value]++;
+        }
+
+        void add(Counter counter) {
+            int[] added = ((TableCounter) counter).counts;
+
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += added[i];
+            }
+        }
+
+        ValueHistogram getHistogram(byte type) {
+            long[] values = new long[counts.length];
+            int[] valueCounts = new int[counts.length];
+            int half = counts.length / 2;
+            int size = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                // signed values start in the upper half of the table, chars are unsigned
+                int index = type == HprofHeap.CHAR ? i : (i + half) % counts.length;
+
+                if (counts[index] != 0) {
+                    values[size] = type == HprofHeap.CHAR ? index : index - (index >= half ? counts.length : 0);
+                    valueCounts[size++] = counts[index];
+                }
+            }
+            return createHistogram(type, values, valueCounts, size);
+        }
+    }
+
+    private static class BooleanCounter extends TableCounter {
+
+        BooleanCounter() {
+            super(1);
+        }
+
+        ValueHistogram getHistogram(byte type) {
+            int falseCount = counts[0];
+            int trueCount = 0;
+
+            for (int i = 1; i < counts.length; i++) {
+                trueCount += counts[i];
+            }
+            long[] values = new long[2];
+            int[] valueCounts = new int[2];
+            int size = 0;
+
+            if (falseCount != 0) {
+                valueCounts[size++] = falseCount;
+            }
+            if (trueCount != 0) {
+                values[size] = 1;
+                valueCounts[size++] = trueCount;
+            }
+            return createHistogram(type, values, valueCounts, size);
+        }
+    }
+
+    /**
+     * Open addressing hash table of raw value bits, empty slots have zero count.
+     */
+    private static class HashCounter extends Counter {
+
+        private final byte type;
+        private final int itemSize;
+        private long[] keys;
+        private int[] counts;
+        private int size;
+
+        HashCounter(byte t, int s) {
+            type = t;
+            itemSize = s;
+            keys = new long[1024];
+            counts = new int[1024];
+        }
+
+        void count(byte[] buffer, int index) {
+            long value = 0;
+
+            for (int i = 0; i < itemSize; i++) {
+                value = (value << 8) | (buffer[index + i] & 0xff);
+            }
+            if (itemSize == 4) {
+                value = (int) value;
+            }
+            add(canonical(value), 1);
+        }
+
+        /**
+         * All NaN values are counted as one value, since they are printed the same.
+         */
+        private long canonical(long value) {
+            if (type == HprofHeap.FLOAT) {
+                float f = Float.intBitsToFloat((int) value);
+
+                return f != f ? Float.floatToIntBits(Float.NaN) : value;
+            }
+            if (type == HprofHeap.DOUBLE) {
+                double d = Double.longBitsToDouble(value);
+
+                return d != d ? Double.doubleToLongBits(Double.NaN) : value;
+            }
+            return value;
+        }
+
+        private void add(long key, int count) {
+            int mask = keys.length - 1;
+            int index = hash(key) & mask;
+
+            while (counts[index] != 0 && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            if (counts[index] == 0) {
+                keys[index] = key;
+                if (++size > keys.length / 2) {
+                    counts[index] = count;
+                    resize();
+                    return;
+                }
+            }
+            counts[index] += count;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldCounts.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] != 0) {
+                    add(oldKeys[i], oldCounts[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+
+            return (int) (h ^ (h >>> 32));
+        }
+
+        void add(Counter counter) {
+            HashCounter added = (HashCounter) counter;
+
+            for (int i = 0; i < added.keys.length; i++) {
+                if (added.counts[i] != 0) {
+                    add(added.keys[i], added.counts[i]);
+                }
+            }
+        }
+
+        ValueHistogram getHistogram(byte type) {
+            long[] values = new long[size];
+            long[] valueCounts = new long[size];
+            int[] intCounts = new int[size];
+            int entries = 0;
+
+            for (int i = 0; i < keys.length; i++) {
+                if (counts[i] != 0) {
+                    values[entries] = keys[i];
+                    valueCounts[entries++] = counts[i];
+                }
+            }
+            LongPairs.sort(values, valueCounts, entries);
+            for (int i = 0; i < entries; i++) {
+                intCounts[i] = (int) valueCounts[i];
+            }
+            return createHistogram(type, values, intCounts, entries);
+        }
+    }
+}
@@ -0,0 +1,653 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.jfluid.heap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Memory wasted by duplicate strings, duplicate primitive arrays, empty
+ * collections and sparse object arrays. Content of primitive arrays is hashed
+ * directly from the heap dump in one sequential pass over all heap dump records,
+ * arrays of the same type, length and 64-bit content hash are considered equal.
+ * <ul>
+ * <li>Duplicate strings are java.lang.String instances with the same content, all but
+ * one of them are wasted together with value arrays, which are not shared.</li>
+ * <li>Duplicate arrays are primitive arrays with the same content, which are not
+ * values of strings. All but one array are wasted.</li>
+ * <li>Empty collections are instances of well known collections and maps with no elements,
+ * the instance and its allocated backing array are wasted.</li>
+ * <li>Sparse arrays are object arrays with more than half of elements null, null elements are wasted.</li>
+ * </ul>
+ */
+public final class WastedMemory {
+    //~ Static fields/initializers -----------------------------------------------------------------------------------------------
+
+    public static final int DUPLICATE_STRINGS = 0;
+    public static final int DUPLICATE_ARRAYS = 1;
+    public static final int EMPTY_COLLECTIONS = 2;
+    public static final int SPARSE_ARRAYS = 3;
+
+    private static final int KINDS = 4;
+    private static final int TOP_INSTANCES = 10;
+    private static final int MIN_SPARSE_LENGTH = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int[] NOT_COLLECTION = new int[0];
+    // collection class, field with number of elements, field with backing array or null
+    private static final String[][] COLLECTIONS = {
+        {"java.util.ArrayList", "size", "elementData"},     // NOI18N
+        {"java.util.Vector", "elementCount", "elementData"},    // NOI18N
+        {"java.util.HashMap", "size", "table"},     // NOI18N
+        {"java.util.Hashtable", "count", "table"},      // NOI18N
+        {"java.util.IdentityHashMap", "size", "table"},     // NOI18N
+        {"java.util.WeakHashMap", "size", "table"},     // NOI18N
+        {"java.util.LinkedList", "size", null},     // NOI18N
+        {"java.util.TreeMap", "size", null}         // NOI18N
+    };
+
+    //~ Instance fields ----------------------------------------------------------------------------------------------------------
+
+    private final int[] counts = new int[KINDS];
+    private final long[] wastedSizes = new long[KINDS];
+    private final List<List<Instance>> topInstances = new ArrayList<>(KINDS);
+
+    //~ Constructors -------------------------------------------------------------------------------------------------------------
+
+    private WastedMemory(HprofHeap heap) {
+        Analysis analysis = new Analysis(heap);
+
+        try {
+            analysis.createArrays();
+            analysis.scan();
+            analysis.computeEmptyCollections();
+            analysis.computeDuplicateStrings();
+            analysis.computeDuplicateArrays();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getLocalizedMessage(), ex);
+        } finally {
+            analysis.deleteArrays();
+        }
+        for (int kind = 0; kind < KINDS; kind++) {
+            counts[kind] = analysis.counts[kind];
+            wastedSizes[kind] = analysis.wastedSizes[kind];
+            topInstances.add(analysis.tops[kind].getInstances(heap));
+        }
+    }
+
+    //~ Methods ------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * computes memory wasted in the heap.
+     * <br>
+     * Speed: slow
+     * @param heap analyzed heap
+     * @return wasted memory of the heap
+     */
+    public static WastedMemory compute(Heap heap) {
+        return new WastedMemory((HprofHeap) heap);
+    }
+
+    /**
+     * @param kind one of {@link #DUPLICATE_STRINGS}, {@link #DUPLICATE_ARRAYS}, {@link #EMPTY_COLLECTIONS} or {@link #SPARSE_ARRAYS}
+     * @return number of wasteful instances
+     */
+    public int getCount(int kind) {
+        return counts[kind];
+    }
+
+    /**
+     * @param kind one of {@link #DUPLICATE_STRINGS}, {@link #DUPLICATE_ARRAYS}, {@link #EMPTY_COLLECTIONS} or {@link #SPARSE_ARRAYS}
+     * @return wasted size in bytes
+     */
+    public long getWastedSize(int kind) {
+        return wastedSizes[kind];
+    }
+
+    /**
+     * @return total wasted size in bytes
+     */
+    public long getTotalWastedSize() {
+        long total = 0;
+
+        for (long size : wastedSizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Duplicates are represented by the first instance with the same content.
+     * @param kind one of {@link #DUPLICATE_STRINGS}, {@link #DUPLICATE_ARRAYS}, {@link #EMPTY_COLLECTIONS} or {@link #SPARSE_ARRAYS}
+     * @return instances with the biggest wasted size, ordered by wasted size
+     */
+    public List<Instance> getTopInstances(int kind) {
+        return topInstances.get(kind);
+    }
+
+    //~ Inner Classes ------------------------------------------------------------------------------------------------------------
+
+    private static final class Analysis {
+        private final HprofHeap heap;
+        private final HprofByteBuffer dumpBuffer;
+        private final CacheDirectory cacheDir;
+        private final int idSize;
+        private final ClassDumpSegment classDumpSegment;
+        private final LongObjectHashMap<JavaClass> classIdToClassMap;
+        private final JavaClass stringClass;
+        private final int[] counts = new int[KINDS];
+        private final long[] wastedSizes = new long[KINDS];
+        private final Top[] tops = new Top[KINDS];
+        private final Map<JavaClass,int[]> collectionFields = new HashMap<>();
+        // hashes and offsets of primitive arrays in dump order, offsets of values of strings are negated
+        private LongArray arrayHashes;
+        private LongArray arrayOffsets;
+        private long arrays;
+        // ids of char[] and byte[] arrays and their indexes in arrayOffsets, used for string values
+        private LongArray valueArrayIds;
+        private LongArray valueArrayIndexes;
+        private long valueArrays;
+        private LongArray stringOffsets;
+        private long strings;
+        // ids and sizes of object arrays, which are not empty
+        private LongArray objectArrayIds;
+        private LongArray objectArraySizes;
+        private long objectArrays;
+        // backing array ids and offsets of empty collections
+        private LongArray backingArrayIds;
+        private LongArray emptyCollectionOffsets;
+        private long emptyCollections;
+        private byte[] window = new byte[BUFFER_SIZE];
+        private long windowStart;
+        private long windowEnd;
+
+        private Analysis(HprofHeap h) {
+            heap = h;
+            dumpBuffer = heap.dumpBuffer;
+            cacheDir = heap.cacheDirectory;
+            idSize = dumpBuffer.getIDSize();
+            classDumpSegment = heap.getClassDumpSegment();
+            classIdToClassMap = classDumpSegment.getClassIdToClassMap();
+            stringClass = heap.getJavaClassByName(String.class.getName());
+            for (int i = 0; i < KINDS; i++) {
+                tops[i] = new Top();
+            }
+        }
+
+        /**
+         * Creates arrays in the cache directory, their sizes are taken from the class histogram.
+         */
+        private void createArrays() throws IOException {
+            ClassHistogram histogram = heap.getClassHistogram();
+            long primitiveArraysCount = 0;
+            long valueArraysCount = 0;
+            long objectArraysCount = 0;
+            long stringsCount = 0;
+            long collectionsCount = 0;
+
+            for (int i = 0; i < histogram.size(); i++) {
+                ClassDump classDump = (ClassDump) histogram.getJavaClass(i);
+                int count = histogram.getInstancesCount(i);
+                int type = classDumpSegment.getPrimitiveArrayType(classDump);
+
+                if (count == 0) {
+                    continue;
+                }
+                if (type != -1) {
+                    primitiveArraysCount += count;
+                    if (type == HprofHeap.CHAR || type == HprofHeap.BYTE) {
+                        valueArraysCount += count;
+                    }
+                } else if (classDump.getName().endsWith("[]")) {    // NOI18N
+                    objectArraysCount += count;
+                } else if (classDump.equals(stringClass)) {
+                    stringsCount += count;
+                } else if (getCollectionFields(classDump).length > 1) {
+                    collectionsCount += count;
+                }
+            }
+            arrayHashes = new LongArray(cacheDir, primitiveArraysCount);
+            arrayOffsets = new LongArray(cacheDir, primitiveArraysCount);
+            valueArrayIds = new LongArray(cacheDir, valueArraysCount);
+            valueArrayIndexes = new LongArray(cacheDir, valueArraysCount);
+            stringOffsets = new LongArray(cacheDir, stringsCount);
+            objectArrayIds = new LongArray(cacheDir, objectArraysCount);
+            objectArraySizes = new LongArray(cacheDir, objectArraysCount);
+            backingArrayIds = new LongArray(cacheDir, collectionsCount);
+            emptyCollectionOffsets = new LongArray(cacheDir, collectionsCount);
+        }
+
+        private void deleteArrays() {
+            for (LongArray array : new LongArray[] {arrayHashes, arrayOffsets, valueArrayIds, valueArrayIndexes, stringOffsets,
+                                                    objectArrayIds, objectArraySizes, backingArrayIds, emptyCollectionOffsets}) {
+                if (array != null) {
+                    array.delete();
+                }
+            }
+        }
+
+        /**
+         * One sequential pass over all heap dump records.
+         */
+        private void scan() {
+            TagBounds bounds = heap.getAllInstanceDumpBounds();
+            long[] offset = new long[] {bounds.startOffset};
+
+            HeapProgress.progressStart();
+            for (long counter = 0; offset[0] < bounds.endOffset; counter++) {
+                long start = offset[0];
+                int tag = heap.readDumpTag(offset);
+
+                if (tag == HprofHeap.PRIMITIVE_ARRAY_DUMP) {
+                    addPrimitiveArray(start);
+                } else if (tag == HprofHeap.OBJECT_ARRAY_DUMP) {
+                    addObjectArray(start);
+                } else if (tag == HprofHeap.INSTANCE_DUMP) {
+                    ClassDump classDump = (ClassDump) classIdToClassMap.get(dumpBuffer.getID(start + 1 + idSize + 4));
+
+                    if (classDump != null) {
+                        if (classDump.equals(stringClass)) {
+                            stringOffsets.set(strings++, start);
+                        } else {
+                            checkEmptyCollection(classDump, start);
+                        }
+                    }
+                }
+                HeapProgress.progress(counter, bounds.startOffset, start, bounds.endOffset);
+            }
+            HeapProgress.progressFinish();
+        }
+
+        private void addPrimitiveArray(long start) {
+            int length = dumpBuffer.getInt(start + 1 + idSize + 4);
+            byte type = dumpBuffer.get(start + 1 + idSize + 4 + 4);
+            long dataStart = start + 1 + idSize + 4 + 4 + 1;
+            long hash = hash(type, length, dataStart, (long) length * heap.getValueSize(type));
+
+            if (type == HprofHeap.CHAR || type == HprofHeap.BYTE) {
+                valueArrayIds.set(valueArrays, dumpBuffer.getID(start + 1));
+                valueArrayIndexes.set(valueArrays++, arrays);
+            }
+            arrayHashes.set(arrays, hash);
+            arrayOffsets.set(arrays++, start);
+        }
+
+        private void addObjectArray(long start) {
+            int length = dumpBuffer.getInt(start + 1 + idSize + 4);
+
+            if (length > 0) {
+                objectArrayIds.set(objectArrays, dumpBuffer.getID(start + 1));
+                objectArraySizes.set(objectArrays++, classDumpSegment.getArraySize((byte) HprofHeap.OBJECT, length));
+            }
+            if (length >= MIN_SPARSE_LENGTH) {
+                long position = start + 1 + idSize + 4 + 4 + idSize;
+                int nulls = 0;
+
+                for (int i = 0; i < length; i++, position += idSize) {
+                    if (isNull(position)) {
+                        nulls++;
+                    }
+                }
+                if (nulls > length / 2) {
+                    long wasted = (long) nulls * idSize;
+
+                    counts[SPARSE_ARRAYS]++;
+                    wastedSizes[SPARSE_ARRAYS] += wasted;
+                    tops[SPARSE_ARRAYS].add(wasted, start);
+                }
+            }
+        }
+
+        private void checkEmptyCollection(ClassDump classDump, long start) {
+            int[] fields = getCollectionFields(classDump);
+
+            if (fields != NOT_COLLECTION) {
+                long fieldValues = start + 1 + idSize + 4 + idSize + 4;
+
+                if (dumpBuffer.getInt(fieldValues + fields[0]) == 0) {
+                    long arrayId = fields.length > 1 ? dumpBuffer.getID(fieldValues + fields[1]) : 0;
+
+                    if (arrayId != 0) {
+                        // size of the backing array is known after the scan
+                        backingArrayIds.set(emptyCollections, arrayId);
+                        emptyCollectionOffsets.set(emptyCollections++, start);
+                    } else {
+                        addEmptyCollection(classDump.getInstanceSize(), start);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds sizes of backing arrays to empty collections, both are sorted by array id and merged.
+         */
+        private void computeEmptyCollections() throws IOException {
+            long array = 0;
+
+            LongPairs.sort(objectArrayIds, objectArraySizes, objectArrays, cacheDir);
+            LongPairs.sort(backingArrayIds, emptyCollectionOffsets, emptyCollections, cacheDir);
+            for (long i = 0; i < emptyCollections; i++) {
+                long arrayId = backingArrayIds.get(i);
+                long start = emptyCollectionOffsets.get(i);
+                ClassDump classDump = (ClassDump) classIdToClassMap.get(dumpBuffer.getID(start + 1 + idSize + 4));
+                long wasted = classDump.getInstanceSize();
+
+                while (array < objectArrays && objectArrayIds.get(array) < arrayId) {
+                    array++;
+                }
+                // empty arrays are usually shared by all empty collections, only non-empty arrays are recorded
+                if (array < objectArrays && objectArrayIds.get(array) == arrayId) {
+                    wasted += objectArraySizes.get(array);
+                }
+                addEmptyCollection(wasted, start);
+            }
+        }
+
+        private void addEmptyCollection(long wasted, long start) {
+            counts[EMPTY_COLLECTIONS]++;
+            wastedSizes[EMPTY_COLLECTIONS] += wasted;
+            tops[EMPTY_COLLECTIONS].add(wasted, start);
+        }
+
+        /**
+         * @return offsets of size field and backing array field of collection class or NOT_COLLECTION
+         */
+        private int[] getCollectionFields(ClassDump classDump) {
+            int[] fields = collectionFields.get(classDump);
+
+            if (fields == null) {
+                fields = NOT_COLLECTION;
+                for (JavaClass cls = classDump; cls != null && fields == NOT_COLLECTION; cls = cls.getSuperClass()) {
+                    for (String[] collection : COLLECTIONS) {
+                        if (collection[0].equals(cls.getName())) {
+                            fields = getFieldOffsets(classDump, collection);
+                            break;
+                        }
+                    }
+                }
+                collectionFields.put(classDump, fields);
+            }
+            return fields;
+        }
+
+        private static int[] getFieldOffsets(ClassDump classDump, String[] collection) {
+            InstanceFieldTable table = classDump.getInstanceFieldTable();
+            int sizeIndex = table.lastIndexOf(collection[1]);
+
+            if (sizeIndex == -1 || table.types[sizeIndex] != HprofHeap.INT) {
+                return NOT_COLLECTION;
+            }
+            if (collection[2] != null) {
+                int arrayIndex = table.lastIndexOf(collection[2]);
+
+                if (arrayIndex != -1 && table.types[arrayIndex] == HprofHeap.OBJECT) {
+                    return new int[] {table.offsets[sizeIndex], table.offsets[arrayIndex]};
+                }
+            }
+            return new int[] {table.offsets[sizeIndex]};
+        }
+
+        private void computeDuplicateStrings() throws IOException {
+            if (stringClass == null || strings == 0) {
+                return;
+            }
+            InstanceFieldTable table = ((ClassDump) stringClass).getInstanceFieldTable();
+            int valueIndex = table.lastIndexOf("value");     // NOI18N
+            int coderIndex = table.lastIndexOf("coder");     // NOI18N
+            int offsetIndex = table.lastIndexOf("offset");   // NOI18N
+            int countIndex = table.lastIndexOf("count");     // NOI18N
+            long hashedStrings = 0;
+
+            if (valueIndex == -1 || table.types[valueIndex] != HprofHeap.OBJECT) {
+                return;
+            }
+            LongPairs.sort(valueArrayIds, valueArrayIndexes, valueArrays, cacheDir);
+            // offsets of hashed strings replace stringOffsets in place
+            LongArray keys = new LongArray(cacheDir, strings);
+            try {
+                for (long i = 0; i < strings; i++) {
+                    long start = stringOffsets.get(i);
+                    long fieldValues = start + 1 + idSize + 4 + idSize + 4;
+                    long arrayIndex = getValueArrayIndex(dumpBuffer.getID(fieldValues + table.offsets[valueIndex]));
+
+                    if (arrayIndex != -1) {
+                        long arrayStart = getArrayOffset(arrayIndex);
+                        int length = dumpBuffer.getInt(arrayStart + 1 + idSize + 4);
+                        byte type = dumpBuffer.get(arrayStart + 1 + idSize + 4 + 4);
+                        int offset = offsetIndex == -1 ? 0 : dumpBuffer.getInt(fieldValues + table.offsets[offsetIndex]);
+                        int count = countIndex == -1 ? length : dumpBuffer.getInt(fieldValues + table.offsets[countIndex]);
+                        byte coder = coderIndex == -1 ? 0 : dumpBuffer.get(fieldValues + table.offsets[coderIndex]);
+                        long hash;
+
+                        if (offset == 0 && count == length) {
+                            hash = arrayHashes.get(arrayIndex);
+                        } else if (offset >= 0 && count >= 0 && offset + count <= length) {
+                            // substring sharing value array
+                            int elementSize = heap.getValueSize(type);
+                            long dataStart = arrayStart + 1 + idSize + 4 + 4 + 1;
+
+                            hash = hash(type, count, dataStart + (long) offset * elementSize, (long) count * elementSize);
+                        } else {
+                            continue;
+                        }
+                        // value arrays of strings are reported as duplicate strings
+                        arrayOffsets.set(arrayIndex, -arrayStart);
+                        keys.set(hashedStrings, (hash ^ coder) * FNV_PRIME);
+                        stringOffsets.set(hashedStrings++, start);
+                    }
+                }
+                LongPairs.sort(keys, stringOffsets, hashedStrings, cacheDir);
+                int stringSize = stringClass.getInstanceSize();
+                for (long i = 0; i < hashedStrings; ) {
+                    long end = i + 1;
+
+                    while (end < hashedStrings && keys.get(end) == keys.get(i)) {
+                        end++;
+                    }
+                    if (end - i > 1) {
+                        long wasted = (end - i - 1) * stringSize + getUnsharedValuesSize(i, end, table.offsets[valueIndex]);
+
+                        counts[DUPLICATE_STRINGS] += end - i - 1;
+                        wastedSizes[DUPLICATE_STRINGS] += wasted;
+                        tops[DUPLICATE_STRINGS].add(wasted, stringOffsets.get(i));
+                    }
+                    i = end;
+                }
+            } finally {
+                keys.delete();
+            }
+        }
+
+        /**
+         * @return size of distinct value arrays of duplicate strings except one
+         */
+        private long getUnsharedValuesSize(long from, long to, int valueOffset) {
+            long[] values = new long[(int) (to - from)];
+            long size = 0;
+
+            for (long i = from; i < to; i++) {
+                values[(int) (i - from)] = dumpBuffer.getID(stringOffsets.get(i) + 1 + idSize + 4 + idSize + 4 + valueOffset);
+            }
+            Arrays.sort(values);
+            for (int i = 1; i < values.length; i++) {
+                if (values[i] != values[i - 1]) {
+                    size += getArraySize(getArrayOffset(getValueArrayIndex(values[i])));
+                }
+            }
+            return size;
+        }
+
+        /**
+         * @return index of char[] or byte[] array in arrayOffsets or -1, valueArrayIds must be sorted
+         */
+        private long getValueArrayIndex(long arrayId) {
+            long low = 0;
+            long high = valueArrays - 1;
+
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                long midId = valueArrayIds.get(mid);
+
+                if (midId < arrayId) {
+                    low = mid + 1;
+                } else if (midId > arrayId) {
+                    high = mid - 1;
+                } else {
+                    return valueArrayIndexes.get(mid);
+                }
+            }
+            return -1;
+        }
+
+        private long getArrayOffset(long arrayIndex) {
+            return Math.abs(arrayOffsets.get(arrayIndex));
+        }
+
+        private void computeDuplicateArrays() throws IOException {
+            long hashedArrays = 0;
+
+            // arrays, which are not values of strings, are moved to the beginning in place
+            for (long i = 0; i < arrays; i++) {
+                long offset = arrayOffsets.get(i);
+
+                if (offset > 0) {
+                    arrayHashes.set(hashedArrays, arrayHashes.get(i));
+                    arrayOffsets.set(hashedArrays++, offset);
+                }
+            }
+            LongPairs.sort(arrayHashes, arrayOffsets, hashedArrays, cacheDir);
+            for (long i = 0; i < hashedArrays; ) {
+                long end = i + 1;
+
+                while (end < hashedArrays && arrayHashes.get(end) == arrayHashes.get(i)) {
+                    end++;
+                }
+                if (end - i > 1) {
+                    long offset = arrayOffsets.get(i);
+                    long wasted = (end - i - 1) * getArraySize(offset);
+
+                    counts[DUPLICATE_ARRAYS] += end - i - 1;
+                    wastedSizes[DUPLICATE_ARRAYS] += wasted;
+                    tops[DUPLICATE_ARRAYS].add(wasted, offset);
+                }
+                i = end;
+            }
+        }
+
+        private long getArraySize(long arrayStart) {
+            int length = dumpBuffer.getInt(arrayStart + 1 + idSize + 4);
+            byte type = dumpBuffer.get(arrayStart + 1 + idSize + 4 + 4);
+
+            return classDumpSegment.getArraySize(type, length);
+        }
+
+        /**
+         * FNV-1a hash of type, length and content of primitive array.
+         */
+        private long hash(byte type, int length, long position, long bytes) {
+            long hash = FNV_OFFSET;
+
+            hash = (hash ^ type) * FNV_PRIME;
+            hash = (hash ^ length) * FNV_PRIME;
+            for (long end = position + bytes; position < end; ) {
+                int from = load(position, 1);
+                int to = (int) (Math.min(windowEnd, end) - windowStart);
+                byte[] bytesWindow = window;
+
+                for (int i = from; i < to; i++) {
+                    hash = (hash ^ (bytesWindow[i] & 0xff)) * FNV_PRIME;
+                }
+                position = windowStart + to;
+            }
+            return hash;
+        }
+
+        private boolean isNull(long position) {
+            int from = load(position, idSize);
+
+            for (int i = from; i < from + idSize; i++) {
+                if (window[i] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Makes sure that the window contains length bytes at position.
+         * @return index of position in the window
+         */
+        private int load(long position, int length) {
+            if (position < windowStart || position + length > windowEnd) {
+                int size = (int) Math.min(BUFFER_SIZE, dumpBuffer.capacity() - position);
+
+                if (size != window.length) {
+                    // the end of the heap dump file
+                    window = new byte[size];
+                }
+                dumpBuffer.get(position, window);
+                windowStart = position;
+                windowEnd = position + size;
+            }
+            return (int) (position - windowStart);
+        }
+    }
+
+    /**
+     * File offsets of instances with the biggest wasted size.
+     */
+    private static final class Top {
+        // pairs of wasted size and offset, the smallest wasted size first
+        private final PriorityQueue<long[]> queue = new PriorityQueue<>(TOP_INSTANCES + 1, (e1, e2) -> {
+            int result = Long.compare(e1[0], e2[0]);
+            return result != 0 ? result : Long.compare(e2[1], e1[1]);
+        });
+
+        private void add(long wasted, long offset) {
+            queue.add(new long[] {wasted, offset});
+            if (queue.size() > TOP_INSTANCES) {
+                queue.poll();
+            }
+        }
+
+        private List<Instance> getInstances(HprofHeap heap) {
+            List<Instance> instances = new ArrayList<>(queue.size());
+
+            while (!queue.isEmpty()) {
+                instances.add(heap.getInstanceByOffset(new long[] {queue.poll()[1]}));
+            }
+            Collections.reverse(instances);
+            return Collections.unmodifiableList(instances);
+        }
+    }
+}
@@ -28,9 +28,11 @@ package org.graalvm.visualvm.lib.jfluid.heap;
 import java.io.BufferedOutputStream;
 import java.util.Map;
 import java.util.Date;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
@@ -38,16 +40,23 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -61,6 +70,7 @@ import static org.junit.Assert.*;
  */
 public class HeapTest {
     private Heap heap;
+    private final List<File> tempDirs = new ArrayList<>();
 
     public HeapTest() {
     }
@@ -81,6 +91,24 @@ public class HeapTest {
 
     @After
     public void tearDown() {
+        for (File dir : tempDirs) {
+            delete(dir);
+        }
+        tempDirs.clear();
+    }
+
+    /**
+     * Deletes file or directory with its content, the heap caches are created next to the dump copies.
+     */
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
     }
 
     /**
@@ -204,6 +232,59 @@ public class HeapTest {
         assertEquals(25080, i2.getRetainedSize());
     }
     
+    /**
+     * Test of getBiggestObjectsByRetainedSize method selecting objects in parallel chunks.
+     */
+    @Test
+    public void testParallelBiggestObjectsByRetainedSize() {
+        System.out.println("parallelBiggestObjectsByRetainedSize");
+        HprofHeap hprofHeap = (HprofHeap) heap;
+        List<Instance> all = new ArrayList<>();
+        List<List<Instance>> partials = new ArrayList<>();
+        String oldChunkSize = System.getProperty(ParallelScan.CHUNK_SIZE_PROPERTY);
+
+        for (JavaClass clazz : heap.getAllClasses()) {
+            Instance classInstance = heap.getInstanceByID(clazz.getJavaClassId());
+
+            if (classInstance != null) {
+                all.add(classInstance);
+            }
+            all.addAll(clazz.getInstances());
+        }
+        hprofHeap.computeRetainedSize();
+        all.sort((i1, i2) -> {
+            int diff = Long.compare(i2.getRetainedSize(), i1.getRetainedSize());
+            return diff != 0 ? diff : Long.compare(i1.getInstanceId(), i2.getInstanceId());
+        });
+        System.setProperty(ParallelScan.CHUNK_SIZE_PROPERTY, "1024");
+        try {
+            for (int threads : new int[] {1, 4}) {
+                long[] ids = hprofHeap.idToOffsetMap.getBiggestObjectsByRetainedSize(50, threads, null);
+
+                assertEquals(50, ids.length);
+                for (int i = 0; i < ids.length; i++) {
+                    assertEquals(all.get(i).getInstanceId(), ids[i]);
+                }
+            }
+            List<Instance> result = heap.getBiggestObjectsByRetainedSize(10, partial -> {
+                synchronized (partials) {
+                    partials.add(partial);
+                }
+            });
+            assertEquals(all.subList(0, 10), result);
+        } finally {
+            restoreProperty(ParallelScan.CHUNK_SIZE_PROPERTY, oldChunkSize);
+        }
+        assertFalse(partials.isEmpty());
+        for (List<Instance> partial : partials) {
+            assertTrue(partial.size() <= 10);
+            for (int i = 1; i < partial.size(); i++) {
+                assertTrue(partial.get(i - 1).getRetainedSize() >= partial.get(i).getRetainedSize());
+            }
+        }
+        assertEquals(0, hprofHeap.idToOffsetMap.getBiggestObjectsByRetainedSize(0, 4, null).length);
+    }
+
     /**
      * Test of getRetainedSizeByClass method, of class JavaClass.
      */
@@ -219,6 +300,37 @@ public class HeapTest {
         assertEquals(600, array.getRetainedSizeByClass());
     }
 
+    /**
+     * Test of getInstancesIterators method, of class JavaClass.
+     */
+    @Test
+    public void testGetInstancesIterators() throws IOException, URISyntaxException {
+        System.out.println("getInstancesIterators");
+        String oldChunkSize = System.getProperty(ParallelScan.CHUNK_SIZE_PROPERTY);
+        Heap chunkedHeap;
+
+        System.setProperty(ParallelScan.CHUNK_SIZE_PROPERTY, "1024");
+        try {
+            chunkedHeap = HeapFactory.createHeap(copyHeapDump());
+        } finally {
+            restoreProperty(ParallelScan.CHUNK_SIZE_PROPERTY, oldChunkSize);
+        }
+        boolean split = false;
+        for (JavaClass clazz : chunkedHeap.getAllClasses()) {
+            List<Iterator<Instance>> iterators = clazz.getInstancesIterators();
+            List<Instance> instances = new ArrayList<>();
+
+            for (Iterator<Instance> instanceIt : iterators) {
+                while (instanceIt.hasNext()) {
+                    instances.add(instanceIt.next());
+                }
+            }
+            assertEquals(clazz.getName(), clazz.getInstances(), instances);
+            split |= iterators.size() > 1;
+        }
+        assertTrue(split);
+    }
+
     /**
      * Test of getAllInstancesIterator method, of class Heap.
      */
@@ -255,6 +367,860 @@ public class HeapTest {
         }
     }
     
+    /**
+     * Test of parallel computation of instances.
+     */
+    @Test
+    public void testParallelComputeInstances() throws IOException, URISyntaxException {
+        System.out.println("parallelComputeInstances");
+        Heap parallelHeap = createParallelHeap(2048, 4, false);
+        List<JavaClass> classes = heap.getAllClasses();
+        List<JavaClass> parallelClasses = parallelHeap.getAllClasses();
+
+        assertEquals(heap.getSummary().getTotalLiveInstances(), parallelHeap.getSummary().getTotalLiveInstances());
+        assertEquals(heap.getSummary().getTotalLiveBytes(), parallelHeap.getSummary().getTotalLiveBytes());
+        assertEquals(classes.size(), parallelClasses.size());
+        for (int i = 0; i < classes.size(); i++) {
+            JavaClass clazz = classes.get(i);
+            JavaClass parallelClazz = parallelClasses.get(i);
+
+            assertEquals(clazz.getName(), parallelClazz.getName());
+            assertEquals(clazz.getInstancesCount(), parallelClazz.getInstancesCount());
+            assertEquals(clazz.getAllInstancesSize(), parallelClazz.getAllInstancesSize());
+            for (Instance in : clazz.getInstances()) {
+                Instance parallelIn = parallelHeap.getInstanceByID(in.getInstanceId());
+
+                assertEquals(in.getInstanceNumber(), parallelIn.getInstanceNumber());
+            }
+        }
+    }
+
+    /**
+     * Test of references computed in parallel chunks against sequential computation.
+     */
+    @Test
+    public void testParallelComputeReferences() throws IOException, URISyntaxException {
+        System.out.println("parallelComputeReferences");
+        // fresh heaps, nearest GC root computation changes order of references
+        HprofHeap hprofHeap = (HprofHeap) createParallelHeap(1024, 1, false);
+        HprofHeap parallelHeap = (HprofHeap) createParallelHeap(1024, 4, false);
+
+        for (JavaClass clazz : heap.getAllClasses()) {
+            for (Instance in : clazz.getInstances()) {
+                long instanceId = in.getInstanceId();
+                LongIterator refs = hprofHeap.idToOffsetMap.get(instanceId).getReferences();
+                LongIterator parallelRefs = parallelHeap.idToOffsetMap.get(instanceId).getReferences();
+
+                while (refs.hasNext()) {
+                    assertTrue(parallelRefs.hasNext());
+                    assertEquals(refs.next(), parallelRefs.next());
+                }
+                assertFalse(parallelRefs.hasNext());
+            }
+        }
+    }
+
+    /**
+     * Test of nearest GC roots computed in parallel against sequential computation.
+     */
+    @Test
+    public void testParallelNearestGCRoot() throws IOException, URISyntaxException {
+        System.out.println("parallelNearestGCRoot");
+        HprofHeap hprofHeap = (HprofHeap) createParallelHeap(1024, 1, true);
+        HprofHeap parallelHeap = (HprofHeap) createParallelHeap(1024, 4, true);
+
+        for (JavaClass clazz : heap.getAllClasses()) {
+            for (Instance in : clazz.getInstances()) {
+                long instanceId = in.getInstanceId();
+                LongMap.Entry entry = hprofHeap.idToOffsetMap.get(instanceId);
+                LongMap.Entry parallelEntry = parallelHeap.idToOffsetMap.get(instanceId);
+
+                assertEquals(entry.getNearestGCRootPointer(), parallelEntry.getNearestGCRootPointer());
+                assertEquals(entry.isTreeObj(), parallelEntry.isTreeObj());
+                assertEquals(entry.isDeepObj(), parallelEntry.isDeepObj());
+                assertEquals(entry.getRetainedSize(), parallelEntry.getRetainedSize());
+            }
+        }
+    }
+
+    /**
+     * Test of semi-NCA dominator algorithm.
+     */
+    @Test
+    public void testSemiNCADominators() throws IOException, URISyntaxException {
+        System.out.println("semiNCADominators");
+        String oldAlgorithm = System.getProperty(DominatorTree.ALGORITHM_PROPERTY);
+        Heap semiNCAHeap;
+
+        System.setProperty(DominatorTree.ALGORITHM_PROPERTY, DominatorTree.SEMI_NCA);
+        try {
+            semiNCAHeap = HeapFactory.createHeap(copyHeapDump());
+            ((HprofHeap) semiNCAHeap).computeRetainedSize();
+        } finally {
+            restoreProperty(DominatorTree.ALGORITHM_PROPERTY, oldAlgorithm);
+        }
+        assertSameRetainedSizes(heap, semiNCAHeap);
+    }
+
+    /**
+     * Test of resuming computation from the last completed phase.
+     */
+    @Test
+    public void testResumeFromCheckpoint() throws IOException, URISyntaxException {
+        System.out.println("resumeFromCheckpoint");
+        File dump = copyHeapDump();
+        HprofHeap hprofHeap = (HprofHeap) HeapFactory.createHeap(dump);
+        HprofHeap referencesHeap = (HprofHeap) HeapFactory.createHeap(copyHeapDump());
+
+        hprofHeap.computeReferences();
+        referencesHeap.computeReferences();
+
+        HprofHeap resumedHeap = (HprofHeap) HeapFactory.createHeap(dump);
+        assertFalse(resumedHeap.cacheDirectory.isDirty());
+        for (JavaClass clazz : heap.getAllClasses()) {
+            for (Instance in : clazz.getInstances()) {
+                long instanceId = in.getInstanceId();
+                LongIterator refs = referencesHeap.idToOffsetMap.get(instanceId).getReferences();
+                LongIterator resumedRefs = resumedHeap.idToOffsetMap.get(instanceId).getReferences();
+
+                while (refs.hasNext()) {
+                    assertTrue(resumedRefs.hasNext());
+                    assertEquals(refs.next(), resumedRefs.next());
+                }
+                assertFalse(resumedRefs.hasNext());
+            }
+        }
+
+        // simulate nearest GC root computation, which did not complete
+        resumedHeap.cacheDirectory.setDirty(true);
+        for (JavaClass clazz : heap.getAllClasses()) {
+            for (Instance in : clazz.getInstances()) {
+                resumedHeap.idToOffsetMap.get(in.getInstanceId()).addReference(clazz.getJavaClassId());
+            }
+        }
+        resumedHeap.idToOffsetMap.flush();
+        assertNotNull(HeapCheckpoint.read(resumedHeap.cacheDirectory, HeapCheckpoint.INSTANCES));
+
+        // references were modified in place, checkpoint is rejected and heap is resumed from instances
+        HprofHeap reindexedHeap = (HprofHeap) HeapFactory.createHeap(dump);
+        assertFalse(reindexedHeap.cacheDirectory.isDirty());
+        assertNull(HeapCheckpoint.read(reindexedHeap.cacheDirectory, HeapCheckpoint.REFERENCES));
+        assertSameRetainedSizes(heap, reindexedHeap);
+        assertNull(HeapCheckpoint.read(reindexedHeap.cacheDirectory, HeapCheckpoint.INSTANCES));
+        assertNotNull(HeapCheckpoint.read(reindexedHeap.cacheDirectory, HeapCheckpoint.RETAINED_SIZES));
+    }
+
+    /**
+     * Test of headless indexing, indexed heap dump is opened with all phases completed.
+     */
+    @Test
+    public void testHeapIndexer() throws IOException, URISyntaxException {
+        System.out.println("heapIndexer");
+        File dump = copyHeapDump();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HeapIndexer indexer = new HeapIndexer(dump, 0, new PrintStream(output));
+
+        indexer.index();
+        assertTrue(output.toString().contains("retained"));
+        assertFalse(indexer.getHeap().cacheDirectory.isDirty());
+
+        HprofHeap indexedHeap = (HprofHeap) HeapFactory.createHeap(dump);
+        assertTrue(indexedHeap.isRetainedSizeComputed());
+        assertTrue(indexedHeap.isRetainedSizeByClassComputed());
+        assertSameRetainedSizes(heap, indexedHeap);
+        assertEquals(512L * 1024 * 1024, HeapIndexer.parseSize("512m"));
+    }
+
+    /**
+     * Test of run size of references sort, buffers of all workers fit into memory budget.
+     */
+    @Test
+    public void testReferencesRunSize() {
+        System.out.println("referencesRunSize");
+        assertEquals(64 * 1024, ReferencesBuilder.getRunSize(1024, 4));
+        assertEquals(2 * 1024 * 1024, ReferencesBuilder.getRunSize(256L * 1024 * 1024, 4));
+    }
+
+    /**
+     * Test of LongObjectHashMap with keys colliding in low bits and zero key.
+     */
+    @Test
+    public void testLongObjectHashMap() {
+        System.out.println("longObjectHashMap");
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>(4);
+
+        for (long key = 0; key < 100000; key++) {
+            assertNull(map.put(key << 32, Long.valueOf(key)));
+        }
+        assertEquals(Long.valueOf(7), map.put(7L << 32, Long.valueOf(-7)));
+        assertEquals(100000, map.size());
+        for (long key = 0; key < 100000; key++) {
+            assertEquals(key == 7 ? -7 : key, map.get(key << 32).longValue());
+        }
+        assertTrue(map.containsKey(0));
+        assertNull(map.get(1));
+        assertFalse(map.containsKey(1));
+    }
+
+    /**
+     * Test of LongMap slot accessors, they return the same values as entries.
+     */
+    @Test
+    public void testLongMapSlots() {
+        System.out.println("longMapSlots");
+        HprofHeap hprofHeap = (HprofHeap) heap;
+        LongMap map = hprofHeap.idToOffsetMap;
+
+        heap.getBiggestObjectsByRetainedSize(1);
+        for (JavaClass clazz : heap.getAllClasses()) {
+            for (Instance in : clazz.getInstances()) {
+                long instanceId = in.getInstanceId();
+                LongMap.Entry entry = map.get(instanceId);
+                long slot = map.getSlot(instanceId);
+
+                assertEquals(entry.getSlot(), slot);
+                assertEquals(instanceId, map.getKeyAt(slot));
+                assertEquals(slot, map.putSlot(instanceId, 0));
+                assertEquals(entry.getOffset(), map.getOffsetAt(slot));
+                assertEquals(entry.getIndex(), map.getIndexAt(slot));
+                assertEquals(in.getInstanceNumber(), map.getIndexAt(slot));
+                assertEquals(entry.getNearestGCRootPointer(), map.getNearestGCRootPointerAt(slot));
+                assertEquals(entry.hasOnlyOneReference(), map.hasOnlyOneReferenceAt(slot));
+                assertEquals(entry.isTreeObj(), map.isTreeObjAt(slot));
+                assertEquals(entry.isDeepObj(), map.isDeepObjAt(slot));
+                assertEquals(entry.getRetainedSize(), map.getRetainedSizeAt(slot));
+                assertEquals(in.getRetainedSize(), map.getRetainedSizeAt(slot));
+                LongIterator refs = entry.getReferences();
+                LongIterator slotRefs = map.getReferencesAt(slot);
+                while (refs.hasNext()) {
+                    assertEquals(refs.next(), slotRefs.next());
+                }
+                assertFalse(slotRefs.hasNext());
+            }
+        }
+        assertEquals(-1, map.getSlot(1));
+        assertNull(map.get(1));
+    }
+
+    /**
+     * Test of FieldCursor, it returns the same values as getFieldValues().
+     */
+    @Test
+    public void testFieldCursor() {
+        System.out.println("fieldCursor");
+        FieldCursor cursor = new FieldCursor();
+
+        for (JavaClass clazz : heap.getAllClasses()) {
+            for (Instance in : clazz.getInstances()) {
+                List<FieldValue> values = in.getFieldValues();
+
+                cursor.reset(in);
+                for (FieldValue value : values) {
+                    assertTrue(cursor.next());
+                    assertEquals(value.getField(), cursor.getField());
+                    assertEquals(value instanceof ObjectFieldValue, cursor.isObject());
+                    if (value instanceof ObjectFieldValue) {
+                        Instance ref = ((ObjectFieldValue) value).getInstance();
+
+                        assertEquals(ref, cursor.getValue());
+                        if (ref != null) {
+                            assertEquals(ref.getInstanceId(), cursor.getObjectId());
+                        }
+                    } else {
+                        assertEquals(value.getValue(), String.valueOf(cursor.getValue()));
+                    }
+                }
+                assertFalse(cursor.next());
+                assertEquals(values.size(), cursor.getIndex());
+            }
+        }
+        Instance string = heap.getJavaClassByName(String.class.getName()).getInstances().get(0);
+        cursor.reset(string);
+        while (cursor.next()) {
+            if (cursor.getField().getName().equals("count")) {
+                assertEquals(string.getValueOfField("count"), Integer.valueOf(cursor.getInt()));
+            }
+        }
+    }
+
+    /**
+     * Test of string content and field value indexes, which are reused after the heap dump is reopened.
+     */
+    @Test
+    public void testSecondaryIndexes() throws IOException, URISyntaxException {
+        System.out.println("secondaryIndexes");
+        File dump = copyHeapDump();
+        Heap indexedHeap = HeapFactory.createHeap(dump);
+        List<Instance> strings = heap.getJavaClassByName(String.class.getName()).getInstances();
+
+        for (int i = 0; i < strings.size(); i += 7) {
+            String value = HprofProxy.getString(strings.get(i));
+            List<Long> expected = new ArrayList<>();
+
+            for (Instance string : strings) {
+                if (value.equals(HprofProxy.getString(string))) {
+                    expected.add(string.getInstanceId());
+                }
+            }
+            assertEquals(value, expected, getInstanceIds(indexedHeap.getStringInstances(value)));
+        }
+        assertTrue(indexedHeap.getStringInstances("no such string in heap").isEmpty());
+
+        JavaClass hashMap = indexedHeap.getJavaClassByName("java.util.HashMap");
+        JavaClass string = indexedHeap.getJavaClassByName(String.class.getName());
+        Object[][] ranges = {
+            {hashMap, "loadFactor", 0.7, 0.75},
+            {hashMap, "loadFactor", null, 0.5f},
+            {hashMap, "threshold", 10, null},
+            {string, "count", 3, 10},
+            {string, "count", 5.5, 5.5},
+            {string, "count", -1, -1}
+        };
+        assertFalse(indexedHeap.hasFieldIndex(string, "count"));
+        for (Object[] range : ranges) {
+            JavaClass clazz = (JavaClass) range[0];
+            String field = (String) range[1];
+            List<Long> expected = new ArrayList<>();
+
+            for (Instance in : clazz.getInstances()) {
+                double value = ((Number) in.getValueOfField(field)).doubleValue();
+
+                if ((range[2] == null || value >= ((Number) range[2]).doubleValue())
+                        && (range[3] == null || value <= ((Number) range[3]).doubleValue())) {
+                    expected.add(in.getInstanceId());
+                }
+            }
+            assertEquals(field, expected, getInstanceIds(indexedHeap.getInstancesByFieldValue(clazz, field, range[2], range[3])));
+            indexedHeap.createFieldIndex(clazz, field);
+            assertTrue(indexedHeap.hasFieldIndex(clazz, field));
+            assertEquals(field, expected, getInstanceIds(indexedHeap.getInstancesByFieldValue(clazz, field, range[2], range[3])));
+
+            Heap reopenedHeap = HeapFactory.createHeap(dump);
+            JavaClass reopenedClass = reopenedHeap.getJavaClassByID(clazz.getJavaClassId());
+            assertTrue(reopenedHeap.hasFieldIndex(reopenedClass, field));
+            assertEquals(field, expected, getInstanceIds(reopenedHeap.getInstancesByFieldValue(reopenedClass, field, range[2], range[3])));
+        }
+        try {
+            indexedHeap.createFieldIndex(string, "value");
+            fail("object field indexed");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Test of instances paged from shallow and retained size indexes.
+     */
+    @Test
+    public void testInstancesBySize() throws IOException, URISyntaxException {
+        System.out.println("instancesBySize");
+        File dump = copyHeapDump();
+        Heap indexedHeap = HeapFactory.createHeap(dump);
+        String[] classNames = {"char[]", "java.util.HashMap", "java.lang.String"};
+
+        // size index is created for all classes
+        System.setProperty(HprofHeap.SIZE_INDEX_PROPERTY, "0");
+        try {
+            assertInstancesBySize(dump, indexedHeap, classNames);
+        } finally {
+            System.clearProperty(HprofHeap.SIZE_INDEX_PROPERTY);
+        }
+        // small classes are sorted in memory
+        File unindexedDump = copyHeapDump();
+        HprofHeap unindexedHeap = (HprofHeap) HeapFactory.createHeap(unindexedDump);
+        assertInstancesBySize(unindexedDump, unindexedHeap, classNames);
+        for (String className : classNames) {
+            JavaClass clazz = unindexedHeap.getJavaClassByName(className);
+            assertFalse(className, unindexedHeap.cacheDirectory.getIndexFile(SecondaryIndex.getSizeIndexName(clazz, false)).exists());
+            assertFalse(className, unindexedHeap.cacheDirectory.getIndexFile(SecondaryIndex.getSizeIndexName(clazz, true)).exists());
+        }
+    }
+
+    private void assertInstancesBySize(File dump, Heap indexedHeap, String[] classNames) throws IOException {
+        for (String className : classNames) {
+            for (final boolean retained : new boolean[] {false, true}) {
+                JavaClass clazz = indexedHeap.getJavaClassByName(className);
+                List<Instance> sorted = new ArrayList<>(clazz.getInstances());
+
+                // stable sort keeps dump order of instances with the same size
+                Collections.sort(sorted, new Comparator<Instance>() {
+                    public int compare(Instance i1, Instance i2) {
+                        long s1 = retained ? i1.getRetainedSize() : i1.getSize();
+                        long s2 = retained ? i2.getRetainedSize() : i2.getSize();
+                        return Long.compare(s2, s1);
+                    }
+                });
+                List<Long> descending = getInstanceIds(sorted);
+                List<Long> ascending = new ArrayList<>(descending);
+                int count = sorted.size();
+
+                Collections.reverse(ascending);
+                assertEquals(className, descending, getInstanceIds(indexedHeap.getInstancesBySize(clazz, retained, false, 0, count)));
+                assertEquals(className, ascending, getInstanceIds(indexedHeap.getInstancesBySize(clazz, retained, true, 0, count)));
+                for (int from = 0; from < count; from += 17) {
+                    int to = from + 10;
+
+                    assertEquals(className, descending.subList(from, Math.min(to, count)),
+                            getInstanceIds(indexedHeap.getInstancesBySize(clazz, retained, false, from, to)));
+                }
+                assertTrue(indexedHeap.getInstancesBySize(clazz, retained, false, count, count + 10).isEmpty());
+
+                Heap reopenedHeap = HeapFactory.createHeap(dump);
+                JavaClass reopenedClass = reopenedHeap.getJavaClassByID(clazz.getJavaClassId());
+                assertEquals(className, ascending, getInstanceIds(reopenedHeap.getInstancesBySize(reopenedClass, retained, true, 0, count)));
+            }
+        }
+    }
+
+    private static List<Long> getInstanceIds(List<Instance> instances) {
+        List<Long> ids = new ArrayList<>();
+
+        for (Instance in : instances) {
+            ids.add(in.getInstanceId());
+        }
+        return ids;
+    }
+
+    /**
+     * Test of wasted memory computed in one pass against brute force computation.
+     */
+    @Test
+    public void testWastedMemory() {
+        System.out.println("wastedMemory");
+        WastedMemory wasted = WastedMemory.compute(heap);
+        Map<String,Integer> strings = new HashMap<>();
+        Map<String,Integer> arrays = new HashMap<>();
+        Set<Long> stringValues = new HashSet<>();
+        int duplicateStrings = 0;
+        int duplicateArrays = 0;
+        int emptyCollections = 0;
+        int sparseArrays = 0;
+
+        for (Instance string : heap.getJavaClassByName(String.class.getName()).getInstances()) {
+            Instance value = (Instance) string.getValueOfField("value");
+
+            if (value != null) {
+                stringValues.add(value.getInstanceId());
+                strings.merge(HprofProxy.getString(string), 1, Integer::sum);
+            }
+        }
+        for (JavaClass clazz : heap.getAllClasses()) {
+            if (clazz.isArray()) {
+                for (Instance array : clazz.getInstances()) {
+                    if (array instanceof PrimitiveArrayInstance) {
+                        if (!stringValues.contains(array.getInstanceId())) {
+                            arrays.merge(clazz.getName() + ((PrimitiveArrayInstance) array).getValues(), 1, Integer::sum);
+                        }
+                    } else {
+                        // unresolved references are not null
+                        ObjectArrayDump objectArray = (ObjectArrayDump) array;
+                        HprofByteBuffer dumpBuffer = ((HprofHeap) heap).dumpBuffer;
+                        int length = objectArray.getLength();
+                        int nulls = 0;
+
+                        for (int i = 0; i < length; i++) {
+                            if (dumpBuffer.getID(objectArray.getOffset() + (long) i * dumpBuffer.getIDSize()) == 0) {
+                                nulls++;
+                            }
+                        }
+                        if (length >= 8 && nulls > length / 2) {
+                            sparseArrays++;
+                        }
+                    }
+                }
+            }
+        }
+        String[][] collections = {
+            {"java.util.ArrayList", "size"}, {"java.util.Vector", "elementCount"}, {"java.util.HashMap", "size"},
+            {"java.util.Hashtable", "count"}, {"java.util.IdentityHashMap", "size"}, {"java.util.WeakHashMap", "size"},
+            {"java.util.LinkedList", "size"}, {"java.util.TreeMap", "size"}
+        };
+        for (String[] collection : collections) {
+            JavaClass clazz = heap.getJavaClassByName(collection[0]);
+
+            if (clazz == null) {
+                continue;
+            }
+            List<JavaClass> classes = new ArrayList<>(clazz.getSubClasses());
+
+            classes.add(clazz);
+            for (JavaClass cls : classes) {
+                for (Instance in : cls.getInstances()) {
+                    if (((Integer) in.getValueOfField(collection[1])) == 0) {
+                        emptyCollections++;
+                    }
+                }
+            }
+        }
+        for (int count : strings.values()) {
+            duplicateStrings += count - 1;
+        }
+        for (int count : arrays.values()) {
+            duplicateArrays += count - 1;
+        }
+        assertEquals(duplicateStrings, wasted.getCount(WastedMemory.DUPLICATE_STRINGS));
+        assertEquals(duplicateArrays, wasted.getCount(WastedMemory.DUPLICATE_ARRAYS));
+        assertEquals(emptyCollections, wasted.getCount(WastedMemory.EMPTY_COLLECTIONS));
+        assertEquals(sparseArrays, wasted.getCount(WastedMemory.SPARSE_ARRAYS));
+        for (int kind = WastedMemory.DUPLICATE_STRINGS; kind <= WastedMemory.SPARSE_ARRAYS; kind++) {
+            List<Instance> top = wasted.getTopInstances(kind);
+
+            assertTrue(top.size() <= 10);
+            assertEquals(wasted.getCount(kind) > 0, !top.isEmpty());
+            assertEquals(wasted.getCount(kind) > 0, wasted.getWastedSize(kind) > 0);
+        }
+        assertTrue(wasted.getTopInstances(WastedMemory.DUPLICATE_STRINGS).get(0) instanceof InstanceDump);
+    }
+
+    /**
+     * Test of primitive array value histograms counted in small parallel chunks against brute force counting.
+     */
+    @Test
+    public void testValueHistogram() {
+        System.out.println("valueHistogram");
+        String oldChunkSize = System.getProperty(ParallelScan.CHUNK_SIZE_PROPERTY);
+        String oldThreads = System.getProperty(ParallelScan.THREADS_PROPERTY);
+        int arrays = 0;
+
+        for (JavaClass clazz : heap.getAllClasses()) {
+            if (!clazz.isArray() || clazz.getInstancesCount() == 0 || !(clazz.getInstances().get(0) instanceof PrimitiveArrayInstance)) {
+                continue;
+            }
+            for (Instance in : clazz.getInstances()) {
+                PrimitiveArrayInstance array = (PrimitiveArrayInstance) in;
+                Map<String,Integer> expected = new HashMap<>();
+
+                for (String value : array.getValues()) {
+                    Integer count = expected.get(value);
+                    expected.put(value, count == null ? 1 : count + 1);
+                }
+                ValueHistogram histogram = ValueHistogram.compute(array);
+                System.setProperty(ParallelScan.CHUNK_SIZE_PROPERTY, "24");
+                System.setProperty(ParallelScan.THREADS_PROPERTY, "4");
+                try {
+                    ValueHistogram chunkedHistogram = ValueHistogram.compute(array);
+
+                    assertEquals(histogram.size(), chunkedHistogram.size());
+                    for (int i = 0; i < histogram.size(); i++) {
+                        assertEquals(histogram.getValue(i), chunkedHistogram.getValue(i));
+                        assertEquals(histogram.getCount(i), chunkedHistogram.getCount(i));
+                    }
+                } finally {
+                    restoreProperty(ParallelScan.CHUNK_SIZE_PROPERTY, oldChunkSize);
+                    restoreProperty(ParallelScan.THREADS_PROPERTY, oldThreads);
+                }
+                assertEquals(clazz.getName().replace("[]", ""), histogram.getType());
+                assertEquals(expected.size(), histogram.size());
+                for (int i = 0; i < histogram.size(); i++) {
+                    assertEquals(expected.get(histogram.getValue(i)), Integer.valueOf(histogram.getCount(i)));
+                    if (i > 0) {
+                        assertTrue(histogram.getCount(i - 1) >= histogram.getCount(i));
+                    }
+                }
+                arrays++;
+            }
+        }
+        assertTrue(arrays > 0);
+    }
+
+    /**
+     * Test of class histogram computed by a pre-scan in chunks against computed instances.
+     */
+    @Test
+    public void testClassHistogram() throws IOException, URISyntaxException {
+        System.out.println("classHistogram");
+        String oldChunkSize = System.getProperty(ParallelScan.CHUNK_SIZE_PROPERTY);
+        String oldThreads = System.getProperty(ParallelScan.THREADS_PROPERTY);
+        ClassHistogram histogram = HeapFactory.createHeap(copyHeapDump()).getClassHistogram();
+        ClassHistogram chunkedHistogram;
+
+        System.setProperty(ParallelScan.CHUNK_SIZE_PROPERTY, "24");
+        System.setProperty(ParallelScan.THREADS_PROPERTY, "4");
+        try {
+            chunkedHistogram = HeapFactory.createHeap(copyHeapDump()).getClassHistogram();
+        } finally {
+            restoreProperty(ParallelScan.CHUNK_SIZE_PROPERTY, oldChunkSize);
+            restoreProperty(ParallelScan.THREADS_PROPERTY, oldThreads);
+        }
+        List<JavaClass> classes = heap.getAllClasses();
+        long totalCount = 0;
+        long totalSize = 0;
+
+        assertEquals(classes.size(), histogram.size());
+        assertEquals(classes.size(), chunkedHistogram.size());
+        for (int i = 0; i < classes.size(); i++) {
+            JavaClass clazz = classes.get(i);
+
+            assertEquals(clazz.getName(), histogram.getJavaClass(i).getName());
+            assertEquals(clazz.getInstancesCount(), histogram.getInstancesCount(i));
+            assertEquals(clazz.getAllInstancesSize(), histogram.getAllInstancesSize(i));
+            assertEquals(clazz.getInstancesCount(), chunkedHistogram.getInstancesCount(i));
+            assertEquals(clazz.getAllInstancesSize(), chunkedHistogram.getAllInstancesSize(i));
+            totalCount += clazz.getInstancesCount();
+            totalSize += clazz.getAllInstancesSize();
+        }
+        assertEquals(totalCount, histogram.getTotalInstancesCount());
+        assertEquals(totalSize, histogram.getTotalInstancesSize());
+        assertEquals(heap.getSummary().getTotalLiveInstances(), histogram.getTotalInstancesCount());
+        // histogram of computed instances
+        ClassHistogram computedHistogram = heap.getClassHistogram();
+        assertEquals(totalCount, computedHistogram.getTotalInstancesCount());
+        assertEquals(totalSize, computedHistogram.getTotalInstancesSize());
+    }
+
+    /**
+     * Test of retained size estimates against exact and sampled computation.
+     */
+    @Test
+    public void testRetainedSizeEstimates() {
+        System.out.println("retainedSizeEstimates");
+        String oldBudget = System.getProperty(RetainedSizeEstimates.BUDGET_PROPERTY);
+        RetainedSizeEstimates estimates = RetainedSizeEstimates.compute(heap, 10);
+        RetainedSizeEstimates sampledEstimates;
+
+        System.setProperty(RetainedSizeEstimates.BUDGET_PROPERTY, "64");
+        try {
+            sampledEstimates = RetainedSizeEstimates.compute(heap, 10);
+        } finally {
+            restoreProperty(RetainedSizeEstimates.BUDGET_PROPERTY, oldBudget);
+        }
+        assertEquals(10, estimates.size());
+        for (int i = 0; i < estimates.size(); i++) {
+            Instance instance = estimates.getInstance(i);
+
+            // small heap is traversed without sampling, reachable objects include retained objects
+            assertEquals(0, estimates.getError(i));
+            assertFalse(estimates.isTruncated(i));
+            assertTrue(estimates.getRetainedSize(i) >= instance.getRetainedSize());
+            if (i > 0) {
+                assertTrue(estimates.getRetainedSize(i - 1) >= estimates.getRetainedSize(i));
+            }
+        }
+        assertEquals(10, sampledEstimates.size());
+        for (int i = 0; i < sampledEstimates.size(); i++) {
+            assertTrue(sampledEstimates.getRetainedSize(i) >= sampledEstimates.getInstance(i).getSize());
+            assertTrue(sampledEstimates.getError(i) >= 0);
+        }
+    }
+
+    /**
+     * Test of heap comparison against class statistics of both heaps.
+     */
+    @Test
+    public void testHeapDiff() throws IOException, URISyntaxException {
+        System.out.println("heapDiff");
+        Heap baseHeap = HeapFactory.createHeap(copyHeapDump());
+        HeapDiff diff = HeapDiff.compare(heap, baseHeap, true);
+        Map<String,Long> sizes = new HashMap<>();
+        Map<String,Integer> counts = new HashMap<>();
+        String previous = "";
+
+        for (JavaClass clazz : heap.getAllClasses()) {
+            sizes.merge(clazz.getName(), clazz.getAllInstancesSize(), Long::sum);
+            counts.merge(clazz.getName(), clazz.getInstancesCount(), Integer::sum);
+        }
+        assertEquals(sizes.size(), diff.getClasses().size());
+        for (HeapDiff.Entry entry : diff.getClasses()) {
+            assertTrue(previous.compareTo(entry.getName()) < 0);
+            assertTrue(entry.isInHeap() && entry.isInBaseHeap());
+            assertEquals(counts.get(entry.getName()).intValue(), entry.getInstancesCount());
+            assertEquals(entry.getInstancesCount(), entry.getBaseInstancesCount());
+            assertEquals(sizes.get(entry.getName()).longValue(), entry.getSize());
+            assertEquals(entry.getSize(), entry.getBaseSize());
+            assertEquals(entry.getRetainedSize(), entry.getBaseRetainedSize());
+            assertEquals(entry.getName(), entry.getJavaClass().getName());
+            assertEquals(entry.getName(), entry.getBaseJavaClass().getName());
+            assertNull(entry.getInstance());
+            previous = entry.getName();
+        }
+        HeapDiff.Entry lang = null;
+        for (HeapDiff.Entry entry : diff.getPackages()) {
+            if (entry.getName().equals("java.lang")) {
+                lang = entry;
+            }
+        }
+        assertNotNull(lang);
+        assertEquals(lang.getInstancesCount(), lang.getBaseInstancesCount());
+        assertTrue(lang.getInstancesCount() >= heap.getJavaClassByName(String.class.getName()).getInstancesCount());
+        assertFalse(diff.getStaticFields().isEmpty());
+        for (HeapDiff.Entry entry : diff.getStaticFields()) {
+            assertEquals(0, entry.getRetainedSizeGrowth());
+            assertEquals(entry.getInstance().getInstanceId(), entry.getBaseInstance().getInstanceId());
+        }
+        assertTrue(HeapDiff.compare(heap, baseHeap, false).getStaticFields().isEmpty());
+    }
+
+    /**
+     * Test of concurrent bulk reads from all HprofByteBuffer implementations.
+     */
+    @Test
+    public void testConcurrentBufferReads() throws Exception {
+        System.out.println("concurrentBufferReads");
+        File dump = new File(getClass().getResource("small_heap.bin").toURI());
+        byte[] content = Files.readAllBytes(dump.toPath());
+        String oldCacheSize = System.getProperty(HprofGZipBuffer.CACHE_SIZE_PROPERTY);
+        HprofByteBuffer gzipBuffer;
+
+        // cache of two members only
+        System.setProperty(HprofGZipBuffer.CACHE_SIZE_PROPERTY, "1");
+        try {
+            gzipBuffer = HprofGZipBuffer.createGZipBuffer(gzipHeapDump(dump, 4096), new CacheDirectory(null));
+        } finally {
+            restoreProperty(HprofGZipBuffer.CACHE_SIZE_PROPERTY, oldCacheSize);
+        }
+        HprofByteBuffer[] buffers = new HprofByteBuffer[] {
+            new HprofMappedByteBuffer(dump), new HprofLongMappedByteBuffer(dump), new HprofFileBuffer(dump), gzipBuffer
+        };
+
+        for (HprofByteBuffer buffer : buffers) {
+            List<Thread> readers = new ArrayList<>();
+            List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+
+            for (int i = 0; i < 8; i++) {
+                Random random = new Random(i);
+                Thread reader = new Thread(() -> {
+                    try {
+                        for (int j = 0; j < 10000; j++) {
+                            byte[] chars = new byte[random.nextInt(512) + 1];
+                            int position = random.nextInt(content.length - chars.length);
+
+                            buffer.get(position, chars);
+                            for (int k = 0; k < chars.length; k++) {
+                                assertEquals(content[position + k], chars[k]);
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        errors.add(ex);
+                    }
+                });
+                readers.add(reader);
+                reader.start();
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            assertTrue(buffer.getClass().getSimpleName() + " " + errors, errors.isEmpty());
+        }
+    }
+
+    /**
+     * Test of heap dumps compressed by gzip in many members and in one member.
+     */
+    @Test
+    public void testGZipHeapDump() throws IOException, URISyntaxException {
+        System.out.println("gzipHeapDump");
+        File dump = new File(getClass().getResource("small_heap.bin").toURI());
+        String oldBlockSize = System.getProperty(HprofGZipBuffer.MAX_BLOCK_SIZE_PROPERTY);
+
+        for (int memberSize : new int[] {64 * 1024, Integer.MAX_VALUE}) {
+            File gzipDump = gzipHeapDump(dump, memberSize);
+
+            for (int open = 0; open < 2; open++) {
+                Heap gzipHeap;
+
+                // one member is bigger than maximal block size
+                System.setProperty(HprofGZipBuffer.MAX_BLOCK_SIZE_PROPERTY, String.valueOf(128 * 1024));
+                try {
+                    gzipHeap = HeapFactory.createHeap(gzipDump);
+                } finally {
+                    restoreProperty(HprofGZipBuffer.MAX_BLOCK_SIZE_PROPERTY, oldBlockSize);
+                }
+
+                assertEquals(heap.getSummary().getTotalLiveInstances(), gzipHeap.getSummary().getTotalLiveInstances());
+                assertEquals(heap.getSummary().getTotalLiveBytes(), gzipHeap.getSummary().getTotalLiveBytes());
+                assertEquals(heap.getSystemProperties(), gzipHeap.getSystemProperties());
+                for (JavaClass clazz : heap.getAllClasses()) {
+                    JavaClass gzipClass = gzipHeap.getJavaClassByID(clazz.getJavaClassId());
+
+                    assertEquals(clazz.getName(), gzipClass.getName());
+                    assertEquals(clazz.getInstancesCount(), gzipClass.getInstancesCount());
+                }
+                for (Instance string : heap.getJavaClassByName(String.class.getName()).getInstances()) {
+                    assertEquals(HprofProxy.getString(string), HprofProxy.getString(gzipHeap.getInstanceByID(string.getInstanceId())));
+                }
+            }
+            File cacheDir = new File(gzipDump.getPath() + ".hwcache");
+            String cachedDump = memberSize == Integer.MAX_VALUE ? "NBProfiler.inflated.hprof" : "NBProfiler.gzip.idx";
+
+            assertTrue(cachedDump, new File(cacheDir, cachedDump).isFile());
+        }
+    }
+
+    /**
+     * Compresses heap dump to gzip members with memberSize of uncompressed data.
+     */
+    private File gzipHeapDump(File dump, int memberSize) throws IOException {
+        byte[] content = Files.readAllBytes(dump.toPath());
+        File dir = Files.createTempDirectory("heapGZip").toFile();
+        File gzipDump = new File(dir, dump.getName() + ".gz");
+
+        tempDirs.add(dir);
+        try (OutputStream out = new FileOutputStream(gzipDump)) {
+            for (int offset = 0; offset < content.length; offset += memberSize) {
+                GZIPOutputStream member = new GZIPOutputStream(new FilterOutputStream(out) {
+                    public void close() {
+                        // keep the file open for other members
+                    }
+                });
+
+                member.write(content, offset, Math.min(memberSize, content.length - offset));
+                member.close();
+            }
+        }
+        return gzipDump;
+    }
+
+    private File copyHeapDump() throws IOException, URISyntaxException {
+        URL url = getClass().getResource("small_heap.bin");
+        File dir = File.createTempFile("heapCopy", ".dir");
+        File dump = new File(dir, "small_heap.bin");
+
+        dir.delete();
+        dir.mkdir();
+        tempDirs.add(dir);
+        Files.copy(new File(url.toURI()).toPath(), dump.toPath());
+        return dump;
+    }
+
+    private Heap createParallelHeap(long chunkSize, int threads, boolean retainedSize) throws IOException, URISyntaxException {
+        File dump = copyHeapDump();
+        String oldChunkSize = System.getProperty(ParallelScan.CHUNK_SIZE_PROPERTY);
+        String oldThreads = System.getProperty(ParallelScan.THREADS_PROPERTY);
+
+        System.setProperty(ParallelScan.CHUNK_SIZE_PROPERTY, String.valueOf(chunkSize));
+        System.setProperty(ParallelScan.THREADS_PROPERTY, String.valueOf(threads));
+        try {
+            Heap parallelHeap = HeapFactory.createHeap(dump);
+            // compute instances and references while properties are set
+            ((HprofHeap) parallelHeap).computeReferences();
+            if (retainedSize) {
+                ((HprofHeap) parallelHeap).computeRetainedSize();
+            }
+            return parallelHeap;
+        } finally {
+            restoreProperty(ParallelScan.CHUNK_SIZE_PROPERTY, oldChunkSize);
+            restoreProperty(ParallelScan.THREADS_PROPERTY, oldThreads);
+        }
+    }
+
+    private static void assertSameRetainedSizes(Heap expected, Heap actual) {
+        for (JavaClass clazz : expected.getAllClasses()) {
+            for (Instance in : clazz.getInstances()) {
+                Instance actualIn = actual.getInstanceByID(in.getInstanceId());
+
+                assertEquals(in.getRetainedSize(), actualIn.getRetainedSize());
+            }
+        }
+    }
+
+    private static void restoreProperty(String key, String value) {
+        if (value == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, value);
+        }
+    }
+
     @Test
     public void testHeapDumpLog() throws IOException, URISyntaxException {
         System.out.println("testHeapDumpLog");
@@ -74,11 +74,13 @@ public final class DetailsSupport {
             };
     
     private static Lookup.Result<DetailsProvider> PROVIDERS;
-    private static Collection<? extends DetailsProvider> getProviders() {
+    private static synchronized Collection<? extends DetailsProvider> getProviders() {
         if (PROVIDERS == null) {
             PROVIDERS = Lookup.getDefault().lookupResult(DetailsProvider.class);
             PROVIDERS.addLookupListener(new LookupListener() {
-                public void resultChanged(LookupEvent ev) { PROVIDERS_CACHE.clear(); }
+                public void resultChanged(LookupEvent ev) {
+                    synchronized (PROVIDERS_CACHE) { PROVIDERS_CACHE.clear(); }
+                }
             });
         }
         return PROVIDERS.allInstances();
@@ -88,7 +90,9 @@ public final class DetailsSupport {
         Long classId = cls.getJavaClassId();
 
         // Query the cache for already computed DetailsProviders
-        List<ProviderClassPair> cachedPairs = PROVIDERS_CACHE.get(classId);
+        // The cache may be accessed concurrently
+        List<ProviderClassPair> cachedPairs;
+        synchronized (PROVIDERS_CACHE) { cachedPairs = PROVIDERS_CACHE.get(classId); }
         if (cachedPairs != null) return cachedPairs;
         
         // All registered className|DetailsProvider pairs
@@ -123,7 +127,7 @@ public final class DetailsSupport {
         pairs.addAll(simplePairs);
         
         // Cache the computed DetailsProviders
-        PROVIDERS_CACHE.put(classId, pairs);
+        synchronized (PROVIDERS_CACHE) { PROVIDERS_CACHE.put(classId, pairs); }
         
         return pairs;
     }
@@ -26,6 +26,14 @@ package org.graalvm.visualvm.lib.profiler.oql.engine.api.impl;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -45,6 +53,25 @@ import org.openide.util.NbBundle;
 
 /**
  * This is Object Query Language Interpreter
+ * <p>
+ * Queries with 'from' clause can be evaluated in parallel, if the
+ * {@value #THREADS_PROPERTY} system property is greater than 1. Instances are then
+ * split to batches, which are evaluated by a pool of separate script engines.
+ * Results are passed to the {@link ObjectVisitor} on the calling thread in the
+ * same order as in sequential evaluation. Since every engine has its own global
+ * scope, queries which keep state in global variables between instances
+ * have to be evaluated sequentially.
+ * <p>
+ * Simple 'where' conditions comparing fields, array lengths and sizes of
+ * the instance with literals are evaluated natively, without wrapping the
+ * instance for the script engine. Native evaluation can be switched off by
+ * the {@value #NATIVE_PREDICATES_PROPERTY} system property. Aggregations like
+ * <code>count()</code> or <code>top()</code> and select expressions are still
+ * evaluated by the script engine. If such condition
+ * compares <code>toString()</code> of java.lang.String instances with a string
+ * or a primitive field with a number and the field has an index created by
+ * {@link org.graalvm.visualvm.lib.jfluid.heap.Heap#createFieldIndex}, only
+ * the instances selected by the heap index are evaluated.
  *
  * @author A. Sundararajan
  * @author J. Bachorik
@@ -52,6 +79,11 @@ import org.openide.util.NbBundle;
 public class OQLEngineImpl {
     final private static Logger LOGGER = Logger.getLogger(OQLEngineImpl.class.getName());
 
+    static final String THREADS_PROPERTY = "org.graalvm.visualvm.lib.profiler.oql.threads"; // NOI18N
+    static final String NATIVE_PREDICATES_PROPERTY = "org.graalvm.visualvm.lib.profiler.oql.nativePredicates"; // NOI18N
+    private static final int BATCH_SIZE = 1024;
+    private static final int IDLE_THREAD_TIMEOUT = 30;
+
     private static boolean oqlSupported;
 
     static {
@@ -74,6 +106,10 @@ public class OQLEngineImpl {
 
     private ScriptEngine engine;
     private Snapshot snapshot;
+    // engines for parallel evaluation, created on demand
+    private final List<ScriptEngine> workerEngines = new ArrayList<>();
+    // threads for parallel evaluation, idle threads terminate, so the pool does not outlive the engine
+    private ThreadPoolExecutor executor;
 
     public OQLEngineImpl(Snapshot snapshot) {
         if (!isOQLSupported()) {
@@ -246,36 +282,35 @@ public class OQLEngineImpl {
             }
 
             if (q.className != null) {
-                Stack<JavaClass> toInspect = new Stack<>();
-                Set<JavaClass> inspected = new HashSet<>();
-
-                toInspect.push(clazz);
-
-                while(!toInspect.isEmpty()) {
-                    JavaClass inspecting = toInspect.pop();
-                    inspected.add(inspecting);
-                    if (q.isInstanceOf) {
-                        for(JavaClass subclass : inspecting.getSubClasses()) {
-                            if (!inspected.contains(subclass) && !toInspect.contains(subclass)) {
-                                toInspect.push(subclass);
+                List<JavaClass> classes = getClassesToInspect(clazz, q.isInstanceOf);
+                OQLPredicate predicate = getPredicate(q);
+                boolean selectsInstance = selectsInstance(q);
+                int threads = getThreads();
+
+                if (threads > 1) {
+                    executeParallel(q, selectCode, classes, predicate, visitor, threads);
+                    return;
+                }
+                for (JavaClass inspecting : classes) {
+                    Iterator<Instance> objectsIt = getInstancesIterator(inspecting, predicate);
+
+                    while (objectsIt.hasNext() && !cancelled.get()) {
+                        Instance instance = objectsIt.next();
+                        int match = predicate == null ? OQLPredicate.UNKNOWN : predicate.test(instance);
+                        if (match == OQLPredicate.FALSE) {
+                            continue;
+                        }
+                        if (match == OQLPredicate.TRUE && selectsInstance) {
+                            if (visitor.visit(instance)) {
+                                return;
                             }
+                            continue;
                         }
-                    }
-                    Iterator<Instance> objectsIt = inspecting.getInstancesIterator();
-
-                    while (objectsIt.hasNext()) {
-                        Object wrapped = wrapJavaObject(objectsIt.next());
-                        boolean b = (whereCs == null);
+                        Object wrapped = wrapJavaObject(instance);
+                        boolean b = (whereCs == null || match == OQLPredicate.TRUE);
                         if (!b) {
                             bindings.put(q.identifier, wrapped);
-                            Object res = whereCs.eval(bindings);
-                            if (res instanceof Boolean) {
-                                b = ((Boolean) res).booleanValue();
-                            } else if (res instanceof Number) {
-                                b = ((Number) res).intValue() != 0;
-                            } else {
-                                b = (res != null);
-                            }
+                            b = isTrue(whereCs.eval(bindings));
                         }
 
                         if (b) {
@@ -299,7 +334,211 @@ public class OQLEngineImpl {
         }
     }
 
+    /**
+     * @return classes in the order their instances are evaluated, subclasses are included for 'instanceof'
+     */
+    private static List<JavaClass> getClassesToInspect(JavaClass clazz, boolean isInstanceOf) {
+        List<JavaClass> classes = new ArrayList<>();
+        Stack<JavaClass> toInspect = new Stack<>();
+        Set<JavaClass> inspected = new HashSet<>();
+
+        toInspect.push(clazz);
+
+        while(!toInspect.isEmpty()) {
+            JavaClass inspecting = toInspect.pop();
+            inspected.add(inspecting);
+            if (isInstanceOf) {
+                for(JavaClass subclass : inspecting.getSubClasses()) {
+                    if (!inspected.contains(subclass) && !toInspect.contains(subclass)) {
+                        toInspect.push(subclass);
+                    }
+                }
+            }
+            classes.add(inspecting);
+        }
+        return classes;
+    }
+
+    /**
+     * @return native predicate for the 'where' clause or <code>null</code> if it has to be evaluated by the script
+     */
+    private OQLPredicate getPredicate(OQLQueryImpl q) {
+        if (!Boolean.parseBoolean(System.getProperty(NATIVE_PREDICATES_PROPERTY, "true"))) { // NOI18N
+            return null;
+        }
+        return OQLPredicate.create(q.whereExpr, q.identifier, snapshot);
+    }
+
+    /**
+     * @return instances of the class, which can satisfy the predicate, in the order of the heap dump
+     */
+    private Iterator<Instance> getInstancesIterator(JavaClass clazz, OQLPredicate predicate) {
+        if (predicate != null) {
+            String value = predicate.getStringValue();
+
+            if (value != null && String.class.getName().equals(clazz.getName())) {
+                return snapshot.getStringInstances(value).iterator();
+            }
+            for (OQLPredicate.FieldRange range : predicate.getFieldRanges()) {
+                List<Instance> instances = snapshot.getIndexedInstances(clazz, range.fieldName, range.min, range.max);
+
+                if (instances != null) {
+                    return instances.iterator();
+                }
+            }
+        }
+        return clazz.getInstancesIterator();
+    }
+
+    /**
+     * @return <code>true</code> if the query selects just the instance, like 'select x from ... x'
+     */
+    private static boolean selectsInstance(OQLQueryImpl q) {
+        return q.selectExpr.trim().equals(q.identifier);
+    }
+
+    private static int getThreads() {
+        return Math.max(1, Integer.getInteger(THREADS_PROPERTY, 1).intValue());
+    }
+
+    private static boolean isTrue(Object res) {
+        if (res instanceof Boolean) {
+            return ((Boolean) res).booleanValue();
+        } else if (res instanceof Number) {
+            return ((Number) res).intValue() != 0;
+        } else {
+            return res != null;
+        }
+    }
+
+    /**
+     * Evaluates batches of instances in parallel, while results of finished batches
+     * are dispatched to the visitor in order by the calling thread.
+     */
+    private void executeParallel(OQLQueryImpl q, String selectCode, List<JavaClass> classes, OQLPredicate predicate,
+                                 ObjectVisitor visitor, int threads) throws Exception {
+        BlockingQueue<Worker> workers = new ArrayBlockingQueue<>(threads);
+        AtomicBoolean stopped = new AtomicBoolean();
+        Deque<Future<List<Object>>> pending = new ArrayDeque<>();
+        ExecutorService executor = getExecutor(threads);
+
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Worker(getWorkerEngine(i), q, selectCode, stopped));
+        }
+        try {
+            List<Instance> batch = new ArrayList<>(BATCH_SIZE);
+
+            for (JavaClass inspecting : classes) {
+                Iterator<Instance> objectsIt = getInstancesIterator(inspecting, predicate);
+
+                while (objectsIt.hasNext() && !cancelled.get()) {
+                    batch.add(objectsIt.next());
+                    if (batch.size() == BATCH_SIZE) {
+                        pending.add(submit(executor, workers, batch));
+                        batch = new ArrayList<>(BATCH_SIZE);
+                        // limit number of batches waiting for dispatch
+                        if (pending.size() > 2 * threads && dispatchBatch(pending.removeFirst(), visitor)) {
+                            return;
+                        }
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                pending.add(submit(executor, workers, batch));
+            }
+            while (!pending.isEmpty()) {
+                if (dispatchBatch(pending.removeFirst(), visitor)) {
+                    return;
+                }
+            }
+        } finally {
+            stopped.set(true);
+            for (Future<List<Object>> batch : pending) {
+                batch.cancel(true);
+            }
+            awaitWorkers(workers, threads);
+        }
+    }
+
+    private ExecutorService getExecutor(int threads) {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "OQL worker"); // NOI18N
+                t.setDaemon(true);
+                return t;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        } else if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        } else if (threads < executor.getMaximumPoolSize()) {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+        return executor;
+    }
+
+    /**
+     * Waits until all workers are idle, so their script engines can be used by the next query.
+     */
+    private static void awaitWorkers(BlockingQueue<Worker> workers, int threads) {
+        boolean interrupted = false;
+
+        for (int idle = 0; idle < threads; ) {
+            try {
+                workers.take();
+                idle++;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Future<List<Object>> submit(ExecutorService executor, BlockingQueue<Worker> workers, List<Instance> batch) {
+        return executor.submit(() -> {
+            Worker worker = workers.take();
+
+            try {
+                return worker.evaluate(batch);
+            } finally {
+                // never blocks, queue has room for all workers
+                workers.add(worker);
+            }
+        });
+    }
+
+    private boolean dispatchBatch(Future<List<Object>> batch, ObjectVisitor visitor) throws Exception {
+        List<Object> results;
+
+        try {
+            results = batch.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof Exception ? (Exception) cause : ex;
+        }
+        for (Object result : results) {
+            if (visitor.visit(result)) {
+                return true;
+            }
+        }
+        return cancelled.get();
+    }
+
+    private ScriptEngine getWorkerEngine(int index) throws Exception {
+        while (workerEngines.size() <= index) {
+            workerEngines.add(createEngine());
+        }
+        return workerEngines.get(index);
+    }
+
     private boolean dispatchValue(Object jsObject, ObjectVisitor visitor) {
+        return dispatchValue(engine, jsObject, visitor);
+    }
+
+    private static boolean dispatchValue(ScriptEngine engine, Object jsObject, ObjectVisitor visitor) {
         if (jsObject == null) {
             return false;
         }
@@ -307,21 +546,21 @@ public class OQLEngineImpl {
         if (jsObject instanceof Iterator) {
             Iterator<?> iter = (Iterator) jsObject;
             while (iter.hasNext()) {
-                if (dispatchValue(iter.next(), visitor)) return true;
+                if (dispatchValue(engine, iter.next(), visitor)) return true;
             }
             return false;
         } else if (jsObject instanceof Enumeration) {
             Enumeration<?> enm = (Enumeration) jsObject;
             while (enm.hasMoreElements()) {
                 Object elem = enm.nextElement();
-                if (dispatchValue(elem, visitor)) return true;
+                if (dispatchValue(engine, elem, visitor)) return true;
             }
             return false;
         } else {
-            Object object = unwrapJavaObject(jsObject, true);
+            Object object = unwrapJavaObject(engine, jsObject, true);
             if (object instanceof Object[]) {
                 for (Object obj1 : (Object[]) object) {
-                    if (dispatchValue(obj1, visitor)) return true;
+                    if (dispatchValue(engine, obj1, visitor)) return true;
                 }
                 return false;
             }
@@ -356,6 +595,10 @@ public class OQLEngineImpl {
     }
 
     public Object unwrapJavaObject(Object object, boolean tryAssociativeArray) {
+        return unwrapJavaObject(engine, object, tryAssociativeArray);
+    }
+
+    private static Object unwrapJavaObject(ScriptEngine engine, Object object, boolean tryAssociativeArray) {
         if (object == null) return null;
         String className = object.getClass().getName();
         boolean isNativeJS = className.startsWith("com.oracle.truffle.object.") // NOI18N
@@ -377,21 +620,77 @@ public class OQLEngineImpl {
     private void init(Snapshot snapshot) throws RuntimeException {
         this.snapshot = snapshot;
         try {
-            ScriptEngineManager manager = new ScriptEngineManager();
-            engine = manager.getEngineByName("JavaScript"); // NOI18N
-            InputStream strm = getInitStream();
-            CompiledScript cs = ((Compilable)engine).compile(new InputStreamReader(strm));
-            cs.eval();
-            Object heap = ((Invocable)engine).invokeFunction("wrapHeapSnapshot", snapshot); // NOI18N
-            engine.put("heap", heap); // NOI18N
-            engine.put("cancelled", cancelled); // NOI18N
+            engine = createEngine();
         } catch (Exception ex) {
             LOGGER.log(Level.INFO, "Error initializing snapshot", ex); // NOI18N
             throw new RuntimeException(ex);
         }
     }
 
+    private ScriptEngine createEngine() throws Exception {
+        ScriptEngineManager manager = new ScriptEngineManager();
+        ScriptEngine scriptEngine = manager.getEngineByName("JavaScript"); // NOI18N
+        InputStream strm = getInitStream();
+        CompiledScript cs = ((Compilable)scriptEngine).compile(new InputStreamReader(strm));
+        cs.eval();
+        Object heap = ((Invocable)scriptEngine).invokeFunction("wrapHeapSnapshot", snapshot); // NOI18N
+        scriptEngine.put("heap", heap); // NOI18N
+        scriptEngine.put("cancelled", cancelled); // NOI18N
+        return scriptEngine;
+    }
+
     private InputStream getInitStream() {
         return getClass().getResourceAsStream("/org/graalvm/visualvm/lib/profiler/oql/engine/api/impl/hat.js"); // NOI18N
     }
+
+    /**
+     * Evaluates the query for batches of instances using its own script engine.
+     */
+    private class Worker {
+        private final ScriptEngine scriptEngine;
+        private final String identifier;
+        private final CompiledScript selectCs;
+        private final CompiledScript whereCs;
+        private final OQLPredicate predicate;
+        private final boolean selectsInstance;
+        private final AtomicBoolean stopped;
+
+        private Worker(ScriptEngine se, OQLQueryImpl q, String selectCode, AtomicBoolean stop) throws Exception {
+            scriptEngine = se;
+            identifier = q.identifier;
+            selectCs = ((Compilable)scriptEngine).compile(selectCode);
+            whereCs = q.whereExpr == null ? null : ((Compilable)scriptEngine).compile(q.whereExpr.replace('\n', ' ')); // NOI18N
+            predicate = getPredicate(q);
+            selectsInstance = selectsInstance(q);
+            stopped = stop;
+        }
+
+        private List<Object> evaluate(List<Instance> instances) throws Exception {
+            Bindings bindings = scriptEngine.getBindings(ScriptContext.ENGINE_SCOPE);
+            List<Object> results = new ArrayList<>();
+
+            for (Instance instance : instances) {
+                if (cancelled.get() || stopped.get()) {
+                    break;
+                }
+                int match = predicate == null ? OQLPredicate.UNKNOWN : predicate.test(instance);
+                if (match == OQLPredicate.FALSE) {
+                    continue;
+                }
+                if (match == OQLPredicate.TRUE && selectsInstance) {
+                    results.add(instance);
+                    continue;
+                }
+                Object wrapped = ((Invocable)scriptEngine).invokeFunction("wrapJavaObject", instance); // NOI18N
+                bindings.put(identifier, wrapped);
+                if (whereCs == null || match == OQLPredicate.TRUE || isTrue(whereCs.eval(bindings))) {
+                    dispatchValue(scriptEngine, selectCs.eval(bindings), o -> {
+                        results.add(o);
+                        return false;
+                    });
+                }
+            }
+            return results;
+        }
+    }
 }
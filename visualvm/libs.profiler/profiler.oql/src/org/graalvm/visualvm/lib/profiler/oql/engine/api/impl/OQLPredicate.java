@@ -0,0 +1,687 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.profiler.oql.engine.api.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.graalvm.visualvm.lib.jfluid.heap.Instance;
+import org.graalvm.visualvm.lib.jfluid.heap.JavaClass;
+import org.graalvm.visualvm.lib.jfluid.heap.ObjectArrayInstance;
+import org.graalvm.visualvm.lib.jfluid.heap.PrimitiveArrayInstance;
+
+/**
+ * Native evaluation of simple 'where' expressions without the script engine.
+ * Supported expressions are comparisons combined by &amp;&amp;, || and !, where
+ * operands are number, boolean, string and null literals, field paths like
+ * <code>x.field.length</code>, <code>x.toString()</code>, <code>sizeof(x)</code>
+ * and <code>rsizeof(x)</code>. Values are compared with the same rules as in
+ * the script, but only for numbers, booleans, null and strings compared for
+ * equality. If an instance yields other values, for example a char field or
+ * a path through null object, the result is {@link #UNKNOWN} and the expression
+ * has to be evaluated by the script engine for that instance.
+ * <p>
+ * Conditions, which have to be satisfied by all matching instances, are
+ * available to select instances by heap indexes.
+ */
+final class OQLPredicate {
+
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+    static final int UNKNOWN = 2;
+
+    private static final String SIZEOF = "sizeof"; // NOI18N
+    private static final String RSIZEOF = "rsizeof"; // NOI18N
+    private static final String LENGTH = "length"; // NOI18N
+    private static final String TO_STRING = "toString"; // NOI18N
+    private static final String STRING_CLASS = "java.lang.String"; // NOI18N
+    // prefix of string literal tokens
+    private static final char QUOTE = '"';
+    // properties of the instance wrapper in hat.js, which are not fields
+    private static final String[] WRAPPER_PROPERTIES = {
+        "clazz", "statics", "id", "wrapped-object", "toString" // NOI18N
+    };
+
+    private final Node root;
+    private final List<FieldRange> fieldRanges;
+    private final String stringValue;
+
+    private OQLPredicate(Node n) {
+        root = n;
+        fieldRanges = new ArrayList<>();
+        stringValue = collectConditions(n, fieldRanges);
+    }
+
+    /**
+     * @return predicate for the where expression or <code>null</code> if the expression is not supported
+     */
+    static OQLPredicate create(String whereExpr, String identifier, Snapshot snapshot) {
+        if (whereExpr == null || identifier == null) {
+            return null;
+        }
+        List<String> tokens = tokenize(whereExpr);
+
+        if (tokens == null) {
+            return null;
+        }
+        Parser parser = new Parser(tokens, identifier, snapshot);
+        Node node = parser.parseOr();
+
+        if (node == null || !parser.isAtEnd()) {
+            return null;
+        }
+        return new OQLPredicate(node);
+    }
+
+    /**
+     * @return {@link #TRUE}, {@link #FALSE} or {@link #UNKNOWN}
+     */
+    int test(Instance instance) {
+        return root.test(instance);
+    }
+
+    /**
+     * @return ranges of field values, which have to be satisfied by all matching instances
+     */
+    List<FieldRange> getFieldRanges() {
+        return fieldRanges;
+    }
+
+    /**
+     * @return content, which has to be equal to <code>toString()</code> of all matching instances,
+     * or <code>null</code> if there is no such condition
+     */
+    String getStringValue() {
+        return stringValue;
+    }
+
+    private static String collectConditions(Node node, List<FieldRange> ranges) {
+        if (node instanceof And) {
+            String left = collectConditions(((And) node).left, ranges);
+            String right = collectConditions(((And) node).right, ranges);
+            return left != null ? left : right;
+        }
+        if (node instanceof Comparison) {
+            return ((Comparison) node).collectConditions(ranges);
+        }
+        return null;
+    }
+
+    /**
+     * Inclusive range of primitive field values.
+     */
+    static final class FieldRange {
+        final String fieldName;
+        // null for unbounded range
+        final Double min;
+        final Double max;
+
+        private FieldRange(String name, Double mn, Double mx) {
+            fieldName = name;
+            min = mn;
+            max = mx;
+        }
+    }
+
+    //---- Tokenizer
+    private static List<String> tokenize(String expr) {
+        List<String> tokens = new ArrayList<>();
+        int length = expr.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = expr.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < length && Character.isJavaIdentifierPart(expr.charAt(i))) {
+                    i++;
+                }
+                tokens.add(expr.substring(start, i));
+            } else if (Character.isDigit(c)) {
+                int start = i;
+                while (i < length && (Character.isDigit(expr.charAt(i)) || expr.charAt(i) == '.')) {
+                    i++;
+                }
+                if (i < length && Character.isJavaIdentifierPart(expr.charAt(i))) {
+                    return null; // hex, exponent or other number format
+                }
+                tokens.add(expr.substring(start, i));
+            } else if (c == '\'' || c == '"') {
+                StringBuilder literal = new StringBuilder().append(QUOTE);
+                i++;
+                while (i < length && expr.charAt(i) != c) {
+                    char ch = expr.charAt(i++);
+                    if (ch == '\\') {
+                        if (i == length) {
+                            return null;
+                        }
+                        ch = expr.charAt(i++);
+                        switch (ch) {
+                            case 'n':
+                                ch = '\n';
+                                break;
+                            case 't':
+                                ch = '\t';
+                                break;
+                            case 'r':
+                                ch = '\r';
+                                break;
+                            case '\\':
+                            case '\'':
+                            case '"':
+                                break;
+                            default:
+                                return null; // other escape sequences are left to the script
+                        }
+                    }
+                    literal.append(ch);
+                }
+                if (i == length) {
+                    return null;
+                }
+                i++;
+                tokens.add(literal.toString());
+            } else {
+                String op = null;
+                for (String o : new String[] {"===", "!==", "==", "!=", "<=", ">=", "&&", "||", "<", ">", "!", "(", ")", ".", "-"}) { // NOI18N
+                    if (expr.startsWith(o, i)) {
+                        op = o;
+                        break;
+                    }
+                }
+                if (op == null || op.length() == 3) {
+                    return null; // strict equality and other operators are left to the script
+                }
+                tokens.add(op);
+                i += op.length();
+            }
+        }
+        return tokens;
+    }
+
+    //---- Parser
+    private static class Parser {
+        private final List<String> tokens;
+        private final String identifier;
+        private final Snapshot snapshot;
+        private int position;
+
+        private Parser(List<String> t, String id, Snapshot s) {
+            tokens = t;
+            identifier = id;
+            snapshot = s;
+        }
+
+        private boolean isAtEnd() {
+            return position == tokens.size();
+        }
+
+        private String peek() {
+            return isAtEnd() ? null : tokens.get(position);
+        }
+
+        private boolean accept(String token) {
+            if (token.equals(peek())) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private Node parseOr() {
+            Node left = parseAnd();
+
+            while (left != null && accept("||")) { // NOI18N
+                Node right = parseAnd();
+                left = right == null ? null : new Or(left, right);
+            }
+            return left;
+        }
+
+        private Node parseAnd() {
+            Node left = parseNot();
+
+            while (left != null && accept("&&")) { // NOI18N
+                Node right = parseNot();
+                left = right == null ? null : new And(left, right);
+            }
+            return left;
+        }
+
+        private Node parseNot() {
+            if (accept("!")) { // NOI18N
+                Node node = parseNot();
+                return node == null ? null : new Not(node);
+            }
+            if (accept("(")) { // NOI18N
+                Node node = parseOr();
+                return node != null && accept(")") ? node : null; // NOI18N
+            }
+            return parseComparison();
+        }
+
+        private Node parseComparison() {
+            Operand left = parseOperand();
+            String op = peek();
+
+            if (left == null || op == null) {
+                return null;
+            }
+            int operator = Comparison.getOperator(op);
+            if (operator == -1) {
+                return null;
+            }
+            position++;
+            Operand right = parseOperand();
+            return right == null ? null : new Comparison(left, operator, right);
+        }
+
+        private Operand parseOperand() {
+            String token = peek();
+
+            if (token == null) {
+                return null;
+            }
+            position++;
+            if (token.equals("-")) { // NOI18N
+                Double number = parseNumber(peek());
+                if (number == null) {
+                    return null;
+                }
+                position++;
+                return new Literal(Value.number(-number.doubleValue()));
+            }
+            Double number = parseNumber(token);
+            if (number != null) {
+                return new Literal(Value.number(number.doubleValue()));
+            }
+            if (token.charAt(0) == QUOTE) {
+                return new Literal(Value.string(token.substring(1)));
+            }
+            if (token.equals("true") || token.equals("false")) { // NOI18N
+                return new Literal(Value.bool(token.equals("true"))); // NOI18N
+            }
+            if (token.equals("null")) { // NOI18N
+                return new Literal(Value.NULL);
+            }
+            if (token.equals(SIZEOF) || token.equals(RSIZEOF)) {
+                if (accept("(") && accept(identifier) && accept(")")) { // NOI18N
+                    return new Size(token.equals(RSIZEOF));
+                }
+                return null;
+            }
+            if (token.equals(identifier)) {
+                int start = position;
+
+                if (accept(".") && accept(TO_STRING) && accept("(") && accept(")")) { // NOI18N
+                    return new ToString(snapshot);
+                }
+                position = start;
+                List<String> names = new ArrayList<>();
+
+                while (accept(".")) { // NOI18N
+                    String name = peek();
+                    if (name == null || !Character.isJavaIdentifierStart(name.charAt(0)) || isWrapperProperty(name)) {
+                        return null;
+                    }
+                    names.add(name);
+                    position++;
+                }
+                if (names.isEmpty() || "(".equals(peek())) { // NOI18N
+                    return null; // method call
+                }
+                return new Path(names.toArray(new String[0]));
+            }
+            return null;
+        }
+
+        private static Double parseNumber(String token) {
+            if (token == null || !Character.isDigit(token.charAt(0))) {
+                return null;
+            }
+            try {
+                return Double.valueOf(token);
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        private static boolean isWrapperProperty(String name) {
+            for (String property : WRAPPER_PROPERTIES) {
+                if (property.equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    //---- Values
+    private static final class Value {
+        private static final int NUMBER = 0;
+        private static final int BOOLEAN = 1;
+        private static final int NULL_VALUE = 2;
+        private static final int OBJECT = 3;
+        private static final int STRING = 4;
+        private static final int OTHER = 5;
+
+        private static final Value NULL = new Value(NULL_VALUE, 0, null);
+        private static final Value UNSUPPORTED = new Value(OTHER, 0, null);
+        private static final Value TRUE_VALUE = new Value(BOOLEAN, 1, null);
+        private static final Value FALSE_VALUE = new Value(BOOLEAN, 0, null);
+
+        private final int type;
+        private final double number;
+        private final Object object;
+
+        private Value(int t, double n, Object o) {
+            type = t;
+            number = n;
+            object = o;
+        }
+
+        private static Value number(double n) {
+            return new Value(NUMBER, n, null);
+        }
+
+        private static Value bool(boolean b) {
+            return b ? TRUE_VALUE : FALSE_VALUE;
+        }
+
+        private static Value string(String s) {
+            return new Value(STRING, 0, s);
+        }
+
+        private static Value of(Object value) {
+            if (value == null) {
+                return NULL;
+            }
+            if (value instanceof Instance) {
+                return new Value(OBJECT, 0, (Instance) value);
+            }
+            if (value instanceof Boolean) {
+                return bool(((Boolean) value).booleanValue());
+            }
+            if (value instanceof Number) {
+                return number(((Number) value).doubleValue());
+            }
+            return UNSUPPORTED;
+        }
+
+        private boolean isPrimitive() {
+            return type == NUMBER || type == BOOLEAN;
+        }
+    }
+
+    //---- Expression tree
+    private interface Node {
+        int test(Instance instance);
+    }
+
+    private interface Operand {
+        Value eval(Instance instance);
+    }
+
+    private static final class Or implements Node {
+        private final Node left;
+        private final Node right;
+
+        private Or(Node l, Node r) {
+            left = l;
+            right = r;
+        }
+
+        public int test(Instance instance) {
+            int l = left.test(instance);
+            return l == FALSE ? right.test(instance) : l;
+        }
+    }
+
+    private static final class And implements Node {
+        private final Node left;
+        private final Node right;
+
+        private And(Node l, Node r) {
+            left = l;
+            right = r;
+        }
+
+        public int test(Instance instance) {
+            int l = left.test(instance);
+            return l == TRUE ? right.test(instance) : l;
+        }
+    }
+
+    private static final class Not implements Node {
+        private final Node node;
+
+        private Not(Node n) {
+            node = n;
+        }
+
+        public int test(Instance instance) {
+            int n = node.test(instance);
+            return n == UNKNOWN ? UNKNOWN : TRUE - n;
+        }
+    }
+
+    private static final class Comparison implements Node {
+        private static final String[] OPERATORS = {"==", "!=", "<", "<=", ">", ">="}; // NOI18N
+        private static final int EQ = 0;
+        private static final int NE = 1;
+        private static final int LT = 2;
+        private static final int LE = 3;
+        private static final int GT = 4;
+        private static final int GE = 5;
+
+        private final Operand left;
+        private final int operator;
+        private final Operand right;
+
+        private Comparison(Operand l, int op, Operand r) {
+            left = l;
+            operator = op;
+            right = r;
+        }
+
+        private static int getOperator(String op) {
+            for (int i = 0; i < OPERATORS.length; i++) {
+                if (OPERATORS[i].equals(op)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return content of 'x.toString() == "..."' condition or <code>null</code>
+         */
+        private String collectConditions(List<FieldRange> ranges) {
+            Operand fieldOperand = left instanceof Literal ? right : left;
+            Operand literalOperand = left instanceof Literal ? left : right;
+
+            if (!(literalOperand instanceof Literal) || operator == NE) {
+                return null;
+            }
+            Value value = ((Literal) literalOperand).value;
+
+            if (fieldOperand instanceof ToString && value.type == Value.STRING && operator == EQ) {
+                return (String) value.object;
+            }
+            if (fieldOperand instanceof Path && value.type == Value.NUMBER) {
+                String[] names = ((Path) fieldOperand).names;
+
+                if (names.length == 1) {
+                    Double number = Double.valueOf(value.number);
+                    // operator with literal on the left side is mirrored
+                    boolean less = (operator == LT || operator == LE) == (literalOperand == right);
+
+                    if (operator == EQ) {
+                        ranges.add(new FieldRange(names[0], number, number));
+                    } else if (less) {
+                        ranges.add(new FieldRange(names[0], null, number));
+                    } else {
+                        ranges.add(new FieldRange(names[0], number, null));
+                    }
+                }
+            }
+            return null;
+        }
+
+        public int test(Instance instance) {
+            Value l = left.eval(instance);
+            Value r = right.eval(instance);
+
+            if (l.type == Value.OTHER || r.type == Value.OTHER) {
+                return UNKNOWN;
+            }
+            if (operator == EQ || operator == NE) {
+                boolean equal;
+
+                if (l.isPrimitive() && r.isPrimitive()) {
+                    equal = l.number == r.number;
+                } else if (l.type == Value.STRING && r.type == Value.STRING) {
+                    equal = l.object.equals(r.object);
+                } else if (l.type == Value.STRING || r.type == Value.STRING) {
+                    if (l.type != Value.NULL_VALUE && r.type != Value.NULL_VALUE) {
+                        // string is converted to number or compared with object wrapper
+                        return UNKNOWN;
+                    }
+                    equal = false;
+                } else if (l.type == Value.NULL_VALUE || r.type == Value.NULL_VALUE) {
+                    // null is only equal to null
+                    equal = l.type == r.type;
+                } else {
+                    // objects are compared by the script wrappers
+                    return UNKNOWN;
+                }
+                return (equal == (operator == EQ)) ? TRUE : FALSE;
+            }
+            if (l.type == Value.OBJECT || r.type == Value.OBJECT || l.type == Value.STRING || r.type == Value.STRING) {
+                return UNKNOWN;
+            }
+            // null is converted to 0 by relational operators
+            double a = l.number;
+            double b = r.number;
+            boolean result;
+
+            switch (operator) {
+                case LT:
+                    result = a < b;
+                    break;
+                case LE:
+                    result = a <= b;
+                    break;
+                case GT:
+                    result = a > b;
+                    break;
+                default:
+                    result = a >= b;
+                    break;
+            }
+            return result ? TRUE : FALSE;
+        }
+    }
+
+    private static final class Literal implements Operand {
+        private final Value value;
+
+        private Literal(Value v) {
+            value = v;
+        }
+
+        public Value eval(Instance instance) {
+            return value;
+        }
+    }
+
+    private static final class ToString implements Operand {
+        private final Snapshot snapshot;
+
+        private ToString(Snapshot s) {
+            snapshot = s;
+        }
+
+        public Value eval(Instance instance) {
+            if (!STRING_CLASS.equals(instance.getJavaClass().getName())) {
+                return Value.UNSUPPORTED;
+            }
+            String value = snapshot.valueString(instance);
+            return value == null ? Value.UNSUPPORTED : Value.string(value);
+        }
+    }
+
+    private static final class Size implements Operand {
+        private final boolean retained;
+
+        private Size(boolean r) {
+            retained = r;
+        }
+
+        public Value eval(Instance instance) {
+            if (instance instanceof JavaClass) {
+                return Value.UNSUPPORTED;
+            }
+            return Value.number(retained ? instance.getRetainedSize() : instance.getSize());
+        }
+    }
+
+    private static final class Path implements Operand {
+        private final String[] names;
+
+        private Path(String[] n) {
+            names = n;
+        }
+
+        public Value eval(Instance instance) {
+            Object value = instance;
+
+            for (String name : names) {
+                if (!(value instanceof Instance) || value instanceof JavaClass) {
+                    // class objects are wrapped with their static fields
+                    return Value.UNSUPPORTED;
+                }
+                Instance current = (Instance) value;
+                if (current instanceof ObjectArrayInstance) {
+                    if (!LENGTH.equals(name)) {
+                        return Value.UNSUPPORTED;
+                    }
+                    value = Integer.valueOf(((ObjectArrayInstance) current).getLength());
+                } else if (current instanceof PrimitiveArrayInstance) {
+                    if (!LENGTH.equals(name)) {
+                        return Value.UNSUPPORTED;
+                    }
+                    value = Integer.valueOf(((PrimitiveArrayInstance) current).getLength());
+                } else {
+                    value = current.getValueOfField(name);
+                }
+            }
+            return Value.of(value);
+        }
+    }
+}
@@ -222,6 +222,35 @@ public final class Snapshot {
         };
     }
 
+    /**
+     * @return java.lang.String instances with the given content
+     */
+    public List<Instance> getStringInstances(String value) {
+        return delegate.getStringInstances(value);
+    }
+
+    /**
+     * @return instances of clazz with the primitive field value between min and max inclusive
+     * or <code>null</code> if there is no index of the field values
+     */
+    public List<Instance> getIndexedInstances(JavaClass clazz, String fieldName, Double min, Double max) {
+        String type = null;
+
+        // field of the top-most class is used, same as in Instance.getValueOfField()
+        for (JavaClass cls = clazz; cls != null; cls = cls.getSuperClass()) {
+            for (Field field : cls.getFields()) {
+                if (!field.isStatic() && field.getName().equals(fieldName)) {
+                    type = field.getType().getName();
+                }
+            }
+        }
+        // char values are strings in the script
+        if (type == null || type.equals("object") || type.equals("char") || !delegate.hasFieldIndex(clazz, fieldName)) { // NOI18N
+            return null;
+        }
+        return delegate.getInstancesByFieldValue(clazz, fieldName, min, max);
+    }
+
     public Iterator<Object> getReferrers(Object obj, boolean includeWeak) {
         List<Object> instances = new ArrayList<>();
         List<Object> references = new ArrayList<>();
@@ -37,6 +37,7 @@ import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.graalvm.visualvm.lib.jfluid.heap.Heap;
 import org.graalvm.visualvm.lib.jfluid.heap.HeapFactory;
 import org.graalvm.visualvm.lib.jfluid.heap.Instance;
 import org.graalvm.visualvm.lib.jfluid.heap.JavaClass;
@@ -746,6 +747,115 @@ public class OQLEngineTest {
         });
     }
 
+    @Test
+    public void testParallelQuery() throws Exception {
+        System.out.println("parallel query");
+        String query = "select [o, sizeof(o)] from instanceof java.lang.Object o where sizeof(o) > 16";
+        List<Object> sequential = new ArrayList<>();
+        List<Object> parallel = new ArrayList<>();
+        final int[] counter = new int[1];
+
+        instance.executeQuery(query, new ObjectVisitor() {
+
+            public boolean visit(Object o) {
+                sequential.add(o);
+                return false;
+            }
+        });
+        System.setProperty(OQLEngineImpl.THREADS_PROPERTY, "4");
+        try {
+            instance.executeQuery(query, new ObjectVisitor() {
+
+                public boolean visit(Object o) {
+                    parallel.add(o);
+                    return false;
+                }
+            });
+            instance.executeQuery(query, new ObjectVisitor() {
+
+                public boolean visit(Object o) {
+                    return ++counter[0] == 1500;
+                }
+            });
+        } finally {
+            System.clearProperty(OQLEngineImpl.THREADS_PROPERTY);
+        }
+        assertTrue(sequential.size() > 2000);
+        assertEquals(sequential, parallel);
+        assertEquals(1500, counter[0]);
+    }
+
+    @Test
+    public void testNativePredicates() throws Exception {
+        System.out.println("native predicates");
+        String[] queries = {
+            "select s from java.lang.String s where s.count > 5 && s.hash != 0",
+            "select a from instanceof java.lang.Object a where a.length >= 10 || sizeof(a) < 20",
+            "select h.table.length from java.util.HashMap h where h.table != null && !(h.table.length <= 16)",
+            "select t from java.lang.Thread t where t.daemon == true || t.priority > 5",
+            "select o from instanceof java.lang.Object o where o.value != null && o.value.length == 3"
+        };
+
+        assertNotNull(OQLPredicate.create("!(s.count > 5) || (sizeof(s) <= -1 && s.value.length != null)", "s", null));
+        assertNull(OQLPredicate.create("s.value.toString() == 'a'", "s", null));
+        assertNull(OQLPredicate.create("s.count === 5", "s", null));
+        assertNull(OQLPredicate.create("s.id > 5", "s", null));
+        assertNull(OQLPredicate.create("s.count > 5 &&", "s", null));
+        for (String query : queries) {
+            assertEquals(query, executeScriptQuery(instance, query), executeQuery(instance, query));
+        }
+    }
+
+    @Test
+    public void testIndexedQueries() throws Exception {
+        System.out.println("indexed queries");
+        URL url = getClass().getResource("small_heap.bin");
+        Heap heap = HeapFactory.createHeap(new File(url.toURI()));
+        OQLEngine engine = new OQLEngine(heap);
+        String[] queries = {
+            "select s from java.lang.String s where s.toString() == 'java.home'",
+            "select s.count from java.lang.String s where 10 < s.count && s.count <= 12 && s.toString() != 'abc'",
+            "select h from java.util.HashMap h where h.size >= 5 && h.size != 6",
+            "select h from java.util.HashMap h where h.size == 3 || h.size == 4"
+        };
+
+        heap.createFieldIndex(heap.getJavaClassByName(String.class.getName()), "count");
+        heap.createFieldIndex(heap.getJavaClassByName("java.util.HashMap"), "size");
+        OQLPredicate predicate = OQLPredicate.create("s.toString() == \"java.home\" && 3 < s.count && s.hash == -2", "s", null);
+        assertEquals("java.home", predicate.getStringValue());
+        assertEquals(2, predicate.getFieldRanges().size());
+        assertEquals(Double.valueOf(3), predicate.getFieldRanges().get(0).min);
+        assertNull(predicate.getFieldRanges().get(0).max);
+        for (String query : queries) {
+            List<Object> results = executeQuery(engine, query);
+
+            assertFalse(query, results.isEmpty());
+            assertEquals(query, executeScriptQuery(engine, query), results);
+        }
+    }
+
+    private static List<Object> executeQuery(OQLEngine engine, String query) throws Exception {
+        List<Object> results = new ArrayList<>();
+
+        engine.executeQuery(query, new ObjectVisitor() {
+
+            public boolean visit(Object o) {
+                results.add(o);
+                return false;
+            }
+        });
+        return results;
+    }
+
+    private static List<Object> executeScriptQuery(OQLEngine engine, String query) throws Exception {
+        System.setProperty(OQLEngineImpl.NATIVE_PREDICATES_PROPERTY, "false");
+        try {
+            return executeQuery(engine, query);
+        } finally {
+            System.clearProperty(OQLEngineImpl.NATIVE_PREDICATES_PROPERTY);
+        }
+    }
+
     private String dump(Object o) {
         if (o instanceof Map) {
             List<String> els = new ArrayList<>();
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2010, 2024, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package org.graalvm.visualvm.lib.profiler.oql.engine.api.impl;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import org.graalvm.visualvm.lib.jfluid.heap.HeapFactory;
+import org.graalvm.visualvm.lib.profiler.oql.engine.api.OQLEngine;
+import org.graalvm.visualvm.lib.profiler.oql.engine.api.OQLEngine.ObjectVisitor;
+
+/**
+ * Compares evaluation of 'where' conditions by {@link OQLPredicate} with
+ * evaluation by the script engine. It is not run as a part of unit tests.
+ * <p>
+ * Usage: <code>OQLPredicateBenchmark [heap dump] [query ...]</code>
+ * <p>
+ * The heap dump defaults to small_heap.bin next to this class, which is too
+ * small for meaningful numbers. A bigger dump can be generated by a program
+ * putting 300000 entries to a HashMap, with String values of random length
+ * below 40 and int[] values for every third entry, and writing the dump by
+ * <code>HotSpotDiagnosticMXBean.dumpHeap(file, true)</code>. Script evaluation
+ * needs a JavaScript engine, for example Nashorn of JDK 8.
+ * Every query is run once with each evaluation to warm up, then the best
+ * of {@link #RUNS} runs is printed.
+ */
+public class OQLPredicateBenchmark {
+
+    private static final int RUNS = 3;
+    private static final String[] QUERIES = {
+        "select s from java.lang.String s where s.hash != 0 && s.value.length > 20",    // NOI18N
+        "select a from instanceof java.lang.Object a where sizeof(a) > 100",            // NOI18N
+        "select [a, sizeof(a)] from instanceof java.lang.Object a where sizeof(a) > 100"    // NOI18N
+    };
+
+    public static void main(String[] args) throws Exception {
+        File dump;
+
+        if (args.length > 0) {
+            dump = new File(args[0]);
+        } else {
+            URL url = OQLPredicateBenchmark.class.getResource("small_heap.bin");   // NOI18N
+            dump = new File(url.toURI());
+        }
+        List<String> queries = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : Arrays.asList(QUERIES);
+        OQLEngine engine = new OQLEngine(HeapFactory.createHeap(dump));
+
+        for (String query : queries) {
+            long script = measure(engine, query, false);
+            long predicate = measure(engine, query, true);
+
+            System.out.println(query);
+            System.out.println("  native " + predicate + "ms, script " + script + "ms");  // NOI18N
+        }
+    }
+
+    private static long measure(OQLEngine engine, String query, boolean nativePredicates) throws Exception {
+        long best = Long.MAX_VALUE;
+
+        System.setProperty(OQLEngineImpl.NATIVE_PREDICATES_PROPERTY, String.valueOf(nativePredicates));
+        try {
+            for (int i = 0; i <= RUNS; i++) {
+                long start = System.currentTimeMillis();
+
+                engine.executeQuery(query, new ObjectVisitor() {
+                    public boolean visit(Object o) {
+                        return false;
+                    }
+                });
+                // the first run only warms up
+                if (i > 0) {
+                    best = Math.min(best, System.currentTimeMillis() - start);
+                }
+            }
+        } finally {
+            System.clearProperty(OQLEngineImpl.NATIVE_PREDICATES_PROPERTY);
+        }
+        return best;
+    }
+}